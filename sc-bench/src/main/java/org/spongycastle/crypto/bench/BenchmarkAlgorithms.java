@@ -0,0 +1,477 @@
+package org.spongycastle.crypto.bench;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.StreamCipher;
+import org.spongycastle.crypto.digests.GOST3411Digest;
+import org.spongycastle.crypto.digests.MD2Digest;
+import org.spongycastle.crypto.digests.MD4Digest;
+import org.spongycastle.crypto.digests.MD5Digest;
+import org.spongycastle.crypto.digests.RIPEMD128Digest;
+import org.spongycastle.crypto.digests.RIPEMD160Digest;
+import org.spongycastle.crypto.digests.RIPEMD256Digest;
+import org.spongycastle.crypto.digests.RIPEMD320Digest;
+import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA224Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA384Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.crypto.digests.TigerDigest;
+import org.spongycastle.crypto.digests.WhirlpoolDigest;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.AESLightEngine;
+import org.spongycastle.crypto.engines.BlowfishEngine;
+import org.spongycastle.crypto.engines.CAST5Engine;
+import org.spongycastle.crypto.engines.CAST6Engine;
+import org.spongycastle.crypto.engines.CamelliaEngine;
+import org.spongycastle.crypto.engines.CamelliaLightEngine;
+import org.spongycastle.crypto.engines.DESEngine;
+import org.spongycastle.crypto.engines.DESedeEngine;
+import org.spongycastle.crypto.engines.GOST28147Engine;
+import org.spongycastle.crypto.engines.Grain128Engine;
+import org.spongycastle.crypto.engines.Grainv1Engine;
+import org.spongycastle.crypto.engines.HC128Engine;
+import org.spongycastle.crypto.engines.HC256Engine;
+import org.spongycastle.crypto.engines.IDEAEngine;
+import org.spongycastle.crypto.engines.ISAACEngine;
+import org.spongycastle.crypto.engines.NoekeonEngine;
+import org.spongycastle.crypto.engines.NullEngine;
+import org.spongycastle.crypto.engines.RC2Engine;
+import org.spongycastle.crypto.engines.RC4Engine;
+import org.spongycastle.crypto.engines.RC532Engine;
+import org.spongycastle.crypto.engines.RC564Engine;
+import org.spongycastle.crypto.engines.RC6Engine;
+import org.spongycastle.crypto.engines.RijndaelEngine;
+import org.spongycastle.crypto.engines.SEEDEngine;
+import org.spongycastle.crypto.engines.Salsa20Engine;
+import org.spongycastle.crypto.engines.SerpentEngine;
+import org.spongycastle.crypto.engines.SkipjackEngine;
+import org.spongycastle.crypto.engines.TEAEngine;
+import org.spongycastle.crypto.engines.TwofishEngine;
+import org.spongycastle.crypto.engines.VMPCEngine;
+import org.spongycastle.crypto.engines.VMPCKSA3Engine;
+import org.spongycastle.crypto.engines.XTEAEngine;
+import org.spongycastle.crypto.macs.CBCBlockCipherMac;
+import org.spongycastle.crypto.macs.CFBBlockCipherMac;
+import org.spongycastle.crypto.macs.CMac;
+import org.spongycastle.crypto.macs.GOST28147Mac;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.macs.ISO9797Alg3Mac;
+import org.spongycastle.crypto.macs.OldHMac;
+import org.spongycastle.crypto.macs.VMPCMac;
+import org.spongycastle.crypto.modes.gcm.BasicGCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.GCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.Tables64kGCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.crypto.params.RC5Parameters;
+
+/**
+ * Factory for the primitives exercised by the benchmarks. Algorithms are named
+ * the way they are in the benchmark parameters - block and stream ciphers take
+ * a key size in bits after a dash, e.g. "AESFast-256" or "Salsa20-128".
+ */
+public final class BenchmarkAlgorithms
+{
+    private BenchmarkAlgorithms()
+    {
+    }
+
+    /**
+     * Split a "name-keybits" specification into its name.
+     */
+    public static String nameOf(String spec)
+    {
+        int dash = spec.lastIndexOf('-');
+
+        return dash < 0 ? spec : spec.substring(0, dash);
+    }
+
+    /**
+     * Split a "name-keybits" specification into its key size in bits, or
+     * return the given default if no key size is present.
+     */
+    public static int keySizeOf(String spec, int defaultKeySize)
+    {
+        int dash = spec.lastIndexOf('-');
+
+        return dash < 0 ? defaultKeySize : Integer.parseInt(spec.substring(dash + 1));
+    }
+
+    public static BlockCipher createBlockCipher(String name)
+    {
+        if (name.equals("AES"))
+        {
+            return new AESEngine();
+        }
+        if (name.equals("AESFast"))
+        {
+            return new AESFastEngine();
+        }
+        if (name.equals("AESLight"))
+        {
+            return new AESLightEngine();
+        }
+        if (name.equals("Blowfish"))
+        {
+            return new BlowfishEngine();
+        }
+        if (name.equals("CAST5"))
+        {
+            return new CAST5Engine();
+        }
+        if (name.equals("CAST6"))
+        {
+            return new CAST6Engine();
+        }
+        if (name.equals("Camellia"))
+        {
+            return new CamelliaEngine();
+        }
+        if (name.equals("CamelliaLight"))
+        {
+            return new CamelliaLightEngine();
+        }
+        if (name.equals("DES"))
+        {
+            return new DESEngine();
+        }
+        if (name.equals("DESede"))
+        {
+            return new DESedeEngine();
+        }
+        if (name.equals("GOST28147"))
+        {
+            return new GOST28147Engine();
+        }
+        if (name.equals("IDEA"))
+        {
+            return new IDEAEngine();
+        }
+        if (name.equals("Noekeon"))
+        {
+            return new NoekeonEngine();
+        }
+        if (name.equals("Null"))
+        {
+            return new NullEngine();
+        }
+        if (name.equals("RC2"))
+        {
+            return new RC2Engine();
+        }
+        if (name.equals("RC5-32"))
+        {
+            return new RC532Engine();
+        }
+        if (name.equals("RC5-64"))
+        {
+            return new RC564Engine();
+        }
+        if (name.equals("RC6"))
+        {
+            return new RC6Engine();
+        }
+        if (name.equals("Rijndael"))
+        {
+            return new RijndaelEngine();
+        }
+        if (name.equals("SEED"))
+        {
+            return new SEEDEngine();
+        }
+        if (name.equals("Serpent"))
+        {
+            return new SerpentEngine();
+        }
+        if (name.equals("Skipjack"))
+        {
+            return new SkipjackEngine();
+        }
+        if (name.equals("TEA"))
+        {
+            return new TEAEngine();
+        }
+        if (name.equals("Twofish"))
+        {
+            return new TwofishEngine();
+        }
+        if (name.equals("XTEA"))
+        {
+            return new XTEAEngine();
+        }
+
+        throw new IllegalArgumentException("unknown block cipher: " + name);
+    }
+
+    /**
+     * Return key parameters of the given size in bits for a block cipher.
+     */
+    public static CipherParameters createBlockCipherParameters(String name, int keySize)
+    {
+        if (name.equals("RC5-64"))
+        {
+            return new RC5Parameters(createKey(keySize / 8), 12);
+        }
+
+        return new KeyParameter(createKey(keySize / 8));
+    }
+
+    public static StreamCipher createStreamCipher(String name)
+    {
+        if (name.equals("Grain128"))
+        {
+            return new Grain128Engine();
+        }
+        if (name.equals("Grainv1"))
+        {
+            return new Grainv1Engine();
+        }
+        if (name.equals("HC128"))
+        {
+            return new HC128Engine();
+        }
+        if (name.equals("HC256"))
+        {
+            return new HC256Engine();
+        }
+        if (name.equals("ISAAC"))
+        {
+            return new ISAACEngine();
+        }
+        if (name.equals("RC4"))
+        {
+            return new RC4Engine();
+        }
+        if (name.equals("Salsa20"))
+        {
+            return new Salsa20Engine();
+        }
+        if (name.equals("VMPC"))
+        {
+            return new VMPCEngine();
+        }
+        if (name.equals("VMPCKSA3"))
+        {
+            return new VMPCKSA3Engine();
+        }
+
+        throw new IllegalArgumentException("unknown stream cipher: " + name);
+    }
+
+    /**
+     * Return the IV length in bytes a stream cipher must be initialised with,
+     * or 0 if it only takes a key.
+     */
+    public static int streamCipherIVLength(String name)
+    {
+        if (name.equals("Grain128"))
+        {
+            return 12;
+        }
+        if (name.equals("Grainv1") || name.equals("Salsa20"))
+        {
+            return 8;
+        }
+        if (name.equals("HC128") || name.equals("VMPC") || name.equals("VMPCKSA3"))
+        {
+            return 16;
+        }
+        if (name.equals("HC256"))
+        {
+            return 32;
+        }
+
+        return 0;
+    }
+
+    public static Digest createDigest(String name)
+    {
+        if (name.equals("GOST3411"))
+        {
+            return new GOST3411Digest();
+        }
+        if (name.equals("MD2"))
+        {
+            return new MD2Digest();
+        }
+        if (name.equals("MD4"))
+        {
+            return new MD4Digest();
+        }
+        if (name.equals("MD5"))
+        {
+            return new MD5Digest();
+        }
+        if (name.equals("RIPEMD128"))
+        {
+            return new RIPEMD128Digest();
+        }
+        if (name.equals("RIPEMD160"))
+        {
+            return new RIPEMD160Digest();
+        }
+        if (name.equals("RIPEMD256"))
+        {
+            return new RIPEMD256Digest();
+        }
+        if (name.equals("RIPEMD320"))
+        {
+            return new RIPEMD320Digest();
+        }
+        if (name.equals("SHA1"))
+        {
+            return new SHA1Digest();
+        }
+        if (name.equals("SHA224"))
+        {
+            return new SHA224Digest();
+        }
+        if (name.equals("SHA256"))
+        {
+            return new SHA256Digest();
+        }
+        if (name.equals("SHA384"))
+        {
+            return new SHA384Digest();
+        }
+        if (name.equals("SHA512"))
+        {
+            return new SHA512Digest();
+        }
+        if (name.equals("Tiger"))
+        {
+            return new TigerDigest();
+        }
+        if (name.equals("Whirlpool"))
+        {
+            return new WhirlpoolDigest();
+        }
+
+        throw new IllegalArgumentException("unknown digest: " + name);
+    }
+
+    public static GCMMultiplier createGCMMultiplier(String name)
+    {
+        if (name.equals("Basic"))
+        {
+            return new BasicGCMMultiplier();
+        }
+        if (name.equals("Tables8k"))
+        {
+            return new Tables8kGCMMultiplier();
+        }
+        if (name.equals("Tables64k"))
+        {
+            return new Tables64kGCMMultiplier();
+        }
+
+        throw new IllegalArgumentException("unknown GCM multiplier: " + name);
+    }
+
+    /**
+     * Create a MAC together with the key material it should be initialised with.
+     * HMACs are named "HMAC-digest" (or "OldHMAC-digest"), block cipher based
+     * MACs "CMAC-cipher", "CBCMAC-cipher" and "CFBMAC-cipher".
+     */
+    public static Mac createMac(String name)
+    {
+        int dash = name.indexOf('-');
+        String type = dash < 0 ? name : name.substring(0, dash);
+        String base = dash < 0 ? null : name.substring(dash + 1);
+
+        if (type.equals("HMAC"))
+        {
+            return new HMac(createDigest(base));
+        }
+        if (type.equals("OldHMAC"))
+        {
+            return new OldHMac(createDigest(base));
+        }
+        if (type.equals("CMAC"))
+        {
+            return new CMac(createBlockCipher(base));
+        }
+        if (type.equals("CBCMAC"))
+        {
+            return new CBCBlockCipherMac(createBlockCipher(base));
+        }
+        if (type.equals("CFBMAC"))
+        {
+            return new CFBBlockCipherMac(createBlockCipher(base));
+        }
+        if (type.equals("GOST28147MAC"))
+        {
+            return new GOST28147Mac();
+        }
+        if (type.equals("ISO9797Alg3MAC"))
+        {
+            return new ISO9797Alg3Mac(new DESEngine());
+        }
+        if (type.equals("VMPCMAC"))
+        {
+            return new VMPCMac();
+        }
+
+        throw new IllegalArgumentException("unknown MAC: " + name);
+    }
+
+    /**
+     * Return parameters suitable for initialising the given MAC.
+     */
+    public static CipherParameters createMacParameters(String name)
+    {
+        if (name.startsWith("GOST28147MAC"))
+        {
+            return new KeyParameter(createKey(32));
+        }
+        if (name.startsWith("ISO9797Alg3MAC"))
+        {
+            return new KeyParameter(createKey(24));
+        }
+        if (name.startsWith("VMPCMAC"))
+        {
+            return new ParametersWithIV(new KeyParameter(createKey(16)), createKey(16));
+        }
+        if (name.startsWith("CMAC-DES") || name.startsWith("CBCMAC-DES") || name.startsWith("CFBMAC-DES"))
+        {
+            return new KeyParameter(createKey(name.endsWith("DESede") ? 24 : 8));
+        }
+
+        return new KeyParameter(createKey(16));
+    }
+
+    /**
+     * Return deterministic, non-trivial key material of the given length.
+     */
+    public static byte[] createKey(int length)
+    {
+        byte[] key = new byte[length];
+
+        for (int i = 0; i != key.length; i++)
+        {
+            key[i] = (byte)(i * 0x3b + 0x11);
+        }
+
+        return key;
+    }
+
+    /**
+     * Return deterministic, non-trivial message data of the given length.
+     */
+    public static byte[] createData(int length)
+    {
+        byte[] data = new byte[length];
+
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)(i * 0x9d + 0x5a);
+        }
+
+        return data;
+    }
+}
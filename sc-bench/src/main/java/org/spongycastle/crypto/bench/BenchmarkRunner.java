@@ -0,0 +1,91 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Main class of the benchmarks jar. Accepts the normal JMH command line options,
+ * always attaches the GC profiler and finishes with a summary giving the
+ * throughput of each benchmark in MB/s and the bytes allocated per operation.
+ * <p>
+ * For example, to compare the AES engines in GCM mode on 16 KB messages:
+ * <pre>
+ * java -jar benchmarks.jar ModeBenchmark -p mode=GCM-Tables64k -p dataSize=16384
+ * </pre>
+ */
+public class BenchmarkRunner
+{
+    private static final double MB = 1024 * 1024;
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        Options options = new OptionsBuilder()
+            .parent(new CommandLineOptions(args))
+            .addProfiler(GCProfiler.class)
+            .build();
+
+        Collection results = new Runner(options).run();
+
+        System.out.println();
+        System.out.println(String.format("%-60s %14s %14s", "Benchmark", "MB/s", "B/op"));
+
+        for (Iterator it = results.iterator(); it.hasNext();)
+        {
+            RunResult result = (RunResult)it.next();
+            BenchmarkParams params = result.getParams();
+
+            String dataSize = params.getParam("dataSize");
+            double opsPerSecond = result.getPrimaryResult().getScore();
+            String throughput = dataSize == null ? "-" : String.format("%.2f", opsPerSecond * Integer.parseInt(dataSize) / MB);
+
+            System.out.println(String.format("%-60s %14s %14s", describe(params), throughput, allocationPerOp(result)));
+        }
+    }
+
+    private static String describe(BenchmarkParams params)
+    {
+        StringBuffer buf = new StringBuffer();
+        String benchmark = params.getBenchmark();
+
+        buf.append(benchmark.substring(benchmark.lastIndexOf('.', benchmark.lastIndexOf('.') - 1) + 1));
+
+        for (Iterator it = params.getParamsKeys().iterator(); it.hasNext();)
+        {
+            String key = (String)it.next();
+
+            buf.append(' ');
+            buf.append(params.getParam(key));
+        }
+
+        return buf.toString();
+    }
+
+    private static String allocationPerOp(RunResult result)
+    {
+        Map secondary = result.getSecondaryResults();
+
+        for (Iterator it = secondary.entrySet().iterator(); it.hasNext();)
+        {
+            Map.Entry entry = (Map.Entry)it.next();
+
+            // older JMH versions prefix the label with a middle dot
+            if (((String)entry.getKey()).endsWith("gc.alloc.rate.norm"))
+            {
+                return String.format("%.1f", ((Result)entry.getValue()).getScore());
+            }
+        }
+
+        return "-";
+    }
+}
@@ -0,0 +1,74 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.BlockCipher;
+
+/**
+ * Raw (ECB) throughput of every block cipher engine, one processBlock() call per block.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlockCipherBenchmark
+{
+    @Param({
+        "AES-128", "AES-192", "AES-256",
+        "AESFast-128", "AESFast-192", "AESFast-256",
+        "AESLight-128", "AESLight-192", "AESLight-256",
+        "Blowfish-128", "CAST5-128", "CAST6-256",
+        "Camellia-128", "Camellia-256", "CamelliaLight-128", "CamelliaLight-256",
+        "DES-64", "DESede-192", "GOST28147-256", "IDEA-128", "Noekeon-128", "Null-128",
+        "RC2-128", "RC5-32-128", "RC5-64-128", "RC6-256", "Rijndael-256", "SEED-128",
+        "Serpent-128", "Serpent-256", "Skipjack-80", "TEA-128", "Twofish-128", "Twofish-256", "XTEA-128" })
+    public String cipher;
+
+    @Param({ "true", "false" })
+    public boolean forEncryption;
+
+    @Param({ "16", "1024", "16384", "1048576", "16777216" })
+    public int dataSize;
+
+    private BlockCipher engine;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup
+    public void setup()
+    {
+        String name = BenchmarkAlgorithms.nameOf(cipher);
+
+        engine = BenchmarkAlgorithms.createBlockCipher(name);
+        engine.init(forEncryption, BenchmarkAlgorithms.createBlockCipherParameters(name, BenchmarkAlgorithms.keySizeOf(cipher, 128)));
+
+        in = BenchmarkAlgorithms.createData(dataSize);
+        out = new byte[dataSize];
+    }
+
+    @Benchmark
+    public byte[] processBlocks()
+    {
+        int blockSize = engine.getBlockSize();
+
+        for (int off = 0; off + blockSize <= dataSize; off += blockSize)
+        {
+            engine.processBlock(in, off, out, off);
+        }
+
+        return out;
+    }
+}
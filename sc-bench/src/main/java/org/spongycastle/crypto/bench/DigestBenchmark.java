@@ -0,0 +1,75 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.Digest;
+
+/**
+ * Throughput of the message digests, one complete hash of the message per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DigestBenchmark
+{
+    @Param({ "GOST3411", "MD2", "MD4", "MD5", "RIPEMD128", "RIPEMD160", "RIPEMD256", "RIPEMD320",
+        "SHA1", "SHA224", "SHA256", "SHA384", "SHA512", "Tiger", "Whirlpool" })
+    public String digest;
+
+    @Param({ "16", "1024", "16384", "1048576", "16777216" })
+    public int dataSize;
+
+    private static final int CHUNK_SIZE = 1000;
+
+    private Digest engine;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup
+    public void setup()
+    {
+        engine = BenchmarkAlgorithms.createDigest(digest);
+
+        in = BenchmarkAlgorithms.createData(dataSize);
+        out = new byte[engine.getDigestSize()];
+    }
+
+    @Benchmark
+    public byte[] hash()
+    {
+        engine.update(in, 0, dataSize);
+        engine.doFinal(out, 0);
+
+        return out;
+    }
+
+    /**
+     * The message fed in pieces which do not line up with the block size, as
+     * when hashing from a stream.
+     */
+    @Benchmark
+    public byte[] hashInChunks()
+    {
+        for (int off = 0; off < dataSize; off += CHUNK_SIZE)
+        {
+            engine.update(in, off, Math.min(CHUNK_SIZE, dataSize - off));
+        }
+        engine.doFinal(out, 0);
+
+        return out;
+    }
+}
@@ -0,0 +1,104 @@
+package org.spongycastle.crypto.bench;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
+import org.spongycastle.crypto.generators.ECKeyPairGenerator;
+import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECKeyGenerationParameters;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.params.ParametersWithRandom;
+import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.math.ec.ECAlgorithms;
+import org.spongycastle.math.ec.ECPoint;
+
+/**
+ * Operations per second of the elliptic curve point arithmetic and of ECDSA
+ * on the named prime curves.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ECBenchmark
+{
+    @Param({ "secp256r1", "secp384r1", "secp256k1" })
+    public String curve;
+
+    private ECDomainParameters domain;
+    private ECPoint point;
+    private BigInteger k;
+    private ECDSASigner signer;
+    private ECDSASigner verifier;
+    private byte[] message;
+    private BigInteger[] signature;
+
+    @Setup
+    public void setup()
+    {
+        X9ECParameters x9 = SECNamedCurves.getByName(curve);
+        SecureRandom random = new SecureRandom(new byte[]{ 1 });
+
+        domain = new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH());
+
+        ECKeyPairGenerator kpGen = new ECKeyPairGenerator();
+        kpGen.init(new ECKeyGenerationParameters(domain, random));
+
+        AsymmetricCipherKeyPair kp = kpGen.generateKeyPair();
+
+        // a point other than the generator, as for ECDH and signature verification
+        point = ((ECPublicKeyParameters)kp.getPublic()).getQ();
+        k = new BigInteger(x9.getN().bitLength() - 1, random);
+
+        signer = new ECDSASigner();
+        signer.init(true, new ParametersWithRandom((ECPrivateKeyParameters)kp.getPrivate(), random));
+
+        verifier = new ECDSASigner();
+        verifier.init(false, kp.getPublic());
+
+        message = BenchmarkAlgorithms.createData(32);
+        signature = signer.generateSignature(message);
+    }
+
+    @Benchmark
+    public ECPoint multiply()
+    {
+        return point.multiply(k);
+    }
+
+    @Benchmark
+    public ECPoint multiplyGenerator()
+    {
+        return ECAlgorithms.fixedPointMultiply(domain.getG(), k);
+    }
+
+    @Benchmark
+    public BigInteger[] sign()
+    {
+        return signer.generateSignature(message);
+    }
+
+    @Benchmark
+    public boolean verify()
+    {
+        return verifier.verifySignature(message, signature[0], signature[1]);
+    }
+}
@@ -0,0 +1,73 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.Mac;
+
+/**
+ * Throughput of the MACs. The "init" benchmark re-keys the MAC for every
+ * message, which is what PBKDF2 and per-record TLS MACs end up paying for.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MacBenchmark
+{
+    @Param({ "HMAC-MD5", "HMAC-SHA1", "HMAC-SHA256", "HMAC-SHA512", "HMAC-RIPEMD160", "OldHMAC-SHA1",
+        "CMAC-AESFast", "CMAC-DESede", "CBCMAC-AESFast", "CBCMAC-DES", "CFBMAC-AESFast",
+        "GOST28147MAC", "ISO9797Alg3MAC", "VMPCMAC" })
+    public String mac;
+
+    @Param({ "16", "1024", "16384", "1048576", "16777216" })
+    public int dataSize;
+
+    private Mac engine;
+    private CipherParameters params;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup
+    public void setup()
+    {
+        engine = BenchmarkAlgorithms.createMac(mac);
+        params = BenchmarkAlgorithms.createMacParameters(mac);
+        engine.init(params);
+
+        in = BenchmarkAlgorithms.createData(dataSize);
+        out = new byte[engine.getMacSize()];
+    }
+
+    @Benchmark
+    public byte[] mac()
+    {
+        engine.update(in, 0, dataSize);
+        engine.doFinal(out, 0);
+
+        return out;
+    }
+
+    @Benchmark
+    public byte[] initAndMac()
+    {
+        engine.init(params);
+        engine.update(in, 0, dataSize);
+        engine.doFinal(out, 0);
+
+        return out;
+    }
+}
@@ -0,0 +1,183 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.CCMBlockCipher;
+import org.spongycastle.crypto.modes.CFBBlockCipher;
+import org.spongycastle.crypto.modes.CTSBlockCipher;
+import org.spongycastle.crypto.modes.EAXBlockCipher;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.modes.GOFBBlockCipher;
+import org.spongycastle.crypto.modes.OFBBlockCipher;
+import org.spongycastle.crypto.modes.OpenPGPCFBBlockCipher;
+import org.spongycastle.crypto.modes.PGPCFBBlockCipher;
+import org.spongycastle.crypto.modes.SICBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+/**
+ * Throughput of the block cipher modes, including a complete doFinal() (and tag
+ * calculation for the AEAD modes) per operation. GCM is named "GCM-multiplier",
+ * e.g. "GCM-Tables64k". GOFB needs a 64 bit block cipher so it is not in the
+ * default set - run it with "-p mode=GOFB -p cipher=GOST28147-256".
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModeBenchmark
+{
+    @Param({ "AES-128", "AES-256", "AESFast-128", "AESFast-256", "AESLight-128", "AESLight-256" })
+    public String cipher;
+
+    @Param({ "CBC", "CFB", "OFB", "SIC", "CTS", "OpenPGPCFB", "PGPCFB", "CCM", "EAX", "GCM-Basic", "GCM-Tables8k", "GCM-Tables64k" })
+    public String mode;
+
+    @Param({ "true", "false" })
+    public boolean forEncryption;
+
+    @Param({ "16", "1024", "16384", "1048576", "16777216" })
+    public int dataSize;
+
+    private BufferedBlockCipher buffered;
+    private AEADBlockCipher aead;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup
+    public void setup()
+        throws InvalidCipherTextException
+    {
+        BlockCipher engine = BenchmarkAlgorithms.createBlockCipher(BenchmarkAlgorithms.nameOf(cipher));
+        int blockSize = engine.getBlockSize();
+        KeyParameter key = new KeyParameter(BenchmarkAlgorithms.createKey(BenchmarkAlgorithms.keySizeOf(cipher, 128) / 8));
+
+        if (mode.equals("CCM") || mode.equals("EAX") || mode.startsWith("GCM"))
+        {
+            if (mode.equals("CCM"))
+            {
+                aead = new CCMBlockCipher(engine);
+            }
+            else if (mode.equals("EAX"))
+            {
+                aead = new EAXBlockCipher(engine);
+            }
+            else
+            {
+                aead = new GCMBlockCipher(engine,
+                    BenchmarkAlgorithms.createGCMMultiplier(mode.substring(mode.indexOf('-') + 1)));
+            }
+
+            AEADParameters params = new AEADParameters(key, 128, BenchmarkAlgorithms.createKey(12), new byte[0]);
+
+            byte[] plain = BenchmarkAlgorithms.createData(dataSize);
+
+            if (forEncryption)
+            {
+                in = plain;
+            }
+            else
+            {
+                // decryption needs a valid ciphertext and tag to get through doFinal()
+                aead.init(true, params);
+                in = new byte[aead.getOutputSize(dataSize)];
+                int len = aead.processBytes(plain, 0, plain.length, in, 0);
+                aead.doFinal(in, len);
+            }
+
+            aead.init(forEncryption, params);
+            out = new byte[aead.getOutputSize(in.length)];
+        }
+        else
+        {
+            byte[] iv = BenchmarkAlgorithms.createKey(blockSize);
+
+            if (mode.equals("CBC"))
+            {
+                buffered = new BufferedBlockCipher(new CBCBlockCipher(engine));
+            }
+            else if (mode.equals("CFB"))
+            {
+                buffered = new BufferedBlockCipher(new CFBBlockCipher(engine, blockSize * 8));
+            }
+            else if (mode.equals("OFB"))
+            {
+                buffered = new BufferedBlockCipher(new OFBBlockCipher(engine, blockSize * 8));
+            }
+            else if (mode.equals("SIC"))
+            {
+                buffered = new BufferedBlockCipher(new SICBlockCipher(engine));
+            }
+            else if (mode.equals("GOFB"))
+            {
+                buffered = new BufferedBlockCipher(new GOFBBlockCipher(engine));
+            }
+            else if (mode.equals("CTS"))
+            {
+                buffered = new CTSBlockCipher(new CBCBlockCipher(engine));
+            }
+            else if (mode.equals("OpenPGPCFB"))
+            {
+                buffered = new BufferedBlockCipher(new OpenPGPCFBBlockCipher(engine));
+            }
+            else if (mode.equals("PGPCFB"))
+            {
+                buffered = new BufferedBlockCipher(new PGPCFBBlockCipher(engine, false));
+            }
+            else
+            {
+                throw new IllegalArgumentException("unknown mode: " + mode);
+            }
+
+            if (mode.equals("OpenPGPCFB") || mode.equals("PGPCFB"))
+            {
+                buffered.init(forEncryption, key);
+            }
+            else
+            {
+                buffered.init(forEncryption, new ParametersWithIV(key, iv));
+            }
+
+            in = BenchmarkAlgorithms.createData(dataSize);
+            // PGP CFB encryption adds a prefix of a block plus two check bytes
+            out = new byte[buffered.getOutputSize(dataSize) + 2 * blockSize + 2];
+        }
+    }
+
+    @Benchmark
+    public byte[] process()
+        throws InvalidCipherTextException
+    {
+        if (aead != null)
+        {
+            int len = aead.processBytes(in, 0, in.length, out, 0);
+            aead.doFinal(out, len);
+        }
+        else
+        {
+            int len = buffered.processBytes(in, 0, in.length, out, 0);
+            buffered.doFinal(out, len);
+        }
+
+        return out;
+    }
+}
@@ -0,0 +1,70 @@
+package org.spongycastle.crypto.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.StreamCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+/**
+ * Throughput of the stream cipher engines. The key stream simply carries on
+ * between operations, so the cost of key setup is not included.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamCipherBenchmark
+{
+    @Param({ "Grain128-128", "Grainv1-80", "HC128-128", "HC256-256", "ISAAC-256", "RC4-128",
+        "Salsa20-128", "Salsa20-256", "VMPC-128", "VMPCKSA3-128" })
+    public String cipher;
+
+    @Param({ "16", "1024", "16384", "1048576", "16777216" })
+    public int dataSize;
+
+    private StreamCipher engine;
+    private byte[] in;
+    private byte[] out;
+
+    @Setup
+    public void setup()
+    {
+        String name = BenchmarkAlgorithms.nameOf(cipher);
+        int ivLength = BenchmarkAlgorithms.streamCipherIVLength(name);
+        CipherParameters params = new KeyParameter(BenchmarkAlgorithms.createKey(BenchmarkAlgorithms.keySizeOf(cipher, 128) / 8));
+
+        if (ivLength > 0)
+        {
+            params = new ParametersWithIV(params, BenchmarkAlgorithms.createKey(ivLength));
+        }
+
+        engine = BenchmarkAlgorithms.createStreamCipher(name);
+        engine.init(true, params);
+
+        in = BenchmarkAlgorithms.createData(dataSize);
+        out = new byte[dataSize];
+    }
+
+    @Benchmark
+    public byte[] processBytes()
+    {
+        engine.processBytes(in, 0, dataSize, out, 0);
+
+        return out;
+    }
+}
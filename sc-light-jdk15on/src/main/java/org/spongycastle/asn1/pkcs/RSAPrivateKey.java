@@ -141,6 +141,16 @@ public class RSAPrivateKey
         return coefficient;
     }
 
+    /**
+     * Return the OtherPrimeInfos of a multi-prime key, a sequence of
+     * { prime, exponent, coefficient } sequences, or null for a key with
+     * two primes.
+     */
+    public ASN1Sequence getOtherPrimeInfos()
+    {
+        return otherPrimeInfos;
+    }
+
     /**
      * This outputs the key in PKCS1v2 format.
      * <pre>
@@ -10,6 +10,9 @@ import org.spongycastle.asn1.x9.X9ECParametersHolder;
 import org.spongycastle.math.ec.ECConstants;
 import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.custom.sec.SecP256K1Curve;
+import org.spongycastle.math.ec.custom.sec.SecP256R1Curve;
+import org.spongycastle.math.ec.custom.sec.SecP384R1Curve;
 import org.spongycastle.util.Strings;
 import org.spongycastle.util.encoders.Hex;
 
@@ -315,14 +318,11 @@ public class SECNamedCurves
         protected X9ECParameters createParameters()
         {
             // p = 2^256 - 2^32 - 2^9 - 2^8 - 2^7 - 2^6 - 2^4 - 1
-            BigInteger p = fromHex("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F");
-            BigInteger a = ECConstants.ZERO;
-            BigInteger b = BigInteger.valueOf(7);
             byte[] S = null;
             BigInteger n = fromHex("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEBAAEDCE6AF48A03BBFD25E8CD0364141");
             BigInteger h = BigInteger.valueOf(1);
 
-            ECCurve curve = new ECCurve.Fp(p, a, b);
+            ECCurve curve = new SecP256K1Curve();
             //ECPoint G = curve.decodePoint(Hex.decode("02"
             //+ "79BE667EF9DCBBAC55A06295CE870B07029BFCDB2DCE28D959F2815B16F81798"));
             ECPoint G = curve.decodePoint(Hex.decode("04"
@@ -341,14 +341,11 @@ public class SECNamedCurves
         protected X9ECParameters createParameters()
         {
             // p = 2^224 (2^32 - 1) + 2^192 + 2^96 - 1
-            BigInteger p = fromHex("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF");
-            BigInteger a = fromHex("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFC");
-            BigInteger b = fromHex("5AC635D8AA3A93E7B3EBBD55769886BC651D06B0CC53B0F63BCE3C3E27D2604B");
             byte[] S = Hex.decode("C49D360886E704936A6678E1139D26B7819F7E90");
             BigInteger n = fromHex("FFFFFFFF00000000FFFFFFFFFFFFFFFFBCE6FAADA7179E84F3B9CAC2FC632551");
             BigInteger h = BigInteger.valueOf(1);
 
-            ECCurve curve = new ECCurve.Fp(p, a, b);
+            ECCurve curve = new SecP256R1Curve();
             //ECPoint G = curve.decodePoint(Hex.decode("03"
             //+ "6B17D1F2E12C4247F8BCE6E563A440F277037D812DEB33A0F4A13945D898C296"));
             ECPoint G = curve.decodePoint(Hex.decode("04"
@@ -367,14 +364,11 @@ public class SECNamedCurves
         protected X9ECParameters createParameters()
         {
             // p = 2^384 - 2^128 - 2^96 + 2^32 - 1
-            BigInteger p = fromHex("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFF");
-            BigInteger a = fromHex("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFC");
-            BigInteger b = fromHex("B3312FA7E23EE7E4988E056BE3F82D19181D9C6EFE8141120314088F5013875AC656398D8A2ED19D2A85C8EDD3EC2AEF");
             byte[] S = Hex.decode("A335926AA319A27A1D00896A6773A4827ACDAC73");
             BigInteger n = fromHex("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFC7634D81F4372DDF581A0DB248B0A77AECEC196ACCC52973");
             BigInteger h = BigInteger.valueOf(1);
 
-            ECCurve curve = new ECCurve.Fp(p, a, b);
+            ECCurve curve = new SecP384R1Curve();
             //ECPoint G = curve.decodePoint(Hex.decode("03"
             //+ "AA87CA22BE8B05378EB1C71EF320AD746E1D3B628BA79B9859F741E082542A385502F25DBF55296C3A545E3872760AB7"));
             ECPoint G = curve.decodePoint(Hex.decode("04"
@@ -0,0 +1,151 @@
+package org.spongycastle.asn1.x9;
+
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.spongycastle.asn1.ASN1ObjectIdentifier;
+import org.spongycastle.asn1.nist.NISTNamedCurves;
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.teletrust.TeleTrusTNamedCurves;
+import org.spongycastle.util.Strings;
+
+/**
+ * A single table covering the X9.62, SEC, NIST and TeleTrusT named curves,
+ * so a curve can be found by name or object identifier with one lookup rather
+ * than by trying each table in turn.
+ * <p>
+ * Where tables define the same curve under one object identifier (for
+ * example prime256v1, secp256r1 and P-256) the same X9ECParameters object is
+ * returned for all of them, so any precomputation done against its curve or
+ * generator is shared. Parameters are still only built on first use.
+ */
+public class ECNamedCurveTable
+{
+    private static final Hashtable objIds = new Hashtable();
+    private static final Hashtable names = new Hashtable();
+    private static final Hashtable curves = new Hashtable();
+
+    static
+    {
+        // in order of preference for the canonical name of a curve
+        addNames(X962NamedCurves.getNames(), 0);
+        addNames(SECNamedCurves.getNames(), 1);
+        addNames(NISTNamedCurves.getNames(), 2);
+        addNames(TeleTrusTNamedCurves.getNames(), 3);
+    }
+
+    private static void addNames(Enumeration e, int table)
+    {
+        while (e.hasMoreElements())
+        {
+            String name = (String)e.nextElement();
+            ASN1ObjectIdentifier oid = getOID(table, name);
+
+            objIds.put(Strings.toLowerCase(name), oid);
+            if (!names.containsKey(oid))
+            {
+                names.put(oid, name);
+            }
+        }
+    }
+
+    private static ASN1ObjectIdentifier getOID(int table, String name)
+    {
+        switch (table)
+        {
+        case 0:
+            return X962NamedCurves.getOID(name);
+        case 1:
+            return SECNamedCurves.getOID(name);
+        case 2:
+            return NISTNamedCurves.getOID(name);
+        default:
+            return TeleTrusTNamedCurves.getOID(name);
+        }
+    }
+
+    /**
+     * return a X9ECParameters object representing the passed in named
+     * curve. The case of the name is ignored.
+     *
+     * @param name the name of the curve requested
+     * @return an X9ECParameters object or null if the curve is not available.
+     */
+    public static X9ECParameters getByName(
+        String name)
+    {
+        ASN1ObjectIdentifier oid = getOID(name);
+
+        if (oid != null)
+        {
+            return getByOID(oid);
+        }
+
+        return null;
+    }
+
+    /**
+     * return the X9ECParameters object for the named curve represented by
+     * the passed in object identifier. Null if the curve isn't present.
+     *
+     * @param oid an object identifier representing a named curve, if present.
+     */
+    public static X9ECParameters getByOID(
+        ASN1ObjectIdentifier oid)
+    {
+        X9ECParameters ecP = (X9ECParameters)curves.get(oid);
+
+        if (ecP == null && names.containsKey(oid))
+        {
+            // the underlying tables create each curve only once, so a race
+            // here can only ever store the same object
+            ecP = X962NamedCurves.getByOID(oid);
+            if (ecP == null)
+            {
+                ecP = SECNamedCurves.getByOID(oid);
+            }
+            if (ecP == null)
+            {
+                ecP = TeleTrusTNamedCurves.getByOID(oid);
+            }
+
+            if (ecP != null)
+            {
+                curves.put(oid, ecP);
+            }
+        }
+
+        return ecP;
+    }
+
+    /**
+     * return the object identifier signified by the passed in name. Null
+     * if there is no object identifier associated with name.
+     *
+     * @return the object identifier associated with name, if present.
+     */
+    public static ASN1ObjectIdentifier getOID(
+        String name)
+    {
+        return (ASN1ObjectIdentifier)objIds.get(Strings.toLowerCase(name));
+    }
+
+    /**
+     * return the preferred name for the curve represented by the given
+     * object identifier, or null if it is not a named curve.
+     */
+    public static String getName(
+        ASN1ObjectIdentifier oid)
+    {
+        return (String)names.get(oid);
+    }
+
+    /**
+     * returns an enumeration containing the name strings for curves
+     * contained in this structure, in lower case.
+     */
+    public static Enumeration getNames()
+    {
+        return objIds.keys();
+    }
+}
@@ -1,17 +1,34 @@
 package org.spongycastle.asn1.x9;
 
+/**
+ * Holder for a named curve's parameters, which are only built from their
+ * hex definitions the first time they are asked for. Safe for use by
+ * multiple threads - the parameters are only ever created once, so every
+ * caller sees the same curve and generator objects, along with any
+ * precomputation attached to them.
+ */
 public abstract class X9ECParametersHolder
 {
-    private X9ECParameters params;
+    private volatile X9ECParameters params;
 
     public X9ECParameters getParameters()
     {
-        if (params == null)
+        X9ECParameters p = params;
+
+        if (p == null)
         {
-            params = createParameters();
+            synchronized (this)
+            {
+                p = params;
+                if (p == null)
+                {
+                    p = createParameters();
+                    params = p;
+                }
+            }
         }
 
-        return params;
+        return p;
     }
 
     protected abstract X9ECParameters createParameters();
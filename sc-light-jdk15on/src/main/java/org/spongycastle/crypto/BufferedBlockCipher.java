@@ -1,5 +1,8 @@
 package org.spongycastle.crypto;
 
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.util.ByteBuffers;
 
 /**
  * A wrapper class that allows block ciphers to be used to process data in
@@ -218,6 +221,19 @@ public class BufferedBlockCipher
             len -= gapLen;
             inOff += gapLen;
 
+            if (len > buf.length && cipher instanceof MultiBlockCipher)
+            {
+                //
+                // hand all but the last block straight to the cipher in one call.
+                //
+                int blockCount = (len - buf.length + blockSize - 1) / blockSize;
+                int processed = ((MultiBlockCipher)cipher).processBlocks(in, inOff, blockCount, out, outOff + resultLen);
+
+                resultLen += processed;
+                len -= processed;
+                inOff += processed;
+            }
+
             while (len > buf.length)
             {
                 resultLen += cipher.processBlock(in, inOff, out, outOff + resultLen);
@@ -240,6 +256,24 @@ public class BufferedBlockCipher
         return resultLen;
     }
 
+    /**
+     * process the remaining bytes in a buffer, producing output if necessary.
+     * Heap buffers are worked on in their backing arrays without copying.
+     *
+     * @param in the buffer holding the input, its position is moved to its limit.
+     * @param out the buffer for any output, its position is moved past the output.
+     * @return the number of output bytes written to out.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     */
+    public int processBytes(
+        ByteBuffer  in,
+        ByteBuffer  out)
+        throws DataLengthException, IllegalStateException
+    {
+        return ByteBuffers.processBytes(this, in, out);
+    }
+
     /**
      * Process the last block in the buffer.
      *
@@ -289,6 +323,24 @@ public class BufferedBlockCipher
         }
     }
 
+    /**
+     * Process the last block in the buffer, writing the output to a ByteBuffer.
+     *
+     * @param out the buffer the block currently being held is written to.
+     * @return the number of output bytes written to out.
+     * @exception DataLengthException if there is insufficient space in out for
+     * the output, or the input is not block size aligned and should be.
+     * @exception IllegalStateException if the underlying cipher is not
+     * initialised.
+     * @exception InvalidCipherTextException if padding is expected and not found.
+     */
+    public int doFinal(
+        ByteBuffer  out)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        return ByteBuffers.doFinal(this, out);
+    }
+
     /**
      * Reset the buffer and cipher. After resetting the object is in the same
      * state as it was after the last init (if there was one).
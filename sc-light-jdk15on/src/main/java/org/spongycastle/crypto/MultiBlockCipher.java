@@ -0,0 +1,28 @@
+package org.spongycastle.crypto;
+
+/**
+ * Block ciphers which can process a run of consecutive blocks in a single
+ * call, avoiding the per block overheads of repeated calls to processBlock().
+ */
+public interface MultiBlockCipher
+    extends BlockCipher
+{
+    /**
+     * Process blockCount blocks of input from the array in and write them to
+     * the out array. The result is the same as calling processBlock() once
+     * for each block in turn, including when in and out are the same array
+     * and inOff and outOff are equal.
+     *
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException;
+}
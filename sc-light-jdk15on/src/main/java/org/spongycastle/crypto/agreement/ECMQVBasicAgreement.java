@@ -54,7 +54,7 @@ public class ECMQVBasicAgreement
         ECPoint q;
         if (Q2U == null)
         {
-            q = parameters.getG().multiply(d2U.getD());
+            q = ECAlgorithms.fixedPointMultiply(parameters.getG(), d2U.getD());
         }
         else
         {
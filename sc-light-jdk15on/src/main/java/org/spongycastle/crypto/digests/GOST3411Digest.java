@@ -7,12 +7,13 @@ import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithSBox;
 import org.spongycastle.crypto.util.Pack;
 import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Memoable;
 
 /**
  * implementation of GOST R 34.11-94
  */
 public class GOST3411Digest
-    implements ExtendedDigest
+    implements ExtendedDigest, Memoable
 {
     private static final int    DIGEST_LENGTH = 32;
 
@@ -56,10 +57,16 @@ public class GOST3411Digest
      */
     public GOST3411Digest(GOST3411Digest t)
     {
-        this.sBox = t.sBox;
-        cipher.init(true, new ParametersWithSBox(null, sBox));
+        copyIn(t);
+    }
 
-        reset();
+    private void copyIn(GOST3411Digest t)
+    {
+        if (this.sBox != t.sBox)
+        {
+            this.sBox = t.sBox;
+            cipher.init(true, new ParametersWithSBox(null, sBox));
+        }
 
         System.arraycopy(t.H, 0, this.H, 0, t.H.length);
         System.arraycopy(t.L, 0, this.L, 0, t.L.length);
@@ -308,6 +315,18 @@ public class GOST3411Digest
         System.arraycopy(C2, 0, C[2], 0, C2.length);
     }
 
+    public Memoable copy()
+    {
+        return new GOST3411Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        GOST3411Digest t = (GOST3411Digest)other;
+
+        copyIn(t);
+    }
+
     //  256 bitsblock modul -> (Sum + a mod (2^256))
     private void sumByteArray(byte[] in)
     {
@@ -1,13 +1,14 @@
 package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.ExtendedDigest;
+import org.spongycastle.util.Memoable;
 
 /**
  * base implementation of MD4 family style digest as outlined in
  * "Handbook of Applied Cryptography", pages 344 - 347.
  */
 public abstract class GeneralDigest
-    implements ExtendedDigest
+    implements ExtendedDigest, Memoable
 {
     private static final int BYTE_LENGTH = 64;
     private byte[]  xBuf;
@@ -32,6 +33,12 @@ public abstract class GeneralDigest
     protected GeneralDigest(GeneralDigest t)
     {
         xBuf = new byte[t.xBuf.length];
+
+        copyIn(t);
+    }
+
+    protected void copyIn(GeneralDigest t)
+    {
         System.arraycopy(t.xBuf, 0, xBuf, 0, t.xBuf.length);
 
         xBufOff = t.xBufOff;
@@ -71,13 +78,17 @@ public abstract class GeneralDigest
         //
         // process whole words.
         //
-        while (len > xBuf.length)
+        int wordCount = len / xBuf.length;
+
+        if (wordCount > 0)
         {
-            processWord(in, inOff);
+            int wordBytes = wordCount * xBuf.length;
 
-            inOff += xBuf.length;
-            len -= xBuf.length;
-            byteCount += xBuf.length;
+            processWords(in, inOff, wordCount);
+
+            inOff += wordBytes;
+            len -= wordBytes;
+            byteCount += wordBytes;
         }
 
         //
@@ -129,6 +140,23 @@ public abstract class GeneralDigest
     
     protected abstract void processWord(byte[] in, int inOff);
 
+    /**
+     * Process a run of whole words from the input. Digests which can decode
+     * complete blocks directly from the input array override this.
+     *
+     * @param in the input array.
+     * @param inOff offset of the first word.
+     * @param wordCount the number of words to process.
+     */
+    protected void processWords(byte[] in, int inOff, int wordCount)
+    {
+        for (int i = 0; i != wordCount; i++)
+        {
+            processWord(in, inOff);
+            inOff += 4;
+        }
+    }
+
     protected abstract void processLength(long bitLength);
 
     protected abstract void processBlock();
@@ -2,12 +2,13 @@ package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.ExtendedDigest;
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 /**
  * Base class for SHA-384 and SHA-512.
  */
 public abstract class LongDigest
-    implements ExtendedDigest
+    implements ExtendedDigest, Memoable
 {
     private static final int BYTE_LENGTH = 128;
     
@@ -19,7 +20,7 @@ public abstract class LongDigest
 
     protected long    H1, H2, H3, H4, H5, H6, H7, H8;
 
-    private long[]  W = new long[80];
+    private long[]  W = new long[16];
     private int     wOff;
 
     /**
@@ -41,6 +42,12 @@ public abstract class LongDigest
     protected LongDigest(LongDigest t)
     {
         xBuf = new byte[t.xBuf.length];
+
+        copyIn(t);
+    }
+
+    protected void copyIn(LongDigest t)
+    {
         System.arraycopy(t.xBuf, 0, xBuf, 0, t.xBuf.length);
 
         xBufOff = t.xBufOff;
@@ -91,8 +98,34 @@ public abstract class LongDigest
         }
 
         //
-        // process whole words.
+        // process whole words, topping up a partly filled block first.
+        //
+        while (wOff != 0 && len > xBuf.length)
+        {
+            processWord(in, inOff);
+
+            inOff += xBuf.length;
+            len -= xBuf.length;
+            byteCount1 += xBuf.length;
+        }
+
+        //
+        // whole blocks are decoded straight from the input.
         //
+        while (len > BYTE_LENGTH)
+        {
+            for (int i = 0; i < 16; i++)
+            {
+                W[i] = Pack.bigEndianToLong(in, inOff);
+                inOff += 8;
+            }
+
+            processBlock();
+
+            len -= BYTE_LENGTH;
+            byteCount1 += BYTE_LENGTH;
+        }
+
         while (len > xBuf.length)
         {
             processWord(in, inOff);
@@ -154,6 +187,45 @@ public abstract class LongDigest
         }
     }
 
+    /**
+     * Run the compression function once on a block of 16 words, chaining from
+     * chain and leaving the result in the first words of block. This replaces
+     * the digest's own state, so is only for subclasses driving the
+     * compression function directly.
+     */
+    protected void compress(long[] chain, long[] block)
+    {
+        H1 = chain[0];
+        H2 = chain[1];
+        H3 = chain[2];
+        H4 = chain[3];
+        H5 = chain[4];
+        H6 = chain[5];
+        H7 = chain[6];
+        H8 = chain[7];
+
+        System.arraycopy(block, 0, W, 0, 16);
+
+        processBlock();
+
+        getChain(block);
+    }
+
+    /**
+     * Copy out the chaining value, valid when a whole number of blocks has been processed.
+     */
+    protected void getChain(long[] chain)
+    {
+        chain[0] = H1;
+        chain[1] = H2;
+        chain[2] = H3;
+        chain[3] = H4;
+        chain[4] = H5;
+        chain[5] = H6;
+        chain[6] = H7;
+        chain[7] = H8;
+    }
+
     public int getByteLength()
     {
         return BYTE_LENGTH;
@@ -201,13 +273,7 @@ public abstract class LongDigest
     {
         adjustByteCounts();
 
-        //
-        // expand 16 word block into 80 word blocks.
-        //
-        for (int t = 16; t <= 79; t++)
-        {
-            W[t] = Sigma1(W[t - 2]) + W[t - 7] + Sigma0(W[t - 15]) + W[t - 16];
-        }
+        long[] W = this.W;
 
         //
         // set up working variables.
@@ -221,50 +287,116 @@ public abstract class LongDigest
         long     g = H7;
         long     h = H8;
 
-        int t = 0;     
-        for(int i = 0; i < 10; i ++)
+        //
+        // the first 16 rounds use the message block as it is.
+        //
+        h += Sum1(e) + Ch(e, f, g) + K[0] + W[0];
+        d += h;
+        h += Sum0(a) + Maj(a, b, c);
+        g += Sum1(d) + Ch(d, e, f) + K[1] + W[1];
+        c += g;
+        g += Sum0(h) + Maj(h, a, b);
+        f += Sum1(c) + Ch(c, d, e) + K[2] + W[2];
+        b += f;
+        f += Sum0(g) + Maj(g, h, a);
+        e += Sum1(b) + Ch(b, c, d) + K[3] + W[3];
+        a += e;
+        e += Sum0(f) + Maj(f, g, h);
+        d += Sum1(a) + Ch(a, b, c) + K[4] + W[4];
+        h += d;
+        d += Sum0(e) + Maj(e, f, g);
+        c += Sum1(h) + Ch(h, a, b) + K[5] + W[5];
+        g += c;
+        c += Sum0(d) + Maj(d, e, f);
+        b += Sum1(g) + Ch(g, h, a) + K[6] + W[6];
+        f += b;
+        b += Sum0(c) + Maj(c, d, e);
+        a += Sum1(f) + Ch(f, g, h) + K[7] + W[7];
+        e += a;
+        a += Sum0(b) + Maj(b, c, d);
+
+        h += Sum1(e) + Ch(e, f, g) + K[8] + W[8];
+        d += h;
+        h += Sum0(a) + Maj(a, b, c);
+        g += Sum1(d) + Ch(d, e, f) + K[9] + W[9];
+        c += g;
+        g += Sum0(h) + Maj(h, a, b);
+        f += Sum1(c) + Ch(c, d, e) + K[10] + W[10];
+        b += f;
+        f += Sum0(g) + Maj(g, h, a);
+        e += Sum1(b) + Ch(b, c, d) + K[11] + W[11];
+        a += e;
+        e += Sum0(f) + Maj(f, g, h);
+        d += Sum1(a) + Ch(a, b, c) + K[12] + W[12];
+        h += d;
+        d += Sum0(e) + Maj(e, f, g);
+        c += Sum1(h) + Ch(h, a, b) + K[13] + W[13];
+        g += c;
+        c += Sum0(d) + Maj(d, e, f);
+        b += Sum1(g) + Ch(g, h, a) + K[14] + W[14];
+        f += b;
+        b += Sum0(c) + Maj(c, d, e);
+        a += Sum1(f) + Ch(f, g, h) + K[15] + W[15];
+        e += a;
+        a += Sum0(b) + Maj(b, c, d);
+
+        //
+        // the remaining rounds, 16 at a time, expand the message schedule
+        // in place so only a 16 word window of it is ever held.
+        //
+        for (int t = 16; t < 80; t += 16)
         {
-          // t = 8 * i
-          h += Sum1(e) + Ch(e, f, g) + K[t] + W[t++];
-          d += h;
-          h += Sum0(a) + Maj(a, b, c);
-
-          // t = 8 * i + 1
-          g += Sum1(d) + Ch(d, e, f) + K[t] + W[t++];
-          c += g;
-          g += Sum0(h) + Maj(h, a, b);
-
-          // t = 8 * i + 2
-          f += Sum1(c) + Ch(c, d, e) + K[t] + W[t++];
-          b += f;
-          f += Sum0(g) + Maj(g, h, a);
-
-          // t = 8 * i + 3
-          e += Sum1(b) + Ch(b, c, d) + K[t] + W[t++];
-          a += e;
-          e += Sum0(f) + Maj(f, g, h);
-
-          // t = 8 * i + 4
-          d += Sum1(a) + Ch(a, b, c) + K[t] + W[t++];
-          h += d;
-          d += Sum0(e) + Maj(e, f, g);
-
-          // t = 8 * i + 5
-          c += Sum1(h) + Ch(h, a, b) + K[t] + W[t++];
-          g += c;
-          c += Sum0(d) + Maj(d, e, f);
-
-          // t = 8 * i + 6
-          b += Sum1(g) + Ch(g, h, a) + K[t] + W[t++];
-          f += b;
-          b += Sum0(c) + Maj(c, d, e);
-
-          // t = 8 * i + 7
-          a += Sum1(f) + Ch(f, g, h) + K[t] + W[t++];
-          e += a;
-          a += Sum0(b) + Maj(b, c, d);
+            h += Sum1(e) + Ch(e, f, g) + K[t] + (W[0] += Sigma1(W[14]) + W[9] + Sigma0(W[1]));
+            d += h;
+            h += Sum0(a) + Maj(a, b, c);
+            g += Sum1(d) + Ch(d, e, f) + K[t + 1] + (W[1] += Sigma1(W[15]) + W[10] + Sigma0(W[2]));
+            c += g;
+            g += Sum0(h) + Maj(h, a, b);
+            f += Sum1(c) + Ch(c, d, e) + K[t + 2] + (W[2] += Sigma1(W[0]) + W[11] + Sigma0(W[3]));
+            b += f;
+            f += Sum0(g) + Maj(g, h, a);
+            e += Sum1(b) + Ch(b, c, d) + K[t + 3] + (W[3] += Sigma1(W[1]) + W[12] + Sigma0(W[4]));
+            a += e;
+            e += Sum0(f) + Maj(f, g, h);
+            d += Sum1(a) + Ch(a, b, c) + K[t + 4] + (W[4] += Sigma1(W[2]) + W[13] + Sigma0(W[5]));
+            h += d;
+            d += Sum0(e) + Maj(e, f, g);
+            c += Sum1(h) + Ch(h, a, b) + K[t + 5] + (W[5] += Sigma1(W[3]) + W[14] + Sigma0(W[6]));
+            g += c;
+            c += Sum0(d) + Maj(d, e, f);
+            b += Sum1(g) + Ch(g, h, a) + K[t + 6] + (W[6] += Sigma1(W[4]) + W[15] + Sigma0(W[7]));
+            f += b;
+            b += Sum0(c) + Maj(c, d, e);
+            a += Sum1(f) + Ch(f, g, h) + K[t + 7] + (W[7] += Sigma1(W[5]) + W[0] + Sigma0(W[8]));
+            e += a;
+            a += Sum0(b) + Maj(b, c, d);
+
+            h += Sum1(e) + Ch(e, f, g) + K[t + 8] + (W[8] += Sigma1(W[6]) + W[1] + Sigma0(W[9]));
+            d += h;
+            h += Sum0(a) + Maj(a, b, c);
+            g += Sum1(d) + Ch(d, e, f) + K[t + 9] + (W[9] += Sigma1(W[7]) + W[2] + Sigma0(W[10]));
+            c += g;
+            g += Sum0(h) + Maj(h, a, b);
+            f += Sum1(c) + Ch(c, d, e) + K[t + 10] + (W[10] += Sigma1(W[8]) + W[3] + Sigma0(W[11]));
+            b += f;
+            f += Sum0(g) + Maj(g, h, a);
+            e += Sum1(b) + Ch(b, c, d) + K[t + 11] + (W[11] += Sigma1(W[9]) + W[4] + Sigma0(W[12]));
+            a += e;
+            e += Sum0(f) + Maj(f, g, h);
+            d += Sum1(a) + Ch(a, b, c) + K[t + 12] + (W[12] += Sigma1(W[10]) + W[5] + Sigma0(W[13]));
+            h += d;
+            d += Sum0(e) + Maj(e, f, g);
+            c += Sum1(h) + Ch(h, a, b) + K[t + 13] + (W[13] += Sigma1(W[11]) + W[6] + Sigma0(W[14]));
+            g += c;
+            c += Sum0(d) + Maj(d, e, f);
+            b += Sum1(g) + Ch(g, h, a) + K[t + 14] + (W[14] += Sigma1(W[12]) + W[7] + Sigma0(W[15]));
+            f += b;
+            b += Sum0(c) + Maj(c, d, e);
+            a += Sum1(f) + Ch(f, g, h) + K[t + 15] + (W[15] += Sigma1(W[13]) + W[8] + Sigma0(W[0]));
+            e += a;
+            a += Sum0(b) + Maj(b, c, d);
         }
- 
+
         H1 += a;
         H2 += b;
         H3 += c;
@@ -285,41 +417,41 @@ public abstract class LongDigest
     }
 
     /* SHA-384 and SHA-512 functions (as for SHA-256 but for longs) */
-    private long Ch(
+    private static long Ch(
         long    x,
         long    y,
         long    z)
     {
-        return ((x & y) ^ ((~x) & z));
+        return (z ^ (x & (y ^ z)));
     }
 
-    private long Maj(
+    private static long Maj(
         long    x,
         long    y,
         long    z)
     {
-        return ((x & y) ^ (x & z) ^ (y & z));
+        return ((x & y) | (z & (x | y)));
     }
 
-    private long Sum0(
+    private static long Sum0(
         long    x)
     {
         return ((x << 36)|(x >>> 28)) ^ ((x << 30)|(x >>> 34)) ^ ((x << 25)|(x >>> 39));
     }
 
-    private long Sum1(
+    private static long Sum1(
         long    x)
     {
         return ((x << 50)|(x >>> 14)) ^ ((x << 46)|(x >>> 18)) ^ ((x << 23)|(x >>> 41));
     }
 
-    private long Sigma0(
+    private static long Sigma0(
         long    x)
     {
         return ((x << 63)|(x >>> 1)) ^ ((x << 56)|(x >>> 8)) ^ (x >>> 7);
     }
 
-    private long Sigma1(
+    private static long Sigma1(
         long    x)
     {
         return ((x << 45)|(x >>> 19)) ^ ((x << 3)|(x >>> 61)) ^ (x >>> 6);
@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of MD4 as RFC 1320 by R. Rivest, MIT Laboratory for
@@ -34,6 +36,13 @@ public class MD4Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(MD4Digest t)
+    {
+        super.copyIn(t);
+
         H1 = t.H1;
         H2 = t.H2;
         H3 = t.H3;
@@ -125,6 +134,18 @@ public class MD4Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new MD4Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        MD4Digest d = (MD4Digest)other;
+
+        copyIn(d);
+    }
+
     //
     // round 1 left rotates
     //
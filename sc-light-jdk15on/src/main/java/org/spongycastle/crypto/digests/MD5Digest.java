@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of MD5 as outlined in "Handbook of Applied Cryptography", pages 346 - 347.
@@ -30,6 +32,13 @@ public class MD5Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(MD5Digest t)
+    {
+        super.copyIn(t);
+
         H1 = t.H1;
         H2 = t.H2;
         H3 = t.H3;
@@ -121,6 +130,18 @@ public class MD5Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new MD5Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        MD5Digest d = (MD5Digest)other;
+
+        copyIn(d);
+    }
+
     //
     // round 1 left rotates
     //
@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of RIPEMD128
@@ -30,6 +32,13 @@ public class RIPEMD128Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(RIPEMD128Digest t)
+    {
+        super.copyIn(t);
+
         H0 = t.H0;
         H1 = t.H1;
         H2 = t.H2;
@@ -121,6 +130,18 @@ public class RIPEMD128Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new RIPEMD128Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        RIPEMD128Digest d = (RIPEMD128Digest)other;
+
+        copyIn(d);
+    }
+
     /*
      * rotate int x left n bits.
      */
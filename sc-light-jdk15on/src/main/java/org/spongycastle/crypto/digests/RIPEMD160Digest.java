@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of RIPEMD see,
@@ -31,6 +33,13 @@ public class RIPEMD160Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(RIPEMD160Digest t)
+    {
+        super.copyIn(t);
+
         H0 = t.H0;
         H1 = t.H1;
         H2 = t.H2;
@@ -125,6 +134,18 @@ public class RIPEMD160Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new RIPEMD160Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        RIPEMD160Digest d = (RIPEMD160Digest)other;
+
+        copyIn(d);
+    }
+
     /*
      * rotate int x left n bits.
      */
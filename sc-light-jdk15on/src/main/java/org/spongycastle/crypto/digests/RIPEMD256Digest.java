@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of RIPEMD256.
@@ -32,6 +34,13 @@ public class RIPEMD256Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(RIPEMD256Digest t)
+    {
+        super.copyIn(t);
+
         H0 = t.H0;
         H1 = t.H1;
         H2 = t.H2;
@@ -135,6 +144,18 @@ public class RIPEMD256Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new RIPEMD256Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        RIPEMD256Digest d = (RIPEMD256Digest)other;
+
+        copyIn(d);
+    }
+
     /*
      * rotate int x left n bits.
      */
@@ -1,5 +1,7 @@
 package org.spongycastle.crypto.digests;
 
+import org.spongycastle.util.Memoable;
+
 
 /**
  * implementation of RIPEMD 320.
@@ -33,6 +35,13 @@ public class RIPEMD320Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(RIPEMD320Digest t)
+    {
+        super.copyIn(t);
+
         H0 = t.H0;
         H1 = t.H1;
         H2 = t.H2;
@@ -142,6 +151,18 @@ public class RIPEMD320Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new RIPEMD320Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        RIPEMD320Digest d = (RIPEMD320Digest)other;
+
+        copyIn(d);
+    }
+
     /*
      * rotate int x left n bits.
      */
@@ -1,6 +1,7 @@
 package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 /**
  * implementation of SHA-1 as outlined in "Handbook of Applied Cryptography", pages 346 - 349.
@@ -34,6 +35,13 @@ public class SHA1Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(SHA1Digest t)
+    {
+        super.copyIn(t);
+
         H1 = t.H1;
         H2 = t.H2;
         H3 = t.H3;
@@ -121,6 +129,51 @@ public class SHA1Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new SHA1Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        SHA1Digest d = (SHA1Digest)other;
+
+        copyIn(d);
+    }
+
+    /**
+     * Run the compression function once on a block of 16 words, chaining from
+     * chain and leaving the result in the first words of block. This replaces
+     * the digest's own state, so is only for subclasses driving the
+     * compression function directly.
+     */
+    protected void compress(int[] chain, int[] block)
+    {
+        H1 = chain[0];
+        H2 = chain[1];
+        H3 = chain[2];
+        H4 = chain[3];
+        H5 = chain[4];
+
+        System.arraycopy(block, 0, X, 0, 16);
+
+        processBlock();
+
+        getChain(block);
+    }
+
+    /**
+     * Copy out the chaining value, valid when a whole number of blocks has been processed.
+     */
+    protected void getChain(int[] chain)
+    {
+        chain[0] = H1;
+        chain[1] = H2;
+        chain[2] = H3;
+        chain[3] = H4;
+        chain[4] = H5;
+    }
+
     //
     // Additive constants
     //
@@ -3,6 +3,7 @@ package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.digests.GeneralDigest;
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 
 /**
@@ -42,6 +43,13 @@ public class SHA224Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(SHA224Digest t)
+    {
+        super.copyIn(t);
+
         H1 = t.H1;
         H2 = t.H2;
         H3 = t.H3;
@@ -140,6 +148,18 @@ public class SHA224Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new SHA224Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        SHA224Digest d = (SHA224Digest)other;
+
+        copyIn(d);
+    }
+
     protected void processBlock()
     {
         //
@@ -3,6 +3,7 @@ package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.digests.GeneralDigest;
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 
 /**
@@ -23,7 +24,7 @@ public class SHA256Digest
 
     private int     H1, H2, H3, H4, H5, H6, H7, H8;
 
-    private int[]   X = new int[64];
+    private int[]   X = new int[16];
     private int     xOff;
 
     /**
@@ -42,6 +43,13 @@ public class SHA256Digest
     {
         super(t);
 
+        copyIn(t);
+    }
+
+    private void copyIn(SHA256Digest t)
+    {
+        super.copyIn(t);
+
         H1 = t.H1;
         H2 = t.H2;
         H3 = t.H3;
@@ -83,6 +91,45 @@ public class SHA256Digest
         }
     }
 
+    protected void processWords(
+        byte[]  in,
+        int     inOff,
+        int     wordCount)
+    {
+        //
+        // top up a partly filled block.
+        //
+        while (xOff != 0 && wordCount > 0)
+        {
+            processWord(in, inOff);
+            inOff += 4;
+            wordCount--;
+        }
+
+        //
+        // whole blocks are decoded straight from the input.
+        //
+        while (wordCount >= 16)
+        {
+            for (int i = 0; i < 16; i++)
+            {
+                X[i] = (in[inOff] << 24) | ((in[inOff + 1] & 0xff) << 16)
+                    | ((in[inOff + 2] & 0xff) << 8) | (in[inOff + 3] & 0xff);
+                inOff += 4;
+            }
+
+            processBlock();
+            wordCount -= 16;
+        }
+
+        while (wordCount > 0)
+        {
+            processWord(in, inOff);
+            inOff += 4;
+            wordCount--;
+        }
+    }
+
     protected void processLength(
         long    bitLength)
     {
@@ -143,15 +190,60 @@ public class SHA256Digest
         }
     }
 
+    public Memoable copy()
+    {
+        return new SHA256Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        SHA256Digest d = (SHA256Digest)other;
+
+        copyIn(d);
+    }
+
+    /**
+     * Run the compression function once on a block of 16 words, chaining from
+     * chain and leaving the result in the first words of block. This replaces
+     * the digest's own state, so is only for subclasses driving the
+     * compression function directly.
+     */
+    protected void compress(int[] chain, int[] block)
+    {
+        H1 = chain[0];
+        H2 = chain[1];
+        H3 = chain[2];
+        H4 = chain[3];
+        H5 = chain[4];
+        H6 = chain[5];
+        H7 = chain[6];
+        H8 = chain[7];
+
+        System.arraycopy(block, 0, X, 0, 16);
+
+        processBlock();
+
+        getChain(block);
+    }
+
+    /**
+     * Copy out the chaining value, valid when a whole number of blocks has been processed.
+     */
+    protected void getChain(int[] chain)
+    {
+        chain[0] = H1;
+        chain[1] = H2;
+        chain[2] = H3;
+        chain[3] = H4;
+        chain[4] = H5;
+        chain[5] = H6;
+        chain[6] = H7;
+        chain[7] = H8;
+    }
+
     protected void processBlock()
     {
-        //
-        // expand 16 word block into 64 word blocks.
-        //
-        for (int t = 16; t <= 63; t++)
-        {
-            X[t] = Theta1(X[t - 2]) + X[t - 7] + Theta0(X[t - 15]) + X[t - 16];
-        }
+        int[] X = this.X;
 
         //
         // set up working variables.
@@ -165,56 +257,114 @@ public class SHA256Digest
         int     g = H7;
         int     h = H8;
 
-        int t = 0;     
-        for(int i = 0; i < 8; i ++)
+        //
+        // the first 16 rounds use the message block as it is.
+        //
+        h += Sum1(e) + Ch(e, f, g) + K[0] + X[0];
+        d += h;
+        h += Sum0(a) + Maj(a, b, c);
+        g += Sum1(d) + Ch(d, e, f) + K[1] + X[1];
+        c += g;
+        g += Sum0(h) + Maj(h, a, b);
+        f += Sum1(c) + Ch(c, d, e) + K[2] + X[2];
+        b += f;
+        f += Sum0(g) + Maj(g, h, a);
+        e += Sum1(b) + Ch(b, c, d) + K[3] + X[3];
+        a += e;
+        e += Sum0(f) + Maj(f, g, h);
+        d += Sum1(a) + Ch(a, b, c) + K[4] + X[4];
+        h += d;
+        d += Sum0(e) + Maj(e, f, g);
+        c += Sum1(h) + Ch(h, a, b) + K[5] + X[5];
+        g += c;
+        c += Sum0(d) + Maj(d, e, f);
+        b += Sum1(g) + Ch(g, h, a) + K[6] + X[6];
+        f += b;
+        b += Sum0(c) + Maj(c, d, e);
+        a += Sum1(f) + Ch(f, g, h) + K[7] + X[7];
+        e += a;
+        a += Sum0(b) + Maj(b, c, d);
+
+        h += Sum1(e) + Ch(e, f, g) + K[8] + X[8];
+        d += h;
+        h += Sum0(a) + Maj(a, b, c);
+        g += Sum1(d) + Ch(d, e, f) + K[9] + X[9];
+        c += g;
+        g += Sum0(h) + Maj(h, a, b);
+        f += Sum1(c) + Ch(c, d, e) + K[10] + X[10];
+        b += f;
+        f += Sum0(g) + Maj(g, h, a);
+        e += Sum1(b) + Ch(b, c, d) + K[11] + X[11];
+        a += e;
+        e += Sum0(f) + Maj(f, g, h);
+        d += Sum1(a) + Ch(a, b, c) + K[12] + X[12];
+        h += d;
+        d += Sum0(e) + Maj(e, f, g);
+        c += Sum1(h) + Ch(h, a, b) + K[13] + X[13];
+        g += c;
+        c += Sum0(d) + Maj(d, e, f);
+        b += Sum1(g) + Ch(g, h, a) + K[14] + X[14];
+        f += b;
+        b += Sum0(c) + Maj(c, d, e);
+        a += Sum1(f) + Ch(f, g, h) + K[15] + X[15];
+        e += a;
+        a += Sum0(b) + Maj(b, c, d);
+
+        //
+        // the remaining rounds, 16 at a time, expand the message schedule
+        // in place so only a 16 word window of it is ever held.
+        //
+        for (int t = 16; t < 64; t += 16)
         {
-            // t = 8 * i
-            h += Sum1(e) + Ch(e, f, g) + K[t] + X[t];
+            h += Sum1(e) + Ch(e, f, g) + K[t] + (X[0] += Theta1(X[14]) + X[9] + Theta0(X[1]));
             d += h;
             h += Sum0(a) + Maj(a, b, c);
-            ++t;
-
-            // t = 8 * i + 1
-            g += Sum1(d) + Ch(d, e, f) + K[t] + X[t];
+            g += Sum1(d) + Ch(d, e, f) + K[t + 1] + (X[1] += Theta1(X[15]) + X[10] + Theta0(X[2]));
             c += g;
             g += Sum0(h) + Maj(h, a, b);
-            ++t;
-
-            // t = 8 * i + 2
-            f += Sum1(c) + Ch(c, d, e) + K[t] + X[t];
+            f += Sum1(c) + Ch(c, d, e) + K[t + 2] + (X[2] += Theta1(X[0]) + X[11] + Theta0(X[3]));
             b += f;
             f += Sum0(g) + Maj(g, h, a);
-            ++t;
-
-            // t = 8 * i + 3
-            e += Sum1(b) + Ch(b, c, d) + K[t] + X[t];
+            e += Sum1(b) + Ch(b, c, d) + K[t + 3] + (X[3] += Theta1(X[1]) + X[12] + Theta0(X[4]));
             a += e;
             e += Sum0(f) + Maj(f, g, h);
-            ++t;
-
-            // t = 8 * i + 4
-            d += Sum1(a) + Ch(a, b, c) + K[t] + X[t];
+            d += Sum1(a) + Ch(a, b, c) + K[t + 4] + (X[4] += Theta1(X[2]) + X[13] + Theta0(X[5]));
             h += d;
             d += Sum0(e) + Maj(e, f, g);
-            ++t;
-
-            // t = 8 * i + 5
-            c += Sum1(h) + Ch(h, a, b) + K[t] + X[t];
+            c += Sum1(h) + Ch(h, a, b) + K[t + 5] + (X[5] += Theta1(X[3]) + X[14] + Theta0(X[6]));
             g += c;
             c += Sum0(d) + Maj(d, e, f);
-            ++t;
-
-            // t = 8 * i + 6
-            b += Sum1(g) + Ch(g, h, a) + K[t] + X[t];
+            b += Sum1(g) + Ch(g, h, a) + K[t + 6] + (X[6] += Theta1(X[4]) + X[15] + Theta0(X[7]));
             f += b;
             b += Sum0(c) + Maj(c, d, e);
-            ++t;
+            a += Sum1(f) + Ch(f, g, h) + K[t + 7] + (X[7] += Theta1(X[5]) + X[0] + Theta0(X[8]));
+            e += a;
+            a += Sum0(b) + Maj(b, c, d);
 
-            // t = 8 * i + 7
-            a += Sum1(f) + Ch(f, g, h) + K[t] + X[t];
+            h += Sum1(e) + Ch(e, f, g) + K[t + 8] + (X[8] += Theta1(X[6]) + X[1] + Theta0(X[9]));
+            d += h;
+            h += Sum0(a) + Maj(a, b, c);
+            g += Sum1(d) + Ch(d, e, f) + K[t + 9] + (X[9] += Theta1(X[7]) + X[2] + Theta0(X[10]));
+            c += g;
+            g += Sum0(h) + Maj(h, a, b);
+            f += Sum1(c) + Ch(c, d, e) + K[t + 10] + (X[10] += Theta1(X[8]) + X[3] + Theta0(X[11]));
+            b += f;
+            f += Sum0(g) + Maj(g, h, a);
+            e += Sum1(b) + Ch(b, c, d) + K[t + 11] + (X[11] += Theta1(X[9]) + X[4] + Theta0(X[12]));
+            a += e;
+            e += Sum0(f) + Maj(f, g, h);
+            d += Sum1(a) + Ch(a, b, c) + K[t + 12] + (X[12] += Theta1(X[10]) + X[5] + Theta0(X[13]));
+            h += d;
+            d += Sum0(e) + Maj(e, f, g);
+            c += Sum1(h) + Ch(h, a, b) + K[t + 13] + (X[13] += Theta1(X[11]) + X[6] + Theta0(X[14]));
+            g += c;
+            c += Sum0(d) + Maj(d, e, f);
+            b += Sum1(g) + Ch(g, h, a) + K[t + 14] + (X[14] += Theta1(X[12]) + X[7] + Theta0(X[15]));
+            f += b;
+            b += Sum0(c) + Maj(c, d, e);
+            a += Sum1(f) + Ch(f, g, h) + K[t + 15] + (X[15] += Theta1(X[13]) + X[8] + Theta0(X[0]));
             e += a;
             a += Sum0(b) + Maj(b, c, d);
-            ++t;
         }
 
         H1 += a;
@@ -236,42 +386,42 @@ public class SHA256Digest
         }
     }
 
-    /* SHA-256 functions */
-    private int Ch(
+    /* SHA-256 functions, Ch and Maj use the forms with one less operation */
+    private static int Ch(
         int    x,
         int    y,
         int    z)
     {
-        return (x & y) ^ ((~x) & z);
+        return z ^ (x & (y ^ z));
     }
 
-    private int Maj(
+    private static int Maj(
         int    x,
         int    y,
         int    z)
     {
-        return (x & y) ^ (x & z) ^ (y & z);
+        return (x & y) | (z & (x | y));
     }
 
-    private int Sum0(
+    private static int Sum0(
         int    x)
     {
         return ((x >>> 2) | (x << 30)) ^ ((x >>> 13) | (x << 19)) ^ ((x >>> 22) | (x << 10));
     }
 
-    private int Sum1(
+    private static int Sum1(
         int    x)
     {
         return ((x >>> 6) | (x << 26)) ^ ((x >>> 11) | (x << 21)) ^ ((x >>> 25) | (x << 7));
     }
 
-    private int Theta0(
+    private static int Theta0(
         int    x)
     {
         return ((x >>> 7) | (x << 25)) ^ ((x >>> 18) | (x << 14)) ^ (x >>> 3);
     }
 
-    private int Theta1(
+    private static int Theta1(
         int    x)
     {
         return ((x >>> 17) | (x << 15)) ^ ((x >>> 19) | (x << 13)) ^ (x >>> 10);
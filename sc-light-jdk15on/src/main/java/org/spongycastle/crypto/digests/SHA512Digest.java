@@ -1,6 +1,7 @@
 package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Memoable;
 
 
 /**
@@ -85,5 +86,17 @@ public class SHA512Digest
         H7 = 0x1f83d9abfb41bd6bL;
         H8 = 0x5be0cd19137e2179L;
     }
+
+    public Memoable copy()
+    {
+        return new SHA512Digest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        SHA512Digest d = (SHA512Digest)other;
+
+        super.copyIn(d);
+    }
 }
 
@@ -1,6 +1,7 @@
 package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.ExtendedDigest;
+import org.spongycastle.util.Memoable;
 
 /**
  * implementation of Tiger based on:
@@ -8,7 +9,7 @@ import org.spongycastle.crypto.ExtendedDigest;
  *  http://www.cs.technion.ac.il/~biham/Reports/Tiger</a>
  */
 public class TigerDigest
-    implements ExtendedDigest
+    implements ExtendedDigest, Memoable
 {
     private static final int BYTE_LENGTH = 64;
     
@@ -569,6 +570,11 @@ public class TigerDigest
      * message digest.
      */
     public TigerDigest(TigerDigest t)
+    {
+        copyIn(t);
+    }
+
+    private void copyIn(TigerDigest t)
     {
         a = t.a;
         b = t.b;
@@ -859,6 +865,18 @@ public class TigerDigest
         byteCount = 0;
     }
 
+    public Memoable copy()
+    {
+        return new TigerDigest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        TigerDigest d = (TigerDigest)other;
+
+        copyIn(d);
+    }
+
     public int getByteLength()
     {
         return BYTE_LENGTH;
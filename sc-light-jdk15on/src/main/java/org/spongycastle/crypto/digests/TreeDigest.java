@@ -0,0 +1,439 @@
+package org.spongycastle.crypto.digests;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.ExtendedDigest;
+import org.spongycastle.crypto.RuntimeCryptoException;
+import org.spongycastle.util.Memoable;
+
+/**
+ * A tree hash built on top of another digest.
+ * <p>
+ * The message is split into leaves of leafSize bytes (the last leaf may be
+ * shorter, an empty message is a single empty leaf). Each leaf is hashed as
+ * H(0x00 || leaf). Runs of up to fanOut consecutive hashes are then hashed
+ * together as H(0x01 || h1 || ... || hn), level by level, until a single
+ * root hash remains, which is the output of the digest. A message of a
+ * single leaf has that leaf's hash as its root.
+ * <p>
+ * If an executor is provided the leaves are hashed on it, with at most
+ * maxPendingLeaves leaves (and their buffers) outstanding at a time; the
+ * underlying digest must then be {@link Memoable} so that copies of it can be
+ * made for the tasks. The result does not depend on whether an executor is
+ * used.
+ */
+public class TreeDigest
+    implements ExtendedDigest
+{
+    private static final byte LEAF_PREFIX = 0x00;
+    private static final byte NODE_PREFIX = 0x01;
+
+    private final ExtendedDigest    digest;
+    private final int               hashLength;
+    private final int               leafSize;
+    private final int               fanOut;
+    private final ExecutorService   executor;
+    private final int               maxPendingLeaves;
+
+    private final ArrayList         levels = new ArrayList();
+    private final LinkedList        pending = new LinkedList();
+    private final LinkedList        freeBuffers = new LinkedList();
+    private final byte[]            oneByte = new byte[1];
+
+    private byte[]  leafBuf;
+    private int     leafOff;
+    private long    leafCount;
+
+    /**
+     * Create a tree digest which hashes its leaves in the calling thread.
+     *
+     * @param digest the underlying digest.
+     * @param leafSize the number of bytes of message in each leaf.
+     * @param fanOut the maximum number of children of a node.
+     */
+    public TreeDigest(ExtendedDigest digest, int leafSize, int fanOut)
+    {
+        this(digest, leafSize, fanOut, null, 1);
+    }
+
+    /**
+     * Create a tree digest which hashes its leaves on an executor.
+     *
+     * @param digest the underlying digest, which must be Memoable if executor is not null.
+     * @param leafSize the number of bytes of message in each leaf.
+     * @param fanOut the maximum number of children of a node.
+     * @param executor the executor to hash the leaves on, null to hash them in the calling thread.
+     * @param maxPendingLeaves the maximum number of leaves handed to the executor and not yet collected.
+     */
+    public TreeDigest(ExtendedDigest digest, int leafSize, int fanOut, ExecutorService executor, int maxPendingLeaves)
+    {
+        if (leafSize < 1)
+        {
+            throw new IllegalArgumentException("leaf size must be at least 1.");
+        }
+
+        if (fanOut < 2)
+        {
+            throw new IllegalArgumentException("fan out must be at least 2.");
+        }
+
+        if (maxPendingLeaves < 1)
+        {
+            throw new IllegalArgumentException("at least one pending leaf must be allowed.");
+        }
+
+        if (executor != null && !(digest instanceof Memoable))
+        {
+            throw new IllegalArgumentException("digest must be Memoable to be used with an executor.");
+        }
+
+        this.digest = digest;
+        this.hashLength = digest.getDigestSize();
+        this.leafSize = leafSize;
+        this.fanOut = fanOut;
+        this.executor = executor;
+        this.maxPendingLeaves = maxPendingLeaves;
+
+        reset();
+    }
+
+    public String getAlgorithmName()
+    {
+        return digest.getAlgorithmName() + "/Tree";
+    }
+
+    public int getDigestSize()
+    {
+        return hashLength;
+    }
+
+    public int getByteLength()
+    {
+        return digest.getByteLength();
+    }
+
+    /**
+     * Return the size of the leaves the message is split into.
+     *
+     * @return the leaf size in bytes.
+     */
+    public int getLeafSize()
+    {
+        return leafSize;
+    }
+
+    /**
+     * Return the maximum number of children of a node in the tree.
+     *
+     * @return the fan out.
+     */
+    public int getFanOut()
+    {
+        return fanOut;
+    }
+
+    public void update(byte in)
+    {
+        oneByte[0] = in;
+
+        update(oneByte, 0, 1);
+    }
+
+    public void update(byte[] in, int inOff, int len)
+    {
+        while (len > 0)
+        {
+            int count = Math.min(len, leafSize - leafOff);
+
+            if (executor == null)
+            {
+                if (leafOff == 0)
+                {
+                    digest.update(LEAF_PREFIX);
+                }
+
+                digest.update(in, inOff, count);
+            }
+            else
+            {
+                if (leafBuf == null)
+                {
+                    leafBuf = freeBuffers.isEmpty() ? new byte[leafSize] : (byte[])freeBuffers.removeFirst();
+                }
+
+                System.arraycopy(in, inOff, leafBuf, leafOff, count);
+            }
+
+            leafOff += count;
+            inOff += count;
+            len -= count;
+
+            if (leafOff == leafSize)
+            {
+                finishLeaf();
+            }
+        }
+    }
+
+    public int doFinal(byte[] out, int outOff)
+    {
+        if (leafOff != 0 || (leafCount == 0 && pending.isEmpty()))
+        {
+            finishLeaf();
+        }
+
+        while (!pending.isEmpty())
+        {
+            collectLeaf();
+        }
+
+        for (int i = 0; i != levels.size(); i++)
+        {
+            Level level = (Level)levels.get(i);
+
+            if (i == levels.size() - 1 && level.count == 1)
+            {
+                System.arraycopy(level.hashes, 0, out, outOff, hashLength);
+                break;
+            }
+
+            if (level.count != 0)
+            {
+                addHash(i + 1, hashNode(level), 0);
+            }
+        }
+
+        reset();
+
+        return hashLength;
+    }
+
+    public void reset()
+    {
+        // outstanding leaves must be finished with before their buffers are reused
+        while (!pending.isEmpty())
+        {
+            PendingLeaf leaf = (PendingLeaf)pending.removeFirst();
+
+            try
+            {
+                waitFor(leaf.result);
+            }
+            catch (RuntimeException e)
+            {
+                // ignore, the result is being discarded
+            }
+
+            freeBuffers.addLast(leaf.buffer);
+        }
+
+        if (leafBuf != null)
+        {
+            freeBuffers.addLast(leafBuf);
+            leafBuf = null;
+        }
+
+        levels.clear();
+        leafOff = 0;
+        leafCount = 0;
+
+        digest.reset();
+    }
+
+    /**
+     * Called with the hash of each leaf, in message order, as it is added to
+     * the tree.
+     *
+     * @param index the index of the leaf in the message, starting at 0.
+     * @param hash the hash of the leaf.
+     */
+    protected void leafComplete(long index, byte[] hash)
+    {
+    }
+
+    private void finishLeaf()
+    {
+        if (executor == null)
+        {
+            byte[] hash = new byte[hashLength];
+
+            if (leafOff == 0)
+            {
+                digest.update(LEAF_PREFIX);
+            }
+
+            digest.doFinal(hash, 0);
+            leafOff = 0;
+
+            addLeaf(hash);
+        }
+        else
+        {
+            if (leafBuf == null)
+            {
+                leafBuf = freeBuffers.isEmpty() ? new byte[leafSize] : (byte[])freeBuffers.removeFirst();
+            }
+
+            Digest leafDigest = (Digest)((Memoable)digest).copy();
+
+            pending.addLast(new PendingLeaf(executor.submit(new LeafTask(leafDigest, leafBuf, leafOff)), leafBuf));
+
+            leafBuf = null;
+            leafOff = 0;
+
+            if (pending.size() > maxPendingLeaves)
+            {
+                collectLeaf();
+            }
+        }
+    }
+
+    private void collectLeaf()
+    {
+        PendingLeaf leaf = (PendingLeaf)pending.removeFirst();
+
+        try
+        {
+            addLeaf(waitFor(leaf.result));
+        }
+        finally
+        {
+            freeBuffers.addLast(leaf.buffer);
+        }
+    }
+
+    private void addLeaf(byte[] hash)
+    {
+        leafComplete(leafCount++, hash);
+
+        addHash(0, hash, 0);
+    }
+
+    private void addHash(int levelNo, byte[] hash, int off)
+    {
+        if (levelNo == levels.size())
+        {
+            levels.add(new Level(fanOut * hashLength));
+        }
+
+        Level level = (Level)levels.get(levelNo);
+
+        System.arraycopy(hash, off, level.hashes, level.count * hashLength, hashLength);
+
+        if (++level.count == fanOut)
+        {
+            addHash(levelNo + 1, hashNode(level), 0);
+        }
+    }
+
+    private byte[] hashNode(Level level)
+    {
+        byte[] hash = new byte[hashLength];
+
+        digest.update(NODE_PREFIX);
+        digest.update(level.hashes, 0, level.count * hashLength);
+        digest.doFinal(hash, 0);
+
+        level.count = 0;
+
+        return hash;
+    }
+
+    private static byte[] waitFor(Future result)
+    {
+        boolean interrupted = false;
+
+        try
+        {
+            for (;;)
+            {
+                try
+                {
+                    return (byte[])result.get();
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    Throwable cause = e.getCause();
+
+                    if (cause instanceof RuntimeException)
+                    {
+                        throw (RuntimeException)cause;
+                    }
+                    if (cause instanceof Error)
+                    {
+                        throw (Error)cause;
+                    }
+
+                    throw new RuntimeCryptoException("leaf hash failed: " + cause.getMessage());
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+            {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static class Level
+    {
+        final byte[] hashes;
+        int count;
+
+        Level(int size)
+        {
+            this.hashes = new byte[size];
+        }
+    }
+
+    private static class PendingLeaf
+    {
+        final Future result;
+        final byte[] buffer;
+
+        PendingLeaf(Future result, byte[] buffer)
+        {
+            this.result = result;
+            this.buffer = buffer;
+        }
+    }
+
+    private static class LeafTask
+        implements Callable
+    {
+        private final Digest digest;
+        private final byte[] data;
+        private final int length;
+
+        LeafTask(Digest digest, byte[] data, int length)
+        {
+            this.digest = digest;
+            this.data = data;
+            this.length = length;
+        }
+
+        public Object call()
+        {
+            byte[] hash = new byte[digest.getDigestSize()];
+
+            digest.reset();
+            digest.update(LEAF_PREFIX);
+            digest.update(data, 0, length);
+            digest.doFinal(hash, 0);
+
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package org.spongycastle.crypto.digests;
+
+import java.util.concurrent.ExecutorService;
+
+import org.spongycastle.crypto.ExtendedDigest;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Checks a message against the root hash of a {@link TreeDigest}, and
+ * optionally against the hashes of its individual leaves so the first
+ * damaged leaf of a message can be identified.
+ */
+public class TreeDigestVerifier
+    extends TreeDigest
+{
+    private final byte[]    expectedRoot;
+    private final byte[][]  expectedLeaves;
+
+    private long    leaves;
+    private long    firstBadLeaf = -1;
+    private long    lastBadLeaf = -1;
+
+    /**
+     * Create a verifier for the root hash of a tree digest.
+     *
+     * @param digest the underlying digest.
+     * @param leafSize the number of bytes of message in each leaf.
+     * @param fanOut the maximum number of children of a node.
+     * @param expectedRoot the root hash the message should have.
+     */
+    public TreeDigestVerifier(ExtendedDigest digest, int leafSize, int fanOut, byte[] expectedRoot)
+    {
+        this(digest, leafSize, fanOut, null, 1, expectedRoot, null);
+    }
+
+    /**
+     * Create a verifier for the root and leaf hashes of a tree digest.
+     *
+     * @param digest the underlying digest, which must be Memoable if executor is not null.
+     * @param leafSize the number of bytes of message in each leaf.
+     * @param fanOut the maximum number of children of a node.
+     * @param executor the executor to hash the leaves on, null to hash them in the calling thread.
+     * @param maxPendingLeaves the maximum number of leaves handed to the executor and not yet collected.
+     * @param expectedRoot the root hash the message should have.
+     * @param expectedLeaves the hashes each leaf of the message should have, null if only the root is to be checked.
+     */
+    public TreeDigestVerifier(ExtendedDigest digest, int leafSize, int fanOut, ExecutorService executor, int maxPendingLeaves,
+        byte[] expectedRoot, byte[][] expectedLeaves)
+    {
+        super(digest, leafSize, fanOut, executor, maxPendingLeaves);
+
+        if (expectedRoot == null || expectedRoot.length != digest.getDigestSize())
+        {
+            throw new IllegalArgumentException("expected root must be the same size as the digest output.");
+        }
+
+        this.expectedRoot = Arrays.clone(expectedRoot);
+
+        if (expectedLeaves != null)
+        {
+            this.expectedLeaves = new byte[expectedLeaves.length][];
+
+            for (int i = 0; i != expectedLeaves.length; i++)
+            {
+                this.expectedLeaves[i] = Arrays.clone(expectedLeaves[i]);
+            }
+        }
+        else
+        {
+            this.expectedLeaves = null;
+        }
+    }
+
+    /**
+     * Finish the message and check it against the expected hashes. The verifier
+     * is reset ready for another message.
+     *
+     * @return true if the root hash, and any leaf hashes given, match the message.
+     */
+    public boolean verify()
+    {
+        byte[] root = new byte[getDigestSize()];
+
+        doFinal(root, 0);
+
+        boolean rootOkay = Arrays.constantTimeAreEqual(expectedRoot, root);
+
+        if (expectedLeaves != null && firstBadLeaf < 0 && leaves != expectedLeaves.length)
+        {
+            // a short message, the first missing leaf is the bad one
+            firstBadLeaf = leaves;
+        }
+
+        lastBadLeaf = firstBadLeaf;
+        firstBadLeaf = -1;
+        leaves = 0;
+
+        return rootOkay && lastBadLeaf < 0;
+    }
+
+    /**
+     * Return the index of the first leaf which did not match its expected hash
+     * in the last message verified.
+     *
+     * @return the leaf index, or -1 if all leaves matched or no leaf hashes were given.
+     */
+    public long getFirstBadLeaf()
+    {
+        return lastBadLeaf;
+    }
+
+    protected void leafComplete(long index, byte[] hash)
+    {
+        leaves = index + 1;
+
+        if (expectedLeaves == null || firstBadLeaf >= 0)
+        {
+            return;
+        }
+
+        if (index >= expectedLeaves.length || !Arrays.constantTimeAreEqual(expectedLeaves[(int)index], hash))
+        {
+            firstBadLeaf = index;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package org.spongycastle.crypto.digests;
 
 import org.spongycastle.crypto.ExtendedDigest;
 import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Memoable;
 
 
 /**
@@ -10,7 +11,7 @@ import org.spongycastle.util.Arrays;
  *  
  */
 public final class WhirlpoolDigest 
-    implements ExtendedDigest
+    implements ExtendedDigest, Memoable
 {
     private static final int BYTE_LENGTH = 64;
     
@@ -135,6 +136,11 @@ public final class WhirlpoolDigest
      * digest.
      */
     public WhirlpoolDigest(WhirlpoolDigest originalDigest)
+    {
+        copyIn(originalDigest);
+    }
+
+    private void copyIn(WhirlpoolDigest originalDigest)
     {
         System.arraycopy(originalDigest._rc, 0, _rc, 0, _rc.length);
         
@@ -191,6 +197,18 @@ public final class WhirlpoolDigest
         Arrays.fill(_state, 0);
     }
 
+    public Memoable copy()
+    {
+        return new WhirlpoolDigest(this);
+    }
+
+    public void reset(Memoable other)
+    {
+        WhirlpoolDigest originalDigest = (WhirlpoolDigest)other;
+
+        copyIn(originalDigest);
+    }
+
     // this takes a buffer of information and fills the block
     private void processFilledBuffer(byte[] in, int inOff)
     {
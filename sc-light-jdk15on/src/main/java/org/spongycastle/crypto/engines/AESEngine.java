@@ -1,6 +1,6 @@
 package org.spongycastle.crypto.engines;
 
-import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.params.KeyParameter;
@@ -29,7 +29,7 @@ import org.spongycastle.crypto.params.KeyParameter;
  *
  */
 public class AESEngine
-    implements BlockCipher
+    implements MultiBlockCipher
 {
     // The S box
     private static final byte[] S = {
@@ -413,6 +413,52 @@ private static final int[] Tinv0 =
         return BLOCK_SIZE;
     }
 
+    public int processBlocks(
+        byte[] in,
+        int inOff,
+        int blockCount,
+        byte[] out,
+        int outOff)
+    {
+        if (WorkingKey == null)
+        {
+            throw new IllegalStateException("AES engine not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (forEncryption)
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                unpackBlock(in, inOff + i);
+                encryptBlock(WorkingKey);
+                packBlock(out, outOff + i);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                unpackBlock(in, inOff + i);
+                decryptBlock(WorkingKey);
+                packBlock(out, outOff + i);
+            }
+        }
+
+        return len;
+    }
+
     public void reset()
     {
     }
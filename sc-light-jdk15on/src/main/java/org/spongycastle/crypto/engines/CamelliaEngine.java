@@ -1,6 +1,6 @@
 package org.spongycastle.crypto.engines;
 
-import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.params.KeyParameter;
@@ -9,7 +9,7 @@ import org.spongycastle.crypto.params.KeyParameter;
  * Camellia - based on RFC 3713.
  */
 public class CamelliaEngine
-    implements BlockCipher
+    implements MultiBlockCipher
 {
     private boolean initialised = false;
     private boolean _keyIs128;
@@ -675,6 +675,49 @@ public class CamelliaEngine
         }
     }
 
+    public int processBlocks(
+        byte[] in,
+        int inOff,
+        int blockCount,
+        byte[] out,
+        int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (!initialised)
+        {
+            throw new IllegalStateException("Camellia engine not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (_keyIs128)
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                processBlock128(in, inOff + i, out, outOff + i);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                processBlock192or256(in, inOff + i, out, outOff + i);
+            }
+        }
+
+        return len;
+    }
+
     public void reset()
     {
         // nothing
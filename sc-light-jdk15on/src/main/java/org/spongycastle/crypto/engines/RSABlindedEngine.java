@@ -10,15 +10,28 @@ import org.spongycastle.util.BigIntegers;
 
 import java.math.BigInteger;
 import java.security.SecureRandom;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 /**
  * this does your basic RSA algorithm with blinding
+ * <p>
+ * Generating a blinding pair, r^e and r^-1 mod n, costs an exponentiation
+ * and an inversion. Instead, the pair for each private key is kept, and
+ * squared to give the next one, so most operations only pay for two
+ * modular multiplications. A fresh random r is used every
+ * MAX_BLINDING_USES operations.
  */
 public class RSABlindedEngine
     implements AsymmetricBlockCipher
 {
     private static BigInteger ONE = BigInteger.valueOf(1);
 
+    private static final int MAX_BLINDING_USES = 32;
+
+    // the next blinding pair for each private key, the keys are weakly held
+    private static final Map blindingPairs = new WeakHashMap();
+
     private RSACoreEngine    core = new RSACoreEngine();
     private RSAKeyParameters key;
     private SecureRandom     random;
@@ -103,13 +116,12 @@ public class RSABlindedEngine
             if (e != null)   // can't do blinding without a public exponent
             {
                 BigInteger m = k.getModulus();
-                BigInteger r = BigIntegers.createRandomInRange(ONE, m.subtract(ONE), random);
+                BlindingPair pair = nextBlindingPair(k);
 
-                BigInteger blindedInput = r.modPow(e, m).multiply(input).mod(m);
+                BigInteger blindedInput = pair.blind.multiply(input).mod(m);
                 BigInteger blindedResult = core.processBlock(blindedInput);
 
-                BigInteger rInv = r.modInverse(m);
-                result = blindedResult.multiply(rInv).mod(m);
+                result = blindedResult.multiply(pair.unblind).mod(m);
             }
             else
             {
@@ -123,4 +135,58 @@ public class RSABlindedEngine
 
         return core.convertOutput(result);
     }
+
+    /**
+     * Return a blinding pair for k, different from any returned before.
+     */
+    private BlindingPair nextBlindingPair(RSAPrivateCrtKeyParameters k)
+    {
+        BigInteger m = k.getModulus();
+
+        synchronized (blindingPairs)
+        {
+            BlindingPair pair = (BlindingPair)blindingPairs.get(k);
+
+            if (pair != null)
+            {
+                // (r^e)^2 = (r^2)^e, so squaring both gives the pair for r^2
+                if (pair.uses < MAX_BLINDING_USES)
+                {
+                    blindingPairs.put(k, new BlindingPair(pair.blind.multiply(pair.blind).mod(m),
+                        pair.unblind.multiply(pair.unblind).mod(m), pair.uses + 1));
+                }
+                else
+                {
+                    blindingPairs.remove(k);
+                }
+
+                return pair;
+            }
+        }
+
+        BigInteger r = BigIntegers.createRandomInRange(ONE, m.subtract(ONE), random);
+        BlindingPair pair = new BlindingPair(r.modPow(k.getPublicExponent(), m), r.modInverse(m), 1);
+
+        synchronized (blindingPairs)
+        {
+            blindingPairs.put(k, new BlindingPair(pair.blind.multiply(pair.blind).mod(m),
+                pair.unblind.multiply(pair.unblind).mod(m), 2));
+        }
+
+        return pair;
+    }
+
+    private static class BlindingPair
+    {
+        final BigInteger blind;
+        final BigInteger unblind;
+        final int uses;
+
+        BlindingPair(BigInteger blind, BigInteger unblind, int uses)
+        {
+            this.blind = blind;
+            this.unblind = unblind;
+            this.uses = uses;
+        }
+    }
 }
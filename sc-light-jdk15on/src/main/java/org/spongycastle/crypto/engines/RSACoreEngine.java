@@ -4,6 +4,7 @@ import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.params.ParametersWithRandom;
 import org.spongycastle.crypto.params.RSAKeyParameters;
+import org.spongycastle.crypto.params.RSAMultiPrimePrivateCrtKeyParameters;
 import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
 
 import java.math.BigInteger;
@@ -192,6 +193,11 @@ class RSACoreEngine
             m = h.multiply(q);
             m = m.add(mQ);
 
+            if (crtKey instanceof RSAMultiPrimePrivateCrtKeyParameters)
+            {
+                m = addOtherPrimes((RSAMultiPrimePrivateCrtKeyParameters)crtKey, input, m);
+            }
+
             return m;
         }
         else
@@ -200,4 +206,36 @@ class RSACoreEngine
                         key.getExponent(), key.getModulus());
         }
     }
+
+    /**
+     * Extend m, the result mod p * q, to the result mod n using Garner's
+     * algorithm as in PKCS #1 v2.1 (RFC 3447) 5.1.2. Each extra prime
+     * shortens the exponentiations, which grow with the cube of the length.
+     */
+    private BigInteger addOtherPrimes(RSAMultiPrimePrivateCrtKeyParameters key, BigInteger input, BigInteger m)
+    {
+        BigInteger[] primes = key.getOtherPrimes();
+        BigInteger[] exponents = key.getOtherExponents();
+        BigInteger[] coefficients = key.getOtherCoefficients();
+
+        // r holds the product of the primes dealt with so far
+        BigInteger r = key.getP().multiply(key.getQ());
+
+        for (int i = 0; i != primes.length; i++)
+        {
+            BigInteger ri = primes[i];
+
+            // mi = ((input mod ri) ^ di) mod ri
+            BigInteger mi = input.remainder(ri).modPow(exponents[i], ri);
+
+            // h = ti * (mi - m) mod ri
+            BigInteger h = mi.subtract(m).multiply(coefficients[i]).mod(ri);
+
+            // m = m + r * h
+            m = m.add(r.multiply(h));
+            r = r.multiply(ri);
+        }
+
+        return m;
+    }
 }
@@ -1,6 +1,6 @@
 package org.spongycastle.crypto.engines;
 
-import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.params.KeyParameter;
@@ -16,7 +16,7 @@ import org.spongycastle.crypto.params.KeyParameter;
  * For full details see the <a href="http://www.cl.cam.ac.uk/~rja14/serpent.html">The Serpent home page</a>
  */
 public class SerpentEngine
-    implements BlockCipher
+    implements MultiBlockCipher
 {
     private static final int    BLOCK_SIZE = 16;
 
@@ -106,6 +106,48 @@ public class SerpentEngine
         return BLOCK_SIZE;
     }
 
+    public final int processBlocks(
+        byte[] in,
+        int inOff,
+        int blockCount,
+        byte[] out,
+        int outOff)
+    {
+        if (wKey == null)
+        {
+            throw new IllegalStateException("Serpent not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (encrypting)
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                encryptBlock(in, inOff + i, out, outOff + i);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                decryptBlock(in, inOff + i, out, outOff + i);
+            }
+        }
+
+        return len;
+    }
+
     public void reset()
     {
     }
@@ -1,6 +1,6 @@
 package org.spongycastle.crypto.engines;
 
-import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.params.KeyParameter;
@@ -13,7 +13,7 @@ import org.spongycastle.crypto.params.KeyParameter;
  * by Raif S. Naffah.
  */
 public final class TwofishEngine
-    implements BlockCipher
+    implements MultiBlockCipher
 {
     private static final byte[][] P =  {
     {  // p0
@@ -318,6 +318,48 @@ public final class TwofishEngine
         return BLOCK_SIZE;
     }
 
+    public int processBlocks(
+        byte[] in,
+        int inOff,
+        int blockCount,
+        byte[] out,
+        int outOff)
+    {
+        if (workingKey == null)
+        {
+            throw new IllegalStateException("Twofish not initialised");
+        }
+
+        int len = blockCount * BLOCK_SIZE;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (encrypting)
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                encryptBlock(in, inOff + i, out, outOff + i);
+            }
+        }
+        else
+        {
+            for (int i = 0; i < len; i += BLOCK_SIZE)
+            {
+                decryptBlock(in, inOff + i, out, outOff + i);
+            }
+        }
+
+        return len;
+    }
+
     public void reset()
     {
         if (this.workingKey != null)
@@ -10,6 +10,7 @@ public class DHParametersGenerator
     private int             size;
     private int             certainty;
     private SecureRandom    random;
+    private int             threads = 1;
 
     private static final BigInteger TWO = BigInteger.valueOf(2);
 
@@ -30,6 +31,25 @@ public class DHParametersGenerator
         this.random = random;
     }
 
+    /**
+     * Test candidates for the safe prime on several threads at once, which
+     * cuts the time to find one, and its variance, by up to that factor.
+     * If the calling thread is interrupted the search is abandoned and an
+     * IllegalStateException thrown.
+     *
+     * @param threads the number of threads to use, 1 to stay on the calling thread.
+     */
+    public void setThreadCount(
+        int             threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+
+        this.threads = threads;
+    }
+
     /**
      * which generates the p and g values from the given parameters,
      * returning the DHParameters object.
@@ -41,7 +61,7 @@ public class DHParametersGenerator
         //
         // find a safe prime p where p = 2*q + 1, where p and q are prime.
         //
-        BigInteger[] safePrimes = DHParametersHelper.generateSafePrimes(size, certainty, random);
+        BigInteger[] safePrimes = DHParametersHelper.generateSafePrimes(size, certainty, random, threads);
 
         BigInteger p = safePrimes[0];
         BigInteger q = safePrimes[1];
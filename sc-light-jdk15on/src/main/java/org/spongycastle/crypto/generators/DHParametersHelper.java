@@ -17,23 +17,15 @@ class DHParametersHelper
      */
     static BigInteger[] generateSafePrimes(int size, int certainty, SecureRandom random)
     {
-        BigInteger p, q;
-        int qLength = size - 1;
-
-        for (;;)
-        {
-            q = new BigInteger(qLength, 2, random);
-
-            // p <- 2q + 1
-            p = q.shiftLeft(1).add(ONE);
-
-            if (p.isProbablePrime(certainty) && (certainty <= 2 || q.isProbablePrime(certainty)))
-            {
-                break;
-            }
-        }
+        return generateSafePrimes(size, certainty, random, 1);
+    }
 
-        return new BigInteger[] { p, q };
+    /*
+     * As above, with the candidates tested on the given number of threads.
+     */
+    static BigInteger[] generateSafePrimes(int size, int certainty, SecureRandom random, int threads)
+    {
+        return (BigInteger[])new SafePrimeSearch(size - 1, certainty, random).find(threads);
     }
 
     /*
@@ -70,4 +62,104 @@ class DHParametersHelper
 
         return g;
     }
+
+    /**
+     * Looks for q through windows of consecutive odd candidates from a
+     * random start, first crossing out each candidate where either q or
+     * 2q + 1 has a small factor. Only a few percent of the window is left
+     * for the probable prime tests.
+     */
+    private static class SafePrimeSearch
+        extends PrimeSearch
+    {
+        private static final int WINDOW = 4096;
+
+        private final int qLength;
+        private final int certainty;
+        private final SecureRandom random;
+
+        // the candidates are base + 2 * i, crossed out where sieved[i] is set
+        private BigInteger base;
+        private boolean[] sieved;
+        private int next = WINDOW;
+
+        SafePrimeSearch(int qLength, int certainty, SecureRandom random)
+        {
+            this.qLength = qLength;
+            this.certainty = certainty;
+            this.random = random;
+        }
+
+        PrimeSearch newSearch()
+        {
+            return new SafePrimeSearch(qLength, certainty, random);
+        }
+
+        Object testNext()
+        {
+            while (next < WINDOW && sieved[next])
+            {
+                next++;
+            }
+
+            if (next == WINDOW)
+            {
+                newWindow();
+                return null;
+            }
+
+            BigInteger q = base.add(BigInteger.valueOf(2L * next++));
+
+            if (q.bitLength() != qLength || !q.isProbablePrime(2))
+            {
+                return null;
+            }
+
+            // p <- 2q + 1
+            BigInteger p = q.shiftLeft(1).add(ONE);
+
+            if (p.isProbablePrime(certainty) && (certainty <= 2 || q.isProbablePrime(certainty)))
+            {
+                return new BigInteger[] { p, q };
+            }
+
+            return null;
+        }
+
+        private void newWindow()
+        {
+            base = new BigInteger(qLength, random).setBit(qLength - 1).setBit(0);
+            sieved = new boolean[WINDOW];
+            next = 0;
+
+            // the small primes might be the answer at these sizes
+            if (qLength <= 16)
+            {
+                return;
+            }
+
+            int[] rems = smallRemainders(base);
+
+            for (int i = 0; i < rems.length; i++)
+            {
+                int s = SMALL_PRIMES[i];
+                int r = rems[i];
+                int inv2 = (s + 1) / 2;
+
+                // s | base + 2j  <=>  j = -r / 2 mod s
+                crossOut((s - r) * inv2 % s, s);
+
+                // s | 2(base + 2j) + 1  <=>  j = ((s - 1) / 2 - r) / 2 mod s
+                crossOut(((s - 1) / 2 - r + s) % s * inv2 % s, s);
+            }
+        }
+
+        private void crossOut(int start, int step)
+        {
+            for (int j = start; j < WINDOW; j += step)
+            {
+                sieved[j] = true;
+            }
+        }
+    }
 }
@@ -98,7 +98,7 @@ public class DSAParametersGenerator
 
             BigInteger q = new BigInteger(1, u);
 
-            if (!q.isProbablePrime(certainty))
+            if (PrimeSearch.hasSmallFactor(q) || !q.isProbablePrime(certainty))
             {
                 continue;
             }
@@ -132,7 +132,7 @@ public class DSAParametersGenerator
                     continue;
                 }
 
-                if (p.isProbablePrime(certainty))
+                if (!PrimeSearch.hasSmallFactor(p) && p.isProbablePrime(certainty))
                 {
                     BigInteger g = calculateGenerator_FIPS186_2(p, q, random);
 
@@ -199,7 +199,7 @@ public class DSAParametersGenerator
 
 // 8. Test whether or not q is prime as specified in Appendix C.3.
             // TODO Review C.3 for primality checking
-            if (!q.isProbablePrime(certainty))
+            if (PrimeSearch.hasSmallFactor(q) || !q.isProbablePrime(certainty))
             {
 // 9. If q is not a prime, then go to step 5.
                 continue;
@@ -249,7 +249,7 @@ public class DSAParametersGenerator
 
 // 11.7 Test whether or not p is prime as specified in Appendix C.3.
                 // TODO Review C.3 for primality checking
-                if (p.isProbablePrime(certainty))
+                if (!PrimeSearch.hasSmallFactor(p) && p.isProbablePrime(certainty))
                 {
 // 11.8 If p is determined to be prime, then return VALID and the values of p, q and
 //      (optionally) the values of domain_parameter_seed and counter.
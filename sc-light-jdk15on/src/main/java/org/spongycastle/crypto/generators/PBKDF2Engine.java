@@ -0,0 +1,389 @@
+package org.spongycastle.crypto.generators;
+
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.Memoable;
+
+/**
+ * The function F of PKCS 5 V2.0 Scheme 2 (PBKDF2), producing one hLen sized
+ * block of derived key at a time.
+ * <p>
+ * For SHA-1, SHA-256 and SHA-512 the iterations after the first are done
+ * directly on the digest's word state: each HMAC input is a single padded
+ * block, so an iteration is exactly two runs of the compression function
+ * starting from the chaining values left by the ipad and opad blocks.
+ * Private subclasses of the digests give the iteration access to their
+ * compression functions. Other digests go through HMac.
+ */
+abstract class PBKDF2Engine
+{
+    private final HMac      hMac;
+    private final byte[]    iBuf = new byte[4];
+    private final byte[]    state;
+
+    PBKDF2Engine(HMac hMac)
+    {
+        this.hMac = hMac;
+        this.state = new byte[hMac.getMacSize()];
+    }
+
+    /**
+     * Return an engine for the passed in digest.
+     *
+     * @param digest the digest the HMAC PRF is based on.
+     */
+    static PBKDF2Engine getInstance(Digest digest)
+    {
+        Class c = digest.getClass();
+
+        if (c == SHA1Digest.class)
+        {
+            return new IntEngine(digest, new SHA1Compressor());
+        }
+        if (c == SHA256Digest.class)
+        {
+            return new IntEngine(digest, new SHA256Compressor());
+        }
+        if (c == SHA512Digest.class)
+        {
+            return new SHA512Engine();
+        }
+
+        return new MacEngine(digest);
+    }
+
+    /**
+     * Return a new, uninitialised, engine of the same type as this one, or null
+     * if the underlying digest cannot be duplicated.
+     */
+    abstract PBKDF2Engine newInstance();
+
+    int getLength()
+    {
+        return state.length;
+    }
+
+    void init(byte[] password)
+    {
+        hMac.init(new KeyParameter(password));
+
+        initWordState(password);
+    }
+
+    void deriveBlock(byte[] S, int c, int blockIndex, byte[] out, int outOff)
+    {
+        Pack.intToBigEndian(blockIndex, iBuf, 0);
+
+        if (S != null)
+        {
+            hMac.update(S, 0, S.length);
+        }
+
+        hMac.update(iBuf, 0, iBuf.length);
+
+        hMac.doFinal(state, 0);
+
+        System.arraycopy(state, 0, out, outOff, state.length);
+
+        iterate(c - 1, state, out, outOff);
+    }
+
+    /**
+     * Set up any state needed by iterate() for the passed in password.
+     */
+    void initWordState(byte[] password)
+    {
+    }
+
+    /**
+     * Perform the remaining count iterations starting from the first PRF output u,
+     * XORing each result into out.
+     */
+    void iterate(int count, byte[] u, byte[] out, int outOff)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            hMac.update(u, 0, u.length);
+            hMac.doFinal(u, 0);
+
+            for (int j = 0; j != u.length; j++)
+            {
+                out[outOff + j] ^= u[j];
+            }
+        }
+    }
+
+    /**
+     * Fill pad with the HMAC key derived from the password for a digest with
+     * the given block size.
+     */
+    static void keyPad(Digest digest, byte[] password, byte[] pad)
+    {
+        if (password.length > pad.length)
+        {
+            digest.reset();
+            digest.update(password, 0, password.length);
+            digest.doFinal(pad, 0);
+        }
+        else
+        {
+            System.arraycopy(password, 0, pad, 0, password.length);
+        }
+    }
+
+    static void xorPad(byte[] pad, byte n)
+    {
+        for (int i = 0; i < pad.length; i++)
+        {
+            pad[i] ^= n;
+        }
+    }
+
+    private static class MacEngine
+        extends PBKDF2Engine
+    {
+        private final Digest digest;
+
+        MacEngine(Digest digest)
+        {
+            super(new HMac(digest));
+
+            this.digest = digest;
+        }
+
+        PBKDF2Engine newInstance()
+        {
+            if (digest instanceof Memoable)
+            {
+                return new MacEngine((Digest)((Memoable)digest).copy());
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * Iteration over a digest with 32 bit words and a 64 byte block.
+     */
+    private static class IntEngine
+        extends PBKDF2Engine
+    {
+        private static final int BLOCK_LENGTH = 64;
+
+        private final IntCompressor     compressor;
+        private final int               words;
+        private final int[]             ipad;
+        private final int[]             opad;
+        private final int[]             block = new int[16];
+        private final int[]             acc;
+
+        IntEngine(Digest digest, IntCompressor compressor)
+        {
+            super(new HMac(digest));
+
+            this.compressor = compressor;
+            this.words = digest.getDigestSize() / 4;
+            this.ipad = new int[words];
+            this.opad = new int[words];
+            this.acc = new int[words];
+
+            // the fixed padding of a single block message of ipad/opad followed by the hash
+            block[words] = 0x80000000;
+            block[15] = (BLOCK_LENGTH + digest.getDigestSize()) * 8;
+        }
+
+        PBKDF2Engine newInstance()
+        {
+            return new IntEngine((Digest)((Memoable)compressor).copy(), compressor.newCompressor());
+        }
+
+        void initWordState(byte[] password)
+        {
+            byte[] pad = new byte[BLOCK_LENGTH];
+
+            keyPad(compressor, password, pad);
+
+            xorPad(pad, (byte)0x36);
+            compressor.reset();
+            compressor.update(pad, 0, pad.length);
+            compressor.getChain(ipad);
+
+            xorPad(pad, (byte)(0x36 ^ 0x5c));
+            compressor.reset();
+            compressor.update(pad, 0, pad.length);
+            compressor.getChain(opad);
+
+            Arrays.fill(pad, (byte)0);
+            compressor.reset();
+        }
+
+        void iterate(int count, byte[] u, byte[] out, int outOff)
+        {
+            for (int i = 0; i != words; i++)
+            {
+                block[i] = Pack.bigEndianToInt(u, i * 4);
+                acc[i] = block[i];
+            }
+
+            for (int c = 0; c < count; c++)
+            {
+                compressor.compress(ipad, block);
+                compressor.compress(opad, block);
+
+                for (int i = 0; i != words; i++)
+                {
+                    acc[i] ^= block[i];
+                }
+            }
+
+            Pack.intToBigEndian(acc, out, outOff);
+        }
+    }
+
+    /**
+     * Iteration over SHA-512, 64 bit words and a 128 byte block.
+     */
+    private static class SHA512Engine
+        extends PBKDF2Engine
+    {
+        private static final int BLOCK_LENGTH = 128;
+        private static final int WORDS = 8;
+
+        private final SHA512Compressor  compressor = new SHA512Compressor();
+        private final long[]            ipad = new long[WORDS];
+        private final long[]            opad = new long[WORDS];
+        private final long[]            block = new long[16];
+        private final long[]            acc = new long[WORDS];
+
+        SHA512Engine()
+        {
+            super(new HMac(new SHA512Digest()));
+
+            block[WORDS] = 0x8000000000000000L;
+            block[15] = (BLOCK_LENGTH + WORDS * 8) * 8;
+        }
+
+        PBKDF2Engine newInstance()
+        {
+            return new SHA512Engine();
+        }
+
+        void initWordState(byte[] password)
+        {
+            byte[] pad = new byte[BLOCK_LENGTH];
+
+            keyPad(compressor, password, pad);
+
+            xorPad(pad, (byte)0x36);
+            compressor.reset();
+            compressor.update(pad, 0, pad.length);
+            compressor.getChain(ipad);
+
+            xorPad(pad, (byte)(0x36 ^ 0x5c));
+            compressor.reset();
+            compressor.update(pad, 0, pad.length);
+            compressor.getChain(opad);
+
+            Arrays.fill(pad, (byte)0);
+            compressor.reset();
+        }
+
+        void iterate(int count, byte[] u, byte[] out, int outOff)
+        {
+            for (int i = 0; i != WORDS; i++)
+            {
+                block[i] = Pack.bigEndianToLong(u, i * 8);
+                acc[i] = block[i];
+            }
+
+            for (int c = 0; c < count; c++)
+            {
+                compressor.compress(ipad, block);
+                compressor.compress(opad, block);
+
+                for (int i = 0; i != WORDS; i++)
+                {
+                    acc[i] ^= block[i];
+                }
+            }
+
+            for (int i = 0; i != WORDS; i++)
+            {
+                Pack.longToBigEndian(acc[i], out, outOff + i * 8);
+            }
+        }
+    }
+
+    /**
+     * A digest with 32 bit words whose compression function can be run directly.
+     */
+    private interface IntCompressor
+        extends Digest
+    {
+        void compress(int[] chain, int[] block);
+
+        void getChain(int[] chain);
+
+        IntCompressor newCompressor();
+    }
+
+    private static class SHA1Compressor
+        extends SHA1Digest
+        implements IntCompressor
+    {
+        public void compress(int[] chain, int[] block)
+        {
+            super.compress(chain, block);
+        }
+
+        public void getChain(int[] chain)
+        {
+            super.getChain(chain);
+        }
+
+        public IntCompressor newCompressor()
+        {
+            return new SHA1Compressor();
+        }
+    }
+
+    private static class SHA256Compressor
+        extends SHA256Digest
+        implements IntCompressor
+    {
+        public void compress(int[] chain, int[] block)
+        {
+            super.compress(chain, block);
+        }
+
+        public void getChain(int[] chain)
+        {
+            super.getChain(chain);
+        }
+
+        public IntCompressor newCompressor()
+        {
+            return new SHA256Compressor();
+        }
+    }
+
+    private static class SHA512Compressor
+        extends SHA512Digest
+    {
+        public void compress(long[] chain, long[] block)
+        {
+            super.compress(chain, block);
+        }
+
+        public void getChain(long[] chain)
+        {
+            super.getChain(chain);
+        }
+    }
+}
@@ -1,11 +1,13 @@
 package org.spongycastle.crypto.generators;
 
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.Digest;
-import org.spongycastle.crypto.Mac;
 import org.spongycastle.crypto.PBEParametersGenerator;
 import org.spongycastle.crypto.digests.SHA1Digest;
-import org.spongycastle.crypto.macs.HMac;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
 
@@ -16,11 +18,20 @@ import org.spongycastle.crypto.params.ParametersWithIV;
  * The document this implementation is based on can be found at
  * <a href=http://www.rsasecurity.com/rsalabs/pkcs/pkcs-5/index.html>
  * RSA's PKCS5 Page</a>
+ * <p>
+ * With SHA-1, SHA-256 or SHA-512 the iterations are carried out directly on
+ * the digest's internal word state. If an executor is provided, and the key
+ * requested is longer than the digest size, the output blocks are derived
+ * concurrently.
  */
 public class PKCS5S2ParametersGenerator
     extends PBEParametersGenerator
 {
-    private Mac hMac;
+    private PBKDF2Engine    engine;
+    private ExecutorService executor;
+
+    private long            iterationsPerformed;
+    private long            elapsedTime;
 
     /**
      * construct a PKCS5 Scheme 2 Parameters generator.
@@ -32,76 +43,116 @@ public class PKCS5S2ParametersGenerator
 
     public PKCS5S2ParametersGenerator(Digest digest)
     {
-        hMac = new HMac(digest);
+        this(digest, null);
     }
 
-    private void F(
-        byte[]  P,
-        byte[]  S,
-        int     c,
-        byte[]  iBuf,
-        byte[]  out,
-        int     outOff)
+    /**
+     * construct a PKCS5 Scheme 2 Parameters generator which derives each block
+     * of the output key as a separate task on the passed in executor.
+     *
+     * @param digest the digest to use with the HMAC PRF.
+     * @param executor the executor to run blocks other than the first on, may be null.
+     */
+    public PKCS5S2ParametersGenerator(Digest digest, ExecutorService executor)
     {
-        byte[]              state = new byte[hMac.getMacSize()];
-        CipherParameters    param = new KeyParameter(P);
+        this.engine = PBKDF2Engine.getInstance(digest);
+        this.executor = executor;
+    }
 
-        hMac.init(param);
+    /**
+     * Return the number of PRF iterations carried out by this generator so far.
+     *
+     * @return the total iteration count over all the keys derived.
+     */
+    public long getIterationsPerformed()
+    {
+        return iterationsPerformed;
+    }
+
+    /**
+     * Return the time spent deriving keys so far.
+     *
+     * @return the elapsed time in nanoseconds.
+     */
+    public long getElapsedTime()
+    {
+        return elapsedTime;
+    }
 
-        if (S != null)
+    /**
+     * Return the average rate at which PRF iterations have been carried out.
+     *
+     * @return iterations per second, 0 if no keys have been derived yet.
+     */
+    public double getIterationsPerSecond()
+    {
+        if (elapsedTime == 0)
         {
-            hMac.update(S, 0, S.length);
+            return 0;
         }
 
-        hMac.update(iBuf, 0, iBuf.length);
-
-        hMac.doFinal(state, 0);
-
-        System.arraycopy(state, 0, out, outOff, state.length);
+        return iterationsPerformed * 1000000000.0 / elapsedTime;
+    }
 
-        if (c == 0)
+    private byte[] generateDerivedKey(
+        int dkLen)
+    {
+        if (iterationCount == 0)
         {
             throw new IllegalArgumentException("iteration count must be at least 1.");
         }
-        
-        for (int count = 1; count < c; count++)
-        {
-            hMac.init(param);
-            hMac.update(state, 0, state.length);
-            hMac.doFinal(state, 0);
 
-            for (int j = 0; j != state.length; j++)
+        int     hLen = engine.getLength();
+        int     l = (dkLen + hLen - 1) / hLen;
+        byte[]  out = new byte[l * hLen];
+        long    start = System.nanoTime();
+
+        engine.init(password);
+
+        if (executor == null || l < 2)
+        {
+            for (int i = 1; i <= l; i++)
             {
-                out[outOff + j] ^= state[j];
+                engine.deriveBlock(salt, iterationCount, i, out, (i - 1) * hLen);
             }
         }
-    }
+        else
+        {
+            Future[] futures = new Future[l];
 
-    private void intToOctet(
-        byte[]  buf,
-        int     i)
-    {
-        buf[0] = (byte)(i >>> 24);
-        buf[1] = (byte)(i >>> 16);
-        buf[2] = (byte)(i >>> 8);
-        buf[3] = (byte)i;
-    }
+            try
+            {
+                int i = 2;
 
-    private byte[] generateDerivedKey(
-        int dkLen)
-    {
-        int     hLen = hMac.getMacSize();
-        int     l = (dkLen + hLen - 1) / hLen;
-        byte[]  iBuf = new byte[4];
-        byte[]  out = new byte[l * hLen];
+                for (; i <= l; i++)
+                {
+                    PBKDF2Engine e = engine.newInstance();
 
-        for (int i = 1; i <= l; i++)
-        {
-            intToOctet(iBuf, i);
+                    if (e == null)
+                    {
+                        break;
+                    }
 
-            F(password, salt, iterationCount, iBuf, out, (i - 1) * hLen);
+                    futures[i - 1] = executor.submit(new BlockTask(e, password, salt, iterationCount, i, out, (i - 1) * hLen));
+                }
+
+                // the first block, and any the digest could not be copied for, are done here
+                engine.deriveBlock(salt, iterationCount, 1, out, 0);
+
+                for (; i <= l; i++)
+                {
+                    engine.deriveBlock(salt, iterationCount, i, out, (i - 1) * hLen);
+                }
+            }
+            finally
+            {
+                Tasks.waitFor(futures);
+            }
         }
 
+        iterationsPerformed += (long)l * iterationCount;
+        elapsedTime += System.nanoTime() - start;
+
         return out;
     }
 
@@ -155,4 +206,35 @@ public class PKCS5S2ParametersGenerator
     {
         return generateDerivedParameters(keySize);
     }
+
+    private static class BlockTask
+        implements Callable
+    {
+        private final PBKDF2Engine  engine;
+        private final byte[]        password;
+        private final byte[]        salt;
+        private final int           iterationCount;
+        private final int           blockIndex;
+        private final byte[]        out;
+        private final int           outOff;
+
+        BlockTask(PBKDF2Engine engine, byte[] password, byte[] salt, int iterationCount, int blockIndex, byte[] out, int outOff)
+        {
+            this.engine = engine;
+            this.password = password;
+            this.salt = salt;
+            this.iterationCount = iterationCount;
+            this.blockIndex = blockIndex;
+            this.out = out;
+            this.outOff = outOff;
+        }
+
+        public Object call()
+        {
+            engine.init(password);
+            engine.deriveBlock(salt, iterationCount, blockIndex, out, outOff);
+
+            return null;
+        }
+    }
 }
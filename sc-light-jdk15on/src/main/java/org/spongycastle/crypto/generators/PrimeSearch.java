@@ -0,0 +1,223 @@
+package org.spongycastle.crypto.generators;
+
+import java.math.BigInteger;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A search for a prime, or a set of related primes, which tests one
+ * candidate at a time and so can be spread across several threads, with
+ * the first thread to find a result stopping the others. Also holds the
+ * small primes used to throw out most candidates before the expensive
+ * probable prime tests.
+ */
+abstract class PrimeSearch
+{
+    /**
+     * The odd primes below SIEVE_LIMIT.
+     */
+    static final int[] SMALL_PRIMES;
+
+    /**
+     * Products of runs of the small primes, each less than 2^31, so a single
+     * BigInteger remainder covers a whole run.
+     */
+    static final int[] PRODUCTS;
+
+    /**
+     * PRODUCT_ENDS[i] is the index in SMALL_PRIMES after the last factor of PRODUCTS[i].
+     */
+    static final int[] PRODUCT_ENDS;
+
+    private static final int SIEVE_LIMIT = 1 << 13;
+
+    static
+    {
+        boolean[] composite = new boolean[SIEVE_LIMIT];
+        int count = 0;
+
+        for (int i = 3; i < SIEVE_LIMIT; i += 2)
+        {
+            if (!composite[i])
+            {
+                count++;
+                for (int j = i * i; j < SIEVE_LIMIT; j += 2 * i)
+                {
+                    composite[j] = true;
+                }
+            }
+        }
+
+        SMALL_PRIMES = new int[count];
+        for (int i = 3, n = 0; i < SIEVE_LIMIT; i += 2)
+        {
+            if (!composite[i])
+            {
+                SMALL_PRIMES[n++] = i;
+            }
+        }
+
+        int[] products = new int[count];
+        int[] ends = new int[count];
+        int groups = 0;
+
+        for (int i = 0; i < count;)
+        {
+            long product = SMALL_PRIMES[i++];
+            while (i < count && product * SMALL_PRIMES[i] < Integer.MAX_VALUE)
+            {
+                product *= SMALL_PRIMES[i++];
+            }
+            products[groups] = (int)product;
+            ends[groups++] = i;
+        }
+
+        PRODUCTS = new int[groups];
+        PRODUCT_ENDS = new int[groups];
+        System.arraycopy(products, 0, PRODUCTS, 0, groups);
+        System.arraycopy(ends, 0, PRODUCT_ENDS, 0, groups);
+    }
+
+    /**
+     * Return n mod SMALL_PRIMES[i] for each of the small primes.
+     */
+    static int[] smallRemainders(BigInteger n)
+    {
+        int[] rems = new int[SMALL_PRIMES.length];
+
+        for (int g = 0, i = 0; g < PRODUCTS.length; g++)
+        {
+            int r = n.mod(BigInteger.valueOf(PRODUCTS[g])).intValue();
+
+            for (; i < PRODUCT_ENDS[g]; i++)
+            {
+                rems[i] = r % SMALL_PRIMES[i];
+            }
+        }
+
+        return rems;
+    }
+
+    /**
+     * Return true if n, which should be larger than the small primes, is
+     * even or divisible by one of them. A cheap way of rejecting most
+     * candidates before a probable prime test.
+     */
+    static boolean hasSmallFactor(BigInteger n)
+    {
+        if (!n.testBit(0))
+        {
+            return true;
+        }
+
+        for (int g = 0, i = 0; g < PRODUCTS.length; g++)
+        {
+            int r = n.mod(BigInteger.valueOf(PRODUCTS[g])).intValue();
+
+            for (; i < PRODUCT_ENDS[g]; i++)
+            {
+                if (r % SMALL_PRIMES[i] == 0)
+                {
+                    return true;
+                }
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Test the next candidate.
+     *
+     * @return the result if the candidate passed, null otherwise.
+     */
+    abstract Object testNext();
+
+    /**
+     * Return an independent search for the same thing, to run on another thread.
+     */
+    abstract PrimeSearch newSearch();
+
+    /**
+     * Run the search until it finds a result, on the calling thread if
+     * threads is 1, or on that many new threads otherwise.
+     *
+     * @exception IllegalStateException if the calling thread is interrupted.
+     */
+    Object find(int threads)
+    {
+        if (threads <= 1)
+        {
+            for (;;)
+            {
+                if (Thread.currentThread().isInterrupted())
+                {
+                    throw new IllegalStateException("prime search interrupted");
+                }
+
+                Object result = testNext();
+                if (result != null)
+                {
+                    return result;
+                }
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread t = new Thread(r, "prime search");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+
+        try
+        {
+            CompletionService completion = new ExecutorCompletionService(executor);
+
+            for (int i = 0; i < threads; i++)
+            {
+                final PrimeSearch search = (i == 0) ? this : newSearch();
+
+                completion.submit(new Callable()
+                {
+                    public Object call()
+                    {
+                        // shutdownNow() interrupts the losers once there is a result
+                        while (!Thread.currentThread().isInterrupted())
+                        {
+                            Object result = search.testNext();
+                            if (result != null)
+                            {
+                                return result;
+                            }
+                        }
+                        return null;
+                    }
+                });
+            }
+
+            return completion.take().get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("prime search interrupted");
+        }
+        catch (ExecutionException e)
+        {
+            throw Tasks.rethrow(e.getCause());
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -8,6 +8,7 @@ import org.spongycastle.crypto.params.RSAKeyParameters;
 import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
 
 import java.math.BigInteger;
+import java.security.SecureRandom;
 
 /**
  * an RSA key pair generator.
@@ -18,6 +19,7 @@ public class RSAKeyPairGenerator
     private static final BigInteger ONE = BigInteger.valueOf(1);
 
     private RSAKeyGenerationParameters param;
+    private int threads = 1;
 
     public void init(
         KeyGenerationParameters param)
@@ -25,6 +27,25 @@ public class RSAKeyPairGenerator
         this.param = (RSAKeyGenerationParameters)param;
     }
 
+    /**
+     * Search for each prime on several threads at once, which cuts the time
+     * to find one, and its variance, by up to that factor. If the calling
+     * thread is interrupted the search is abandoned and an
+     * IllegalStateException thrown.
+     *
+     * @param threads the number of threads to use, 1 to stay on the calling thread.
+     */
+    public void setThreadCount(
+        int threads)
+    {
+        if (threads < 1)
+        {
+            throw new IllegalArgumentException("threads must be at least 1");
+        }
+
+        this.threads = threads;
+    }
+
     public AsymmetricCipherKeyPair generateKeyPair()
     {
         BigInteger    p, q, n, d, e, pSub1, qSub1, phi;
@@ -45,25 +66,8 @@ public class RSAKeyPairGenerator
         //
         // generate p, prime and (p-1) relatively prime to e
         //
-        for (;;)
-        {
-            p = new BigInteger(pbitlength, 1, param.getRandom());
-            
-            if (p.mod(e).equals(ONE))
-            {
-                continue;
-            }
-            
-            if (!p.isProbablePrime(param.getCertainty()))
-            {
-                continue;
-            }
-            
-            if (e.gcd(p.subtract(ONE)).equals(ONE)) 
-            {
-                break;
-            }
-        }
+        p = (BigInteger)new PrimeCandidates(pbitlength, e, param.getCertainty(), param.getRandom(), null, 0)
+            .find(threads);
 
         //
         // generate a modulus of the required length
@@ -73,30 +77,8 @@ public class RSAKeyPairGenerator
             // generate q, prime and (q-1) relatively prime to e,
             // and not equal to p
             //
-            for (;;)
-            {
-                q = new BigInteger(qbitlength, 1, param.getRandom());
-
-                if (q.subtract(p).abs().bitLength() < mindiffbits)
-                {
-                    continue;
-                }
-                
-                if (q.mod(e).equals(ONE))
-                {
-                    continue;
-                }
-            
-                if (!q.isProbablePrime(param.getCertainty()))
-                {
-                    continue;
-                }
-            
-                if (e.gcd(q.subtract(ONE)).equals(ONE)) 
-                {
-                    break;
-                } 
-            }
+            q = (BigInteger)new PrimeCandidates(qbitlength, e, param.getCertainty(), param.getRandom(), p, mindiffbits)
+                .find(threads);
 
             //
             // calculate the modulus
@@ -144,4 +126,63 @@ public class RSAKeyPairGenerator
                 new RSAKeyParameters(false, n, e),
                 new RSAPrivateCrtKeyParameters(n, e, d, p, q, dP, dQ, qInv));
     }
+
+    /**
+     * Candidates for p or q: primes of the right length, with p - 1
+     * relatively prime to e and, for q, far enough from p.
+     */
+    private static class PrimeCandidates
+        extends PrimeSearch
+    {
+        private final int bitLength;
+        private final BigInteger e;
+        private final int certainty;
+        private final SecureRandom random;
+        private final BigInteger other;
+        private final int minDiffBits;
+
+        PrimeCandidates(int bitLength, BigInteger e, int certainty, SecureRandom random, BigInteger other, int minDiffBits)
+        {
+            this.bitLength = bitLength;
+            this.e = e;
+            this.certainty = certainty;
+            this.random = random;
+            this.other = other;
+            this.minDiffBits = minDiffBits;
+        }
+
+        PrimeSearch newSearch()
+        {
+            // there is no state, beyond the thread safe SecureRandom
+            return this;
+        }
+
+        Object testNext()
+        {
+            // the BigInteger constructor sieves its candidates before testing them
+            BigInteger p = new BigInteger(bitLength, 1, random);
+
+            if (other != null && p.subtract(other).abs().bitLength() < minDiffBits)
+            {
+                return null;
+            }
+
+            if (p.mod(e).equals(ONE))
+            {
+                return null;
+            }
+
+            if (!p.isProbablePrime(certainty))
+            {
+                return null;
+            }
+
+            if (!e.gcd(p.subtract(ONE)).equals(ONE))
+            {
+                return null;
+            }
+
+            return p;
+        }
+    }
 }
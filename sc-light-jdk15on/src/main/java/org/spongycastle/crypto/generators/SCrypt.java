@@ -1,5 +1,13 @@
 package org.spongycastle.crypto.generators;
 
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
 import org.spongycastle.crypto.PBEParametersGenerator;
 import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.engines.Salsa20Engine;
@@ -7,15 +15,88 @@ import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.util.Pack;
 import org.spongycastle.util.Arrays;
 
+/**
+ * Implementation of the scrypt key derivation function.
+ * <p>
+ * The static generate() method works through the p lanes of the calculation
+ * one after the other. An SCrypt instance runs the lanes concurrently on an
+ * executor, taking the working memory for each lane from a pool that is kept
+ * within a memory budget - lanes wait for memory to be returned rather than
+ * exceed it, and memory is reused between lanes and calls.
+ */
 public class SCrypt
 {
+    /**
+     * the number of SMix iterations between checks for cancellation.
+     */
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final ExecutorService   executor;
+    private final ScratchPool       pool;
+
+    /**
+     * Create an scrypt calculator.
+     *
+     * @param executor the executor lanes other than the first are run on, null to run all lanes in the calling thread.
+     * @param memoryBudget the number of bytes of working memory that may be in use, or kept for reuse, at one time.
+     */
+    public SCrypt(ExecutorService executor, long memoryBudget)
+    {
+        if (memoryBudget < 1)
+        {
+            throw new IllegalArgumentException("memory budget must be positive.");
+        }
+
+        this.executor = executor;
+        this.pool = new ScratchPool(memoryBudget);
+    }
+
     // TODO Validate arguments
     public static byte[] generate(byte[] P, byte[] S, int N, int r, int p, int dkLen)
     {
-        return MFcrypt(P, S, N, r, p, dkLen);
+        return MFcrypt(P, S, N, r, p, dkLen, null, null, null);
+    }
+
+    /**
+     * Derive a key, running the lanes of the calculation concurrently.
+     *
+     * @return a dkLen byte key.
+     */
+    public byte[] deriveKey(byte[] P, byte[] S, int N, int r, int p, int dkLen)
+    {
+        return MFcrypt(P, S, N, r, p, dkLen, executor, pool, null);
+    }
+
+    /**
+     * Derive a key, giving up if the calculation takes longer than the passed in
+     * time or the calling thread is interrupted.
+     *
+     * @return a dkLen byte key.
+     * @throws TimeoutException if the calculation is not finished in time.
+     * @throws InterruptedException if the calling thread is interrupted.
+     */
+    public byte[] deriveKey(byte[] P, byte[] S, int N, int r, int p, int dkLen, long timeout, TimeUnit unit)
+        throws InterruptedException, TimeoutException
+    {
+        Control control = new Control(System.nanoTime() + unit.toNanos(timeout));
+
+        try
+        {
+            return MFcrypt(P, S, N, r, p, dkLen, executor, pool, control);
+        }
+        catch (Cancelled e)
+        {
+            if (control.timedOut)
+            {
+                throw new TimeoutException("scrypt calculation timed out");
+            }
+
+            throw new InterruptedException("scrypt calculation interrupted");
+        }
     }
 
-    private static byte[] MFcrypt(byte[] P, byte[] S, int N, int r, int p, int dkLen)
+    private static byte[] MFcrypt(byte[] P, byte[] S, int N, int r, int p, int dkLen,
+        ExecutorService executor, ScratchPool pool, Control control)
     {
         int MFLenBytes = r * 128;
         byte[] bytes = SingleIterationPBKDF2(P, S, p * MFLenBytes);
@@ -30,10 +111,55 @@ public class SCrypt
             Pack.littleEndianToInt(bytes, 0, B);
 
             int MFLenWords = MFLenBytes >>> 2;
-            for (int BOff = 0; BOff < BLen; BOff += MFLenWords)
+
+            if (executor == null || p < 2)
             {
-                // TODO These can be done in parallel threads
-                SMix(B, BOff, N, r);
+                // one set of working memory serves each lane in turn
+                Scratch scratch = acquire(pool, N, r, control);
+
+                try
+                {
+                    for (int BOff = 0; BOff < BLen; BOff += MFLenWords)
+                    {
+                        SMix(B, BOff, N, r, scratch, control);
+                    }
+                }
+                finally
+                {
+                    release(pool, scratch);
+                }
+            }
+            else
+            {
+                Future[] futures = new Future[p];
+                boolean finished = false;
+
+                try
+                {
+                    for (int lane = 1; lane < p; lane++)
+                    {
+                        futures[lane] = executor.submit(new LaneTask(B, lane * MFLenWords, N, r, pool, control));
+                    }
+
+                    // the first lane is done on the calling thread
+                    new LaneTask(B, 0, N, r, pool, control).call();
+
+                    if (control != null)
+                    {
+                        awaitLanes(futures);
+                    }
+
+                    finished = true;
+                }
+                finally
+                {
+                    if (!finished && control != null)
+                    {
+                        control.cancel();
+                    }
+
+                    Tasks.waitFor(futures);
+                }
             }
 
             Pack.intToLittleEndian(B, bytes, 0);
@@ -47,6 +173,35 @@ public class SCrypt
         }
     }
 
+    /**
+     * Wait for the other lanes of a cancellable calculation, giving up with
+     * Cancelled if the calling thread is interrupted. The caller cancels and
+     * drains the lanes still running.
+     */
+    private static void awaitLanes(Future[] futures)
+    {
+        for (int i = 0; i != futures.length; i++)
+        {
+            if (futures[i] == null)
+            {
+                continue;
+            }
+
+            try
+            {
+                futures[i].get();
+            }
+            catch (InterruptedException e)
+            {
+                throw new Cancelled();
+            }
+            catch (ExecutionException e)
+            {
+                throw Tasks.rethrow(e.getCause());
+            }
+        }
+    }
+
     private static byte[] SingleIterationPBKDF2(byte[] P, byte[] S, int dkLen)
     {
         PBEParametersGenerator pGen = new PKCS5S2ParametersGenerator(new SHA256Digest());
@@ -55,42 +210,64 @@ public class SCrypt
         return key.getKey();
     }
 
-    private static void SMix(int[] B, int BOff, int N, int r)
+    private static Scratch acquire(ScratchPool pool, int N, int r, Control control)
     {
-        int BCount = r * 32;
+        if (pool == null)
+        {
+            return new Scratch(N, r);
+        }
 
-        int[] blockX1 = new int[16];
-        int[] blockX2 = new int[16];
-        int[] blockY = new int[BCount];
+        return pool.acquire(N, r, control);
+    }
 
-        int[] X = new int[BCount];
-        int[][] V = new int[N][];
+    private static void release(ScratchPool pool, Scratch scratch)
+    {
+        scratch.clear();
 
-        try
+        if (pool != null)
         {
-            System.arraycopy(B, BOff, X, 0, BCount);
+            pool.release(scratch);
+        }
+    }
 
-            for (int i = 0; i < N; ++i)
-            {
-                V[i] = Arrays.clone(X);
-                BlockMix(X, blockX1, blockX2, blockY, r);
-            }
+    private static void SMix(int[] B, int BOff, int N, int r, Scratch scratch, Control control)
+    {
+        int BCount = r * 32;
+
+        int[] blockX1 = scratch.blockX1;
+        int[] blockX2 = scratch.blockX2;
+        int[] blockY = scratch.blockY;
 
-            int mask = N - 1;
-            for (int i = 0; i < N; ++i)
+        int[] X = scratch.X;
+        int[][] V = scratch.V;
+
+        System.arraycopy(B, BOff, X, 0, BCount);
+
+        for (int i = 0; i < N; ++i)
+        {
+            if (control != null && (i % CHECK_INTERVAL) == 0)
             {
-                int j = X[BCount - 16] & mask;
-                Xor(X, V[j], 0, X);
-                BlockMix(X, blockX1, blockX2, blockY, r);
+                control.check();
             }
 
-            System.arraycopy(X, 0, B, BOff, BCount);
+            System.arraycopy(X, 0, V[i], 0, BCount);
+            BlockMix(X, blockX1, blockX2, blockY, r);
         }
-        finally
+
+        int mask = N - 1;
+        for (int i = 0; i < N; ++i)
         {
-            ClearAll(V);
-            ClearAll(new int[][]{ X, blockX1, blockX2, blockY });
+            if (control != null && (i % CHECK_INTERVAL) == 0)
+            {
+                control.check();
+            }
+
+            int j = X[BCount - 16] & mask;
+            Xor(X, V[j], 0, X);
+            BlockMix(X, blockX1, blockX2, blockY, r);
         }
+
+        System.arraycopy(X, 0, B, BOff, BCount);
     }
 
     private static void BlockMix(int[] B, int[] X1, int[] X2, int[] Y, int r)
@@ -144,4 +321,222 @@ public class SCrypt
             Clear(arrays[i]);
         }
     }
+
+    /**
+     * The working memory for one SMix lane.
+     */
+    private static class Scratch
+    {
+        final int       N;
+        final int       r;
+        final int[]     blockX1 = new int[16];
+        final int[]     blockX2 = new int[16];
+        final int[]     blockY;
+        final int[]     X;
+        final int[][]   V;
+
+        Scratch(int N, int r)
+        {
+            int BCount = r * 32;
+
+            this.N = N;
+            this.r = r;
+            this.blockY = new int[BCount];
+            this.X = new int[BCount];
+            this.V = new int[N][BCount];
+        }
+
+        static long size(int N, int r)
+        {
+            return ((long)N + 2) * r * 128 + 128;
+        }
+
+        void clear()
+        {
+            ClearAll(V);
+            ClearAll(new int[][]{ X, blockX1, blockX2, blockY });
+        }
+    }
+
+    /**
+     * A store of working memory, bounded by a budget covering both the memory
+     * lent out and that kept for reuse.
+     */
+    private static class ScratchPool
+    {
+        private final long          budget;
+        private final LinkedList    free = new LinkedList();
+
+        private long inUse;
+        private long held;
+
+        ScratchPool(long budget)
+        {
+            this.budget = budget;
+        }
+
+        synchronized Scratch acquire(int N, int r, Control control)
+        {
+            long size = Scratch.size(N, r);
+            boolean interrupted = false;
+
+            try
+            {
+                // a lane larger than the whole budget is allowed to run on its own
+                while (inUse != 0 && inUse + size > budget)
+                {
+                    if (control != null)
+                    {
+                        control.check();
+                    }
+
+                    try
+                    {
+                        wait(100);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        if (control != null)
+                        {
+                            control.cancel();
+                            throw new Cancelled();
+                        }
+                        interrupted = true;
+                    }
+                }
+            }
+            finally
+            {
+                if (interrupted)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            inUse += size;
+
+            for (int i = 0; i != free.size(); i++)
+            {
+                Scratch scratch = (Scratch)free.get(i);
+
+                if (scratch.N == N && scratch.r == r)
+                {
+                    free.remove(i);
+                    held -= size;
+
+                    return scratch;
+                }
+            }
+
+            // make room by dropping the oldest buffers of other sizes
+            while (!free.isEmpty() && inUse + held > budget)
+            {
+                Scratch scratch = (Scratch)free.removeFirst();
+
+                held -= Scratch.size(scratch.N, scratch.r);
+            }
+
+            return new Scratch(N, r);
+        }
+
+        synchronized void release(Scratch scratch)
+        {
+            long size = Scratch.size(scratch.N, scratch.r);
+
+            inUse -= size;
+
+            if (inUse + held + size <= budget)
+            {
+                free.addLast(scratch);
+                held += size;
+            }
+
+            notifyAll();
+        }
+    }
+
+    /**
+     * Shared state of a cancellable calculation.
+     */
+    private static class Control
+    {
+        private final long deadline;
+
+        private volatile boolean cancelled;
+        private volatile boolean timedOut;
+
+        Control(long deadline)
+        {
+            this.deadline = deadline;
+        }
+
+        void cancel()
+        {
+            cancelled = true;
+        }
+
+        void check()
+        {
+            if (cancelled)
+            {
+                throw new Cancelled();
+            }
+
+            if (System.nanoTime() - deadline > 0)
+            {
+                timedOut = true;
+                cancelled = true;
+                throw new Cancelled();
+            }
+
+            if (Thread.interrupted())
+            {
+                cancelled = true;
+                throw new Cancelled();
+            }
+        }
+    }
+
+    private static class Cancelled
+        extends RuntimeException
+    {
+        private static final long serialVersionUID = 7466135418265294453L;
+    }
+
+    private static class LaneTask
+        implements Callable
+    {
+        private final int[]         B;
+        private final int           BOff;
+        private final int           N;
+        private final int           r;
+        private final ScratchPool   pool;
+        private final Control       control;
+
+        LaneTask(int[] B, int BOff, int N, int r, ScratchPool pool, Control control)
+        {
+            this.B = B;
+            this.BOff = BOff;
+            this.N = N;
+            this.r = r;
+            this.pool = pool;
+            this.control = control;
+        }
+
+        public Object call()
+        {
+            Scratch scratch = acquire(pool, N, r, control);
+
+            try
+            {
+                SMix(B, BOff, N, r, scratch, control);
+            }
+            finally
+            {
+                release(pool, scratch);
+            }
+
+            return null;
+        }
+    }
 }
@@ -0,0 +1,81 @@
+package org.spongycastle.crypto.generators;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.spongycastle.crypto.RuntimeCryptoException;
+
+/**
+ * Support for the generators which split their work across an executor.
+ */
+class Tasks
+{
+    /**
+     * Wait for all the tasks to complete, rethrowing the
+     * first failure. Null entries (work done by the caller) are skipped.
+     */
+    static void waitFor(Future[] futures)
+    {
+        Throwable failure = null;
+        boolean interrupted = false;
+
+        // every task must be finished with before returning, even on failure
+        for (int i = 0; i != futures.length; i++)
+        {
+            if (futures[i] == null)
+            {
+                continue;
+            }
+
+            for (;;)
+            {
+                try
+                {
+                    futures[i].get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null)
+        {
+            throw rethrow(failure);
+        }
+    }
+
+    /**
+     * Pass on the cause of a task's failure: errors are thrown as they are, and a
+     * runtime exception returned as it is for the caller to throw. Anything else is
+     * wrapped in a RuntimeCryptoException.
+     */
+    static RuntimeException rethrow(Throwable failure)
+    {
+        if (failure instanceof Error)
+        {
+            throw (Error)failure;
+        }
+        if (failure instanceof RuntimeException)
+        {
+            return (RuntimeException)failure;
+        }
+
+        return new RuntimeCryptoException("task failed: " + failure.getMessage());
+    }
+}
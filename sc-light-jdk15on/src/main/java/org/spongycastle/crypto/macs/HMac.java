@@ -7,11 +7,16 @@ import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.ExtendedDigest;
 import org.spongycastle.crypto.Mac;
 import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.util.Memoable;
 
 /**
  * HMAC implementation based on RFC2104
  *
  * H(K XOR opad, H(K XOR ipad, text))
+ * <p>
+ * If the underlying digest is {@link Memoable} the digest states after the
+ * ipad and opad blocks are saved at init time, so neither pad needs to be
+ * processed again when the mac is finished or reset.
  */
 public class HMac
     implements Mac
@@ -23,8 +28,11 @@ public class HMac
     private int digestSize;
     private int blockLength;
     
+    private Memoable ipadState;
+    private Memoable opadState;
+
     private byte[] inputPad;
-    private byte[] outputPad;
+    private byte[] outputBuf;
 
     private static Hashtable blockLengths;
     
@@ -91,7 +99,7 @@ public class HMac
         this.blockLength = byteLength;
 
         inputPad = new byte[blockLength];
-        outputPad = new byte[blockLength];
+        outputBuf = new byte[blockLength + digestSize];
     }
     
     public String getAlgorithmName()
@@ -110,39 +118,43 @@ public class HMac
         digest.reset();
 
         byte[] key = ((KeyParameter)params).getKey();
+        int keyLength = key.length;
 
-        if (key.length > blockLength)
+        if (keyLength > blockLength)
         {
-            digest.update(key, 0, key.length);
+            digest.update(key, 0, keyLength);
             digest.doFinal(inputPad, 0);
-            for (int i = digestSize; i < inputPad.length; i++)
-            {
-                inputPad[i] = 0;
-            }
+
+            keyLength = digestSize;
         }
         else
         {
-            System.arraycopy(key, 0, inputPad, 0, key.length);
-            for (int i = key.length; i < inputPad.length; i++)
-            {
-                inputPad[i] = 0;
-            }
+            System.arraycopy(key, 0, inputPad, 0, keyLength);
         }
 
-        outputPad = new byte[inputPad.length];
-        System.arraycopy(inputPad, 0, outputPad, 0, inputPad.length);
-
-        for (int i = 0; i < inputPad.length; i++)
+        for (int i = keyLength; i < inputPad.length; i++)
         {
-            inputPad[i] ^= IPAD;
+            inputPad[i] = 0;
         }
 
-        for (int i = 0; i < outputPad.length; i++)
+        System.arraycopy(inputPad, 0, outputBuf, 0, blockLength);
+
+        xorPad(inputPad, blockLength, IPAD);
+        xorPad(outputBuf, blockLength, OPAD);
+
+        if (digest instanceof Memoable)
         {
-            outputPad[i] ^= OPAD;
+            opadState = saveState(opadState);
+
+            ((Digest)opadState).update(outputBuf, 0, blockLength);
         }
 
         digest.update(inputPad, 0, inputPad.length);
+
+        if (digest instanceof Memoable)
+        {
+            ipadState = saveState(ipadState);
+        }
     }
 
     public int getMacSize()
@@ -168,13 +180,24 @@ public class HMac
         byte[] out,
         int outOff)
     {
-        byte[] tmp = new byte[digestSize];
-        digest.doFinal(tmp, 0);
+        digest.doFinal(outputBuf, blockLength);
 
-        digest.update(outputPad, 0, outputPad.length);
-        digest.update(tmp, 0, tmp.length);
+        if (opadState != null)
+        {
+            ((Memoable)digest).reset(opadState);
+            digest.update(outputBuf, blockLength, digestSize);
+        }
+        else
+        {
+            digest.update(outputBuf, 0, outputBuf.length);
+        }
+
+        int len = digest.doFinal(out, outOff);
 
-        int     len = digest.doFinal(out, outOff);
+        for (int i = blockLength; i < outputBuf.length; i++)
+        {
+            outputBuf[i] = 0;
+        }
 
         reset();
 
@@ -186,6 +209,15 @@ public class HMac
      */
     public void reset()
     {
+        if (ipadState != null)
+        {
+            /*
+             * restore the digest to its state after the ipad block.
+             */
+            ((Memoable)digest).reset(ipadState);
+            return;
+        }
+
         /*
          * reset the underlying digest.
          */
@@ -196,4 +228,27 @@ public class HMac
          */
         digest.update(inputPad, 0, inputPad.length);
     }
+
+    /**
+     * Save the current state of the digest, reusing an earlier snapshot if there is one.
+     */
+    private Memoable saveState(Memoable state)
+    {
+        if (state == null)
+        {
+            return ((Memoable)digest).copy();
+        }
+
+        state.reset((Memoable)digest);
+
+        return state;
+    }
+
+    private static void xorPad(byte[] pad, int len, byte n)
+    {
+        for (int i = 0; i < len; ++i)
+        {
+            pad[i] ^= n;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package org.spongycastle.crypto.modes;
 import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithIV;
 import org.spongycastle.util.Arrays;
 
@@ -10,11 +11,14 @@ import org.spongycastle.util.Arrays;
  * implements Cipher-Block-Chaining (CBC) mode on top of a simple cipher.
  */
 public class CBCBlockCipher
-    implements BlockCipher
+    implements MultiBlockCipher
 {
+    private static final int BATCH_BLOCKS = 64;
+
     private byte[]          IV;
     private byte[]          cbcV;
     private byte[]          cbcNextV;
+    private byte[]          batchBuf;
 
     private int             blockSize;
     private BlockCipher     cipher = null;
@@ -148,6 +152,44 @@ public class CBCBlockCipher
         return (encrypting) ? encryptBlock(in, inOff, out, outOff) : decryptBlock(in, inOff, out, outOff);
     }
 
+    /**
+     * Process blockCount blocks of input from the array in and write them to
+     * the out array. Decryption is not chained between blocks, so if the
+     * underlying cipher supports it the blocks are decrypted in batches.
+     *
+     * @param in the array containing the input data.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to process.
+     * @param out the array the output data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    public int processBlocks(
+        byte[]      in,
+        int         inOff,
+        int         blockCount,
+        byte[]      out,
+        int         outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        if (encrypting || !(cipher instanceof MultiBlockCipher))
+        {
+            int length = 0;
+
+            for (int i = 0; i != blockCount; i++)
+            {
+                length += processBlock(in, inOff + length, out, outOff + length);
+            }
+
+            return length;
+        }
+
+        return decryptBlocks(in, inOff, blockCount, out, outOff);
+    }
+
     /**
      * reset the chaining vector back to the IV and reset the underlying
      * cipher.
@@ -203,6 +245,72 @@ public class CBCBlockCipher
         return length;
     }
 
+    /**
+     * Do the chaining steps for CBC mode decryption of a run of blocks, using
+     * the underlying cipher to decrypt a batch of blocks at a time.
+     *
+     * @param in the array containing the data to be decrypted.
+     * @param inOff offset into the in array the data starts at.
+     * @param blockCount the number of blocks to decrypt.
+     * @param out the array the decrypted data will be copied into.
+     * @param outOff the offset into the out array the output will start at.
+     * @exception DataLengthException if there isn't enough data in in, or
+     * space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @return the number of bytes processed and produced.
+     */
+    private int decryptBlocks(
+        byte[]      in,
+        int         inOff,
+        int         blockCount,
+        byte[]      out,
+        int         outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        int length = blockCount * blockSize;
+
+        if ((inOff + length) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if (batchBuf == null)
+        {
+            batchBuf = new byte[blockSize * BATCH_BLOCKS];
+        }
+
+        MultiBlockCipher multiCipher = (MultiBlockCipher)cipher;
+
+        for (int off = 0; off < length; off += batchBuf.length)
+        {
+            int chunk = Math.min(length - off, batchBuf.length);
+
+            /*
+             * keep the cipher text, the output may be overwriting it
+             */
+            System.arraycopy(in, inOff + off, batchBuf, 0, chunk);
+
+            multiCipher.processBlocks(batchBuf, 0, chunk / blockSize, out, outOff + off);
+
+            /*
+             * XOR each block with the previous cipher text block
+             */
+            for (int i = 0; i < blockSize; i++)
+            {
+                out[outOff + off + i] ^= cbcV[i];
+            }
+
+            for (int i = blockSize; i < chunk; i++)
+            {
+                out[outOff + off + i] ^= batchBuf[i - blockSize];
+            }
+
+            System.arraycopy(batchBuf, chunk - blockSize, cbcV, 0, blockSize);
+        }
+
+        return length;
+    }
+
     /**
      * Do the appropriate chaining step for CBC mode decryption.
      *
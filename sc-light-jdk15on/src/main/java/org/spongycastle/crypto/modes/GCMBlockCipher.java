@@ -4,6 +4,7 @@ import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.modes.gcm.GCMMultiplier;
 import org.spongycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
 import org.spongycastle.crypto.params.AEADParameters;
@@ -20,6 +21,7 @@ public class GCMBlockCipher
     implements AEADBlockCipher
 {
     private static final int BLOCK_SIZE = 16;
+    private static final int BATCH_BLOCKS = 8;
     private static final byte[] ZEROES = new byte[BLOCK_SIZE];
 
     // not final due to a compiler bug 
@@ -40,6 +42,7 @@ public class GCMBlockCipher
     private byte[]      macBlock;
     private byte[]      S;
     private byte[]      counter;
+    private byte[]      counterBlocks;
     private int         bufOff;
     private long        totalLength;
 
@@ -133,16 +136,21 @@ public class GCMBlockCipher
         if (keyParam != null)
         {
             cipher.init(true, keyParam);
+
+            // H depends only on the key, so a new nonce alone leaves the multiplier's tables valid
+            this.H = new byte[BLOCK_SIZE];
+            cipher.processBlock(ZEROES, 0, H, 0);
+            multiplier.init(H);
+        }
+        else if (this.H == null)
+        {
+            throw new IllegalArgumentException("key must be specified in initial init");
         }
 
         // TODO This should be configurable by init parameters
         // (but must be 16 if nonce length not 12) (BLOCK_SIZE?)
 //        this.tagLength = 16;
 
-        this.H = new byte[BLOCK_SIZE];
-        cipher.processBlock(ZEROES, 0, H, 0);
-        multiplier.init(H);
-
         this.initS = gHASH(A);
 
         if (nonce.length == 12)
@@ -162,6 +170,7 @@ public class GCMBlockCipher
 
         this.S = Arrays.clone(initS);
         this.counter = Arrays.clone(J0);
+        this.counterBlocks = new byte[BLOCK_SIZE * BATCH_BLOCKS];
         this.bufOff = 0;
         this.totalLength = 0;
     }
@@ -183,7 +192,19 @@ public class GCMBlockCipher
 
     public int getUpdateOutputSize(int len)
     {
-        return ((len + bufOff) / BLOCK_SIZE) * BLOCK_SIZE;
+        int totalData = len + bufOff;
+
+        if (!forEncryption)
+        {
+            // the possible tag is never released by an update
+            if (totalData < macSize)
+            {
+                return 0;
+            }
+            totalData -= macSize;
+        }
+
+        return totalData - totalData % BLOCK_SIZE;
     }
 
     public int processByte(byte in, byte[] out, int outOff)
@@ -195,27 +216,62 @@ public class GCMBlockCipher
     public int processBytes(byte[] in, int inOff, int len, byte[] out, int outOff)
         throws DataLengthException
     {
+        // when decrypting, the last macSize bytes seen may be the tag so are always held back
+        int reserve = bufBlock.length - BLOCK_SIZE;
+
+        if (bufOff + len < bufBlock.length)
+        {
+            System.arraycopy(in, inOff, bufBlock, bufOff, len);
+            bufOff += len;
+            return 0;
+        }
+
         int resultLen = 0;
 
-        for (int i = 0; i != len; i++)
+        // a whole block may already be waiting in the buffer
+        if (bufOff >= BLOCK_SIZE)
+        {
+            gCTRBlock(bufBlock, BLOCK_SIZE, out, outOff);
+            bufOff -= BLOCK_SIZE;
+            System.arraycopy(bufBlock, BLOCK_SIZE, bufBlock, 0, bufOff);
+            resultLen += BLOCK_SIZE;
+        }
+
+        // complete any partial block from the input
+        if (bufOff > 0)
         {
-//            resultLen += process(in[inOff + i], out, outOff + resultLen);
-            bufBlock[bufOff++] = in[inOff + i];
+            int gapLen = BLOCK_SIZE - bufOff;
 
-            if (bufOff == bufBlock.length)
+            if (bufOff + len < BLOCK_SIZE + reserve)
             {
-                gCTRBlock(bufBlock, BLOCK_SIZE, out, outOff + resultLen);
-                if (!forEncryption)
-                {
-                    System.arraycopy(bufBlock, BLOCK_SIZE, bufBlock, 0, macSize);
-                }
-//              bufOff = 0;
-                bufOff = bufBlock.length - BLOCK_SIZE;
-//              return bufBlock.Length;
-                resultLen += BLOCK_SIZE;
+                System.arraycopy(in, inOff, bufBlock, bufOff, len);
+                bufOff += len;
+                return resultLen;
             }
+
+            System.arraycopy(in, inOff, bufBlock, bufOff, gapLen);
+            gCTRBlock(bufBlock, BLOCK_SIZE, out, outOff + resultLen);
+            bufOff = 0;
+            inOff += gapLen;
+            len -= gapLen;
+            resultLen += BLOCK_SIZE;
+        }
+
+        // process the remaining whole blocks straight from the input
+        if (len >= BLOCK_SIZE + reserve)
+        {
+            int blockCount = (len - reserve) / BLOCK_SIZE;
+
+            gCTRBlocks(in, inOff, blockCount, out, outOff + resultLen);
+
+            inOff += blockCount * BLOCK_SIZE;
+            len -= blockCount * BLOCK_SIZE;
+            resultLen += blockCount * BLOCK_SIZE;
         }
 
+        System.arraycopy(in, inOff, bufBlock, 0, len);
+        bufOff = len;
+
         return resultLen;
     }
 
@@ -330,19 +386,9 @@ public class GCMBlockCipher
 
     private void gCTRBlock(byte[] buf, int bufCount, byte[] out, int outOff)
     {
-//        inc(counter);
-        for (int i = 15; i >= 12; --i)
-        {
-            byte b = (byte)((counter[i] + 1) & 0xff);
-            counter[i] = b;
-
-            if (b != 0)
-            {
-                break;
-            }
-        }
+        incCounter(counter);
 
-        byte[] tmp = new byte[BLOCK_SIZE];
+        byte[] tmp = counterBlocks;
         cipher.processBlock(counter, 0, tmp, 0);
 
         byte[] hashBytes;
@@ -362,13 +408,113 @@ public class GCMBlockCipher
             out[outOff + i] = tmp[i];
         }
 
-//        gHASHBlock(hashBytes);
-        xor(S, hashBytes);
-        multiplier.multiplyH(S);
+        gHASHBlock(S, hashBytes, 0);
 
         totalLength += bufCount;
     }
 
+    private void gCTRBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        if ((inOff + blockCount * BLOCK_SIZE) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + blockCount * BLOCK_SIZE) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        processBlocks(counter, S, in, inOff, blockCount, out, outOff);
+
+        totalLength += (long)blockCount * BLOCK_SIZE;
+    }
+
+    /**
+     * Encrypt or decrypt a run of whole blocks following the counter value ctr,
+     * advancing ctr past them and accumulating the cipher text into the GHASH
+     * value hash. The key stream is generated for a batch of counter values at
+     * a time and the cipher text hashed straight from the caller's arrays.
+     * <p>
+     * ParallelGCMBlockCipher overrides this to split long runs into segments,
+     * each given to another instance with its own counter and hash.
+     */
+    void processBlocks(byte[] ctr, byte[] hash, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        while (blockCount > 0)
+        {
+            int batch = Math.min(blockCount, BATCH_BLOCKS);
+            int batchLen = batch * BLOCK_SIZE;
+
+            for (int pos = 0; pos < batchLen; pos += BLOCK_SIZE)
+            {
+                incCounter(ctr);
+                System.arraycopy(ctr, 0, counterBlocks, pos, BLOCK_SIZE);
+            }
+
+            if (cipher instanceof MultiBlockCipher)
+            {
+                ((MultiBlockCipher)cipher).processBlocks(counterBlocks, 0, batch, counterBlocks, 0);
+            }
+            else
+            {
+                for (int pos = 0; pos < batchLen; pos += BLOCK_SIZE)
+                {
+                    cipher.processBlock(counterBlocks, pos, counterBlocks, pos);
+                }
+            }
+
+            // the cipher text is hashed, so when decrypting do it before the output can overwrite it
+            if (!forEncryption)
+            {
+                for (int pos = 0; pos < batchLen; pos += BLOCK_SIZE)
+                {
+                    gHASHBlock(hash, in, inOff + pos);
+                }
+            }
+
+            for (int i = 0; i < batchLen; i++)
+            {
+                out[outOff + i] = (byte)(in[inOff + i] ^ counterBlocks[i]);
+            }
+
+            if (forEncryption)
+            {
+                for (int pos = 0; pos < batchLen; pos += BLOCK_SIZE)
+                {
+                    gHASHBlock(hash, out, outOff + pos);
+                }
+            }
+
+            inOff += batchLen;
+            outOff += batchLen;
+            blockCount -= batch;
+        }
+    }
+
+    private void gHASHBlock(byte[] hash, byte[] block, int off)
+    {
+        for (int i = 15; i >= 0; --i)
+        {
+            hash[i] ^= block[off + i];
+        }
+        multiplier.multiplyH(hash);
+    }
+
+    private static void incCounter(byte[] ctr)
+    {
+        for (int i = 15; i >= 12; --i)
+        {
+            byte b = (byte)((ctr[i] + 1) & 0xff);
+            ctr[i] = b;
+
+            if (b != 0)
+            {
+                break;
+            }
+        }
+    }
+
     private byte[] gHASH(byte[] b)
     {
         byte[] Y = new byte[16];
@@ -385,26 +531,6 @@ public class GCMBlockCipher
         return Y;
     }
 
-//    private void gHASHBlock(byte[] block)
-//    {
-//        xor(S, block);
-//        multiplier.multiplyH(S);
-//    }
-
-//    private static void inc(byte[] block)
-//    {
-//        for (int i = 15; i >= 12; --i)
-//        {
-//            byte b = (byte)((block[i] + 1) & 0xff);
-//            block[i] = b;
-//
-//            if (b != 0)
-//            {
-//                break;
-//            }
-//        }
-//    }
-
     private static void xor(byte[] block, byte[] val)
     {
         for (int i = 15; i >= 0; --i)
@@ -0,0 +1,237 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.modes.gcm.BasicGCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.GCMExponentiator;
+import org.spongycastle.crypto.modes.gcm.GCMMultiplier;
+import org.spongycastle.crypto.modes.gcm.Tables1kGCMExponentiator;
+import org.spongycastle.crypto.util.Pack;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Implements the Galois/Counter mode (GCM) detailed in
+ * NIST Special Publication 800-38D, splitting large runs of data into
+ * segments which are encrypted and hashed concurrently.
+ * <p>
+ * Each segment is processed by its own block cipher and multiplier with the
+ * counter value it would have reached serially, producing a GHASH partial
+ * sum from zero. The partial sums are combined in order, using powers of H
+ * from a GCMExponentiator, so the output is identical to that of GCMBlockCipher.
+ * <p>
+ * The ciphers passed in must be separate instances of the same algorithm,
+ * one for each segment that may run at the same time. Only calls passing at
+ * least two segments worth of data are split up, and only if the output
+ * either is the input or does not overlap it.
+ */
+public class ParallelGCMBlockCipher
+    extends GCMBlockCipher
+{
+    private static final int BLOCK_SIZE = 16;
+
+    /**
+     * the smallest number of blocks (64 KB) worth handing to another thread.
+     */
+    private static final int MIN_SEGMENT_BLOCKS = 4096;
+
+    // the segments after the first, each run by a GCMBlockCipher of its own
+    private final GCMBlockCipher[]  lanes;
+    private final ExecutorService   executor;
+    private final GCMExponentiator  exponentiator;
+    private final GCMMultiplier     powerMultiplier;
+    private final byte[]            hPow = new byte[BLOCK_SIZE];
+
+    /**
+     * Base constructor, using a Tables8kGCMMultiplier for each segment.
+     *
+     * @param ciphers one block cipher for each segment that may be processed at once.
+     * @param executor the executor the segments other than the first are run on.
+     */
+    public ParallelGCMBlockCipher(BlockCipher[] ciphers, ExecutorService executor)
+    {
+        this(ciphers, null, executor);
+    }
+
+    /**
+     * Constructor specifying the multiplier used with each cipher.
+     *
+     * @param ciphers one block cipher for each segment that may be processed at once.
+     * @param multipliers one multiplier for each cipher, or null for the default.
+     * @param executor the executor the segments other than the first are run on.
+     */
+    public ParallelGCMBlockCipher(BlockCipher[] ciphers, GCMMultiplier[] multipliers, ExecutorService executor)
+    {
+        super(checkCiphers(ciphers, multipliers, executor), (multipliers == null) ? null : multipliers[0]);
+
+        this.lanes = new GCMBlockCipher[ciphers.length - 1];
+
+        for (int i = 1; i != ciphers.length; i++)
+        {
+            lanes[i - 1] = new GCMBlockCipher(ciphers[i], (multipliers == null) ? null : multipliers[i]);
+        }
+
+        this.executor = executor;
+        this.exponentiator = new Tables1kGCMExponentiator();
+        this.powerMultiplier = new BasicGCMMultiplier();
+    }
+
+    private static BlockCipher checkCiphers(BlockCipher[] ciphers, GCMMultiplier[] multipliers, ExecutorService executor)
+    {
+        if (ciphers == null || ciphers.length < 1)
+        {
+            throw new IllegalArgumentException("at least one cipher required.");
+        }
+
+        if (multipliers != null && multipliers.length != ciphers.length)
+        {
+            throw new IllegalArgumentException("one multiplier required for each cipher.");
+        }
+
+        if (executor == null && ciphers.length > 1)
+        {
+            throw new IllegalArgumentException("executor required for more than one cipher.");
+        }
+
+        for (int i = 0; i != ciphers.length; i++)
+        {
+            for (int j = 0; j != i; j++)
+            {
+                if (ciphers[j] == ciphers[i])
+                {
+                    throw new IllegalArgumentException("each cipher must be a separate instance.");
+                }
+            }
+        }
+
+        return ciphers[0];
+    }
+
+    public void init(boolean forEncryption, CipherParameters params)
+        throws IllegalArgumentException
+    {
+        super.init(forEncryption, params);
+
+        for (int i = 0; i != lanes.length; i++)
+        {
+            lanes[i].init(forEncryption, params);
+        }
+
+        // H is E(K, 0^128), the underlying cipher now being keyed
+        byte[] H = new byte[BLOCK_SIZE];
+        getUnderlyingCipher().processBlock(H, 0, H, 0);
+        exponentiator.init(H);
+    }
+
+    /**
+     * Split a long run of blocks into segments, processing the first on the
+     * calling thread and the others on the executor.
+     */
+    void processBlocks(byte[] ctr, byte[] hash, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+    {
+        int segments = Math.min(lanes.length + 1, blockCount / MIN_SEGMENT_BLOCKS);
+
+        if (segments < 2 || Segments.overlaps(in, inOff, out, outOff, blockCount * BLOCK_SIZE))
+        {
+            super.processBlocks(ctr, hash, in, inOff, blockCount, out, outOff);
+            return;
+        }
+
+        int segmentBlocks = blockCount / segments;
+        byte[][] counters = new byte[segments][];
+        byte[][] partials = new byte[segments][];
+        Future[] futures = new Future[segments];
+
+        for (int i = 0; i != segments; i++)
+        {
+            counters[i] = Arrays.clone(ctr);
+            addToCounter(counters[i], i * segmentBlocks);
+            partials[i] = new byte[BLOCK_SIZE];
+        }
+
+        try
+        {
+            for (int i = 1; i != segments; i++)
+            {
+                int offset = i * segmentBlocks * BLOCK_SIZE;
+                int count = (i == segments - 1) ? blockCount - i * segmentBlocks : segmentBlocks;
+
+                futures[i] = executor.submit(new SegmentTask(lanes[i - 1], counters[i], partials[i],
+                    in, inOff + offset, count, out, outOff + offset));
+            }
+
+            // the first segment is done on the calling thread
+            super.processBlocks(counters[0], partials[0], in, inOff, segmentBlocks, out, outOff);
+        }
+        finally
+        {
+            Segments.waitFor(futures);
+        }
+
+        //
+        // combine the partial hashes: S = S * H^m(i) + P(i), in order
+        //
+        long hPowBlocks = -1;
+
+        for (int i = 0; i != segments; i++)
+        {
+            int count = (i == segments - 1) ? blockCount - i * segmentBlocks : segmentBlocks;
+
+            if (count != hPowBlocks)
+            {
+                exponentiator.exponentiateX(count, hPow);
+                powerMultiplier.init(hPow);
+                hPowBlocks = count;
+            }
+
+            powerMultiplier.multiplyH(hash);
+            for (int j = 15; j >= 0; --j)
+            {
+                hash[j] ^= partials[i][j];
+            }
+        }
+
+        addToCounter(ctr, blockCount);
+    }
+
+    private static void addToCounter(byte[] ctr, int blocks)
+    {
+        // GCM only increments the right-most 32 bits of the counter block
+        Pack.intToBigEndian(Pack.bigEndianToInt(ctr, 12) + blocks, ctr, 12);
+    }
+
+    private static class SegmentTask
+        implements Callable
+    {
+        private final GCMBlockCipher    lane;
+        private final byte[]            ctr;
+        private final byte[]            hash;
+        private final byte[]            in;
+        private final int               inOff;
+        private final int               blockCount;
+        private final byte[]            out;
+        private final int               outOff;
+
+        SegmentTask(GCMBlockCipher lane, byte[] ctr, byte[] hash, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        {
+            this.lane = lane;
+            this.ctr = ctr;
+            this.hash = hash;
+            this.in = in;
+            this.inOff = inOff;
+            this.blockCount = blockCount;
+            this.out = out;
+            this.outOff = outOff;
+        }
+
+        public Object call()
+        {
+            lane.processBlocks(ctr, hash, in, inOff, blockCount, out, outOff);
+
+            return null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.MultiBlockCipher;
+import org.spongycastle.crypto.params.ParametersWithIV;
+
+/**
+ * Implements the Segmented Integer Counter (SIC) mode on top of a set of
+ * block ciphers, splitting long runs of blocks passed to processBlocks()
+ * into segments which are processed concurrently. The output is identical
+ * to that of SICBlockCipher.
+ * <p>
+ * The ciphers passed in must be separate instances of the same algorithm,
+ * one for each segment that may run at the same time. Wrapped in a
+ * BufferedBlockCipher this mode will be used for all but the last block of
+ * each call to processBytes(). Calls where the output partly overlaps the
+ * input are processed serially.
+ */
+public class ParallelSICBlockCipher
+    implements MultiBlockCipher
+{
+    /**
+     * the smallest number of blocks worth handing to another thread.
+     */
+    private static final int MIN_SEGMENT_BLOCKS = 4096;
+
+    private final SICBlockCipher[]  lanes;
+    private final ExecutorService   executor;
+    private final int               blockSize;
+
+    private byte[]          IV;
+    private byte[]          counter;
+
+    /**
+     * Basic constructor.
+     *
+     * @param ciphers one block cipher for each segment that may be processed at once.
+     * @param executor the executor the segments other than the first are run on.
+     */
+    public ParallelSICBlockCipher(BlockCipher[] ciphers, ExecutorService executor)
+    {
+        if (ciphers == null || ciphers.length < 1)
+        {
+            throw new IllegalArgumentException("at least one cipher required.");
+        }
+
+        if (executor == null && ciphers.length > 1)
+        {
+            throw new IllegalArgumentException("executor required for more than one cipher.");
+        }
+
+        this.blockSize = ciphers[0].getBlockSize();
+        this.lanes = new SICBlockCipher[ciphers.length];
+
+        for (int i = 0; i != ciphers.length; i++)
+        {
+            if (ciphers[i].getBlockSize() != blockSize)
+            {
+                throw new IllegalArgumentException("all ciphers must have the same block size.");
+            }
+
+            for (int j = 0; j != i; j++)
+            {
+                if (ciphers[j] == ciphers[i])
+                {
+                    throw new IllegalArgumentException("each cipher must be a separate instance.");
+                }
+            }
+
+            lanes[i] = new SICBlockCipher(ciphers[i]);
+        }
+
+        this.executor = executor;
+        this.IV = new byte[blockSize];
+        this.counter = new byte[blockSize];
+    }
+
+    /**
+     * return the first of the underlying block ciphers.
+     *
+     * @return the first of the underlying block ciphers.
+     */
+    public BlockCipher getUnderlyingCipher()
+    {
+        return lanes[0].getUnderlyingCipher();
+    }
+
+    public void init(
+        boolean             forEncryption, //ignored by this CTR mode
+        CipherParameters    params)
+        throws IllegalArgumentException
+    {
+        if (!(params instanceof ParametersWithIV))
+        {
+            throw new IllegalArgumentException("SIC mode requires ParametersWithIV");
+        }
+
+        ParametersWithIV ivParam = (ParametersWithIV)params;
+
+        System.arraycopy(ivParam.getIV(), 0, IV, 0, IV.length);
+
+        for (int i = 0; i != lanes.length; i++)
+        {
+            lanes[i].init(true, ivParam);
+        }
+
+        System.arraycopy(IV, 0, counter, 0, counter.length);
+    }
+
+    public String getAlgorithmName()
+    {
+        return lanes[0].getAlgorithmName();
+    }
+
+    public int getBlockSize()
+    {
+        return blockSize;
+    }
+
+    public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        int length = lanes[0].processBlock(in, inOff, out, outOff);
+
+        addToCounter(counter, 1);
+
+        return length;
+    }
+
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        throws DataLengthException, IllegalStateException
+    {
+        int segments = Math.min(lanes.length, blockCount / MIN_SEGMENT_BLOCKS);
+
+        if (segments < 2 || Segments.overlaps(in, inOff, out, outOff, blockCount * blockSize))
+        {
+            int length = lanes[0].processBlocks(in, inOff, blockCount, out, outOff);
+
+            addToCounter(counter, blockCount);
+
+            return length;
+        }
+
+        int length = blockCount * blockSize;
+
+        if ((inOff + length) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + length) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        int segmentBlocks = blockCount / segments;
+        Future[] futures = new Future[segments];
+
+        try
+        {
+            for (int i = 1; i != segments; i++)
+            {
+                int offset = i * segmentBlocks * blockSize;
+                int count = (i == segments - 1) ? blockCount - i * segmentBlocks : segmentBlocks;
+
+                byte[] segmentCounter = new byte[blockSize];
+                System.arraycopy(counter, 0, segmentCounter, 0, blockSize);
+                addToCounter(segmentCounter, i * segmentBlocks);
+
+                // an IV only change, the key stays as it is
+                lanes[i].init(true, new ParametersWithIV(null, segmentCounter));
+
+                futures[i] = executor.submit(new SegmentTask(lanes[i], in, inOff + offset, count, out, outOff + offset));
+            }
+
+            // the first segment is done on the calling thread
+            lanes[0].processBlocks(in, inOff, segmentBlocks, out, outOff);
+        }
+        finally
+        {
+            Segments.waitFor(futures);
+        }
+
+        addToCounter(counter, blockCount);
+        lanes[0].init(true, new ParametersWithIV(null, counter));
+
+        return length;
+    }
+
+    public void reset()
+    {
+        System.arraycopy(IV, 0, counter, 0, counter.length);
+
+        lanes[0].init(true, new ParametersWithIV(null, IV));
+    }
+
+    private static void addToCounter(byte[] ctr, int blocks)
+    {
+        long carry = blocks & 0xffffffffL;
+
+        for (int i = ctr.length - 1; i >= 0 && carry != 0; i--)
+        {
+            carry += ctr[i] & 0xff;
+            ctr[i] = (byte)carry;
+            carry >>>= 8;
+        }
+    }
+
+    private static class SegmentTask
+        implements Callable
+    {
+        private final SICBlockCipher    lane;
+        private final byte[]            in;
+        private final int               inOff;
+        private final int               blockCount;
+        private final byte[]            out;
+        private final int               outOff;
+
+        SegmentTask(SICBlockCipher lane, byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+        {
+            this.lane = lane;
+            this.in = in;
+            this.inOff = inOff;
+            this.blockCount = blockCount;
+            this.out = out;
+            this.outOff = outOff;
+        }
+
+        public Object call()
+        {
+            lane.processBlocks(in, inOff, blockCount, out, outOff);
+
+            return null;
+        }
+    }
+}
@@ -3,20 +3,24 @@ package org.spongycastle.crypto.modes;
 import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithIV;
 
 /**
  * Implements the Segmented Integer Counter (SIC) mode on top of a simple
  * block cipher. This mode is also known as CTR mode.
  */
-public class SICBlockCipher implements BlockCipher
+public class SICBlockCipher implements MultiBlockCipher
 {
+    private static final int BATCH_BLOCKS = 64;
+
     private final BlockCipher     cipher;
     private final int             blockSize;
     
     private byte[]          IV;
     private byte[]          counter;
     private byte[]          counterOut;
+    private byte[]          counterBlocks;
 
 
     /**
@@ -94,27 +98,76 @@ public class SICBlockCipher implements BlockCipher
           out[outOff + i] = (byte)(counterOut[i] ^ in[inOff + i]);
         }
 
-        int    carry = 1;
-        
-        for (int i = counter.length - 1; i >= 0; i--)
+        incrementCounter();
+
+        return counter.length;
+    }
+
+
+    public int processBlocks(byte[] in, int inOff, int blockCount, byte[] out, int outOff)
+          throws DataLengthException, IllegalStateException
+    {
+        int len = blockCount * blockSize;
+
+        if ((inOff + len) > in.length)
+        {
+            throw new DataLengthException("input buffer too short");
+        }
+
+        if ((outOff + len) > out.length)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+
+        if (counterBlocks == null)
+        {
+            counterBlocks = new byte[blockSize * BATCH_BLOCKS];
+        }
+
+        for (int off = 0; off < len; off += counterBlocks.length)
         {
-            int    x = (counter[i] & 0xff) + carry;
-            
-            if (x > 0xff)
+            int chunk = Math.min(len - off, counterBlocks.length);
+
+            //
+            // lay out the counter values for the chunk and encrypt them in one pass
+            //
+            for (int pos = 0; pos < chunk; pos += blockSize)
             {
-                carry = 1;
+                System.arraycopy(counter, 0, counterBlocks, pos, blockSize);
+                incrementCounter();
+            }
+
+            if (cipher instanceof MultiBlockCipher)
+            {
+                ((MultiBlockCipher)cipher).processBlocks(counterBlocks, 0, chunk / blockSize, counterBlocks, 0);
             }
             else
             {
-                carry = 0;
+                for (int pos = 0; pos < chunk; pos += blockSize)
+                {
+                    cipher.processBlock(counterBlocks, pos, counterBlocks, pos);
+                }
+            }
+
+            for (int i = 0; i < chunk; i++)
+            {
+                out[outOff + off + i] = (byte)(counterBlocks[i] ^ in[inOff + off + i]);
             }
-            
-            counter[i] = (byte)x;
         }
 
-        return counter.length;
+        return len;
     }
 
+    private void incrementCounter()
+    {
+        for (int i = counter.length - 1; i >= 0; i--)
+        {
+            if (++counter[i] != 0)
+            {
+                break;
+            }
+        }
+    }
 
     public void reset()
     {
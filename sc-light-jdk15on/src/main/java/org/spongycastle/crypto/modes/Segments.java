@@ -0,0 +1,81 @@
+package org.spongycastle.crypto.modes;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.spongycastle.crypto.RuntimeCryptoException;
+
+/**
+ * Support for the modes which process segments of a message concurrently.
+ */
+class Segments
+{
+    /**
+     * Return true if the input and output ranges share a buffer and overlap
+     * without coinciding. Segments processed at the same time could then
+     * overwrite input another segment has still to read, so such calls have
+     * to be processed serially.
+     */
+    static boolean overlaps(byte[] in, int inOff, byte[] out, int outOff, int length)
+    {
+        return in == out && inOff != outOff && inOff < outOff + length && outOff < inOff + length;
+    }
+
+    /**
+     * Wait for all the segments of a message to complete, rethrowing the
+     * first failure. Null entries (segments run by the caller) are skipped.
+     */
+    static void waitFor(Future[] futures)
+    {
+        Throwable failure = null;
+        boolean interrupted = false;
+
+        // every segment must be finished with before returning, even on failure
+        for (int i = 0; i != futures.length; i++)
+        {
+            if (futures[i] == null)
+            {
+                continue;
+            }
+
+            for (;;)
+            {
+                try
+                {
+                    futures[i].get();
+                    break;
+                }
+                catch (InterruptedException e)
+                {
+                    interrupted = true;
+                }
+                catch (ExecutionException e)
+                {
+                    if (failure == null)
+                    {
+                        failure = e.getCause();
+                    }
+                    break;
+                }
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure instanceof RuntimeException)
+        {
+            throw (RuntimeException)failure;
+        }
+        if (failure instanceof Error)
+        {
+            throw (Error)failure;
+        }
+        if (failure != null)
+        {
+            throw new RuntimeCryptoException("segment failed: " + failure.getMessage());
+        }
+    }
+}
@@ -5,6 +5,7 @@ import org.spongycastle.crypto.BufferedBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
 import org.spongycastle.crypto.DataLengthException;
 import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.MultiBlockCipher;
 import org.spongycastle.crypto.params.ParametersWithRandom;
 
 /**
@@ -208,6 +209,19 @@ public class PaddedBufferedBlockCipher
             len -= gapLen;
             inOff += gapLen;
 
+            if (len > buf.length && cipher instanceof MultiBlockCipher)
+            {
+                //
+                // hand all but the last block straight to the cipher in one call.
+                //
+                int blockCount = (len - buf.length + blockSize - 1) / blockSize;
+                int processed = ((MultiBlockCipher)cipher).processBlocks(in, inOff, blockCount, out, outOff + resultLen);
+
+                resultLen += processed;
+                len -= processed;
+                inOff += processed;
+            }
+
             while (len > buf.length)
             {
                 resultLen += cipher.processBlock(in, inOff, out, outOff + resultLen);
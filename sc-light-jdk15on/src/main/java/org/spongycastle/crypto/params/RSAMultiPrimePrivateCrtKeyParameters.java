@@ -0,0 +1,68 @@
+package org.spongycastle.crypto.params;
+
+import java.math.BigInteger;
+
+/**
+ * An RSA private key with more than two prime factors, as described in
+ * PKCS #1 v2.1 (RFC 3447). p, q, dP, dQ and qInv describe the first two
+ * primes as usual, and each further prime r_i comes with its CRT exponent
+ * d_i = d mod (r_i - 1) and coefficient t_i, the inverse of the product of
+ * the primes before it, mod r_i.
+ */
+public class RSAMultiPrimePrivateCrtKeyParameters
+    extends RSAPrivateCrtKeyParameters
+{
+    private BigInteger[] otherPrimes;
+    private BigInteger[] otherExponents;
+    private BigInteger[] otherCoefficients;
+
+    public RSAMultiPrimePrivateCrtKeyParameters(
+        BigInteger  modulus,
+        BigInteger  publicExponent,
+        BigInteger  privateExponent,
+        BigInteger  p,
+        BigInteger  q,
+        BigInteger  dP,
+        BigInteger  dQ,
+        BigInteger  qInv,
+        BigInteger[] otherPrimes,
+        BigInteger[] otherExponents,
+        BigInteger[] otherCoefficients)
+    {
+        super(modulus, publicExponent, privateExponent, p, q, dP, dQ, qInv);
+
+        if (otherPrimes.length == 0
+            || otherExponents.length != otherPrimes.length || otherCoefficients.length != otherPrimes.length)
+        {
+            throw new IllegalArgumentException("inconsistent other prime information");
+        }
+
+        this.otherPrimes = otherPrimes;
+        this.otherExponents = otherExponents;
+        this.otherCoefficients = otherCoefficients;
+    }
+
+    /**
+     * Return the primes after p and q.
+     */
+    public BigInteger[] getOtherPrimes()
+    {
+        return otherPrimes;
+    }
+
+    /**
+     * Return the CRT exponents for the other primes.
+     */
+    public BigInteger[] getOtherExponents()
+    {
+        return otherExponents;
+    }
+
+    /**
+     * Return the CRT coefficients for the other primes.
+     */
+    public BigInteger[] getOtherCoefficients()
+    {
+        return otherCoefficients;
+    }
+}
@@ -0,0 +1,195 @@
+package org.spongycastle.crypto.signers;
+
+import java.math.BigInteger;
+import java.util.Vector;
+
+import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.math.ec.ECAlgorithms;
+import org.spongycastle.math.ec.ECConstants;
+import org.spongycastle.math.ec.ECPoint;
+
+/**
+ * Verifies a batch of EC-DSA signatures, as described in X9.62, with each
+ * result reported separately.
+ * <p>
+ * Each signature still needs its own point multiplication, as only the x
+ * co-ordinate of the point behind it is known, but the inversions modulo
+ * the group order and in the field are shared across the batch, and the
+ * generator and public key tables are shared with ECDSASigner.
+ */
+public class ECDSABatchVerifier
+    implements ECConstants
+{
+    private Vector items = new Vector();
+
+    /**
+     * Add a signature to the batch. For conventional DSA the message should
+     * be a SHA-1 hash of the message of interest.
+     *
+     * @param key the public key to verify against.
+     * @param message the message which was signed.
+     * @param r the r value of the signature.
+     * @param s the s value of the signature.
+     * @return the index of the signature's result in the array returned by verify().
+     */
+    public int add(ECPublicKeyParameters key, byte[] message, BigInteger r, BigInteger s)
+    {
+        items.addElement(new Item(key, message, r, s));
+
+        return items.size() - 1;
+    }
+
+    /**
+     * Return the number of signatures waiting to be verified.
+     */
+    public int size()
+    {
+        return items.size();
+    }
+
+    /**
+     * Remove any signatures added since the last call to verify().
+     */
+    public void reset()
+    {
+        items.removeAllElements();
+    }
+
+    /**
+     * Verify all the signatures added since the last call, leaving the batch
+     * empty.
+     *
+     * @return an array with true at the index of each signature that verified.
+     */
+    public boolean[] verify()
+    {
+        int count = items.size();
+        boolean[] results = new boolean[count];
+        Item[] valid = new Item[count];
+        int validCount = 0;
+
+        for (int i = 0; i != count; i++)
+        {
+            Item item = (Item)items.elementAt(i);
+            BigInteger n = item.key.getParameters().getN();
+
+            // r and s in the range [1,n-1]
+            if (item.r.compareTo(ONE) < 0 || item.r.compareTo(n) >= 0
+                || item.s.compareTo(ONE) < 0 || item.s.compareTo(n) >= 0)
+            {
+                continue;
+            }
+
+            item.index = i;
+            valid[validCount++] = item;
+        }
+
+        items.removeAllElements();
+
+        if (validCount == 0)
+        {
+            return results;
+        }
+
+        invertS(valid, validCount);
+
+        ECPoint[] G = new ECPoint[validCount];
+        BigInteger[] u1 = new BigInteger[validCount];
+        ECPoint[] Q = new ECPoint[validCount];
+        BigInteger[] u2 = new BigInteger[validCount];
+
+        for (int i = 0; i != validCount; i++)
+        {
+            Item item = valid[i];
+            ECDomainParameters params = item.key.getParameters();
+            BigInteger n = params.getN();
+            BigInteger e = ECDSASigner.calculateE(n, item.message);
+
+            G[i] = params.getG();
+            u1[i] = e.multiply(item.c).mod(n);
+            Q[i] = item.key.getQ();
+            u2[i] = item.r.multiply(item.c).mod(n);
+        }
+
+        ECPoint[] points = ECAlgorithms.sumOfCachedMultiplies(G, u1, Q, u2);
+
+        for (int i = 0; i != validCount; i++)
+        {
+            Item item = valid[i];
+
+            if (points[i].isInfinity())
+            {
+                continue;
+            }
+
+            BigInteger v = points[i].getX().toBigInteger().mod(item.key.getParameters().getN());
+
+            results[item.index] = v.equals(item.r);
+        }
+
+        return results;
+    }
+
+    /**
+     * Set c to the inverse of s modulo n for each item, with a single
+     * modular inversion for each distinct n (Montgomery's trick).
+     */
+    private static void invertS(Item[] valid, int validCount)
+    {
+        BigInteger[] products = new BigInteger[validCount];
+        int[] group = new int[validCount];
+
+        for (int i = 0; i != validCount; i++)
+        {
+            if (valid[i].c != null)
+            {
+                continue;
+            }
+
+            BigInteger n = valid[i].key.getParameters().getN();
+            int len = 0;
+
+            for (int j = i; j != validCount; j++)
+            {
+                if (valid[j].c == null && n.equals(valid[j].key.getParameters().getN()))
+                {
+                    products[len] = (len == 0) ? valid[j].s : products[len - 1].multiply(valid[j].s).mod(n);
+                    group[len++] = j;
+                }
+            }
+
+            // u is the inverse of s[0] * ... * s[k] as k works down
+            BigInteger u = products[len - 1].modInverse(n);
+
+            for (int k = len - 1; k > 0; k--)
+            {
+                Item item = valid[group[k]];
+
+                item.c = u.multiply(products[k - 1]).mod(n);
+                u = u.multiply(item.s).mod(n);
+            }
+
+            valid[group[0]].c = u;
+        }
+    }
+
+    private static class Item
+    {
+        final ECPublicKeyParameters key;
+        final byte[] message;
+        final BigInteger r;
+        final BigInteger s;
+
+        int index;
+        BigInteger c;
+
+        Item(ECPublicKeyParameters key, byte[] message, BigInteger r, BigInteger s)
+        {
+            this.key = key;
+            this.message = message;
+            this.r = r;
+            this.s = s;
+        }
+    }
+}
@@ -78,7 +78,7 @@ public class ECDSASigner
                 }
                 while (k.equals(ZERO) || k.compareTo(n) >= 0);
 
-                ECPoint p = key.getParameters().getG().multiply(k);
+                ECPoint p = ECAlgorithms.fixedPointMultiply(key.getParameters().getG(), k);
 
                 // 5.3.3
                 BigInteger x = p.getX().toBigInteger();
@@ -135,14 +135,14 @@ public class ECDSASigner
         ECPoint G = key.getParameters().getG();
         ECPoint Q = ((ECPublicKeyParameters)key).getQ();
 
-        ECPoint point = ECAlgorithms.sumOfTwoMultiplies(G, u1, Q, u2);
+        ECPoint point = ECAlgorithms.sumOfCachedMultiplies(G, u1, Q, u2);
 
         BigInteger v = point.getX().toBigInteger().mod(n);
 
         return v.equals(r);
     }
 
-    private BigInteger calculateE(BigInteger n, byte[] message)
+    static BigInteger calculateE(BigInteger n, byte[] message)
     {
         int log2n = n.bitLength();
         int messageBitLength = message.length * 8;
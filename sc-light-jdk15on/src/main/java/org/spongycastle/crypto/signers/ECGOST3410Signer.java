@@ -82,7 +82,7 @@ public class ECGOST3410Signer
                 }
                 while (k.equals(ECConstants.ZERO));
 
-                ECPoint p = key.getParameters().getG().multiply(k);
+                ECPoint p = ECAlgorithms.fixedPointMultiply(key.getParameters().getG(), k);
 
                 BigInteger x = p.getX().toBigInteger();
 
@@ -0,0 +1,28 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.OutputStream;
+
+/**
+ * An OutputStream that collects what is written to it in a ByteQueue, for the record layer to
+ * write into when the application, rather than a socket, takes the outbound data.
+ */
+class ByteQueueOutputStream
+    extends OutputStream
+{
+    private ByteQueue buffer = new ByteQueue();
+
+    ByteQueue getBuffer()
+    {
+        return buffer;
+    }
+
+    public void write(int b)
+    {
+        buffer.addData(new byte[] { (byte)b }, 0, 1);
+    }
+
+    public void write(byte[] b, int off, int len)
+    {
+        buffer.addData(b, off, len);
+    }
+}
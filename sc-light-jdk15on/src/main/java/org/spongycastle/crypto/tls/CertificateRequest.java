@@ -5,11 +5,23 @@ import java.util.Vector;
 public class CertificateRequest
 {
     private short[] certificateTypes;
+    private Vector supportedSignatureAlgorithms;
     private Vector certificateAuthorities;
 
     public CertificateRequest(short[] certificateTypes, Vector certificateAuthorities)
+    {
+        this(certificateTypes, null, certificateAuthorities);
+    }
+
+    /**
+     * @param supportedSignatureAlgorithms Vector of {@link SignatureAndHashAlgorithm}, or null
+     *            before TLS 1.2.
+     */
+    public CertificateRequest(short[] certificateTypes, Vector supportedSignatureAlgorithms,
+        Vector certificateAuthorities)
     {
         this.certificateTypes = certificateTypes;
+        this.supportedSignatureAlgorithms = supportedSignatureAlgorithms;
         this.certificateAuthorities = certificateAuthorities;
     }
 
@@ -18,6 +30,14 @@ public class CertificateRequest
         return certificateTypes;
     }
 
+    /**
+     * @return Vector of {@link SignatureAndHashAlgorithm}, or null before TLS 1.2
+     */
+    public Vector getSupportedSignatureAlgorithms()
+    {
+        return supportedSignatureAlgorithms;
+    }
+
     /**
      * @return Vector of X500Name
      */
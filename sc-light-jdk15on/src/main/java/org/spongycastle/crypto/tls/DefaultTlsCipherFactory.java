@@ -10,11 +10,14 @@ import org.spongycastle.crypto.digests.SHA256Digest;
 import org.spongycastle.crypto.digests.SHA384Digest;
 import org.spongycastle.crypto.engines.AESFastEngine;
 import org.spongycastle.crypto.engines.DESedeEngine;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
 import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.modes.gcm.Tables64kGCMMultiplier;
 
 public class DefaultTlsCipherFactory implements TlsCipherFactory
 {
-    public TlsCipher createCipher(TlsClientContext context, int encryptionAlgorithm, int digestAlgorithm) throws IOException
+    public TlsCipher createCipher(TlsContext context, int encryptionAlgorithm, int digestAlgorithm) throws IOException
     {
         switch (encryptionAlgorithm)
         {
@@ -24,18 +27,28 @@ public class DefaultTlsCipherFactory implements TlsCipherFactory
                 return createAESCipher(context, 16, digestAlgorithm);
             case EncryptionAlgorithm.AES_256_CBC:
                 return createAESCipher(context, 32, digestAlgorithm);
+            case EncryptionAlgorithm.AES_128_GCM:
+                return createAESGCMCipher(context, 16, 16);
+            case EncryptionAlgorithm.AES_256_GCM:
+                return createAESGCMCipher(context, 32, 16);
             default:
                 throw new TlsFatalAlert(AlertDescription.internal_error);
         }
     }
 
-    protected TlsCipher createAESCipher(TlsClientContext context, int cipherKeySize, int digestAlgorithm) throws IOException
+    protected TlsCipher createAESCipher(TlsContext context, int cipherKeySize, int digestAlgorithm) throws IOException
     {
         return new TlsBlockCipher(context, createAESBlockCipher(),
             createAESBlockCipher(), createDigest(digestAlgorithm), createDigest(digestAlgorithm), cipherKeySize);
     }
 
-    protected TlsCipher createDESedeCipher(TlsClientContext context, int cipherKeySize, int digestAlgorithm) throws IOException
+    protected TlsCipher createAESGCMCipher(TlsContext context, int cipherKeySize, int macSize) throws IOException
+    {
+        return new TlsAEADCipher(context, createAESGCMBlockCipher(),
+            createAESGCMBlockCipher(), cipherKeySize, macSize);
+    }
+
+    protected TlsCipher createDESedeCipher(TlsContext context, int cipherKeySize, int digestAlgorithm) throws IOException
     {
         return new TlsBlockCipher(context, createDESedeBlockCipher(),
             createDESedeBlockCipher(), createDigest(digestAlgorithm), createDigest(digestAlgorithm), cipherKeySize);
@@ -46,6 +59,12 @@ public class DefaultTlsCipherFactory implements TlsCipherFactory
         return new CBCBlockCipher(new AESFastEngine());
     }
 
+    protected AEADBlockCipher createAESGCMBlockCipher()
+    {
+        // The key is fixed for the connection, so the larger tables are only built once
+        return new GCMBlockCipher(new AESFastEngine(), new Tables64kGCMMultiplier());
+    }
+
     protected BlockCipher createDESedeBlockCipher()
     {
         return new CBCBlockCipher(new DESedeEngine());
@@ -12,6 +12,10 @@ public abstract class DefaultTlsClient implements TlsClient
     protected int selectedCipherSuite;
     protected int selectedCompressionMethod;
 
+    protected TlsSessionCache sessionCache;
+    protected String host;
+    protected int port;
+
     public DefaultTlsClient()
     {
         this(new DefaultTlsCipherFactory());
@@ -22,6 +26,21 @@ public abstract class DefaultTlsClient implements TlsClient
         this.cipherFactory = cipherFactory;
     }
 
+    /**
+     * Offer to resume sessions from, and record new sessions in, the given cache, filed under
+     * the server this client will connect to. Session tickets are requested as well.
+     *
+     * @param sessionCache the cache, which may be shared between clients.
+     * @param host the host name of the server.
+     * @param port the port of the server.
+     */
+    public void setSessionCache(TlsSessionCache sessionCache, String host, int port)
+    {
+        this.sessionCache = sessionCache;
+        this.host = host;
+        this.port = port;
+    }
+
     public void init(TlsClientContext context)
     {
         this.context = context;
@@ -29,12 +48,16 @@ public abstract class DefaultTlsClient implements TlsClient
 
     public ProtocolVersion getClientVersion()
     {
-        return ProtocolVersion.TLSv10;
+        return ProtocolVersion.TLSv12;
     }
 
     public int[] getCipherSuites()
     {
         return new int[] {
+            CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384,
+            CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256,
+            CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384,
+            CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256,
             CipherSuite.TLS_DHE_RSA_WITH_AES_256_CBC_SHA,
             CipherSuite.TLS_DHE_DSS_WITH_AES_256_CBC_SHA,
             CipherSuite.TLS_DHE_RSA_WITH_AES_128_CBC_SHA,
@@ -47,9 +70,38 @@ public abstract class DefaultTlsClient implements TlsClient
         };
     }
 
-    public Hashtable getClientExtensions()
+    public TlsSession getSessionToResume()
     {
-        return null;
+        if (sessionCache == null)
+        {
+            return null;
+        }
+
+        return sessionCache.getSession(host, port);
+    }
+
+    public Hashtable getClientExtensions() throws IOException
+    {
+        // Integer -> byte[]
+        Hashtable clientExtensions = new Hashtable();
+
+        if (getClientVersion().getFullVersion() >= ProtocolVersion.TLSv12.getFullVersion())
+        {
+            /*
+             * RFC 5246 7.4.1.4.1. Without this the server may only sign with SHA-1, so list
+             * everything we can verify.
+             */
+            clientExtensions.put(new Integer(ExtensionType.signature_algorithms),
+                TlsUtils.createSignatureAlgorithmsExtension(TlsUtils.getDefaultSupportedSignatureAlgorithms()));
+        }
+
+        if (sessionCache != null)
+        {
+            // RFC 5077 3.2. an empty ticket asks the server for a new one
+            clientExtensions.put(new Integer(ExtensionType.session_ticket), new byte[0]);
+        }
+
+        return clientExtensions.isEmpty() ? null : clientExtensions;
     }
 
     public short[] getCompressionMethods()
@@ -59,7 +111,8 @@ public abstract class DefaultTlsClient implements TlsClient
 
     public void notifyServerVersion(ProtocolVersion serverVersion) throws IOException
     {
-        if (!ProtocolVersion.TLSv10.equals(serverVersion))
+        // The protocol handler has already checked it is no later than the version we offered
+        if (serverVersion.getFullVersion() < ProtocolVersion.TLSv10.getFullVersion())
         {
             throw new TlsFatalAlert(AlertDescription.illegal_parameter);
         }
@@ -70,6 +123,14 @@ public abstract class DefaultTlsClient implements TlsClient
         // Currently ignored 
     }
 
+    public void notifyNewSession(TlsSession session)
+    {
+        if (sessionCache != null)
+        {
+            sessionCache.putSession(host, port, session);
+        }
+    }
+
     public void notifySelectedCipherSuite(int selectedCipherSuite)
     {
         this.selectedCipherSuite = selectedCipherSuite;
@@ -105,46 +166,64 @@ public abstract class DefaultTlsClient implements TlsClient
             case CipherSuite.TLS_RSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
                 return createRSAKeyExchange();
 
             case CipherSuite.TLS_DH_DSS_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_DH_DSS_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_DH_DSS_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_256_GCM_SHA384:
                 return createDHKeyExchange(KeyExchangeAlgorithm.DH_DSS);
 
             case CipherSuite.TLS_DH_RSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_DH_RSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_DH_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_256_GCM_SHA384:
                 return createDHKeyExchange(KeyExchangeAlgorithm.DH_RSA);
 
             case CipherSuite.TLS_DHE_DSS_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_DHE_DSS_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_DHE_DSS_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_256_GCM_SHA384:
                 return createDHEKeyExchange(KeyExchangeAlgorithm.DHE_DSS);
 
             case CipherSuite.TLS_DHE_RSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_DHE_RSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_DHE_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384:
                 return createDHEKeyExchange(KeyExchangeAlgorithm.DHE_RSA);
 
             case CipherSuite.TLS_ECDH_ECDSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_GCM_SHA384:
                 return createECDHKeyExchange(KeyExchangeAlgorithm.ECDH_ECDSA);
 
             case CipherSuite.TLS_ECDHE_ECDSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
                 return createECDHEKeyExchange(KeyExchangeAlgorithm.ECDHE_ECDSA);
 
             case CipherSuite.TLS_ECDH_RSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_ECDH_RSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_GCM_SHA384:
                 return createECDHKeyExchange(KeyExchangeAlgorithm.ECDH_RSA);
 
             case CipherSuite.TLS_ECDHE_RSA_WITH_3DES_EDE_CBC_SHA:
             case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA:
             case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
                 return createECDHEKeyExchange(KeyExchangeAlgorithm.ECDHE_RSA);
 
             default:
@@ -213,6 +292,28 @@ public abstract class DefaultTlsClient implements TlsClient
             case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA:
                 return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_256_CBC, DigestAlgorithm.SHA);
 
+            case CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_128_GCM, DigestAlgorithm.NULL);
+
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_256_GCM, DigestAlgorithm.NULL);
+
             default:
                 /*
                  * Note: internal error here; the TlsProtocolHandler verifies that the
@@ -0,0 +1,348 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * A TlsServer offering the RSA and ECDHE key exchanges, with AES in CBC mode and, for TLS 1.2,
+ * GCM. ECDHE is signed with RSA or ECDSA, whichever the credentials hold.
+ * <p/>
+ * Make one of these for each connection accepted; the credentials, ephemeral key cache and
+ * session cache it is given are meant to be shared by all of them.
+ */
+public class DefaultTlsServer implements TlsServer
+{
+    /*
+     * RFC 4492 5.1.1. The curves we will do ECDHE on, most preferred first.
+     */
+    private static final int[] NAMED_CURVES = new int[] { NamedCurve.secp256r1, NamedCurve.secp384r1,
+        NamedCurve.secp521r1 };
+
+    protected TlsCipherFactory cipherFactory;
+    protected TlsServerCredentials credentials;
+    protected TlsEphemeralKeyCache keyCache = null;
+    protected TlsServerSessionCache sessionCache = null;
+
+    protected TlsServerContext context;
+
+    protected ProtocolVersion clientVersion;
+    protected int[] offeredCipherSuites;
+    protected short[] offeredCompressionMethods;
+    protected int[] clientNamedCurves = null;
+
+    protected int selectedCipherSuite;
+    protected short selectedCompressionMethod;
+    protected int selectedNamedCurve = -1;
+
+    public DefaultTlsServer(TlsServerCredentials credentials)
+    {
+        this(new DefaultTlsCipherFactory(), credentials);
+    }
+
+    public DefaultTlsServer(TlsCipherFactory cipherFactory, TlsServerCredentials credentials)
+    {
+        if (credentials == null)
+        {
+            throw new IllegalArgumentException("'credentials' cannot be null");
+        }
+
+        this.cipherFactory = cipherFactory;
+        this.credentials = credentials;
+    }
+
+    /**
+     * Take ephemeral ECDH keys from the given cache, rather than generating one per handshake.
+     *
+     * @param keyCache the cache, which may be shared between servers.
+     */
+    public void setEphemeralKeyCache(TlsEphemeralKeyCache keyCache)
+    {
+        this.keyCache = keyCache;
+    }
+
+    /**
+     * Let clients resume sessions held in, and record new sessions in, the given cache.
+     *
+     * @param sessionCache the cache, which may be shared between servers.
+     */
+    public void setSessionCache(TlsServerSessionCache sessionCache)
+    {
+        this.sessionCache = sessionCache;
+    }
+
+    public void init(TlsServerContext context)
+    {
+        this.context = context;
+    }
+
+    protected ProtocolVersion getMaximumVersion()
+    {
+        return ProtocolVersion.TLSv12;
+    }
+
+    protected int[] getCipherSuites()
+    {
+        if (credentials.getSignatureAlgorithm() == SignatureAlgorithm.ecdsa)
+        {
+            return new int[] {
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA,
+                CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA,
+            };
+        }
+
+        return new int[] {
+            CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256,
+            CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384,
+            CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA,
+            CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA,
+            CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256,
+            CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384,
+            CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA,
+            CipherSuite.TLS_RSA_WITH_AES_256_CBC_SHA,
+            CipherSuite.TLS_RSA_WITH_3DES_EDE_CBC_SHA,
+        };
+    }
+
+    public void notifyClientVersion(ProtocolVersion clientVersion) throws IOException
+    {
+        this.clientVersion = clientVersion;
+    }
+
+    public void notifyOfferedCipherSuites(int[] offeredCipherSuites) throws IOException
+    {
+        this.offeredCipherSuites = offeredCipherSuites;
+    }
+
+    public void notifyOfferedCompressionMethods(short[] offeredCompressionMethods) throws IOException
+    {
+        this.offeredCompressionMethods = offeredCompressionMethods;
+    }
+
+    public void notifySecureRenegotiation(boolean secureRenegotiation) throws IOException
+    {
+        // We never renegotiate, so a client without support is no risk
+    }
+
+    public void processClientExtensions(Hashtable clientExtensions) throws IOException
+    {
+        byte[] extValue = (byte[])clientExtensions.get(new Integer(ExtensionType.elliptic_curves));
+        if (extValue != null)
+        {
+            // RFC 4492 5.1.1. A non-empty list of NamedCurve
+            ByteArrayInputStream buf = new ByteArrayInputStream(extValue);
+            int length = TlsUtils.readUint16(buf);
+            if (length < 2 || (length & 1) != 0 || length != buf.available())
+            {
+                throw new TlsFatalAlert(AlertDescription.decode_error);
+            }
+
+            this.clientNamedCurves = new int[length / 2];
+            for (int i = 0; i < clientNamedCurves.length; ++i)
+            {
+                clientNamedCurves[i] = TlsUtils.readUint16(buf);
+            }
+        }
+    }
+
+    public ProtocolVersion getServerVersion() throws IOException
+    {
+        if (clientVersion.getFullVersion() < ProtocolVersion.TLSv10.getFullVersion())
+        {
+            throw new TlsFatalAlert(AlertDescription.protocol_version);
+        }
+
+        ProtocolVersion maximumVersion = getMaximumVersion();
+        if (clientVersion.getFullVersion() > maximumVersion.getFullVersion())
+        {
+            return maximumVersion;
+        }
+        return clientVersion;
+    }
+
+    public TlsServerSessionCache getSessionCache()
+    {
+        return sessionCache;
+    }
+
+    public void notifyResumedSession(TlsSession session) throws IOException
+    {
+        this.selectedCipherSuite = session.getCipherSuite();
+        this.selectedCompressionMethod = session.getCompressionMethod();
+    }
+
+    public int getSelectedCipherSuite() throws IOException
+    {
+        this.selectedNamedCurve = selectNamedCurve();
+
+        boolean isTLSv12 = TlsUtils.isTLSv12(context);
+
+        int[] cipherSuites = getCipherSuites();
+        for (int i = 0; i < cipherSuites.length; ++i)
+        {
+            int cipherSuite = cipherSuites[i];
+
+            if (!TlsProtocol.arrayContains(offeredCipherSuites, cipherSuite)
+                || (!isTLSv12 && TlsUtils.isTLSv12CipherSuite(cipherSuite))
+                || (isECDHECipherSuite(cipherSuite) && selectedNamedCurve < 0))
+            {
+                continue;
+            }
+
+            this.selectedCipherSuite = cipherSuite;
+            return cipherSuite;
+        }
+
+        throw new TlsFatalAlert(AlertDescription.handshake_failure);
+    }
+
+    public short getSelectedCompressionMethod() throws IOException
+    {
+        if (!TlsProtocol.arrayContains(offeredCompressionMethods, CompressionMethod.NULL))
+        {
+            throw new TlsFatalAlert(AlertDescription.handshake_failure);
+        }
+
+        this.selectedCompressionMethod = CompressionMethod.NULL;
+        return selectedCompressionMethod;
+    }
+
+    public Hashtable getServerExtensions() throws IOException
+    {
+        return null;
+    }
+
+    public TlsServerCredentials getCredentials() throws IOException
+    {
+        return credentials;
+    }
+
+    public TlsServerKeyExchange getKeyExchange() throws IOException
+    {
+        switch (selectedCipherSuite)
+        {
+            case CipherSuite.TLS_RSA_WITH_3DES_EDE_CBC_SHA:
+            case CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+                return createRSAKeyExchange();
+
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+                return createECDHEKeyExchange(KeyExchangeAlgorithm.ECDHE_ECDSA);
+
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+                return createECDHEKeyExchange(KeyExchangeAlgorithm.ECDHE_RSA);
+
+            default:
+                /*
+                 * Note: internal error here; we only select cipher suites from our own list,
+                 * so if we now can't produce an implementation, it shouldn't be in the list!
+                 */
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
+
+    public TlsCompression getCompression() throws IOException
+    {
+        switch (selectedCompressionMethod)
+        {
+            case CompressionMethod.NULL:
+                return new TlsNullCompression();
+
+            default:
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
+
+    public TlsCipher getCipher() throws IOException
+    {
+        switch (selectedCipherSuite)
+        {
+            case CipherSuite.TLS_RSA_WITH_3DES_EDE_CBC_SHA:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm._3DES_EDE_CBC, DigestAlgorithm.SHA);
+
+            case CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_128_CBC, DigestAlgorithm.SHA);
+
+            case CipherSuite.TLS_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_256_CBC, DigestAlgorithm.SHA);
+
+            case CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_128_GCM, DigestAlgorithm.NULL);
+
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+                return cipherFactory.createCipher(context, EncryptionAlgorithm.AES_256_GCM, DigestAlgorithm.NULL);
+
+            default:
+                throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
+
+    protected TlsServerKeyExchange createECDHEKeyExchange(int keyExchange)
+    {
+        return new TlsECDHEKeyExchange(context, keyExchange, selectedNamedCurve, keyCache);
+    }
+
+    protected TlsServerKeyExchange createRSAKeyExchange()
+    {
+        return new TlsRSAKeyExchange(context);
+    }
+
+    /**
+     * @return the first of our curves the client supports, or -1 if there is none.
+     */
+    protected int selectNamedCurve()
+    {
+        if (clientNamedCurves == null)
+        {
+            // RFC 4492 4. Without the extension, the server may use any curve it likes
+            return NAMED_CURVES[0];
+        }
+
+        for (int i = 0; i < NAMED_CURVES.length; ++i)
+        {
+            if (TlsProtocol.arrayContains(clientNamedCurves, NAMED_CURVES[i]))
+            {
+                return NAMED_CURVES[i];
+            }
+        }
+
+        return -1;
+    }
+
+    protected static boolean isECDHECipherSuite(int cipherSuite)
+    {
+        switch (cipherSuite)
+        {
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+}
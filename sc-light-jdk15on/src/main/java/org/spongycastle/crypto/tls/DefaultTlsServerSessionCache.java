@@ -0,0 +1,124 @@
+package org.spongycastle.crypto.tls;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.spongycastle.util.Strings;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * A TlsServerSessionCache held in memory, which expires sessions a fixed time after they were
+ * created and, once full, drops the oldest session to make room for a new one.
+ */
+public class DefaultTlsServerSessionCache
+    implements TlsServerSessionCache
+{
+    public static final int DEFAULT_MAX_SIZE = 10000;
+    public static final long DEFAULT_TIME_TO_LIVE = 24L * 60 * 60 * 1000;
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    // String -> TlsSession, oldest first
+    private final LinkedHashMap sessions = new LinkedHashMap();
+
+    public DefaultTlsServerSessionCache()
+    {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxSize the most sessions to hold at once.
+     * @param timeToLive how long a session may be resumed for, in milliseconds.
+     */
+    public DefaultTlsServerSessionCache(int maxSize, long timeToLive)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("'maxSize' must be at least 1");
+        }
+        if (timeToLive <= 0)
+        {
+            throw new IllegalArgumentException("'timeToLive' must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    public synchronized TlsSession getSession(byte[] sessionID)
+    {
+        String key = getKey(sessionID);
+        TlsSession session = (TlsSession)sessions.get(key);
+
+        if (session != null && isExpired(session, System.currentTimeMillis()))
+        {
+            sessions.remove(key);
+            return null;
+        }
+
+        return session;
+    }
+
+    public synchronized void putSession(TlsSession session)
+    {
+        String key = getKey(session.getSessionIDInternal());
+
+        // re-inserting keeps the map in order of creation
+        sessions.remove(key);
+
+        if (sessions.size() >= maxSize)
+        {
+            removeExpired();
+
+            if (sessions.size() >= maxSize)
+            {
+                Iterator it = sessions.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+
+        sessions.put(key, session);
+    }
+
+    public synchronized void removeSession(byte[] sessionID)
+    {
+        sessions.remove(getKey(sessionID));
+    }
+
+    /**
+     * @return the number of sessions currently held, including any that have expired but not
+     *         yet been removed.
+     */
+    public synchronized int size()
+    {
+        return sessions.size();
+    }
+
+    private void removeExpired()
+    {
+        long now = System.currentTimeMillis();
+
+        Iterator it = sessions.values().iterator();
+        while (it.hasNext())
+        {
+            if (!isExpired((TlsSession)it.next(), now))
+            {
+                // sessions are in order of creation, so the rest are newer
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private boolean isExpired(TlsSession session, long now)
+    {
+        return now - session.getCreationTime() >= timeToLive;
+    }
+
+    private static String getKey(byte[] sessionID)
+    {
+        return Strings.fromByteArray(Hex.encode(sessionID));
+    }
+}
@@ -0,0 +1,123 @@
+package org.spongycastle.crypto.tls;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+import org.spongycastle.util.Strings;
+
+/**
+ * A TlsSessionCache held in memory, which expires sessions a fixed time after they were
+ * created and, once full, drops the oldest session to make room for a new one.
+ */
+public class DefaultTlsSessionCache
+    implements TlsSessionCache
+{
+    public static final int DEFAULT_MAX_SIZE = 1000;
+    public static final long DEFAULT_TIME_TO_LIVE = 24L * 60 * 60 * 1000;
+
+    private final int maxSize;
+    private final long timeToLive;
+
+    // String -> TlsSession, oldest first
+    private final LinkedHashMap sessions = new LinkedHashMap();
+
+    public DefaultTlsSessionCache()
+    {
+        this(DEFAULT_MAX_SIZE, DEFAULT_TIME_TO_LIVE);
+    }
+
+    /**
+     * @param maxSize the most sessions to hold at once.
+     * @param timeToLive how long a session may be resumed for, in milliseconds.
+     */
+    public DefaultTlsSessionCache(int maxSize, long timeToLive)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("'maxSize' must be at least 1");
+        }
+        if (timeToLive <= 0)
+        {
+            throw new IllegalArgumentException("'timeToLive' must be positive");
+        }
+
+        this.maxSize = maxSize;
+        this.timeToLive = timeToLive;
+    }
+
+    public synchronized TlsSession getSession(String host, int port)
+    {
+        String key = getKey(host, port);
+        TlsSession session = (TlsSession)sessions.get(key);
+
+        if (session != null && isExpired(session, System.currentTimeMillis()))
+        {
+            sessions.remove(key);
+            return null;
+        }
+
+        return session;
+    }
+
+    public synchronized void putSession(String host, int port, TlsSession session)
+    {
+        String key = getKey(host, port);
+
+        // re-inserting keeps the map in order of creation
+        sessions.remove(key);
+
+        if (sessions.size() >= maxSize)
+        {
+            removeExpired();
+
+            if (sessions.size() >= maxSize)
+            {
+                Iterator it = sessions.keySet().iterator();
+                it.next();
+                it.remove();
+            }
+        }
+
+        sessions.put(key, session);
+    }
+
+    public synchronized void removeSession(String host, int port)
+    {
+        sessions.remove(getKey(host, port));
+    }
+
+    /**
+     * @return the number of sessions currently held, including any that have expired but not
+     *         yet been removed.
+     */
+    public synchronized int size()
+    {
+        return sessions.size();
+    }
+
+    private void removeExpired()
+    {
+        long now = System.currentTimeMillis();
+
+        Iterator it = sessions.values().iterator();
+        while (it.hasNext())
+        {
+            if (!isExpired((TlsSession)it.next(), now))
+            {
+                // sessions are in order of creation, so the rest are newer
+                break;
+            }
+            it.remove();
+        }
+    }
+
+    private boolean isExpired(TlsSession session, long now)
+    {
+        return now - session.getCreationTime() >= timeToLive;
+    }
+
+    private static String getKey(String host, int port)
+    {
+        return Strings.toLowerCase(host) + ":" + port;
+    }
+}
@@ -10,13 +10,13 @@ import org.spongycastle.crypto.params.RSAKeyParameters;
 
 public class DefaultTlsSignerCredentials implements TlsSignerCredentials
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
     protected Certificate clientCert;
     protected AsymmetricKeyParameter clientPrivateKey;
 
     protected TlsSigner clientSigner;
 
-    public DefaultTlsSignerCredentials(TlsClientContext context, Certificate clientCertificate,
+    public DefaultTlsSignerCredentials(TlsContext context, Certificate clientCertificate,
         AsymmetricKeyParameter clientPrivateKey)
     {
         if (clientCertificate == null)
@@ -64,10 +64,22 @@ public class DefaultTlsSignerCredentials implements TlsSignerCredentials
         return clientCert;
     }
 
+    /**
+     * @param md5andsha1 the handshake hash, which from TLS 1.2 is the PRF hash of the handshake
+     *            rather than md5 + sha1.
+     */
     public byte[] generateCertificateSignature(byte[] md5andsha1) throws IOException
     {
         try
         {
+            if (TlsUtils.isTLSv12(context))
+            {
+                short hashAlgorithm = TlsUtils.getHashAlgorithmForPRFAlgorithm(
+                    context.getSecurityParameters().getPrfAlgorithm());
+                return clientSigner.calculateRawSignature(context.getSecureRandom(), clientPrivateKey,
+                    hashAlgorithm, md5andsha1);
+            }
+
             return clientSigner.calculateRawSignature(context.getSecureRandom(), clientPrivateKey,
                 md5andsha1);
         }
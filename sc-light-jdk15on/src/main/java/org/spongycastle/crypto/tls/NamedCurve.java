@@ -1,6 +1,6 @@
 package org.spongycastle.crypto.tls;
 
-import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.ECNamedCurveTable;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.crypto.params.ECDomainParameters;
 
@@ -75,6 +75,8 @@ public class NamedCurve
         "secp384r1",
         "secp521r1", };
 
+    private static final ECDomainParameters[] domainParameters = new ECDomainParameters[curveNames.length];
+
     static ECDomainParameters getECParameters(int namedCurve)
     {
         int index = namedCurve - 1;
@@ -83,18 +85,27 @@ public class NamedCurve
             return null;
         }
 
-        String curveName = curveNames[index];
+        synchronized (domainParameters)
+        {
+            ECDomainParameters params = domainParameters[index];
 
-        // Lazily created the first time a particular curve is accessed
-        X9ECParameters ecP = SECNamedCurves.getByName(curveName);
+            if (params == null)
+            {
+                // Lazily created the first time a particular curve is accessed, and shared with
+                // keys on the same curve so they all use the same precomputation
+                X9ECParameters ecP = ECNamedCurveTable.getByName(curveNames[index]);
 
-        if (ecP == null)
-        {
-            return null;
-        }
+                if (ecP == null)
+                {
+                    return null;
+                }
+
+                params = new ECDomainParameters(ecP.getCurve(), ecP.getG(), ecP.getN(), ecP.getH(),
+                    ecP.getSeed());
+                domainParameters[index] = params;
+            }
 
-        // It's a bit inefficient to do this conversion every time
-        return new ECDomainParameters(ecP.getCurve(), ecP.getG(), ecP.getN(), ecP.getH(),
-            ecP.getSeed());
+            return params;
+        }
     }
 }
@@ -0,0 +1,24 @@
+package org.spongycastle.crypto.tls;
+
+public class PRFAlgorithm
+{
+    /*
+     * Note that the values here are implementation-specific and arbitrary.
+     * It is recommended not to depend on the particular values (e.g. serialization).
+     */
+
+    /*
+     * RFC 2246 5. The MD5/SHA-1 PRF of TLS 1.0 and 1.1.
+     */
+    public static final int tls_prf_legacy = 0;
+
+    /*
+     * RFC 5246 5. TLS 1.2 cipher suites use SHA-256 unless they specify otherwise.
+     */
+    public static final int tls_prf_sha256 = 1;
+
+    /*
+     * RFC 5289 3.
+     */
+    public static final int tls_prf_sha384 = 2;
+}
@@ -66,11 +66,20 @@ public class PSKTlsClient implements TlsClient
         }
     }
 
+    public TlsSession getSessionToResume()
+    {
+        return null;
+    }
+
     public void notifySessionID(byte[] sessionID)
     {
         // Currently ignored 
     }
 
+    public void notifyNewSession(TlsSession session)
+    {
+    }
+
     public void notifySelectedCipherSuite(int selectedCipherSuite)
     {
         this.selectedCipherSuite = selectedCipherSuite;
@@ -1,30 +1,55 @@
 package org.spongycastle.crypto.tls;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 
 import org.spongycastle.crypto.Digest;
+import org.spongycastle.util.io.Streams;
 
 /**
- * An implementation of the TLS 1.0 record layer, allowing downgrade to SSLv3.
+ * An implementation of the TLS 1.0 - 1.2 record layer, allowing downgrade to SSLv3.
  */
 class RecordStream
 {
-    private TlsProtocolHandler handler;
+    private static final int RECORD_HEADER_LENGTH = 5;
+    private static final int MAX_CIPHERTEXT_LENGTH = (1 << 14) + 2048;
+
+    private TlsProtocol handler;
     private InputStream is;
     private OutputStream os;
     private TlsCompression readCompression = null;
     private TlsCompression writeCompression = null;
     private TlsCipher readCipher = null;
     private TlsCipher writeCipher = null;
+    private TlsCompression pendingCompression = null;
+    private TlsCipher pendingCipher = null;
     private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
 
-    private TlsClientContext context = null;
-    private CombinedHash hash = null;
+    /*
+     * Records are read into and written out of these, which the ciphers work on in place.
+     */
+    private byte[] readHeader = new byte[RECORD_HEADER_LENGTH];
+    private byte[] readBuffer = new byte[0];
+    private byte[] writeHeader = new byte[RECORD_HEADER_LENGTH];
+    private byte[] writeBuffer = new byte[0];
+    private long allocationCount = 0;
+    private long allocatedBytes = 0;
+
+    private TlsContext context = null;
+    private ProtocolVersion recordVersion = null;
+
+    /*
+     * The handshake hash depends on the PRF, which isn't known until the server hello, so the
+     * messages before that are buffered.
+     */
+    private ByteArrayOutputStream handshakeBuffer = null;
+    private Digest hash = null;
+    private short prfHashAlgorithm = HashAlgorithm.none;
     
-    RecordStream(TlsProtocolHandler handler, InputStream is, OutputStream os)
+    RecordStream(TlsProtocol handler, InputStream is, OutputStream os)
     {
         this.handler = handler;
         this.is = is;
@@ -35,48 +60,153 @@ class RecordStream
         this.writeCipher = this.readCipher;
     }
 
-    void init(TlsClientContext context)
+    void init(TlsContext context)
     {
         this.context = context;
-        this.hash = new CombinedHash(context);
+        this.handshakeBuffer = new ByteArrayOutputStream();
     }
 
-    void clientCipherSpecDecided(TlsCompression tlsCompression, TlsCipher tlsCipher)
+    /**
+     * Fix the record version to the one the server chose. Until then we send TLS 1.0 and
+     * accept any TLS version (RFC 5246 E.1).
+     */
+    void setRecordVersion(ProtocolVersion recordVersion)
     {
-        this.writeCompression = tlsCompression;
-        this.writeCipher = tlsCipher;
+        this.recordVersion = recordVersion;
     }
 
-    void serverClientSpecReceived()
+    /**
+     * Start hashing the handshake with the PRF's hash, now that the security parameters say
+     * which one that is.
+     */
+    void notifyPRFDetermined()
     {
-        this.readCompression = this.writeCompression;
-        this.readCipher = this.writeCipher;
+        int prfAlgorithm = context.getSecurityParameters().getPrfAlgorithm();
+
+        if (prfAlgorithm == PRFAlgorithm.tls_prf_legacy)
+        {
+            this.hash = new CombinedHash(context);
+        }
+        else
+        {
+            this.prfHashAlgorithm = TlsUtils.getHashAlgorithmForPRFAlgorithm(prfAlgorithm);
+            this.hash = TlsUtils.createHash(prfHashAlgorithm);
+        }
+
+        byte[] buffered = handshakeBuffer.toByteArray();
+        hash.update(buffered, 0, buffered.length);
+        this.handshakeBuffer = null;
+    }
+
+    /**
+     * Set the cipher spec the next change_cipher_spec in each direction switches to. In a
+     * full handshake we send ours first, in a resumed one the server does.
+     */
+    void setPendingConnectionState(TlsCompression tlsCompression, TlsCipher tlsCipher)
+    {
+        this.pendingCompression = tlsCompression;
+        this.pendingCipher = tlsCipher;
+    }
+
+    void sentWriteCipherSpec()
+    {
+        this.writeCompression = this.pendingCompression;
+        this.writeCipher = this.pendingCipher;
+    }
+
+    void receivedReadCipherSpec()
+    {
+        this.readCompression = this.pendingCompression;
+        this.readCipher = this.pendingCipher;
     }
 
     public void readData() throws IOException
+    {
+        readRecord(is);
+    }
+
+    /**
+     * Read and process one record from our own InputStream (blocking mode).
+     */
+    void readRecord(InputStream is) throws IOException
     {
         short type = TlsUtils.readUint8(is);
+        checkRecordVersion(TlsUtils.readVersion(is));
+        int size = TlsUtils.readUint16(is);
+        checkRecordLength(size);
 
-        // TODO In light of versioning and SSLv3, what should we expect here?
-        ProtocolVersion expectedVersion = ProtocolVersion.TLSv10; //context.getServerVersion();
-        if (!expectedVersion.equals(TlsUtils.readVersion(is)))
+        byte[] buf = getReadBuffer(size);
+        if (Streams.readFully(is, buf, 0, size) != size)
         {
-            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            throw new EOFException();
         }
 
-        int size = TlsUtils.readUint16(is);
-        byte[] buf = decodeAndVerify(type, is, size);
-        handler.processData(type, buf, 0, buf.length);
+        processRecord(type, buf, size);
+    }
+
+    /**
+     * Process one record from the front of the given queue (non-blocking mode), which the
+     * caller has checked holds all of it.
+     */
+    void readRecord(ByteQueue input) throws IOException
+    {
+        input.read(readHeader, 0, RECORD_HEADER_LENGTH, 0);
+
+        short type = (short)(readHeader[0] & 0xff);
+        checkRecordVersion(ProtocolVersion.get(readHeader[1] & 0xff, readHeader[2] & 0xff));
+        int size = ((readHeader[3] & 0xff) << 8) | (readHeader[4] & 0xff);
+        checkRecordLength(size);
+
+        byte[] buf = getReadBuffer(size);
+        input.read(buf, 0, size, RECORD_HEADER_LENGTH);
+        input.removeData(RECORD_HEADER_LENGTH + size);
+
+        processRecord(type, buf, size);
+    }
+
+    private void checkRecordVersion(ProtocolVersion version) throws IOException
+    {
+        if (recordVersion == null)
+        {
+            if (version.getMajorVersion() != 3)
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+        }
+        else if (!recordVersion.equals(version))
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
     }
 
-    protected byte[] decodeAndVerify(short type, InputStream is, int len) throws IOException
+    private static void checkRecordLength(int size) throws IOException
     {
-        byte[] buf = new byte[len];
-        TlsUtils.readFully(buf, is);
-        byte[] decoded = readCipher.decodeCiphertext(type, buf, 0, buf.length);
+        if (size > MAX_CIPHERTEXT_LENGTH)
+        {
+            throw new TlsFatalAlert(AlertDescription.record_overflow);
+        }
+    }
 
+    private void processRecord(short type, byte[] buf, int len) throws IOException
+    {
         OutputStream cOut = readCompression.decompress(buffer);
 
+        if (cOut == buffer && readCipher instanceof TlsInPlaceCipher)
+        {
+            int plaintextLength = ((TlsInPlaceCipher)readCipher).decodeCiphertextInPlace(type, buf, 0, len);
+            handler.processData(type, buf, 0, plaintextLength);
+            return;
+        }
+
+        byte[] decoded = decodeAndVerify(type, cOut, buf, len);
+        handler.processData(type, decoded, 0, decoded.length);
+    }
+
+    protected byte[] decodeAndVerify(short type, OutputStream cOut, byte[] buf, int len) throws IOException
+    {
+        byte[] decoded = readCipher.decodeCiphertext(type, buf, 0, len);
+        countAllocation(decoded.length);
+
         if (cOut == buffer)
         {
             return decoded;
@@ -96,6 +226,18 @@ class RecordStream
 
         OutputStream cOut = writeCompression.compress(buffer);
 
+        if (cOut == buffer && writeCipher instanceof TlsInPlaceCipher)
+        {
+            TlsInPlaceCipher cipher = (TlsInPlaceCipher)writeCipher;
+            byte[] record = getWriteBuffer(RECORD_HEADER_LENGTH + cipher.getCiphertextLimit(len));
+            int ciphertextLength = cipher.encodePlaintext(type, message, offset, len, record,
+                RECORD_HEADER_LENGTH);
+            writeRecordHeader(type, ciphertextLength, record);
+            os.write(record, 0, RECORD_HEADER_LENGTH + ciphertextLength);
+            os.flush();
+            return;
+        }
+
         byte[] ciphertext;
         if (cOut == buffer)
         {
@@ -108,21 +250,95 @@ class RecordStream
             byte[] compressed = getBufferContents();
             ciphertext = writeCipher.encodePlaintext(type, compressed, 0, compressed.length);
         }
+        countAllocation(ciphertext.length);
 
-        byte[] writeMessage = new byte[ciphertext.length + 5];
-        TlsUtils.writeUint8(type, writeMessage, 0);
-        // TODO In light of versioning, what should we send here?
-//        TlsUtils.writeVersion(context.getServerVersion(), writeMessage, 1);
-        TlsUtils.writeVersion(ProtocolVersion.TLSv10, writeMessage, 1);
-        TlsUtils.writeUint16(ciphertext.length, writeMessage, 3);
-        System.arraycopy(ciphertext, 0, writeMessage, 5, ciphertext.length);
-        os.write(writeMessage);
+        writeRecordHeader(type, ciphertext.length, writeHeader);
+        os.write(writeHeader, 0, RECORD_HEADER_LENGTH);
+        os.write(ciphertext, 0, ciphertext.length);
         os.flush();
     }
 
+    private void writeRecordHeader(short type, int length, byte[] buf) throws IOException
+    {
+        TlsUtils.writeUint8(type, buf, 0);
+        TlsUtils.writeVersion(recordVersion == null ? ProtocolVersion.TLSv10 : recordVersion, buf, 1);
+        TlsUtils.writeUint16(length, buf, 3);
+    }
+
+    /**
+     * The version a block cipher suite is negotiated at decides whether each record gets a
+     * fresh IV (TLS 1.1 and later) or chains on from the last one, in which case the first
+     * block of application data needs protecting with an empty record before it.
+     */
+    boolean isWriteCipherChainingIV()
+    {
+        return writeCipher instanceof TlsBlockCipher && !TlsUtils.isTLSv11(context);
+    }
+
+    /**
+     * @return the number of buffers the record layer has had to allocate so far, which stops
+     *         growing once the connection is carrying full sized records through a cipher that
+     *         works in place.
+     */
+    long getAllocationCount()
+    {
+        return allocationCount;
+    }
+
+    /**
+     * @return the total size of the buffers counted by {@link #getAllocationCount()}.
+     */
+    long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+    private byte[] getReadBuffer(int size)
+    {
+        if (readBuffer.length < size)
+        {
+            readBuffer = allocateBuffer(size);
+        }
+        return readBuffer;
+    }
+
+    private byte[] getWriteBuffer(int size)
+    {
+        if (writeBuffer.length < size)
+        {
+            writeBuffer = allocateBuffer(size);
+        }
+        return writeBuffer;
+    }
+
+    /*
+     * Buffers grow in powers of two, so a connection settles on its final sizes after a few
+     * records; no record needs more than the largest ciphertext allowed plus its header.
+     */
+    private byte[] allocateBuffer(int size)
+    {
+        int capacity = Math.min(ByteQueue.nextTwoPow(size - 1), RECORD_HEADER_LENGTH + MAX_CIPHERTEXT_LENGTH);
+        capacity = Math.max(capacity, size);
+        countAllocation(capacity);
+        return new byte[capacity];
+    }
+
+    private void countAllocation(int size)
+    {
+        ++allocationCount;
+        allocatedBytes += size;
+    }
+
     void updateHandshakeData(byte[] message, int offset, int len)
     {
-        hash.update(message, offset, len);
+        if (hash == null)
+        {
+            handshakeBuffer.write(message, offset, len);
+        }
+        else
+        {
+            hash.update(message, offset, len);
+        }
     }
 
     /**
@@ -130,7 +346,15 @@ class RecordStream
      */
     byte[] getCurrentHash(byte[] sender)
     {
-        Digest d = new CombinedHash(hash);
+        Digest d;
+        if (prfHashAlgorithm == HashAlgorithm.none)
+        {
+            d = new CombinedHash((CombinedHash)hash);
+        }
+        else
+        {
+            d = TlsUtils.cloneHash(prfHashAlgorithm, hash);
+        }
 
         boolean isTls = context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv10.getFullVersion();
 
@@ -148,13 +372,16 @@ class RecordStream
     protected void close() throws IOException
     {
         IOException e = null;
-        try
+        if (is != null)
         {
-            is.close();
-        }
-        catch (IOException ex)
-        {
-            e = ex;
+            try
+            {
+                is.close();
+            }
+            catch (IOException ex)
+            {
+                e = ex;
+            }
         }
         try
         {
@@ -79,11 +79,20 @@ public abstract class SRPTlsClient implements TlsClient
         }
     }
 
+    public TlsSession getSessionToResume()
+    {
+        return null;
+    }
+
     public void notifySessionID(byte[] sessionID)
     {
         // Currently ignored 
     }
 
+    public void notifyNewSession(TlsSession session)
+    {
+    }
+
     public void notifySelectedCipherSuite(int selectedCipherSuite)
     {
         this.selectedCipherSuite = selectedCipherSuite;
@@ -1,10 +1,16 @@
 package org.spongycastle.crypto.tls;
 
+import java.util.Vector;
+
 public class SecurityParameters
 {
     byte[] clientRandom = null;
     byte[] serverRandom = null;
     byte[] masterSecret = null;
+    int prfAlgorithm = PRFAlgorithm.tls_prf_legacy;
+
+    // Vector of SignatureAndHashAlgorithm the client sent, if we are the server
+    Vector clientSignatureAlgorithms = null;
 
     public byte[] getClientRandom()
     {
@@ -20,4 +26,12 @@ public class SecurityParameters
     {
         return masterSecret;
     }
+
+    /**
+     * @return {@link PRFAlgorithm}
+     */
+    public int getPrfAlgorithm()
+    {
+        return prfAlgorithm;
+    }
 }
@@ -0,0 +1,95 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.spongycastle.crypto.Signer;
+import org.spongycastle.crypto.io.SignerInputStream;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
+import org.spongycastle.util.io.TeeInputStream;
+
+/**
+ * Checks the signature over the parameters in a ServerKeyExchange message.
+ * <p/>
+ * Before TLS 1.2 the signer is fixed by the key exchange and the parameters are hashed as
+ * they are read. In TLS 1.2 the hash is only named after the parameters (RFC 5246 7.4.3),
+ * so they are kept until then.
+ */
+class ServerKeyExchangeVerifier
+{
+    private TlsContext context;
+    private TlsSigner tlsSigner;
+    private AsymmetricKeyParameter serverPublicKey;
+
+    private Signer signer = null;
+    private ByteArrayOutputStream signedParams = null;
+    private InputStream paramsInput;
+
+    ServerKeyExchangeVerifier(TlsContext context, TlsSigner tlsSigner,
+        AsymmetricKeyParameter serverPublicKey, InputStream is)
+    {
+        this.context = context;
+        this.tlsSigner = tlsSigner;
+        this.serverPublicKey = serverPublicKey;
+
+        if (TlsUtils.isTLSv12(context))
+        {
+            this.signedParams = new ByteArrayOutputStream();
+            this.paramsInput = new TeeInputStream(is, signedParams);
+        }
+        else
+        {
+            this.signer = initSigner(tlsSigner.createVerifyer(serverPublicKey));
+            this.paramsInput = new SignerInputStream(is, signer);
+        }
+    }
+
+    /**
+     * @return the stream the signed parameters should be read from.
+     */
+    InputStream getParamsInput()
+    {
+        return paramsInput;
+    }
+
+    /**
+     * Read the signature following the parameters and check it.
+     */
+    void verify(InputStream is) throws IOException
+    {
+        if (signedParams != null)
+        {
+            SignatureAndHashAlgorithm algorithm = SignatureAndHashAlgorithm.parse(is);
+
+            /*
+             * RFC 5246 7.4.3. The hash and signature algorithms used in the signature MUST be
+             * one of those present in the supported_signature_algorithms we sent.
+             */
+            if (algorithm.getSignature() != tlsSigner.getSignatureAlgorithm()
+                || !TlsUtils.getDefaultSupportedSignatureAlgorithms().contains(algorithm))
+            {
+                throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+            }
+
+            this.signer = initSigner(tlsSigner.createVerifyer(algorithm.getHash(), serverPublicKey));
+
+            byte[] params = signedParams.toByteArray();
+            signer.update(params, 0, params.length);
+        }
+
+        byte[] sigByte = TlsUtils.readOpaque16(is);
+        if (!signer.verifySignature(sigByte))
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_certificate);
+        }
+    }
+
+    private Signer initSigner(Signer signer)
+    {
+        SecurityParameters securityParameters = context.getSecurityParameters();
+        signer.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
+        signer.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
+        return signer;
+    }
+}
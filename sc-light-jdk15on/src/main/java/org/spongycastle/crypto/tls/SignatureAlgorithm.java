@@ -0,0 +1,16 @@
+package org.spongycastle.crypto.tls;
+
+/**
+ * RFC 5246 7.4.1.4.1
+ */
+public class SignatureAlgorithm
+{
+    public static final short anonymous = 0;
+    public static final short rsa = 1;
+    public static final short dsa = 2;
+    public static final short ecdsa = 3;
+
+    /*
+     * reserved (4..255)
+     */
+}
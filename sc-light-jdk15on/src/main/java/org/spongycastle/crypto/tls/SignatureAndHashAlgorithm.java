@@ -0,0 +1,85 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * RFC 5246 7.4.1.4.1
+ */
+public class SignatureAndHashAlgorithm
+{
+    private short hash;
+    private short signature;
+
+    /**
+     * @param hash      {@link HashAlgorithm}
+     * @param signature {@link SignatureAlgorithm}
+     */
+    public SignatureAndHashAlgorithm(short hash, short signature)
+    {
+        if ((hash & 0xFF) != hash)
+        {
+            throw new IllegalArgumentException("'hash' should be a uint8");
+        }
+        if ((signature & 0xFF) != signature)
+        {
+            throw new IllegalArgumentException("'signature' should be a uint8");
+        }
+        if (signature == SignatureAlgorithm.anonymous)
+        {
+            throw new IllegalArgumentException("'signature' MUST NOT be \"anonymous\"");
+        }
+
+        this.hash = hash;
+        this.signature = signature;
+    }
+
+    /**
+     * @return {@link HashAlgorithm}
+     */
+    public short getHash()
+    {
+        return hash;
+    }
+
+    /**
+     * @return {@link SignatureAlgorithm}
+     */
+    public short getSignature()
+    {
+        return signature;
+    }
+
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof SignatureAndHashAlgorithm))
+        {
+            return false;
+        }
+        SignatureAndHashAlgorithm other = (SignatureAndHashAlgorithm)obj;
+        return other.getHash() == getHash() && other.getSignature() == getSignature();
+    }
+
+    public int hashCode()
+    {
+        return (getHash() << 16) | getSignature();
+    }
+
+    public void encode(OutputStream output) throws IOException
+    {
+        TlsUtils.writeUint8(hash, output);
+        TlsUtils.writeUint8(signature, output);
+    }
+
+    public static SignatureAndHashAlgorithm parse(InputStream input) throws IOException
+    {
+        short hash = TlsUtils.readUint8(input);
+        short signature = TlsUtils.readUint8(input);
+        if (signature == SignatureAlgorithm.anonymous)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+        return new SignatureAndHashAlgorithm(hash, signature);
+    }
+}
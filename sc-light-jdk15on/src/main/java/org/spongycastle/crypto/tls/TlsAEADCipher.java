@@ -0,0 +1,206 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+
+/**
+ * A TLS 1.2 AEAD cipher (RFC 5246 6.2.3.3), with the nonce construction of RFC 5288 3:
+ * a 4 byte implicit salt from the key block followed by an 8 byte explicit part sent in
+ * each record. We use the sequence number as the explicit part, which guarantees it is
+ * never repeated under one key.
+ */
+public class TlsAEADCipher implements TlsInPlaceCipher
+{
+    private static final int NONCE_IMPLICIT_LENGTH = 4;
+    private static final int NONCE_EXPLICIT_LENGTH = 8;
+
+    protected TlsContext context;
+    protected int macSize;
+
+    protected AEADBlockCipher encryptCipher;
+    protected AEADBlockCipher decryptCipher;
+
+    protected byte[] encryptImplicitNonce, decryptImplicitNonce;
+
+    protected long writeSequenceNumber = 0;
+    protected long readSequenceNumber = 0;
+
+    // Reused from record to record; the AEAD ciphers take a copy of what they need in init
+    private byte[] encryptNonce = new byte[NONCE_IMPLICIT_LENGTH + NONCE_EXPLICIT_LENGTH];
+    private byte[] decryptNonce = new byte[NONCE_IMPLICIT_LENGTH + NONCE_EXPLICIT_LENGTH];
+    private byte[] encryptAdditionalData = new byte[13];
+    private byte[] decryptAdditionalData = new byte[13];
+
+    public TlsAEADCipher(TlsContext context, AEADBlockCipher encryptCipher,
+        AEADBlockCipher decryptCipher, int cipherKeySize, int macSize) throws IOException
+    {
+        if (!TlsUtils.isTLSv12(context))
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        this.context = context;
+        this.macSize = macSize;
+        this.encryptCipher = encryptCipher;
+        this.decryptCipher = decryptCipher;
+
+        int key_block_size = (2 * cipherKeySize) + (2 * NONCE_IMPLICIT_LENGTH);
+
+        byte[] key_block = TlsUtils.calculateKeyBlock(context, key_block_size);
+
+        int offset = 0;
+
+        KeyParameter client_write_key = new KeyParameter(key_block, offset, cipherKeySize);
+        offset += cipherKeySize;
+        KeyParameter server_write_key = new KeyParameter(key_block, offset, cipherKeySize);
+        offset += cipherKeySize;
+
+        byte[] client_write_IV = new byte[NONCE_IMPLICIT_LENGTH];
+        System.arraycopy(key_block, offset, client_write_IV, 0, NONCE_IMPLICIT_LENGTH);
+        offset += NONCE_IMPLICIT_LENGTH;
+        byte[] server_write_IV = new byte[NONCE_IMPLICIT_LENGTH];
+        System.arraycopy(key_block, offset, server_write_IV, 0, NONCE_IMPLICIT_LENGTH);
+        offset += NONCE_IMPLICIT_LENGTH;
+
+        KeyParameter encryptKey, decryptKey;
+        if (context.isServer())
+        {
+            encryptKey = server_write_key;
+            decryptKey = client_write_key;
+            this.encryptImplicitNonce = server_write_IV;
+            this.decryptImplicitNonce = client_write_IV;
+        }
+        else
+        {
+            encryptKey = client_write_key;
+            decryptKey = server_write_key;
+            this.encryptImplicitNonce = client_write_IV;
+            this.decryptImplicitNonce = server_write_IV;
+        }
+
+        /*
+         * Key the ciphers once; per record only the nonce and additional data change, which
+         * lets GCM keep its multiplication tables for the life of the connection.
+         */
+        byte[] dummyNonce = new byte[NONCE_IMPLICIT_LENGTH + NONCE_EXPLICIT_LENGTH];
+        encryptCipher.init(true, new AEADParameters(encryptKey, 8 * macSize, dummyNonce, null));
+        decryptCipher.init(false, new AEADParameters(decryptKey, 8 * macSize, dummyNonce, null));
+    }
+
+    public byte[] encodePlaintext(short type, byte[] plaintext, int offset, int len) throws IOException
+    {
+        byte[] output = new byte[getCiphertextLimit(len)];
+        encodePlaintext(type, plaintext, offset, len, output, 0);
+        return output;
+    }
+
+    public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len) throws IOException
+    {
+        byte[] buf = new byte[len];
+        System.arraycopy(ciphertext, offset, buf, 0, len);
+        int plaintextLength = decodeCiphertextInPlace(type, buf, 0, len);
+        byte[] plaintext = new byte[plaintextLength];
+        System.arraycopy(buf, 0, plaintext, 0, plaintextLength);
+        return plaintext;
+    }
+
+    public int getCiphertextLimit(int plaintextLength)
+    {
+        return NONCE_EXPLICIT_LENGTH + plaintextLength + macSize;
+    }
+
+    public int encodePlaintext(short type, byte[] plaintext, int offset, int len, byte[] output, int outOff)
+        throws IOException
+    {
+        long seqNo = writeSequenceNumber++;
+
+        System.arraycopy(encryptImplicitNonce, 0, encryptNonce, 0, NONCE_IMPLICIT_LENGTH);
+        TlsUtils.writeUint64(seqNo, encryptNonce, NONCE_IMPLICIT_LENGTH);
+
+        System.arraycopy(encryptNonce, NONCE_IMPLICIT_LENGTH, output, outOff, NONCE_EXPLICIT_LENGTH);
+        int outputPos = outOff + NONCE_EXPLICIT_LENGTH;
+
+        encryptCipher.init(true, new AEADParameters(null, 8 * macSize, encryptNonce,
+            getAdditionalData(encryptAdditionalData, seqNo, type, len)));
+
+        outputPos += encryptCipher.processBytes(plaintext, offset, len, output, outputPos);
+        try
+        {
+            outputPos += encryptCipher.doFinal(output, outputPos);
+        }
+        catch (InvalidCipherTextException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        if (outputPos != outOff + getCiphertextLimit(len))
+        {
+            // NOTE: Existing AEAD cipher implementations all give exact output lengths
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        return outputPos - outOff;
+    }
+
+    public int decodeCiphertextInPlace(short type, byte[] ciphertext, int offset, int len) throws IOException
+    {
+        if (len < NONCE_EXPLICIT_LENGTH + macSize)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        long seqNo = readSequenceNumber++;
+
+        System.arraycopy(decryptImplicitNonce, 0, decryptNonce, 0, NONCE_IMPLICIT_LENGTH);
+        System.arraycopy(ciphertext, offset, decryptNonce, NONCE_IMPLICIT_LENGTH, NONCE_EXPLICIT_LENGTH);
+
+        int inputOffset = offset + NONCE_EXPLICIT_LENGTH;
+        int inputLength = len - NONCE_EXPLICIT_LENGTH;
+        int plaintextLength = inputLength - macSize;
+
+        /*
+         * The plaintext is written over the explicit nonce and on, always behind the ciphertext
+         * still to be read.
+         */
+        int outputPos = offset;
+
+        decryptCipher.init(false, new AEADParameters(null, 8 * macSize, decryptNonce,
+            getAdditionalData(decryptAdditionalData, seqNo, type, plaintextLength)));
+
+        outputPos += decryptCipher.processBytes(ciphertext, inputOffset, inputLength, ciphertext, outputPos);
+        try
+        {
+            outputPos += decryptCipher.doFinal(ciphertext, outputPos);
+        }
+        catch (InvalidCipherTextException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.bad_record_mac);
+        }
+
+        if (outputPos != offset + plaintextLength)
+        {
+            // NOTE: Existing AEAD cipher implementations all give exact output lengths
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        return plaintextLength;
+    }
+
+    /*
+     * RFC 5246 6.2.3.3. additional_data = seq_num + TLSCompressed.type +
+     * TLSCompressed.version + TLSCompressed.length
+     */
+    protected byte[] getAdditionalData(byte[] additional_data, long seqNo, short type, int len) throws IOException
+    {
+        TlsUtils.writeUint64(seqNo, additional_data, 0);
+        TlsUtils.writeUint8(type, additional_data, 8);
+        TlsUtils.writeVersion(context.getServerVersion(), additional_data, 9);
+        TlsUtils.writeUint16(len, additional_data, 11);
+
+        return additional_data;
+    }
+}
@@ -7,15 +7,14 @@ import org.spongycastle.crypto.BlockCipher;
 import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
-import org.spongycastle.util.Arrays;
 
 /**
- * A generic TLS 1.0 / SSLv3 block cipher.
+ * A generic TLS 1.0 - 1.2 / SSLv3 block cipher.
  * This can be used for AES or 3DES for example.
  */
-public class TlsBlockCipher implements TlsCipher
+public class TlsBlockCipher implements TlsInPlaceCipher
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
 
     protected BlockCipher encryptCipher;
     protected BlockCipher decryptCipher;
@@ -23,6 +22,10 @@ public class TlsBlockCipher implements TlsCipher
     protected TlsMac writeMac;
     protected TlsMac readMac;
 
+    // Scratch space reused from record to record
+    private byte[] explicitIV = null;
+    private byte[] calculatedMac = null;
+
 	public TlsMac getWriteMac()
 	{
 		return writeMac;
@@ -33,7 +36,7 @@ public class TlsBlockCipher implements TlsCipher
 		return readMac;
 	}
 
-    public TlsBlockCipher(TlsClientContext context, BlockCipher encryptCipher,
+    public TlsBlockCipher(TlsContext context, BlockCipher encryptCipher,
         BlockCipher decryptCipher, Digest writeDigest, Digest readDigest, int cipherKeySize)
     {
         this.context = context;
@@ -46,21 +49,40 @@ public class TlsBlockCipher implements TlsCipher
 
         byte[] key_block = TlsUtils.calculateKeyBlock(context, key_block_size);
 
+        /*
+         * RFC 2246 6.3. The key block holds the client's write secrets before the server's, so
+         * which of each pair we use for writing depends on which end we are.
+         */
+        boolean isServer = context.isServer();
+
+        Digest clientWriteDigest = isServer ? readDigest : writeDigest;
+        Digest serverWriteDigest = isServer ? writeDigest : readDigest;
+        BlockCipher clientWriteCipher = isServer ? decryptCipher : encryptCipher;
+        BlockCipher serverWriteCipher = isServer ? encryptCipher : decryptCipher;
+
         int offset = 0;
 
         // Init MACs
-        writeMac = new TlsMac(context, writeDigest, key_block, offset, writeDigest.getDigestSize());
-        offset += writeDigest.getDigestSize();
-        readMac = new TlsMac(context, readDigest, key_block, offset, readDigest.getDigestSize());
-        offset += readDigest.getDigestSize();
+        TlsMac clientWriteMac = new TlsMac(context, clientWriteDigest, key_block, offset,
+            clientWriteDigest.getDigestSize());
+        offset += clientWriteDigest.getDigestSize();
+        TlsMac serverWriteMac = new TlsMac(context, serverWriteDigest, key_block, offset,
+            serverWriteDigest.getDigestSize());
+        offset += serverWriteDigest.getDigestSize();
 
-        // Init Ciphers
-        this.initCipher(true, encryptCipher, key_block, cipherKeySize, offset, offset
-            + (cipherKeySize * 2));
-        offset += cipherKeySize;
-        this.initCipher(false, decryptCipher, key_block, cipherKeySize, offset, offset
-            + cipherKeySize + encryptCipher.getBlockSize());
+        this.writeMac = isServer ? serverWriteMac : clientWriteMac;
+        this.readMac = isServer ? clientWriteMac : serverWriteMac;
 
+        // Init Ciphers
+        int clientKeyOffset = offset;
+        int serverKeyOffset = clientKeyOffset + cipherKeySize;
+        int clientIVOffset = serverKeyOffset + cipherKeySize;
+        int serverIVOffset = clientIVOffset + clientWriteCipher.getBlockSize();
+
+        this.initCipher(!isServer, clientWriteCipher, key_block, cipherKeySize, clientKeyOffset,
+            clientIVOffset);
+        this.initCipher(isServer, serverWriteCipher, key_block, cipherKeySize, serverKeyOffset,
+            serverIVOffset);
     }
 
     protected void initCipher(boolean forEncryption, BlockCipher cipher, byte[] key_block,
@@ -73,6 +95,35 @@ public class TlsBlockCipher implements TlsCipher
     }
 
     public byte[] encodePlaintext(short type, byte[] plaintext, int offset, int len)
+    {
+        byte[] outbuf = new byte[getCiphertextLimit(len)];
+        int totalsize = encodePlaintext(type, plaintext, offset, len, outbuf, 0);
+        if (totalsize == outbuf.length)
+        {
+            return outbuf;
+        }
+        byte[] result = new byte[totalsize];
+        System.arraycopy(outbuf, 0, result, 0, totalsize);
+        return result;
+    }
+
+    public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len)
+        throws IOException
+    {
+        int plaintextlength = decodeCiphertextInPlace(type, ciphertext, offset, len);
+        byte[] plaintext = new byte[plaintextlength];
+        System.arraycopy(ciphertext, offset, plaintext, 0, plaintextlength);
+        return plaintext;
+    }
+
+    public int getCiphertextLimit(int plaintextLength)
+    {
+        // explicit IV, MAC and at most 255 bytes of padding plus its length
+        int blocksize = encryptCipher.getBlockSize();
+        return blocksize + plaintextLength + writeMac.getSize() + 256;
+    }
+
+    public int encodePlaintext(short type, byte[] plaintext, int offset, int len, byte[] outbuf, int outOff)
     {
         int blocksize = encryptCipher.getBlockSize();
         int minPaddingSize = blocksize - ((len + writeMac.getSize() + 1) % blocksize);
@@ -88,30 +139,49 @@ public class TlsBlockCipher implements TlsCipher
             paddingSize += (actualExtraPadBlocks * blocksize);
         }
 
-        int totalsize = len + writeMac.getSize() + paddingSize + 1;
-        byte[] outbuf = new byte[totalsize];
-        System.arraycopy(plaintext, offset, outbuf, 0, len);
-        byte[] mac = writeMac.calculateMac(type, plaintext, offset, len);
-        System.arraycopy(mac, 0, outbuf, len, mac.length);
-        int paddoffset = len + mac.length;
+        /*
+         * RFC 4346 6.2.3.2. From TLS 1.1 each record starts with an explicit IV. Encrypting a
+         * random block as part of the CBC chain produces one (option (2)(b)), and the peer's
+         * decryption of the following blocks then no longer depends on earlier records.
+         */
+        int ivSize = TlsUtils.isTLSv11(context) ? blocksize : 0;
+
+        int totalsize = ivSize + len + writeMac.getSize() + paddingSize + 1;
+        if (ivSize > 0)
+        {
+            if (explicitIV == null)
+            {
+                explicitIV = new byte[ivSize];
+            }
+            context.getSecureRandom().nextBytes(explicitIV);
+            System.arraycopy(explicitIV, 0, outbuf, outOff, ivSize);
+        }
+        System.arraycopy(plaintext, offset, outbuf, outOff + ivSize, len);
+        int macSize = writeMac.calculateMac(type, plaintext, offset, len, outbuf, outOff + ivSize + len);
+        int paddoffset = outOff + ivSize + len + macSize;
         for (int i = 0; i <= paddingSize; i++)
         {
             outbuf[i + paddoffset] = (byte)paddingSize;
         }
         for (int i = 0; i < totalsize; i += blocksize)
         {
-            encryptCipher.processBlock(outbuf, i, outbuf, i);
+            encryptCipher.processBlock(outbuf, outOff + i, outbuf, outOff + i);
         }
-        return outbuf;
+        return totalsize;
     }
 
-    public byte[] decodeCiphertext(short type, byte[] ciphertext, int offset, int len)
+    public int decodeCiphertextInPlace(short type, byte[] ciphertext, int offset, int len)
         throws IOException
     {
-        // TODO TLS 1.1 (RFC 4346) introduces an explicit IV
-
-        int minLength = readMac.getSize() + 1;
         int blocksize = decryptCipher.getBlockSize();
+
+        /*
+         * RFC 4346 6.2.3.2. Decrypting the explicit IV as part of the chain is harmless; the
+         * block it yields is discarded and the rest decrypts against it.
+         */
+        int ivSize = TlsUtils.isTLSv11(context) ? blocksize : 0;
+
+        int minLength = ivSize + readMac.getSize() + 1;
         boolean decrypterror = false;
 
         /*
@@ -186,16 +256,25 @@ public class TlsBlockCipher implements TlsCipher
          * mac verification failed or padding verification failed.
          */
         int plaintextlength = len - minLength - paddingsize;
-        byte[] calculatedMac = readMac.calculateMac(type, ciphertext, offset, plaintextlength);
+        int plaintextoffset = offset + ivSize;
+
+        if (calculatedMac == null)
+        {
+            calculatedMac = new byte[readMac.getSize()];
+        }
+        readMac.calculateMac(type, ciphertext, plaintextoffset, plaintextlength, calculatedMac, 0);
 
         /*
          * Check all bytes in the mac (constant-time comparison).
          */
-        byte[] decryptedMac = new byte[calculatedMac.length];
-        System.arraycopy(ciphertext, offset + plaintextlength, decryptedMac, 0,
-            calculatedMac.length);
+        int macoffset = plaintextoffset + plaintextlength;
+        int macdiff = 0;
+        for (int i = 0; i < calculatedMac.length; ++i)
+        {
+            macdiff |= (calculatedMac[i] ^ ciphertext[macoffset + i]);
+        }
 
-        if (!Arrays.constantTimeAreEqual(calculatedMac, decryptedMac))
+        if (macdiff != 0)
         {
             decrypterror = true;
         }
@@ -208,9 +287,11 @@ public class TlsBlockCipher implements TlsCipher
             throw new TlsFatalAlert(AlertDescription.bad_record_mac);
         }
 
-        byte[] plaintext = new byte[plaintextlength];
-        System.arraycopy(ciphertext, offset, plaintext, 0, plaintextlength);
-        return plaintext;
+        if (ivSize > 0)
+        {
+            System.arraycopy(ciphertext, plaintextoffset, ciphertext, offset, plaintextlength);
+        }
+        return plaintextlength;
     }
 
     protected int chooseExtraPadBlocks(SecureRandom r, int max)
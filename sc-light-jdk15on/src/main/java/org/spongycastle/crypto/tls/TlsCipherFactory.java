@@ -7,5 +7,5 @@ public interface TlsCipherFactory
     /**
      * See enumeration classes EncryptionAlgorithm and DigestAlgorithm for appropriate argument values
      */
-    TlsCipher createCipher(TlsClientContext context, int encryptionAlgorithm, int digestAlgorithm) throws IOException;
+    TlsCipher createCipher(TlsContext context, int encryptionAlgorithm, int digestAlgorithm) throws IOException;
 }
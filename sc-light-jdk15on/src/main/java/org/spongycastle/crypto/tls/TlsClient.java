@@ -9,6 +9,12 @@ public interface TlsClient
 
     ProtocolVersion getClientVersion();
 
+    /**
+     * Return a session from an earlier connection to the same server to offer for resumption,
+     * or null to always do a full handshake.
+     */
+    TlsSession getSessionToResume();
+
     int[] getCipherSuites();
 
     short[] getCompressionMethods();
@@ -20,6 +26,12 @@ public interface TlsClient
 
     void notifySessionID(byte[] sessionID);
 
+    /**
+     * Called once a handshake completes with a session the server will let us resume, either
+     * from a full handshake or because the server issued a fresh ticket for a resumed one.
+     */
+    void notifyNewSession(TlsSession session);
+
     void notifySelectedCipherSuite(int selectedCipherSuite);
 
     void notifySelectedCompressionMethod(short selectedCompressionMethod);
@@ -0,0 +1,28 @@
+package org.spongycastle.crypto.tls;
+
+import java.security.SecureRandom;
+
+/**
+ * The state of one connection that the pieces of a cipher suite need, whichever end of the
+ * connection we are.
+ */
+public interface TlsContext
+{
+    SecureRandom getSecureRandom();
+
+    SecurityParameters getSecurityParameters();
+
+    ProtocolVersion getClientVersion();
+
+    ProtocolVersion getServerVersion();
+
+    /**
+     * @return true if we are the server, in which case the server write keys are the ones we
+     *         encrypt with.
+     */
+    boolean isServer();
+
+    Object getUserObject();
+
+    void setUserObject(Object userObject);
+}
@@ -23,7 +23,7 @@ class TlsDHKeyExchange implements TlsKeyExchange
     protected static final BigInteger ONE = BigInteger.valueOf(1);
     protected static final BigInteger TWO = BigInteger.valueOf(2);
 
-    protected TlsClientContext context;
+    protected TlsContext context;
     protected int keyExchange;
     protected TlsSigner tlsSigner;
 
@@ -32,7 +32,7 @@ class TlsDHKeyExchange implements TlsKeyExchange
     protected TlsAgreementCredentials agreementCredentials;
     protected DHPrivateKeyParameters dhAgreeClientPrivateKey = null;
 
-    TlsDHKeyExchange(TlsClientContext context, int keyExchange)
+    TlsDHKeyExchange(TlsContext context, int keyExchange)
     {
         switch (keyExchange)
         {
@@ -23,6 +23,15 @@ abstract class TlsDSASigner implements TlsSigner
         return signer.generateSignature();
     }
 
+    public byte[] calculateRawSignature(SecureRandom secureRandom, AsymmetricKeyParameter privateKey,
+        short hashAlgorithm, byte[] hash) throws CryptoException
+    {
+        Signer signer = new DSADigestSigner(createDSAImpl(), new NullDigest());
+        signer.init(true, new ParametersWithRandom(privateKey, secureRandom));
+        signer.update(hash, 0, hash.length);
+        return signer.generateSignature();
+    }
+
     public Signer createVerifyer(AsymmetricKeyParameter publicKey)
     {
         Signer verifyer = new DSADigestSigner(createDSAImpl(), new SHA1Digest());
@@ -30,5 +39,12 @@ abstract class TlsDSASigner implements TlsSigner
         return verifyer;
     }
 
+    public Signer createVerifyer(short hashAlgorithm, AsymmetricKeyParameter publicKey)
+    {
+        Signer verifyer = new DSADigestSigner(createDSAImpl(), TlsUtils.createHash(hashAlgorithm));
+        verifyer.init(false, publicKey);
+        return verifyer;
+    }
+
     protected abstract DSA createDSAImpl();
 }
@@ -12,6 +12,11 @@ class TlsDSSSigner extends TlsDSASigner
         return publicKey instanceof DSAPublicKeyParameters;
     }
 
+    public short getSignatureAlgorithm()
+    {
+        return SignatureAlgorithm.dsa;
+    }
+
     protected DSA createDSAImpl()
     {
         return new DSASigner();
@@ -1,24 +1,49 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
-import org.spongycastle.crypto.Signer;
-import org.spongycastle.crypto.io.SignerInputStream;
+import org.spongycastle.asn1.x509.KeyUsage;
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
 import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.math.ec.ECPoint;
 
 /**
  * ECDHE key exchange (see RFC 4492)
  */
-class TlsECDHEKeyExchange extends TlsECDHKeyExchange
+class TlsECDHEKeyExchange extends TlsECDHKeyExchange implements TlsServerKeyExchange
 {
-    TlsECDHEKeyExchange(TlsClientContext context, int keyExchange)
+    // Server side only
+    protected int namedCurve;
+    protected TlsEphemeralKeyCache keyCache;
+    protected TlsServerCredentials serverCredentials = null;
+    protected ECPrivateKeyParameters ecAgreeServerPrivateKey = null;
+    protected ECPublicKeyParameters ecAgreeClientPublicKey = null;
+
+    TlsECDHEKeyExchange(TlsContext context, int keyExchange)
     {
         super(context, keyExchange);
     }
 
+    /**
+     * Constructor for the server side.
+     *
+     * @param namedCurve the {@link NamedCurve} to generate our key on.
+     * @param keyCache the keys to share with other handshakes, or null to always generate a
+     *            fresh one.
+     */
+    TlsECDHEKeyExchange(TlsContext context, int keyExchange, int namedCurve,
+        TlsEphemeralKeyCache keyCache)
+    {
+        super(context, keyExchange);
+
+        this.namedCurve = namedCurve;
+        this.keyCache = keyCache;
+    }
+
     public void skipServerKeyExchange() throws IOException
     {
         throw new TlsFatalAlert(AlertDescription.unexpected_message);
@@ -27,10 +52,9 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
     public void processServerKeyExchange(InputStream is)
         throws IOException
     {
-        SecurityParameters securityParameters = context.getSecurityParameters();
-
-        Signer signer = initSigner(tlsSigner, securityParameters);
-        InputStream sigIn = new SignerInputStream(is, signer);
+        ServerKeyExchangeVerifier verifier = new ServerKeyExchangeVerifier(context, tlsSigner,
+            this.serverPublicKey, is);
+        InputStream sigIn = verifier.getParamsInput();
 
         short curveType = TlsUtils.readUint8(sigIn);
         ECDomainParameters curve_params;
@@ -53,11 +77,7 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
 
         byte[] publicBytes = TlsUtils.readOpaque8(sigIn);
 
-        byte[] sigByte = TlsUtils.readOpaque16(is);
-        if (!signer.verifySignature(sigByte))
-        {
-            throw new TlsFatalAlert(AlertDescription.bad_certificate);
-        }
+        verifier.verify(is);
 
         // TODO Check curve_params not null
 
@@ -90,6 +110,87 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
         }
     }
 
+    public void processServerCredentials(TlsServerCredentials serverCredentials) throws IOException
+    {
+        if (serverCredentials.getSignatureAlgorithm() != tlsSigner.getSignatureAlgorithm())
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        TlsUtils.validateKeyUsage(serverCredentials.getCertificate().certs[0], KeyUsage.digitalSignature);
+
+        this.serverCredentials = serverCredentials;
+    }
+
+    public byte[] generateServerKeyExchange() throws IOException
+    {
+        ECDomainParameters curve_params = NamedCurve.getECParameters(namedCurve);
+        if (curve_params == null)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        AsymmetricCipherKeyPair keyPair;
+        byte[] publicBytes;
+        if (keyCache == null)
+        {
+            keyPair = generateECKeyPair(curve_params);
+            publicBytes = externalizeKey((ECPublicKeyParameters)keyPair.getPublic());
+        }
+        else
+        {
+            TlsEphemeralKeyCache.Entry entry = keyCache.getECKeyPair(namedCurve, curve_params);
+            keyPair = entry.keyPair;
+            publicBytes = entry.encodedPublicKey;
+        }
+
+        this.ecAgreeServerPrivateKey = (ECPrivateKeyParameters)keyPair.getPrivate();
+
+        // RFC 4492 5.4. ServerECDHParams, of which we only send named curves
+        ByteArrayOutputStream params = new ByteArrayOutputStream();
+        TlsUtils.writeUint8(ECCurveType.named_curve, params);
+        TlsUtils.writeUint16(namedCurve, params);
+        TlsUtils.writeOpaque8(publicBytes, params);
+
+        byte[] paramsBytes = params.toByteArray();
+        serverCredentials.generateServerKeyExchangeSignature(context, paramsBytes, params);
+
+        return params.toByteArray();
+    }
+
+    public void processClientKeyExchange(InputStream is) throws IOException
+    {
+        /*
+         * RFC 4492 5.7. With the ECDHE key exchanges the client's key is always ephemeral, so
+         * its public point is never implicit.
+         */
+        byte[] publicBytes = TlsUtils.readOpaque8(is);
+
+        ECDomainParameters curve_params = ecAgreeServerPrivateKey.getParameters();
+
+        ECPoint Q;
+        try
+        {
+            Q = curve_params.getCurve().decodePoint(publicBytes);
+        }
+        catch (RuntimeException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        this.ecAgreeClientPublicKey = validateECPublicKey(new ECPublicKeyParameters(Q, curve_params));
+    }
+
+    public byte[] generatePremasterSecret() throws IOException
+    {
+        if (context.isServer())
+        {
+            return calculateECDHBasicAgreement(ecAgreeClientPublicKey, ecAgreeServerPrivateKey);
+        }
+
+        return super.generatePremasterSecret();
+    }
+
     public void processClientCredentials(TlsCredentials clientCredentials) throws IOException
     {
         if (clientCredentials instanceof TlsSignerCredentials)
@@ -101,12 +202,4 @@ class TlsECDHEKeyExchange extends TlsECDHKeyExchange
             throw new TlsFatalAlert(AlertDescription.internal_error);
         }
     }
-
-    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters)
-    {
-        Signer signer = tlsSigner.createVerifyer(this.serverPublicKey);
-        signer.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
-        signer.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
-        return signer;
-    }
 }
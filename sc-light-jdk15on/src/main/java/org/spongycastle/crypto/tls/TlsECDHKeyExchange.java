@@ -17,6 +17,10 @@ import org.spongycastle.crypto.params.ECKeyGenerationParameters;
 import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.crypto.util.PublicKeyFactory;
+import org.spongycastle.math.ec.ECConstants;
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.math.ec.ECPoint;
 import org.spongycastle.util.BigIntegers;
 
 /**
@@ -24,7 +28,7 @@ import org.spongycastle.util.BigIntegers;
  */
 class TlsECDHKeyExchange implements TlsKeyExchange
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
     protected int keyExchange;
     protected TlsSigner tlsSigner;
 
@@ -33,7 +37,7 @@ class TlsECDHKeyExchange implements TlsKeyExchange
     protected TlsAgreementCredentials agreementCredentials;
     protected ECPrivateKeyParameters ecAgreeClientPrivateKey = null;
 
-    TlsECDHKeyExchange(TlsClientContext context, int keyExchange)
+    TlsECDHKeyExchange(TlsContext context, int keyExchange)
     {
         switch (keyExchange)
         {
@@ -231,10 +235,54 @@ class TlsECDHKeyExchange implements TlsKeyExchange
         return BigIntegers.asUnsignedByteArray(agreement);
     }
 
+    /**
+     * Check a peer's public point before it is used in an agreement (SP 800-56A 5.6.2.3). A
+     * point off the curve, or in a small subgroup, would let the peer learn our private key
+     * a few bits at a time, which matters all the more when it is reused across handshakes.
+     */
     protected ECPublicKeyParameters validateECPublicKey(ECPublicKeyParameters key)
         throws IOException
     {
-        // TODO Check RFC 4492 for validation
+        ECDomainParameters params = key.getParameters();
+        ECPoint Q = key.getQ();
+
+        if (Q.isInfinity())
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        // co-ordinates outside the field are already rejected when the point is decoded
+        Q = Q.normalize();
+
+        if (!isOnCurve(Q))
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
+        if (params.getH().compareTo(ECConstants.ONE) > 0 && !Q.multiply(params.getN()).isInfinity())
+        {
+            throw new TlsFatalAlert(AlertDescription.illegal_parameter);
+        }
+
         return key;
     }
+
+    private static boolean isOnCurve(ECPoint Q)
+    {
+        ECCurve curve = Q.getCurve();
+        ECFieldElement x = Q.getX(), y = Q.getY();
+
+        if (curve instanceof ECCurve.F2m)
+        {
+            // y^2 + xy = x^3 + ax^2 + b
+            ECFieldElement lhs = y.square().add(x.multiply(y));
+            ECFieldElement rhs = x.square().multiply(x.add(curve.getA())).add(curve.getB());
+            return lhs.equals(rhs);
+        }
+
+        // y^2 = x^3 + ax + b
+        ECFieldElement lhs = y.square();
+        ECFieldElement rhs = x.square().add(curve.getA()).multiply(x).add(curve.getB());
+        return lhs.equals(rhs);
+    }
 }
@@ -0,0 +1,172 @@
+package org.spongycastle.crypto.tls;
+
+import java.security.SecureRandom;
+import java.util.Hashtable;
+
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
+import org.spongycastle.crypto.generators.ECKeyPairGenerator;
+import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECKeyGenerationParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+
+/**
+ * Ephemeral ECDH keys a server may use for more than one handshake, one key per named curve.
+ * <p/>
+ * Generating a key pair costs a point multiplication, about as much as the key agreement
+ * itself, so at high connection rates reusing a key for a short while halves the server's EC
+ * work per handshake. The price is forward secrecy: every connection made with a key is
+ * exposed if that key is, so keep the reuse window short. A window of zero generates a fresh
+ * key for every handshake.
+ * <p/>
+ * The cache is thread safe and meant to be shared by all connections to a server.
+ */
+public class TlsEphemeralKeyCache
+{
+    private final SecureRandom random;
+    private final long reuseWindow;
+
+    // Integer -> Entry
+    private final Hashtable entries = new Hashtable();
+    // Integer -> Boolean, the curves a replacement key is being generated for
+    private final Hashtable generating = new Hashtable();
+    private long keysGenerated = 0;
+
+    /**
+     * @param random the source of randomness for generating keys.
+     * @param reuseWindow how long a key may be used for, in milliseconds, or 0 to never reuse
+     *            a key.
+     */
+    public TlsEphemeralKeyCache(SecureRandom random, long reuseWindow)
+    {
+        if (random == null)
+        {
+            throw new IllegalArgumentException("'random' cannot be null");
+        }
+        if (reuseWindow < 0)
+        {
+            throw new IllegalArgumentException("'reuseWindow' cannot be negative");
+        }
+
+        this.random = random;
+        this.reuseWindow = reuseWindow;
+    }
+
+    public long getReuseWindow()
+    {
+        return reuseWindow;
+    }
+
+    /**
+     * @return the number of key pairs generated so far, which against the number of
+     *         handshakes shows how much work the cache is saving.
+     */
+    public long getKeysGenerated()
+    {
+        synchronized (entries)
+        {
+            return keysGenerated;
+        }
+    }
+
+    /**
+     * Only one thread at a time generates the key for a curve. While it does, other
+     * handshakes carry on with the expiring key, or wait if there is none yet.
+     *
+     * @return a key pair on the given curve, and the encoding of its public point.
+     */
+    Entry getECKeyPair(int namedCurve, ECDomainParameters ecParams)
+    {
+        if (reuseWindow == 0)
+        {
+            return generateECKeyPair(ecParams, 0);
+        }
+
+        Integer key = new Integer(namedCurve);
+        long now = System.currentTimeMillis();
+
+        synchronized (entries)
+        {
+            for (;;)
+            {
+                Entry entry = (Entry)entries.get(key);
+                if (entry != null && now - entry.creationTime < reuseWindow)
+                {
+                    return entry;
+                }
+
+                if (!generating.containsKey(key))
+                {
+                    generating.put(key, Boolean.TRUE);
+                    break;
+                }
+
+                if (entry != null)
+                {
+                    return entry;
+                }
+
+                try
+                {
+                    entries.wait();
+                }
+                catch (InterruptedException e)
+                {
+                    // don't hold the handshake up, use a key of its own instead
+                    Thread.currentThread().interrupt();
+                    return generateECKeyPair(ecParams, now);
+                }
+            }
+        }
+
+        // Generated outside the lock, so handshakes on other curves are not held up
+        Entry entry = null;
+        try
+        {
+            entry = generateECKeyPair(ecParams, now);
+        }
+        finally
+        {
+            synchronized (entries)
+            {
+                if (entry != null)
+                {
+                    entries.put(key, entry);
+                }
+                generating.remove(key);
+                entries.notifyAll();
+            }
+        }
+
+        return entry;
+    }
+
+    private Entry generateECKeyPair(ECDomainParameters ecParams, long now)
+    {
+        ECKeyPairGenerator keyPairGenerator = new ECKeyPairGenerator();
+        keyPairGenerator.init(new ECKeyGenerationParameters(ecParams, random));
+        AsymmetricCipherKeyPair keyPair = keyPairGenerator.generateKeyPair();
+
+        byte[] encodedPublicKey = ((ECPublicKeyParameters)keyPair.getPublic()).getQ().getEncoded();
+
+        synchronized (entries)
+        {
+            ++keysGenerated;
+        }
+
+        return new Entry(keyPair, encodedPublicKey, now);
+    }
+
+    static class Entry
+    {
+        final AsymmetricCipherKeyPair keyPair;
+        final byte[] encodedPublicKey;
+        final long creationTime;
+
+        Entry(AsymmetricCipherKeyPair keyPair, byte[] encodedPublicKey, long creationTime)
+        {
+            this.keyPair = keyPair;
+            this.encodedPublicKey = encodedPublicKey;
+            this.creationTime = creationTime;
+        }
+    }
+}
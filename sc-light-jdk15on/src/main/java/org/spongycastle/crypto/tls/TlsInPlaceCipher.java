@@ -0,0 +1,31 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+
+/**
+ * A {@link TlsCipher} that works within buffers owned by the record layer, so that records
+ * can be protected and checked without allocating.
+ */
+public interface TlsInPlaceCipher extends TlsCipher
+{
+    /**
+     * @return the most ciphertext that encoding plaintextLength bytes can produce.
+     */
+    int getCiphertextLimit(int plaintextLength);
+
+    /**
+     * Encode plaintext into output, which must not overlap it and must have at least
+     * {@link #getCiphertextLimit(int)} bytes available from outOff.
+     *
+     * @return the length of the ciphertext written.
+     */
+    int encodePlaintext(short type, byte[] plaintext, int offset, int len, byte[] output, int outOff)
+        throws IOException;
+
+    /**
+     * Decode ciphertext where it lies, leaving the plaintext at the start of it.
+     *
+     * @return the length of the plaintext.
+     */
+    int decodeCiphertextInPlace(short type, byte[] ciphertext, int offset, int len) throws IOException;
+}
@@ -13,7 +13,7 @@ import org.spongycastle.crypto.params.RSAKeyParameters;
 
 class TlsPSKKeyExchange implements TlsKeyExchange
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
     protected int keyExchange;
     protected TlsPSKIdentity pskIdentity;
 
@@ -25,7 +25,7 @@ class TlsPSKKeyExchange implements TlsKeyExchange
     protected RSAKeyParameters rsaServerPublicKey = null;
     protected byte[] premasterSecret;
 
-    TlsPSKKeyExchange(TlsClientContext context, int keyExchange, TlsPSKIdentity pskIdentity)
+    TlsPSKKeyExchange(TlsContext context, int keyExchange, TlsPSKIdentity pskIdentity)
     {
         switch (keyExchange)
         {
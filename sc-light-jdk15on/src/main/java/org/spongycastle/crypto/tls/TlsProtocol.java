@@ -0,0 +1,915 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.prng.ThreadedSeedGenerator;
+
+/**
+ * The parts of TLS 1.0 - 1.2 common to both ends of a connection: the record layer, alerts,
+ * application data and the framing of handshake messages. {@link TlsProtocolHandler} and
+ * {@link TlsServerProtocol} add the client and server handshakes.
+ */
+public abstract class TlsProtocol
+{
+    protected static final Integer EXT_RenegotiationInfo = new Integer(ExtensionType.renegotiation_info);
+    protected static final Integer EXT_SessionTicket = new Integer(ExtensionType.session_ticket);
+
+    protected static final byte[] emptybuf = new byte[0];
+
+    private static final String TLS_ERROR_MESSAGE = "Internal TLS error, this could be an attack";
+
+    /*
+     * RFC 2246 6.2.3. The length of TLSCiphertext.fragment may not exceed 2^14 + 2048.
+     */
+    private static final int RECORD_HEADER_LENGTH = 5;
+    private static final int MAX_CIPHERTEXT_LENGTH = (1 << 14) + 2048;
+    protected static final int MAX_FRAGMENT_LENGTH = 1 << 14;
+
+    /*
+     * Queues for data from some protocols.
+     */
+    private ByteQueue applicationDataQueue = new ByteQueue();
+    private ByteQueue changeCipherSpecQueue = new ByteQueue();
+    private ByteQueue alertQueue = new ByteQueue();
+    private ByteQueue handshakeQueue = new ByteQueue();
+
+    /*
+     * The Record Stream we use
+     */
+    protected RecordStream rs;
+    protected SecureRandom random;
+
+    /*
+     * In non-blocking mode, ciphertext received from and waiting to go to the peer.
+     */
+    protected final boolean blocking;
+    private ByteQueue inputBuffers = null;
+    private ByteQueueOutputStream outputBuffer = null;
+    private byte[] inputHeader = new byte[RECORD_HEADER_LENGTH];
+
+    private byte[] coalesceBuffer = null;
+    private int coalesceLength = 0;
+
+    private TlsInputStream tlsInputStream = null;
+    private TlsOutputStream tlsOutputStream = null;
+
+    private boolean closed = false;
+    private boolean failedWithError = false;
+    protected boolean appDataReady = false;
+
+    /*
+     * Set once the handshake starts.
+     */
+    protected SecurityParameters securityParameters = null;
+
+    protected static SecureRandom createSecureRandom()
+    {
+        /*
+         * We use our threaded seed generator to generate a good random seed. If the user
+         * has a better random seed, he should use the constructor with a SecureRandom.
+         */
+        ThreadedSeedGenerator tsg = new ThreadedSeedGenerator();
+        SecureRandom random = new SecureRandom();
+
+        /*
+         * Hopefully, 20 bytes in fast mode are good enough.
+         */
+        random.setSeed(tsg.generateSeed(20, true));
+
+        return random;
+    }
+
+    /**
+     * Blocking mode, where the protocol reads from and writes to the given streams itself.
+     */
+    protected TlsProtocol(InputStream is, OutputStream os, SecureRandom sr)
+    {
+        this.blocking = true;
+        this.rs = new RecordStream(this, is, os);
+        this.random = sr;
+    }
+
+    /**
+     * Non-blocking mode, where the protocol does no I/O itself: ciphertext from the peer is
+     * passed to {@link #offerInput(byte[])}, and what has to be sent is taken with
+     * {@link #readOutput(byte[], int, int)}.
+     */
+    protected TlsProtocol(SecureRandom sr)
+    {
+        this.blocking = false;
+        this.inputBuffers = new ByteQueue();
+        this.outputBuffer = new ByteQueueOutputStream();
+        this.rs = new RecordStream(this, null, outputBuffer);
+        this.random = sr;
+    }
+
+    /**
+     * Handle a complete handshake message, which has already been added to the handshake hash
+     * unless it is a finished or hello request message.
+     */
+    protected abstract void processHandshakeMessage(short type, byte[] buf) throws IOException;
+
+    /**
+     * Handle a change cipher spec message from the peer, after checking it is one we expect.
+     */
+    protected abstract void processChangeCipherSpecMessage() throws IOException;
+
+    protected void processData(short protocol, byte[] buf, int offset, int len) throws IOException
+    {
+        /*
+         * Have a look at the protocol type, and add it to the correct queue.
+         */
+        switch (protocol)
+        {
+            case ContentType.change_cipher_spec:
+                changeCipherSpecQueue.addData(buf, offset, len);
+                processChangeCipherSpec();
+                break;
+            case ContentType.alert:
+                alertQueue.addData(buf, offset, len);
+                processAlert();
+                break;
+            case ContentType.handshake:
+                handshakeQueue.addData(buf, offset, len);
+                processHandshake();
+                break;
+            case ContentType.application_data:
+                if (!appDataReady)
+                {
+                    this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+                applicationDataQueue.addData(buf, offset, len);
+                processApplicationData();
+                break;
+            default:
+                /*
+                 * Uh, we don't know this protocol.
+                 * 
+                 * RFC2246 defines on page 13, that we should ignore this.
+                 */
+        }
+    }
+
+    private void processHandshake() throws IOException
+    {
+        boolean read;
+        do
+        {
+            read = false;
+            /*
+             * We need the first 4 bytes, they contain type and length of the message.
+             */
+            if (handshakeQueue.size() >= 4)
+            {
+                byte[] beginning = new byte[4];
+                handshakeQueue.read(beginning, 0, 4, 0);
+                ByteArrayInputStream bis = new ByteArrayInputStream(beginning);
+                short type = TlsUtils.readUint8(bis);
+                int len = TlsUtils.readUint24(bis);
+
+                /*
+                 * Check if we have enough bytes in the buffer to read the full message.
+                 */
+                if (handshakeQueue.size() >= (len + 4))
+                {
+                    /*
+                     * Read the message.
+                     */
+                    byte[] buf = new byte[len];
+                    handshakeQueue.read(buf, 0, len, 4);
+                    handshakeQueue.removeData(len + 4);
+
+                    /*
+                     * RFC 2246 7.4.9. The value handshake_messages includes all handshake
+                     * messages starting at client hello up to, but not including, this
+                     * finished message. [..] Note: [Also,] Hello Request messages are
+                     * omitted from handshake hashes.
+                     */
+                    switch (type)
+                    {
+                        case HandshakeType.hello_request:
+                        case HandshakeType.finished:
+                            break;
+                        default:
+                            rs.updateHandshakeData(beginning, 0, 4);
+                            rs.updateHandshakeData(buf, 0, len);
+                            break;
+                    }
+
+                    /*
+                     * Now, parse the message.
+                     */
+                    processHandshakeMessage(type, buf);
+                    read = true;
+                }
+            }
+        }
+        while (read);
+    }
+
+    private void processApplicationData()
+    {
+        /*
+         * There is nothing we need to do here.
+         * 
+         * This function could be used for callbacks when application data arrives in the
+         * future.
+         */
+    }
+
+    private void processAlert() throws IOException
+    {
+        while (alertQueue.size() >= 2)
+        {
+            /*
+             * An alert is always 2 bytes. Read the alert.
+             */
+            byte[] tmp = new byte[2];
+            alertQueue.read(tmp, 0, 2, 0);
+            alertQueue.removeData(2);
+            short level = tmp[0];
+            short description = tmp[1];
+            if (level == AlertLevel.fatal)
+            {
+                /*
+                 * This is a fatal error.
+                 */
+                this.failedWithError = true;
+                this.closed = true;
+                /*
+                 * Now try to close the stream, ignore errors.
+                 */
+                try
+                {
+                    rs.close();
+                }
+                catch (Exception e)
+                {
+
+                }
+                throw new IOException(TLS_ERROR_MESSAGE);
+            }
+            else
+            {
+                /*
+                 * This is just a warning.
+                 */
+                if (description == AlertDescription.close_notify)
+                {
+                    /*
+                     * Close notify
+                     */
+                    this.failWithError(AlertLevel.warning, AlertDescription.close_notify);
+                }
+                /*
+                 * If it is just a warning, we continue.
+                 */
+            }
+        }
+    }
+
+    /**
+     * This method is called, when a change cipher spec message is received.
+     * 
+     * @throws IOException If the message has an invalid content or the handshake is not
+     *             in the correct state.
+     */
+    private void processChangeCipherSpec() throws IOException
+    {
+        while (changeCipherSpecQueue.size() > 0)
+        {
+            /*
+             * A change cipher spec message is only one byte with the value 1.
+             */
+            byte[] b = new byte[1];
+            changeCipherSpecQueue.read(b, 0, 1, 0);
+            changeCipherSpecQueue.removeData(1);
+            if (b[0] != 1)
+            {
+                /*
+                 * This should never happen.
+                 */
+                this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+            }
+
+            processChangeCipherSpecMessage();
+        }
+    }
+
+    protected void sendChangeCipherSpecMessage() throws IOException
+    {
+        byte[] cmessage = new byte[1];
+        cmessage[0] = 1;
+        rs.writeMessage(ContentType.change_cipher_spec, cmessage, 0,
+            cmessage.length);
+
+        rs.sentWriteCipherSpec();
+    }
+
+    protected void writeHandshakeMessage(short type, byte[] body) throws IOException
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        TlsUtils.writeUint8(type, bos);
+        TlsUtils.writeOpaque24(body, bos);
+        byte[] message = bos.toByteArray();
+
+        rs.writeMessage(ContentType.handshake, message, 0, message.length);
+    }
+
+    protected void updateHandshakeHash(short type, byte[] body) throws IOException
+    {
+        byte[] header = new byte[4];
+        TlsUtils.writeUint8(type, header, 0);
+        TlsUtils.writeUint24(body.length, header, 1);
+
+        rs.updateHandshakeData(header, 0, 4);
+        rs.updateHandshakeData(body, 0, body.length);
+    }
+
+    /**
+     * In blocking mode, read until the handshake completes, and then open the streams.
+     */
+    protected void completeHandshakeBlocking() throws IOException
+    {
+        if (blocking)
+        {
+            while (!appDataReady)
+            {
+                safeReadData();
+            }
+
+            this.tlsInputStream = new TlsInputStream(this);
+            this.tlsOutputStream = new TlsOutputStream(this);
+        }
+    }
+
+    /**
+     * Offer ciphertext received from the peer. Complete records are processed immediately,
+     * which may advance the handshake, queue application data to read, or queue messages to
+     * send; any partial record is kept until the rest of it is offered.
+     *
+     * @param input the bytes received, in any amount.
+     * @throws IOException If the data fails to decode, in which case a fatal alert will be
+     *             waiting in the output.
+     */
+    public void offerInput(byte[] input) throws IOException
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use offerInput() in blocking mode, use getInputStream() instead");
+        }
+        if (closed)
+        {
+            throw new IOException("connection is closed, cannot accept any more input");
+        }
+
+        inputBuffers.addData(input, 0, input.length);
+
+        while (!closed && inputBuffers.size() >= RECORD_HEADER_LENGTH)
+        {
+            inputBuffers.read(inputHeader, 0, RECORD_HEADER_LENGTH, 0);
+
+            int length = ((inputHeader[3] & 0xff) << 8) | (inputHeader[4] & 0xff);
+            if (length > MAX_CIPHERTEXT_LENGTH)
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.record_overflow);
+            }
+
+            if (inputBuffers.size() < RECORD_HEADER_LENGTH + length)
+            {
+                break;
+            }
+
+            safeReadRecord();
+        }
+    }
+
+    /**
+     * @return the number of bytes of application data waiting to be read with
+     *         {@link #readInput(byte[], int, int)}.
+     */
+    public int getAvailableInputBytes()
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use getAvailableInputBytes() in blocking mode, use getInputStream() instead");
+        }
+
+        return applicationDataQueue.size();
+    }
+
+    /**
+     * Read application data decoded from the input offered so far.
+     *
+     * @return the number of bytes read, which will be 0 if none are waiting.
+     */
+    public int readInput(byte[] buffer, int offset, int length)
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use readInput() in blocking mode, use getInputStream() instead");
+        }
+
+        length = Math.min(length, applicationDataQueue.size());
+        applicationDataQueue.read(buffer, offset, length, 0);
+        applicationDataQueue.removeData(length);
+        return length;
+    }
+
+    /**
+     * Offer application data to send once the handshake is complete. The records carrying it
+     * are then taken with {@link #readOutput(byte[], int, int)}.
+     *
+     * @throws IOException If the connection has been closed.
+     */
+    public void offerOutput(byte[] buffer, int offset, int length) throws IOException
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use offerOutput() in blocking mode, use getOutputStream() instead");
+        }
+        if (!appDataReady && !closed)
+        {
+            throw new IllegalStateException("cannot send application data until the handshake is complete");
+        }
+
+        writeData(buffer, offset, length);
+    }
+
+    /**
+     * @return the number of bytes waiting to be sent to the peer.
+     */
+    public int getAvailableOutputBytes()
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use getAvailableOutputBytes() in blocking mode, use getOutputStream() instead");
+        }
+
+        return outputBuffer.getBuffer().size();
+    }
+
+    /**
+     * Take bytes that need sending to the peer.
+     *
+     * @return the number of bytes read, which will be 0 if there is nothing to send.
+     */
+    public int readOutput(byte[] buffer, int offset, int length)
+    {
+        if (blocking)
+        {
+            throw new IllegalStateException("cannot use readOutput() in blocking mode, use getOutputStream() instead");
+        }
+
+        ByteQueue queue = outputBuffer.getBuffer();
+
+        length = Math.min(length, queue.size());
+        queue.read(buffer, offset, length, 0);
+        queue.removeData(length);
+        return length;
+    }
+
+    /**
+     * @return true if the handshake has been started and has not yet completed or failed.
+     */
+    public boolean isHandshaking()
+    {
+        return securityParameters != null && !appDataReady && !closed;
+    }
+
+    /**
+     * @return true if the connection has been closed, by either side or by an error.
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Read data from the network. The method will return immediately, if there is still
+     * some data left in the buffer, or block until some application data has been read
+     * from the network.
+     * 
+     * @param buf The buffer where the data will be copied to.
+     * @param offset The position where the data will be placed in the buffer.
+     * @param len The maximum number of bytes to read.
+     * @return The number of bytes read.
+     * @throws IOException If something goes wrong during reading data.
+     */
+    protected int readApplicationData(byte[] buf, int offset, int len) throws IOException
+    {
+        while (applicationDataQueue.size() == 0)
+        {
+            /*
+             * We need to read some data.
+             */
+            if (this.closed)
+            {
+                if (this.failedWithError)
+                {
+                    /*
+                     * Something went terribly wrong, we should throw an IOException
+                     */
+                    throw new IOException(TLS_ERROR_MESSAGE);
+                }
+
+                /*
+                 * Connection has been closed, there is no more data to read.
+                 */
+                return -1;
+            }
+
+            /*
+             * The peer may be waiting for what we have held back before it answers.
+             */
+            flushCoalescedData();
+
+            safeReadData();
+        }
+        len = Math.min(len, applicationDataQueue.size());
+        applicationDataQueue.read(buf, offset, len, 0);
+        applicationDataQueue.removeData(len);
+        return len;
+    }
+
+    protected void safeReadData() throws IOException
+    {
+        safeReadRecord();
+    }
+
+    /**
+     * Process one record, from the input stream in blocking mode, or from the front of the
+     * input buffers otherwise.
+     */
+    private void safeReadRecord() throws IOException
+    {
+        try
+        {
+            if (blocking)
+            {
+                rs.readData();
+            }
+            else
+            {
+                rs.readRecord(inputBuffers);
+            }
+        }
+        catch (TlsFatalAlert e)
+        {
+            if (!this.closed)
+            {
+                this.failWithError(AlertLevel.fatal, e.getAlertDescription());
+            }
+            throw e;
+        }
+        catch (IOException e)
+        {
+            if (!this.closed)
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            if (!this.closed)
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+            throw e;
+        }
+    }
+
+    protected void safeWriteMessage(short type, byte[] buf, int offset, int len) throws IOException
+    {
+        try
+        {
+            rs.writeMessage(type, buf, offset, len);
+        }
+        catch (TlsFatalAlert e)
+        {
+            if (!this.closed)
+            {
+                this.failWithError(AlertLevel.fatal, e.getAlertDescription());
+            }
+            throw e;
+        }
+        catch (IOException e)
+        {
+            if (!closed)
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            if (!closed)
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Send some application data to the remote system.
+     * <p/>
+     * The method will handle fragmentation internally.
+     * 
+     * @param buf The buffer with the data.
+     * @param offset The position in the buffer where the data is placed.
+     * @param len The length of the data.
+     * @throws IOException If something goes wrong during sending.
+     */
+    protected void writeData(byte[] buf, int offset, int len) throws IOException
+    {
+        if (this.closed)
+        {
+            if (this.failedWithError)
+            {
+                throw new IOException(TLS_ERROR_MESSAGE);
+            }
+
+            throw new IOException("Sorry, connection has been closed, you cannot write more data");
+        }
+
+        if (coalesceBuffer != null)
+        {
+            coalesceData(buf, offset, len);
+            return;
+        }
+
+        writeIVProtection();
+
+        do
+        {
+            /*
+             * We are only allowed to write fragments up to 2^14 bytes.
+             */
+            int toWrite = Math.min(len, MAX_FRAGMENT_LENGTH);
+
+            safeWriteMessage(ContentType.application_data, buf, offset, toWrite);
+
+            offset += toWrite;
+            len -= toWrite;
+        }
+        while (len > 0);
+
+    }
+
+    private void coalesceData(byte[] buf, int offset, int len) throws IOException
+    {
+        while (len > 0)
+        {
+            if (coalesceLength == 0 && len >= MAX_FRAGMENT_LENGTH)
+            {
+                /*
+                 * A whole record's worth can go straight out without copying.
+                 */
+                writeIVProtection();
+                safeWriteMessage(ContentType.application_data, buf, offset, MAX_FRAGMENT_LENGTH);
+                offset += MAX_FRAGMENT_LENGTH;
+                len -= MAX_FRAGMENT_LENGTH;
+                continue;
+            }
+
+            int toCopy = Math.min(len, MAX_FRAGMENT_LENGTH - coalesceLength);
+            System.arraycopy(buf, offset, coalesceBuffer, coalesceLength, toCopy);
+            coalesceLength += toCopy;
+            offset += toCopy;
+            len -= toCopy;
+
+            if (coalesceLength == MAX_FRAGMENT_LENGTH)
+            {
+                flushCoalescedData();
+            }
+        }
+    }
+
+    private void flushCoalescedData() throws IOException
+    {
+        if (coalesceLength > 0 && !closed)
+        {
+            int len = coalesceLength;
+            this.coalesceLength = 0;
+
+            writeIVProtection();
+            safeWriteMessage(ContentType.application_data, coalesceBuffer, 0, len);
+        }
+    }
+
+    private void writeIVProtection() throws IOException
+    {
+        /*
+         * Protect against known IV attack!
+         * 
+         * DO NOT REMOVE THIS LINE, EXCEPT YOU KNOW EXACTLY WHAT YOU ARE DOING HERE.
+         *
+         * Only CBC before TLS 1.1 is open to it; records with their own IV, or under no
+         * cipher or an AEAD one, don't need the empty record.
+         */
+        if (rs.isWriteCipherChainingIV())
+        {
+            safeWriteMessage(ContentType.application_data, emptybuf, 0, 0);
+        }
+    }
+
+    /**
+     * Have application data collected into full sized records, rather than sending a record
+     * for every write. Buffered data goes out when a record fills, on flush(), before blocking
+     * to read, and on close().
+     * <p/>
+     * Only for blocking mode; in non-blocking mode the caller already decides how much to pass
+     * to {@link #offerOutput(byte[], int, int)} at a time.
+     *
+     * @param coalesce true to collect writes, false to send each write as it comes, which is
+     *            the default.
+     * @throws IOException If buffered data has to be sent on turning this off and fails to.
+     */
+    public void setWriteCoalescing(boolean coalesce) throws IOException
+    {
+        if (!blocking)
+        {
+            throw new IllegalStateException("write coalescing is only available in blocking mode");
+        }
+
+        if (coalesce)
+        {
+            if (coalesceBuffer == null)
+            {
+                this.coalesceBuffer = new byte[MAX_FRAGMENT_LENGTH];
+            }
+        }
+        else if (coalesceBuffer != null)
+        {
+            flushCoalescedData();
+            this.coalesceBuffer = null;
+        }
+    }
+
+    /**
+     * @return the number of buffers the record layer has allocated so far. Once records of the
+     *         largest size have been seen in each direction this stops growing, unless a
+     *         compression method or a cipher that cannot work in place is in use.
+     */
+    public long getRecordBufferAllocations()
+    {
+        return rs.getAllocationCount();
+    }
+
+    /**
+     * @return the total size in bytes of the buffers counted by
+     *         {@link #getRecordBufferAllocations()}.
+     */
+    public long getRecordBytesAllocated()
+    {
+        return rs.getAllocatedBytes();
+    }
+
+    /**
+     * @return An OutputStream which can be used to send data, null in non-blocking mode.
+     */
+    public OutputStream getOutputStream()
+    {
+        return this.tlsOutputStream;
+    }
+
+    /**
+     * @return An InputStream which can be used to read data, null in non-blocking mode.
+     */
+    public InputStream getInputStream()
+    {
+        return this.tlsInputStream;
+    }
+
+    /**
+     * Terminate this connection with an alert.
+     * <p/>
+     * Can be used for normal closure too.
+     * 
+     * @param alertLevel The level of the alert, an be AlertLevel.fatal or AL_warning.
+     * @param alertDescription The exact alert message.
+     * @throws IOException If alert was fatal.
+     */
+    protected void failWithError(short alertLevel, short alertDescription) throws IOException
+    {
+        /*
+         * Check if the connection is still open.
+         */
+        if (!closed)
+        {
+            /*
+             * Prepare the message
+             */
+            this.closed = true;
+
+            if (alertLevel == AlertLevel.fatal)
+            {
+                /*
+                 * This is a fatal message.
+                 */
+                this.failedWithError = true;
+            }
+            sendAlert(alertLevel, alertDescription);
+            rs.close();
+            if (alertLevel == AlertLevel.fatal)
+            {
+                throw new IOException(TLS_ERROR_MESSAGE);
+            }
+        }
+        else
+        {
+            throw new IOException(TLS_ERROR_MESSAGE);
+        }
+    }
+
+    protected void sendAlert(short alertLevel, short alertDescription) throws IOException
+    {
+        byte[] error = new byte[2];
+        error[0] = (byte)alertLevel;
+        error[1] = (byte)alertDescription;
+
+        rs.writeMessage(ContentType.alert, error, 0, 2);
+    }
+
+    /**
+     * Closes this connection.
+     * 
+     * @throws IOException If something goes wrong during closing.
+     */
+    public void close() throws IOException
+    {
+        if (!closed)
+        {
+            flushCoalescedData();
+            this.failWithError(AlertLevel.warning, AlertDescription.close_notify);
+        }
+    }
+
+    /**
+     * Make sure the InputStream is now empty. Fail otherwise.
+     * 
+     * @param is The InputStream to check.
+     * @throws IOException If is is not empty.
+     */
+    protected void assertEmpty(ByteArrayInputStream is) throws IOException
+    {
+        if (is.available() > 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+    }
+
+    protected void flush() throws IOException
+    {
+        flushCoalescedData();
+        rs.flush();
+    }
+
+    protected static boolean arrayContains(short[] a, short n)
+    {
+        for (int i = 0; i < a.length; ++i)
+        {
+            if (a[i] == n)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static boolean arrayContains(int[] a, int n)
+    {
+        for (int i = 0; i < a.length; ++i)
+        {
+            if (a[i] == n)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    protected static byte[] createRenegotiationInfo(byte[] renegotiated_connection)
+        throws IOException
+    {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        TlsUtils.writeOpaque8(renegotiated_connection, buf);
+        return buf.toByteArray();
+    }
+
+    protected static void writeExtension(OutputStream output, Integer extType, byte[] extValue)
+        throws IOException
+    {
+        TlsUtils.writeUint16(extType.intValue(), output);
+        TlsUtils.writeOpaque16(extValue, output);
+    }
+}
+
+
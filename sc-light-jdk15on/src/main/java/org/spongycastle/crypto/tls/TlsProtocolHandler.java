@@ -12,16 +12,14 @@ import java.util.Vector;
 
 import org.spongycastle.asn1.ASN1Primitive;
 import org.spongycastle.asn1.x500.X500Name;
-import org.spongycastle.crypto.prng.ThreadedSeedGenerator;
 import org.spongycastle.util.Arrays;
 
 /**
- * An implementation of all high level protocols in TLS 1.0.
+ * An implementation of the client side of TLS 1.0 - 1.2.
  */
 public class TlsProtocolHandler
+    extends TlsProtocol
 {
-    private static final Integer EXT_RenegotiationInfo = new Integer(ExtensionType.renegotiation_info);
-
     /*
      * Our Connection states
      */
@@ -38,34 +36,8 @@ public class TlsProtocolHandler
     private static final short CS_SERVER_CHANGE_CIPHER_SPEC_RECEIVED = 11;
     private static final short CS_DONE = 12;
 
-    private static final byte[] emptybuf = new byte[0];
-
-    private static final String TLS_ERROR_MESSAGE = "Internal TLS error, this could be an attack";
-
-    /*
-     * Queues for data from some protocols.
-     */
-    private ByteQueue applicationDataQueue = new ByteQueue();
-    private ByteQueue changeCipherSpecQueue = new ByteQueue();
-    private ByteQueue alertQueue = new ByteQueue();
-    private ByteQueue handshakeQueue = new ByteQueue();
-
-    /*
-     * The Record Stream we use
-     */
-    private RecordStream rs;
-    private SecureRandom random;
-
-    private TlsInputStream tlsInputStream = null;
-    private TlsOutputStream tlsOutputStream = null;
-
-    private boolean closed = false;
-    private boolean failedWithError = false;
-    private boolean appDataReady = false;
     private Hashtable clientExtensions;
 
-    private SecurityParameters securityParameters = null;
-
     private TlsClientContextImpl tlsClientContext = null;
     private TlsClient tlsClient = null;
     private int[] offeredCipherSuites = null;
@@ -73,25 +45,18 @@ public class TlsProtocolHandler
     private TlsKeyExchange keyExchange = null;
     private TlsAuthentication authentication = null;
     private CertificateRequest certificateRequest = null;
+    private Certificate serverCertificate = null;
 
-    private short connection_state = 0;
-
-    private static SecureRandom createSecureRandom()
-    {
-        /*
-         * We use our threaded seed generator to generate a good random seed. If the user
-         * has a better random seed, he should use the constructor with a SecureRandom.
-         */
-        ThreadedSeedGenerator tsg = new ThreadedSeedGenerator();
-        SecureRandom random = new SecureRandom();
-
-        /*
-         * Hopefully, 20 bytes in fast mode are good enough.
-         */
-        random.setSeed(tsg.generateSeed(20, true));
+    private TlsSession sessionToResume = null;
+    private byte[] offeredSessionID = null;
+    private byte[] sessionID = null;
+    private int selectedCipherSuite;
+    private short selectedCompressionMethod;
+    private boolean resumedSession = false;
+    private boolean expectSessionTicket = false;
+    private byte[] newSessionTicket = null;
 
-        return random;
-    }
+    private short connection_state = 0;
 
     public TlsProtocolHandler(InputStream is, OutputStream os)
     {
@@ -100,106 +65,47 @@ public class TlsProtocolHandler
 
     public TlsProtocolHandler(InputStream is, OutputStream os, SecureRandom sr)
     {
-        this.rs = new RecordStream(this, is, os);
-        this.random = sr;
+        super(is, os, sr);
     }
 
-    protected void processData(short protocol, byte[] buf, int offset, int len) throws IOException
+    /**
+     * Constructor for non-blocking mode, where the handler does no I/O itself and so never
+     * needs a thread of its own.
+     * <p/>
+     * Ciphertext received from the server is passed to {@link #offerInput(byte[])}, after
+     * which any application data it carried can be taken with
+     * {@link #readInput(byte[], int, int)}. Application data to send is passed to
+     * {@link #offerOutput(byte[], int, int)}, and anything the handler has to send, including
+     * the handshake messages, is taken with {@link #readOutput(byte[], int, int)}. The
+     * handshake starts with {@link #connect(TlsClient)}, which returns straight away, and is
+     * complete once {@link #isHandshaking()} returns false.
+     * <p/>
+     * A handler in this mode may be driven from any thread, but only one at a time.
+     *
+     * @param sr the source of randomness for the connection.
+     */
+    public TlsProtocolHandler(SecureRandom sr)
     {
-        /*
-         * Have a look at the protocol type, and add it to the correct queue.
-         */
-        switch (protocol)
-        {
-            case ContentType.change_cipher_spec:
-                changeCipherSpecQueue.addData(buf, offset, len);
-                processChangeCipherSpec();
-                break;
-            case ContentType.alert:
-                alertQueue.addData(buf, offset, len);
-                processAlert();
-                break;
-            case ContentType.handshake:
-                handshakeQueue.addData(buf, offset, len);
-                processHandshake();
-                break;
-            case ContentType.application_data:
-                if (!appDataReady)
-                {
-                    this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
-                }
-                applicationDataQueue.addData(buf, offset, len);
-                processApplicationData();
-                break;
-            default:
-                /*
-                 * Uh, we don't know this protocol.
-                 * 
-                 * RFC2246 defines on page 13, that we should ignore this.
-                 */
-        }
+        super(sr);
     }
 
-    private void processHandshake() throws IOException
+    protected void processHandshakeMessage(short type, byte[] buf) throws IOException
     {
-        boolean read;
-        do
+        ByteArrayInputStream is = new ByteArrayInputStream(buf);
+
+        if (resumedSession)
         {
-            read = false;
-            /*
-             * We need the first 4 bytes, they contain type and length of the message.
-             */
-            if (handshakeQueue.size() >= 4)
+            switch (type)
             {
-                byte[] beginning = new byte[4];
-                handshakeQueue.read(beginning, 0, 4, 0);
-                ByteArrayInputStream bis = new ByteArrayInputStream(beginning);
-                short type = TlsUtils.readUint8(bis);
-                int len = TlsUtils.readUint24(bis);
-
-                /*
-                 * Check if we have enough bytes in the buffer to read the full message.
-                 */
-                if (handshakeQueue.size() >= (len + 4))
-                {
-                    /*
-                     * Read the message.
-                     */
-                    byte[] buf = new byte[len];
-                    handshakeQueue.read(buf, 0, len, 4);
-                    handshakeQueue.removeData(len + 4);
-
-                    /*
-                     * RFC 2246 7.4.9. The value handshake_messages includes all handshake
-                     * messages starting at client hello up to, but not including, this
-                     * finished message. [..] Note: [Also,] Hello Request messages are
-                     * omitted from handshake hashes.
-                     */
-                    switch (type)
-                    {
-                        case HandshakeType.hello_request:
-                        case HandshakeType.finished:
-                            break;
-                        default:
-                            rs.updateHandshakeData(beginning, 0, 4);
-                            rs.updateHandshakeData(buf, 0, len);
-                            break;
-                    }
-
-                    /*
-                     * Now, parse the message.
-                     */
-                    processHandshakeMessage(type, buf);
-                    read = true;
-                }
+                case HandshakeType.finished:
+                case HandshakeType.session_ticket:
+                case HandshakeType.hello_request:
+                    break;
+                default:
+                    // RFC 2246 7.3. None of the key exchange messages belong in a resumed handshake
+                    this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
             }
         }
-        while (read);
-    }
-
-    private void processHandshakeMessage(short type, byte[] buf) throws IOException
-    {
-        ByteArrayInputStream is = new ByteArrayInputStream(buf);
 
         switch (type)
         {
@@ -211,7 +117,7 @@ public class TlsProtocolHandler
                     {
                         // Parse the Certificate message and send to cipher suite
 
-                        Certificate serverCertificate = Certificate.parse(is);
+                        this.serverCertificate = Certificate.parse(is);
 
                         assertEmpty(is);
 
@@ -262,12 +168,24 @@ public class TlsProtocolHandler
                             this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
                         }
 
+                        if (resumedSession)
+                        {
+                            /*
+                             * RFC 2246 7.3. In a resumed session the server finishes first, and
+                             * our finished message covers its one.
+                             */
+                            updateHandshakeHash(HandshakeType.finished, serverVerifyData);
+                            sendChangeCipherSpecAndFinished();
+                        }
+
                         connection_state = CS_DONE;
 
                         /*
                          * We are now ready to receive application data.
                          */
                         this.appDataReady = true;
+
+                        notifyNewSession();
                         break;
                     default:
                         this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
@@ -289,6 +207,7 @@ public class TlsProtocolHandler
 
                         this.tlsClientContext.setServerVersion(server_version);
                         this.tlsClient.notifyServerVersion(server_version);
+                        this.rs.setRecordVersion(server_version);
 
                         /*
                          * Read the server random
@@ -296,7 +215,7 @@ public class TlsProtocolHandler
                         securityParameters.serverRandom = new byte[32];
                         TlsUtils.readFully(securityParameters.serverRandom, is);
 
-                        byte[] sessionID = TlsUtils.readOpaque8(is);
+                        this.sessionID = TlsUtils.readOpaque8(is);
                         if (sessionID.length > 32)
                         {
                             this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
@@ -304,25 +223,54 @@ public class TlsProtocolHandler
 
                         this.tlsClient.notifySessionID(sessionID);
 
+                        /*
+                         * RFC 2246 7.4.1.3. If the server echoes the session ID we offered it has
+                         * agreed to resume that session; anything else means a full handshake.
+                         */
+                        this.resumedSession = offeredSessionID != null && sessionID.length > 0
+                            && Arrays.areEqual(offeredSessionID, sessionID);
+
+                        if (resumedSession
+                            && !server_version.equals(sessionToResume.getServerVersion()))
+                        {
+                            this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+                        }
+
                         /*
                          * Find out which CipherSuite the server has chosen and check that
                          * it was one of the offered ones.
                          */
-                        int selectedCipherSuite = TlsUtils.readUint16(is);
+                        this.selectedCipherSuite = TlsUtils.readUint16(is);
                         if (!arrayContains(offeredCipherSuites, selectedCipherSuite)
-                            || selectedCipherSuite == CipherSuite.TLS_EMPTY_RENEGOTIATION_INFO_SCSV)
+                            || selectedCipherSuite == CipherSuite.TLS_EMPTY_RENEGOTIATION_INFO_SCSV
+                            || (resumedSession && selectedCipherSuite != sessionToResume.getCipherSuite()))
+                        {
+                            this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+                        }
+
+                        /*
+                         * RFC 5246 A.5. The cipher suites added with TLS 1.2 MUST NOT be
+                         * negotiated in older versions.
+                         */
+                        if (TlsUtils.isTLSv12CipherSuite(selectedCipherSuite)
+                            && !TlsUtils.isTLSv12(tlsClientContext))
                         {
                             this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
                         }
 
                         this.tlsClient.notifySelectedCipherSuite(selectedCipherSuite);
 
+                        securityParameters.prfAlgorithm = TlsUtils.getPRFAlgorithm(server_version,
+                            selectedCipherSuite);
+                        rs.notifyPRFDetermined();
+
                         /*
                          * Find out which CompressionMethod the server has chosen and check that
                          * it was one of the offered ones.
                          */
-                        short selectedCompressionMethod = TlsUtils.readUint8(is);
-                        if (!arrayContains(offeredCompressionMethods, selectedCompressionMethod))
+                        this.selectedCompressionMethod = TlsUtils.readUint8(is);
+                        if (!arrayContains(offeredCompressionMethods, selectedCompressionMethod)
+                            || (resumedSession && selectedCompressionMethod != sessionToResume.getCompressionMethod()))
                         {
                             this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
                         }
@@ -341,9 +289,11 @@ public class TlsProtocolHandler
                          */
 
                         /*
-                         * TODO RFC 3546 2.3 If [...] the older session is resumed, then
-                         * the server MUST ignore extensions appearing in the client
-                         * hello, and send a server hello containing no extensions.
+                         * RFC 3546 2.3 If [...] the older session is resumed, then the server
+                         * MUST ignore extensions appearing in the client hello, and send a
+                         * server hello containing no extensions. RFC 5746 and RFC 5077 make
+                         * exceptions for renegotiation_info and SessionTicket, which are
+                         * checked below like any other extension.
                          */
 
                         // Integer -> byte[]
@@ -437,12 +387,37 @@ public class TlsProtocolHandler
                             tlsClient.notifySecureRenegotiation(secure_negotiation);
                         }
 
+                        /*
+                         * RFC 5077 3.2. A server that will issue a new ticket replies with an
+                         * empty SessionTicket extension, and then MUST send a NewSessionTicket.
+                         */
+                        if (serverExtensions.containsKey(EXT_SessionTicket))
+                        {
+                            if (((byte[])serverExtensions.get(EXT_SessionTicket)).length != 0)
+                            {
+                                this.failWithError(AlertLevel.fatal, AlertDescription.decode_error);
+                            }
+                            this.expectSessionTicket = true;
+                        }
+
                         if (clientExtensions != null)
                         {
                             tlsClient.processServerExtensions(serverExtensions);
                         }
 
-                        this.keyExchange = tlsClient.getKeyExchange();
+                        if (resumedSession)
+                        {
+                            /*
+                             * RFC 2246 7.3. The abbreviated handshake reuses the master secret,
+                             * so there is no key exchange or authentication to do.
+                             */
+                            securityParameters.masterSecret = sessionToResume.getMasterSecret();
+                            this.serverCertificate = sessionToResume.getPeerCertificate();
+                        }
+                        else
+                        {
+                            this.keyExchange = tlsClient.getKeyExchange();
+                        }
 
                         connection_state = CS_SERVER_HELLO_RECEIVED;
                         break;
@@ -450,7 +425,34 @@ public class TlsProtocolHandler
                         this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
                 }
                 break;
+            case HandshakeType.session_ticket:
+            {
+                /*
+                 * RFC 5077 3.3. The NewSessionTicket comes just before the server's change
+                 * cipher spec, and only if the server said it would send one.
+                 */
+                short expected_state = resumedSession ? CS_SERVER_HELLO_RECEIVED : CS_CLIENT_FINISHED_SEND;
+
+                if (!expectSessionTicket || connection_state != expected_state)
+                {
+                    this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+
+                // The lifetime hint is advisory; our cache has its own expiry policy
+                TlsUtils.readUint32(is);
+                this.newSessionTicket = TlsUtils.readOpaque16(is);
+
+                assertEmpty(is);
+
+                this.expectSessionTicket = false;
+                break;
+            }
             case HandshakeType.server_hello_done:
+                if (resumedSession)
+                {
+                    this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+
                 switch (connection_state)
                 {
                     case CS_SERVER_HELLO_RECEIVED:
@@ -533,43 +535,38 @@ public class TlsProtocolHandler
                         if (clientCreds != null && clientCreds instanceof TlsSignerCredentials)
                         {
                             TlsSignerCredentials signerCreds = (TlsSignerCredentials)clientCreds;
-                            byte[] md5andsha1 = rs.getCurrentHash(null);
+
+                            /*
+                             * RFC 5246 7.4.8. In TLS 1.2 we sign the handshake hash we keep,
+                             * which is the PRF hash, so the server must have listed it.
+                             */
+                            SignatureAndHashAlgorithm algorithm = null;
+                            if (TlsUtils.isTLSv12(tlsClientContext))
+                            {
+                                algorithm = new SignatureAndHashAlgorithm(
+                                    TlsUtils.getHashAlgorithmForPRFAlgorithm(securityParameters.prfAlgorithm),
+                                    TlsUtils.getSignatureAlgorithm(signerCreds.getCertificate()));
+
+                                if (!certificateRequest.getSupportedSignatureAlgorithms().contains(algorithm))
+                                {
+                                    this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+                                }
+                            }
+
+                            byte[] handshakeHash = rs.getCurrentHash(null);
                             byte[] clientCertificateSignature = signerCreds.generateCertificateSignature(
-                                md5andsha1);
-                            sendCertificateVerify(clientCertificateSignature);
+                                handshakeHash);
+                            sendCertificateVerify(algorithm, clientCertificateSignature);
 
                             connection_state = CS_CERTIFICATE_VERIFY_SEND;
                         }
 
-                        /*
-                         * Now, we send change cipher state
-                         */
-                        byte[] cmessage = new byte[1];
-                        cmessage[0] = 1;
-                        rs.writeMessage(ContentType.change_cipher_spec, cmessage, 0,
-                            cmessage.length);
-
-                        connection_state = CS_CLIENT_CHANGE_CIPHER_SPEC_SEND;
-
                         /*
                          * Initialize our cipher suite
                          */
-                        rs.clientCipherSpecDecided(tlsClient.getCompression(), tlsClient.getCipher());
-
-                        /*
-                         * Send our finished message.
-                         */
-                        byte[] clientVerifyData = TlsUtils.calculateVerifyData(tlsClientContext,
-                            "client finished", rs.getCurrentHash(TlsUtils.SSL_CLIENT));
+                        rs.setPendingConnectionState(tlsClient.getCompression(), tlsClient.getCipher());
 
-                        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                        TlsUtils.writeUint8(HandshakeType.finished, bos);
-                        TlsUtils.writeOpaque24(clientVerifyData, bos);
-                        byte[] message = bos.toByteArray();
-
-                        rs.writeMessage(ContentType.handshake, message, 0, message.length);
-
-                        this.connection_state = CS_CLIENT_FINISHED_SEND;
+                        sendChangeCipherSpecAndFinished();
                         break;
                     default:
                         this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
@@ -630,6 +627,13 @@ public class TlsProtocolHandler
                             certificateTypes[i] = TlsUtils.readUint8(is);
                         }
 
+                        // RFC 5246 7.4.4. TLS 1.2 adds the signature algorithms the server accepts
+                        Vector supportedSignatureAlgorithms = null;
+                        if (TlsUtils.isTLSv12(tlsClientContext))
+                        {
+                            supportedSignatureAlgorithms = TlsUtils.parseSupportedSignatureAlgorithms(is);
+                        }
+
                         byte[] authorities = TlsUtils.readOpaque16(is);
 
                         assertEmpty(is);
@@ -644,7 +648,7 @@ public class TlsProtocolHandler
                         }
 
                         this.certificateRequest = new CertificateRequest(certificateTypes,
-                            authorityDNs);
+                            supportedSignatureAlgorithms, authorityDNs);
                         this.keyExchange.validateCertificateRequest(this.certificateRequest);
 
                         break;
@@ -680,103 +684,76 @@ public class TlsProtocolHandler
         }
     }
 
-    private void processApplicationData()
+    protected void processChangeCipherSpecMessage() throws IOException
     {
         /*
-         * There is nothing we need to do here.
-         * 
-         * This function could be used for callbacks when application data arrives in the
-         * future.
+         * Check if we are in the correct connection state.
          */
-    }
+        short expected_state = resumedSession ? CS_SERVER_HELLO_RECEIVED : CS_CLIENT_FINISHED_SEND;
 
-    private void processAlert() throws IOException
-    {
-        while (alertQueue.size() >= 2)
+        if (this.connection_state != expected_state || expectSessionTicket)
         {
-            /*
-             * An alert is always 2 bytes. Read the alert.
-             */
-            byte[] tmp = new byte[2];
-            alertQueue.read(tmp, 0, 2, 0);
-            alertQueue.removeData(2);
-            short level = tmp[0];
-            short description = tmp[1];
-            if (level == AlertLevel.fatal)
-            {
-                /*
-                 * This is a fatal error.
-                 */
-                this.failedWithError = true;
-                this.closed = true;
-                /*
-                 * Now try to close the stream, ignore errors.
-                 */
-                try
-                {
-                    rs.close();
-                }
-                catch (Exception e)
-                {
+            this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+        }
 
-                }
-                throw new IOException(TLS_ERROR_MESSAGE);
-            }
-            else
-            {
-                /*
-                 * This is just a warning.
-                 */
-                if (description == AlertDescription.close_notify)
-                {
-                    /*
-                     * Close notify
-                     */
-                    this.failWithError(AlertLevel.warning, AlertDescription.close_notify);
-                }
-                /*
-                 * If it is just a warning, we continue.
-                 */
-            }
+        if (resumedSession)
+        {
+            rs.setPendingConnectionState(tlsClient.getCompression(), tlsClient.getCipher());
         }
+
+        rs.receivedReadCipherSpec();
+
+        this.connection_state = CS_SERVER_CHANGE_CIPHER_SPEC_RECEIVED;
+    }
+
+    private void sendChangeCipherSpecAndFinished() throws IOException
+    {
+        /*
+         * Now, we send change cipher state
+         */
+        sendChangeCipherSpecMessage();
+
+        connection_state = CS_CLIENT_CHANGE_CIPHER_SPEC_SEND;
+
+        /*
+         * Send our finished message.
+         */
+        byte[] clientVerifyData = TlsUtils.calculateVerifyData(tlsClientContext,
+            "client finished", rs.getCurrentHash(TlsUtils.SSL_CLIENT));
+
+        writeHandshakeMessage(HandshakeType.finished, clientVerifyData);
+
+        this.connection_state = CS_CLIENT_FINISHED_SEND;
     }
 
     /**
-     * This method is called, when a change cipher spec message is received.
-     * 
-     * @throws IOException If the message has an invalid content or the handshake is not
-     *             in the correct state.
+     * Pass the client a session it can resume later, if the handshake produced one.
      */
-    private void processChangeCipherSpec() throws IOException
+    private void notifyNewSession()
     {
-        while (changeCipherSpecQueue.size() > 0)
+        if (resumedSession && newSessionTicket == null)
         {
-            /*
-             * A change cipher spec message is only one byte with the value 1.
-             */
-            byte[] b = new byte[1];
-            changeCipherSpecQueue.read(b, 0, 1, 0);
-            changeCipherSpecQueue.removeData(1);
-            if (b[0] != 1)
-            {
-                /*
-                 * This should never happen.
-                 */
-                this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
-            }
+            // Nothing has changed, and the cached session keeps its original lifetime
+            return;
+        }
 
-            /*
-             * Check if we are in the correct connection state.
-             */
-            if (this.connection_state != CS_CLIENT_FINISHED_SEND)
-            {
-                this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
-            }
+        byte[] ticket = newSessionTicket;
+        long creationTime = System.currentTimeMillis();
 
-            rs.serverClientSpecReceived();
+        if (resumedSession)
+        {
+            creationTime = sessionToResume.getCreationTime();
+        }
 
-            this.connection_state = CS_SERVER_CHANGE_CIPHER_SPEC_RECEIVED;
+        if (sessionID.length == 0 && (ticket == null || ticket.length == 0))
+        {
+            // RFC 2246 7.4.1.3. An empty session ID means the server won't cache the session
+            return;
         }
+
+        tlsClient.notifyNewSession(new TlsSession(sessionID, ticket, selectedCipherSuite,
+            selectedCompressionMethod, tlsClientContext.getServerVersion(), serverCertificate,
+            securityParameters.masterSecret, creationTime));
     }
 
     private void sendClientCertificate(Certificate clientCert) throws IOException
@@ -814,18 +791,29 @@ public class TlsProtocolHandler
         rs.writeMessage(ContentType.handshake, message, 0, message.length);
     }
 
-    private void sendCertificateVerify(byte[] data) throws IOException
+    private void sendCertificateVerify(SignatureAndHashAlgorithm algorithm, byte[] data) throws IOException
     {
         /*
          * Send signature of handshake messages so far to prove we are the owner of the
-         * cert See RFC 2246 sections 4.7, 7.4.3 and 7.4.8
+         * cert See RFC 2246 sections 4.7, 7.4.3 and 7.4.8. From TLS 1.2 the signature is
+         * preceded by its algorithm (RFC 5246 4.7).
          */
         ByteArrayOutputStream bos = new ByteArrayOutputStream();
         TlsUtils.writeUint8(HandshakeType.certificate_verify, bos);
-        TlsUtils.writeUint24(data.length + 2, bos);
+
+        // Reserve space for length
+        TlsUtils.writeUint24(0, bos);
+
+        if (algorithm != null)
+        {
+            algorithm.encode(bos);
+        }
         TlsUtils.writeOpaque16(data, bos);
         byte[] message = bos.toByteArray();
 
+        // Patch actual length back in
+        TlsUtils.writeUint24(message.length - 4, message, 1);
+
         rs.writeMessage(ContentType.handshake, message, 0, message.length);
     }
 
@@ -844,7 +832,8 @@ public class TlsProtocolHandler
     }
 
     /**
-     * Connects to the remote system using client authentication
+     * Connects to the remote system using client authentication. In non-blocking mode this
+     * only queues the client hello, and the handshake proceeds as input is offered.
      * 
      * @param tlsClient
      * @throws IOException If handshake was not successful.
@@ -887,11 +876,6 @@ public class TlsProtocolHandler
 
         os.write(securityParameters.clientRandom);
 
-        /*
-         * Length of Session id
-         */
-        TlsUtils.writeUint8((short)0, os);
-
         /*
          * Cipher suites
          */
@@ -900,6 +884,46 @@ public class TlsProtocolHandler
         // Integer -> byte[]
         this.clientExtensions = this.tlsClient.getClientExtensions();
 
+        /*
+         * Session id
+         */
+        this.sessionToResume = this.tlsClient.getSessionToResume();
+        if (sessionToResume != null)
+        {
+            byte[] ticket = sessionToResume.getSessionTicketInternal();
+
+            if (ticket != null && ticket.length > 0)
+            {
+                /*
+                 * RFC 5077 3.4. When presenting a ticket, the client MAY generate and include
+                 * a Session ID in the TLS ClientHello. If the server accepts the ticket, it
+                 * MUST respond with the same Session ID.
+                 */
+                this.offeredSessionID = new byte[32];
+                random.nextBytes(offeredSessionID);
+
+                if (clientExtensions == null)
+                {
+                    this.clientExtensions = new Hashtable();
+                }
+                clientExtensions.put(EXT_SessionTicket, ticket);
+            }
+            else if (sessionToResume.getSessionIDInternal().length > 0)
+            {
+                this.offeredSessionID = sessionToResume.getSessionIDInternal();
+            }
+        }
+
+        if (offeredSessionID != null && arrayContains(offeredCipherSuites, sessionToResume.getCipherSuite()))
+        {
+            TlsUtils.writeOpaque8(offeredSessionID, os);
+        }
+        else
+        {
+            this.offeredSessionID = null;
+            TlsUtils.writeUint8((short)0, os);
+        }
+
         // Cipher Suites (and SCSV)
         {
             /*
@@ -960,300 +984,6 @@ public class TlsProtocolHandler
         /*
          * We will now read data, until we have completed the handshake.
          */
-        while (connection_state != CS_DONE)
-        {
-            safeReadData();
-        }
-
-        this.tlsInputStream = new TlsInputStream(this);
-        this.tlsOutputStream = new TlsOutputStream(this);
-    }
-
-    /**
-     * Read data from the network. The method will return immediately, if there is still
-     * some data left in the buffer, or block until some application data has been read
-     * from the network.
-     * 
-     * @param buf The buffer where the data will be copied to.
-     * @param offset The position where the data will be placed in the buffer.
-     * @param len The maximum number of bytes to read.
-     * @return The number of bytes read.
-     * @throws IOException If something goes wrong during reading data.
-     */
-    protected int readApplicationData(byte[] buf, int offset, int len) throws IOException
-    {
-        while (applicationDataQueue.size() == 0)
-        {
-            /*
-             * We need to read some data.
-             */
-            if (this.closed)
-            {
-                if (this.failedWithError)
-                {
-                    /*
-                     * Something went terribly wrong, we should throw an IOException
-                     */
-                    throw new IOException(TLS_ERROR_MESSAGE);
-                }
-
-                /*
-                 * Connection has been closed, there is no more data to read.
-                 */
-                return -1;
-            }
-
-            safeReadData();
-        }
-        len = Math.min(len, applicationDataQueue.size());
-        applicationDataQueue.read(buf, offset, len, 0);
-        applicationDataQueue.removeData(len);
-        return len;
-    }
-
-    private void safeReadData() throws IOException
-    {
-        try
-        {
-            rs.readData();
-        }
-        catch (TlsFatalAlert e)
-        {
-            if (!this.closed)
-            {
-                this.failWithError(AlertLevel.fatal, e.getAlertDescription());
-            }
-            throw e;
-        }
-        catch (IOException e)
-        {
-            if (!this.closed)
-            {
-                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
-            }
-            throw e;
-        }
-        catch (RuntimeException e)
-        {
-            if (!this.closed)
-            {
-                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
-            }
-            throw e;
-        }
-    }
-
-    private void safeWriteMessage(short type, byte[] buf, int offset, int len) throws IOException
-    {
-        try
-        {
-            rs.writeMessage(type, buf, offset, len);
-        }
-        catch (TlsFatalAlert e)
-        {
-            if (!this.closed)
-            {
-                this.failWithError(AlertLevel.fatal, e.getAlertDescription());
-            }
-            throw e;
-        }
-        catch (IOException e)
-        {
-            if (!closed)
-            {
-                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
-            }
-            throw e;
-        }
-        catch (RuntimeException e)
-        {
-            if (!closed)
-            {
-                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
-            }
-            throw e;
-        }
-    }
-
-    /**
-     * Send some application data to the remote system.
-     * <p/>
-     * The method will handle fragmentation internally.
-     * 
-     * @param buf The buffer with the data.
-     * @param offset The position in the buffer where the data is placed.
-     * @param len The length of the data.
-     * @throws IOException If something goes wrong during sending.
-     */
-    protected void writeData(byte[] buf, int offset, int len) throws IOException
-    {
-        if (this.closed)
-        {
-            if (this.failedWithError)
-            {
-                throw new IOException(TLS_ERROR_MESSAGE);
-            }
-
-            throw new IOException("Sorry, connection has been closed, you cannot write more data");
-        }
-
-        /*
-         * Protect against known IV attack!
-         * 
-         * DO NOT REMOVE THIS LINE, EXCEPT YOU KNOW EXACTLY WHAT YOU ARE DOING HERE.
-         */
-        safeWriteMessage(ContentType.application_data, emptybuf, 0, 0);
-
-        do
-        {
-            /*
-             * We are only allowed to write fragments up to 2^14 bytes.
-             */
-            int toWrite = Math.min(len, 1 << 14);
-
-            safeWriteMessage(ContentType.application_data, buf, offset, toWrite);
-
-            offset += toWrite;
-            len -= toWrite;
-        }
-        while (len > 0);
-
-    }
-
-    /**
-     * @return An OutputStream which can be used to send data.
-     */
-    public OutputStream getOutputStream()
-    {
-        return this.tlsOutputStream;
-    }
-
-    /**
-     * @return An InputStream which can be used to read data.
-     */
-    public InputStream getInputStream()
-    {
-        return this.tlsInputStream;
-    }
-
-    /**
-     * Terminate this connection with an alert.
-     * <p/>
-     * Can be used for normal closure too.
-     * 
-     * @param alertLevel The level of the alert, an be AlertLevel.fatal or AL_warning.
-     * @param alertDescription The exact alert message.
-     * @throws IOException If alert was fatal.
-     */
-    private void failWithError(short alertLevel, short alertDescription) throws IOException
-    {
-        /*
-         * Check if the connection is still open.
-         */
-        if (!closed)
-        {
-            /*
-             * Prepare the message
-             */
-            this.closed = true;
-
-            if (alertLevel == AlertLevel.fatal)
-            {
-                /*
-                 * This is a fatal message.
-                 */
-                this.failedWithError = true;
-            }
-            sendAlert(alertLevel, alertDescription);
-            rs.close();
-            if (alertLevel == AlertLevel.fatal)
-            {
-                throw new IOException(TLS_ERROR_MESSAGE);
-            }
-        }
-        else
-        {
-            throw new IOException(TLS_ERROR_MESSAGE);
-        }
-    }
-
-    private void sendAlert(short alertLevel, short alertDescription) throws IOException
-    {
-        byte[] error = new byte[2];
-        error[0] = (byte)alertLevel;
-        error[1] = (byte)alertDescription;
-
-        rs.writeMessage(ContentType.alert, error, 0, 2);
-    }
-
-    /**
-     * Closes this connection.
-     * 
-     * @throws IOException If something goes wrong during closing.
-     */
-    public void close() throws IOException
-    {
-        if (!closed)
-        {
-            this.failWithError(AlertLevel.warning, AlertDescription.close_notify);
-        }
-    }
-
-    /**
-     * Make sure the InputStream is now empty. Fail otherwise.
-     * 
-     * @param is The InputStream to check.
-     * @throws IOException If is is not empty.
-     */
-    protected void assertEmpty(ByteArrayInputStream is) throws IOException
-    {
-        if (is.available() > 0)
-        {
-            throw new TlsFatalAlert(AlertDescription.decode_error);
-        }
-    }
-
-    protected void flush() throws IOException
-    {
-        rs.flush();
-    }
-
-    private static boolean arrayContains(short[] a, short n)
-    {
-        for (int i = 0; i < a.length; ++i)
-        {
-            if (a[i] == n)
-            {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static boolean arrayContains(int[] a, int n)
-    {
-        for (int i = 0; i < a.length; ++i)
-        {
-            if (a[i] == n)
-            {
-                return true;
-            }
-        }
-        return false;
-    }
-
-    private static byte[] createRenegotiationInfo(byte[] renegotiated_connection)
-        throws IOException
-    {
-        ByteArrayOutputStream buf = new ByteArrayOutputStream();
-        TlsUtils.writeOpaque8(renegotiated_connection, buf);
-        return buf.toByteArray();
-    }
-
-    private static void writeExtension(OutputStream output, Integer extType, byte[] extValue)
-        throws IOException
-    {
-        TlsUtils.writeUint16(extType.intValue(), output);
-        TlsUtils.writeOpaque16(extValue, output);
+        completeHandshakeBlocking();
     }
 }
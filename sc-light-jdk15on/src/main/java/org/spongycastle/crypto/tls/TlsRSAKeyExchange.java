@@ -14,17 +14,19 @@ import org.spongycastle.crypto.util.PublicKeyFactory;
 /**
  * TLS 1.0 and SSLv3 RSA key exchange.
  */
-class TlsRSAKeyExchange implements TlsKeyExchange
+class TlsRSAKeyExchange implements TlsServerKeyExchange
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
 
     protected AsymmetricKeyParameter serverPublicKey = null;
 
     protected RSAKeyParameters rsaServerPublicKey = null;
 
+    protected RSAKeyParameters rsaServerPrivateKey = null;
+
     protected byte[] premasterSecret;
 
-    TlsRSAKeyExchange(TlsClientContext context)
+    TlsRSAKeyExchange(TlsContext context)
     {
         this.context = context;
     }
@@ -115,6 +117,41 @@ class TlsRSAKeyExchange implements TlsKeyExchange
             this.rsaServerPublicKey, os);
     }
 
+    public void processServerCredentials(TlsServerCredentials serverCredentials) throws IOException
+    {
+        if (!(serverCredentials.getPrivateKey() instanceof RSAKeyParameters))
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        TlsUtils.validateKeyUsage(serverCredentials.getCertificate().certs[0], KeyUsage.keyEncipherment);
+
+        this.rsaServerPrivateKey = (RSAKeyParameters)serverCredentials.getPrivateKey();
+    }
+
+    public byte[] generateServerKeyExchange() throws IOException
+    {
+        return null;
+    }
+
+    public void processClientKeyExchange(InputStream is) throws IOException
+    {
+        byte[] encryptedPreMasterSecret;
+        if (context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv10.getFullVersion())
+        {
+            encryptedPreMasterSecret = TlsUtils.readOpaque16(is);
+        }
+        else
+        {
+            // SSLv3 sends the encrypted secret without a length
+            encryptedPreMasterSecret = new byte[is.available()];
+            TlsUtils.readFully(encryptedPreMasterSecret, is);
+        }
+
+        this.premasterSecret = TlsRSAUtils.safeDecryptPreMasterSecret(context, rsaServerPrivateKey,
+            encryptedPreMasterSecret);
+    }
+
     public byte[] generatePremasterSecret() throws IOException
     {
         byte[] tmp = this.premasterSecret;
@@ -1,7 +1,12 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.IOException;
 import java.security.SecureRandom;
 
+import org.spongycastle.asn1.ASN1Encoding;
+import org.spongycastle.asn1.DERNull;
+import org.spongycastle.asn1.x509.AlgorithmIdentifier;
+import org.spongycastle.asn1.x509.DigestInfo;
 import org.spongycastle.crypto.CryptoException;
 import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.digests.NullDigest;
@@ -11,6 +16,7 @@ import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 import org.spongycastle.crypto.params.ParametersWithRandom;
 import org.spongycastle.crypto.params.RSAKeyParameters;
 import org.spongycastle.crypto.signers.GenericSigner;
+import org.spongycastle.crypto.signers.RSADigestSigner;
 
 class TlsRSASigner implements TlsSigner
 {
@@ -23,6 +29,24 @@ class TlsRSASigner implements TlsSigner
         return sig.generateSignature();
     }
 
+    public byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey,
+        short hashAlgorithm, byte[] hash) throws CryptoException
+    {
+        // RFC 5246 4.7. In TLS 1.2 RSA signatures are PKCS #1 v1.5 over a DigestInfo
+        byte[] digestInfo;
+        try
+        {
+            digestInfo = new DigestInfo(new AlgorithmIdentifier(TlsUtils.getOIDForHashAlgorithm(hashAlgorithm),
+                DERNull.INSTANCE), hash).getEncoded(ASN1Encoding.DER);
+        }
+        catch (IOException e)
+        {
+            throw new CryptoException("unable to encode DigestInfo", e);
+        }
+
+        return calculateRawSignature(random, privateKey, digestInfo);
+    }
+
     public Signer createVerifyer(AsymmetricKeyParameter publicKey)
     {
         Signer s = new GenericSigner(new PKCS1Encoding(new RSABlindedEngine()), new CombinedHash());
@@ -30,6 +54,18 @@ class TlsRSASigner implements TlsSigner
         return s;
     }
 
+    public Signer createVerifyer(short hashAlgorithm, AsymmetricKeyParameter publicKey)
+    {
+        Signer s = new RSADigestSigner(TlsUtils.createHash(hashAlgorithm));
+        s.init(false, publicKey);
+        return s;
+    }
+
+    public short getSignatureAlgorithm()
+    {
+        return SignatureAlgorithm.rsa;
+    }
+
     public boolean isValidPublicKey(AsymmetricKeyParameter publicKey)
     {
         return publicKey instanceof RSAKeyParameters && !publicKey.isPrivate();
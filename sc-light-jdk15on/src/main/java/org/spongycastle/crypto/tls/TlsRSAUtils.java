@@ -11,7 +11,7 @@ import org.spongycastle.crypto.params.RSAKeyParameters;
 
 public class TlsRSAUtils
 {
-    public static byte[] generateEncryptedPreMasterSecret(TlsClientContext context,
+    public static byte[] generateEncryptedPreMasterSecret(TlsContext context,
         RSAKeyParameters rsaServerPublicKey, OutputStream os) throws IOException
     {
         /*
@@ -48,4 +48,53 @@ public class TlsRSAUtils
 
         return premasterSecret;
     }
+
+    /**
+     * Decrypt the premaster secret a client sent, without letting on whether it was well formed.
+     * <p/>
+     * RFC 5246 7.4.7.1. A server that reveals a padding or version failure gives away a
+     * decryption oracle (Bleichenbacher), so on any failure it carries on with a random
+     * premaster secret instead, and the handshake fails later at the finished messages.
+     */
+    static byte[] safeDecryptPreMasterSecret(TlsContext context, RSAKeyParameters rsaServerPrivateKey,
+        byte[] encryptedPreMasterSecret)
+    {
+        ProtocolVersion clientVersion = context.getClientVersion();
+
+        byte[] fallback = new byte[48];
+        context.getSecureRandom().nextBytes(fallback);
+
+        byte[] premasterSecret = fallback;
+        try
+        {
+            PKCS1Encoding encoding = new PKCS1Encoding(new RSABlindedEngine());
+            encoding.init(false, new ParametersWithRandom(rsaServerPrivateKey, context.getSecureRandom()));
+
+            byte[] decrypted = encoding.processBlock(encryptedPreMasterSecret, 0, encryptedPreMasterSecret.length);
+
+            if (decrypted.length == 48)
+            {
+                int versionCheck = ((decrypted[0] & 0xff) ^ clientVersion.getMajorVersion())
+                    | ((decrypted[1] & 0xff) ^ clientVersion.getMinorVersion());
+
+                if (versionCheck == 0)
+                {
+                    premasterSecret = decrypted;
+                }
+            }
+        }
+        catch (InvalidCipherTextException e)
+        {
+            /*
+             * RFC 5246 7.4.7.1. In any case, a TLS server MUST NOT generate an alert if
+             * processing an RSA-encrypted premaster secret message fails.
+             */
+        }
+        catch (RuntimeException e)
+        {
+            // Nor if the block is the wrong size for the key
+        }
+
+        return premasterSecret;
+    }
 }
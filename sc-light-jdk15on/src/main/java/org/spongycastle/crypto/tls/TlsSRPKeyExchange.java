@@ -9,11 +9,9 @@ import org.spongycastle.asn1.x509.KeyUsage;
 import org.spongycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.spongycastle.asn1.x509.X509CertificateStructure;
 import org.spongycastle.crypto.CryptoException;
-import org.spongycastle.crypto.Signer;
 import org.spongycastle.crypto.agreement.srp.SRP6Client;
 import org.spongycastle.crypto.agreement.srp.SRP6Util;
 import org.spongycastle.crypto.digests.SHA1Digest;
-import org.spongycastle.crypto.io.SignerInputStream;
 import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 import org.spongycastle.crypto.util.PublicKeyFactory;
 import org.spongycastle.util.BigIntegers;
@@ -23,7 +21,7 @@ import org.spongycastle.util.BigIntegers;
  */
 class TlsSRPKeyExchange implements TlsKeyExchange
 {
-    protected TlsClientContext context;
+    protected TlsContext context;
     protected int keyExchange;
     protected TlsSigner tlsSigner;
     protected byte[] identity;
@@ -35,7 +33,7 @@ class TlsSRPKeyExchange implements TlsKeyExchange
     protected BigInteger B = null;
     protected SRP6Client srpClient = new SRP6Client();
 
-    TlsSRPKeyExchange(TlsClientContext context, int keyExchange, byte[] identity, byte[] password)
+    TlsSRPKeyExchange(TlsContext context, int keyExchange, byte[] identity, byte[] password)
     {
         switch (keyExchange)
         {
@@ -107,15 +105,13 @@ class TlsSRPKeyExchange implements TlsKeyExchange
 
     public void processServerKeyExchange(InputStream is) throws IOException
     {
-        SecurityParameters securityParameters = context.getSecurityParameters();
-
         InputStream sigIn = is;
-        Signer signer = null;
+        ServerKeyExchangeVerifier verifier = null;
 
         if (tlsSigner != null)
         {
-            signer = initSigner(tlsSigner, securityParameters);
-            sigIn = new SignerInputStream(is, signer);
+            verifier = new ServerKeyExchangeVerifier(context, tlsSigner, this.serverPublicKey, is);
+            sigIn = verifier.getParamsInput();
         }
 
         byte[] NBytes = TlsUtils.readOpaque16(sigIn);
@@ -123,14 +119,9 @@ class TlsSRPKeyExchange implements TlsKeyExchange
         byte[] sBytes = TlsUtils.readOpaque8(sigIn);
         byte[] BBytes = TlsUtils.readOpaque16(sigIn);
 
-        if (signer != null)
+        if (verifier != null)
         {
-            byte[] sigByte = TlsUtils.readOpaque16(is);
-
-            if (!signer.verifySignature(sigByte))
-            {
-                throw new TlsFatalAlert(AlertDescription.bad_certificate);
-            }
+            verifier.verify(is);
         }
 
         BigInteger N = new BigInteger(1, NBytes);
@@ -192,12 +183,4 @@ class TlsSRPKeyExchange implements TlsKeyExchange
             throw new TlsFatalAlert(AlertDescription.illegal_parameter);
         }
     }
-
-    protected Signer initSigner(TlsSigner tlsSigner, SecurityParameters securityParameters)
-    {
-        Signer signer = tlsSigner.createVerifyer(this.serverPublicKey);
-        signer.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
-        signer.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
-        return signer;
-    }
 }
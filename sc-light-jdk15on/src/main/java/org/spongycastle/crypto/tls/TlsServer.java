@@ -0,0 +1,56 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+import java.util.Hashtable;
+
+/**
+ * The server's side of the choices in a handshake. An instance serves one connection, but may
+ * hold state shared with other connections, such as its credentials and caches.
+ */
+public interface TlsServer
+{
+    void init(TlsServerContext context);
+
+    void notifyClientVersion(ProtocolVersion clientVersion) throws IOException;
+
+    void notifyOfferedCipherSuites(int[] offeredCipherSuites) throws IOException;
+
+    void notifyOfferedCompressionMethods(short[] offeredCompressionMethods) throws IOException;
+
+    void notifySecureRenegotiation(boolean secureRenegotiation) throws IOException;
+
+    // Hashtable is (Integer -> byte[])
+    void processClientExtensions(Hashtable clientExtensions) throws IOException;
+
+    /**
+     * @return the version to use, no later than the client's and no earlier than TLS 1.0.
+     */
+    ProtocolVersion getServerVersion() throws IOException;
+
+    /**
+     * Return the cache of sessions clients may resume, or null to only do full handshakes.
+     */
+    TlsServerSessionCache getSessionCache();
+
+    /**
+     * Called instead of {@link #getSelectedCipherSuite()} and
+     * {@link #getSelectedCompressionMethod()} when the client resumes a cached session, whose
+     * cipher suite and compression method then apply.
+     */
+    void notifyResumedSession(TlsSession session) throws IOException;
+
+    int getSelectedCipherSuite() throws IOException;
+
+    short getSelectedCompressionMethod() throws IOException;
+
+    // Hashtable is (Integer -> byte[])
+    Hashtable getServerExtensions() throws IOException;
+
+    TlsServerCredentials getCredentials() throws IOException;
+
+    TlsServerKeyExchange getKeyExchange() throws IOException;
+
+    TlsCompression getCompression() throws IOException;
+
+    TlsCipher getCipher() throws IOException;
+}
@@ -0,0 +1,6 @@
+package org.spongycastle.crypto.tls;
+
+public interface TlsServerContext
+    extends TlsContext
+{
+}
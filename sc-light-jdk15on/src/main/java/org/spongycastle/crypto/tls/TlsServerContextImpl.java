@@ -0,0 +1,16 @@
+package org.spongycastle.crypto.tls;
+
+import java.security.SecureRandom;
+
+class TlsServerContextImpl extends AbstractTlsContext implements TlsServerContext
+{
+    TlsServerContextImpl(SecureRandom secureRandom, SecurityParameters securityParameters)
+    {
+        super(secureRandom, securityParameters);
+    }
+
+    public boolean isServer()
+    {
+        return true;
+    }
+}
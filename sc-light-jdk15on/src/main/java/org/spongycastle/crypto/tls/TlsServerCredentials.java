@@ -0,0 +1,183 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Vector;
+
+import org.spongycastle.crypto.CryptoException;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
+import org.spongycastle.crypto.params.DSAPrivateKeyParameters;
+import org.spongycastle.crypto.params.ECPrivateKeyParameters;
+import org.spongycastle.crypto.params.RSAKeyParameters;
+
+/**
+ * A server's certificate chain and private key. Nothing here changes after construction, so
+ * one instance can be shared by every connection the server accepts, from any thread; the
+ * Certificate message is encoded once up front rather than on each handshake.
+ */
+public class TlsServerCredentials
+    implements TlsCredentials
+{
+    /*
+     * RFC 5246 7.4.1.4.1. The hashes we will sign a ServerKeyExchange with, most preferred first.
+     */
+    private static final short[] SIGNATURE_HASH_ALGORITHMS = new short[] { HashAlgorithm.sha256,
+        HashAlgorithm.sha384, HashAlgorithm.sha512, HashAlgorithm.sha224, HashAlgorithm.sha1 };
+
+    private final Certificate certificate;
+    private final AsymmetricKeyParameter privateKey;
+    private final TlsSigner signer;
+    private final byte[] encodedCertificate;
+
+    /**
+     * @param certificate the server's certificate chain, end-entity certificate first.
+     * @param privateKey the private key for the end-entity certificate, which may be RSA, DSA
+     *            or EC.
+     * @throws IOException if the certificate chain cannot be encoded.
+     */
+    public TlsServerCredentials(Certificate certificate, AsymmetricKeyParameter privateKey)
+        throws IOException
+    {
+        if (certificate == null)
+        {
+            throw new IllegalArgumentException("'certificate' cannot be null");
+        }
+        if (certificate.isEmpty())
+        {
+            throw new IllegalArgumentException("'certificate' cannot be empty");
+        }
+        if (privateKey == null)
+        {
+            throw new IllegalArgumentException("'privateKey' cannot be null");
+        }
+        if (!privateKey.isPrivate())
+        {
+            throw new IllegalArgumentException("'privateKey' must be private");
+        }
+
+        if (privateKey instanceof RSAKeyParameters)
+        {
+            this.signer = new TlsRSASigner();
+        }
+        else if (privateKey instanceof DSAPrivateKeyParameters)
+        {
+            this.signer = new TlsDSSSigner();
+        }
+        else if (privateKey instanceof ECPrivateKeyParameters)
+        {
+            this.signer = new TlsECDSASigner();
+        }
+        else
+        {
+            throw new IllegalArgumentException("'privateKey' type not supported: "
+                + privateKey.getClass().getName());
+        }
+
+        this.certificate = certificate;
+        this.privateKey = privateKey;
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        certificate.encode(buf);
+        this.encodedCertificate = buf.toByteArray();
+    }
+
+    public Certificate getCertificate()
+    {
+        return certificate;
+    }
+
+    /**
+     * @return {@link SignatureAlgorithm} of the private key.
+     */
+    public short getSignatureAlgorithm()
+    {
+        return signer.getSignatureAlgorithm();
+    }
+
+    AsymmetricKeyParameter getPrivateKey()
+    {
+        return privateKey;
+    }
+
+    /**
+     * @return the body of the Certificate message.
+     */
+    byte[] getEncodedCertificate()
+    {
+        return encodedCertificate;
+    }
+
+    /**
+     * Sign the parameters of a ServerKeyExchange message, and write the signature after them.
+     * <p/>
+     * Before TLS 1.2 the hash is md5 + sha1 (or just sha1 for DSA and ECDSA). In TLS 1.2 it is
+     * the one we like best of those the client listed in its signature_algorithms, or sha1 if
+     * it sent none (RFC 5246 7.4.1.4.1), and is named before the signature.
+     */
+    void generateServerKeyExchangeSignature(TlsContext context, byte[] params, OutputStream os)
+        throws IOException
+    {
+        SecurityParameters securityParameters = context.getSecurityParameters();
+
+        try
+        {
+            byte[] signature;
+            if (TlsUtils.isTLSv12(context))
+            {
+                short hashAlgorithm = selectSignatureHashAlgorithm(securityParameters.clientSignatureAlgorithms);
+                Digest d = TlsUtils.createHash(hashAlgorithm);
+                byte[] hash = calculateHash(d, securityParameters, params);
+
+                signature = signer.calculateRawSignature(context.getSecureRandom(), privateKey,
+                    hashAlgorithm, hash);
+
+                new SignatureAndHashAlgorithm(hashAlgorithm, signer.getSignatureAlgorithm()).encode(os);
+            }
+            else
+            {
+                byte[] md5andsha1 = calculateHash(new CombinedHash(), securityParameters, params);
+
+                signature = signer.calculateRawSignature(context.getSecureRandom(), privateKey,
+                    md5andsha1);
+            }
+
+            TlsUtils.writeOpaque16(signature, os);
+        }
+        catch (CryptoException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+    }
+
+    private short selectSignatureHashAlgorithm(Vector clientSignatureAlgorithms) throws IOException
+    {
+        if (clientSignatureAlgorithms == null)
+        {
+            return HashAlgorithm.sha1;
+        }
+
+        for (int i = 0; i < SIGNATURE_HASH_ALGORITHMS.length; ++i)
+        {
+            if (clientSignatureAlgorithms.contains(new SignatureAndHashAlgorithm(
+                SIGNATURE_HASH_ALGORITHMS[i], signer.getSignatureAlgorithm())))
+            {
+                return SIGNATURE_HASH_ALGORITHMS[i];
+            }
+        }
+
+        throw new TlsFatalAlert(AlertDescription.handshake_failure);
+    }
+
+    private static byte[] calculateHash(Digest d, SecurityParameters securityParameters, byte[] params)
+    {
+        d.update(securityParameters.clientRandom, 0, securityParameters.clientRandom.length);
+        d.update(securityParameters.serverRandom, 0, securityParameters.serverRandom.length);
+        d.update(params, 0, params.length);
+
+        byte[] hash = new byte[d.getDigestSize()];
+        d.doFinal(hash, 0);
+        return hash;
+    }
+}
@@ -0,0 +1,23 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A key exchange the server side can be run with. The server calls
+ * {@link #processServerCredentials(TlsServerCredentials)}, {@link #generateServerKeyExchange()}
+ * and {@link #processClientKeyExchange(InputStream)}, then
+ * {@link #generatePremasterSecret()}.
+ */
+public interface TlsServerKeyExchange
+    extends TlsKeyExchange
+{
+    void processServerCredentials(TlsServerCredentials serverCredentials) throws IOException;
+
+    /**
+     * @return the body of the ServerKeyExchange message, or null if this key exchange has none.
+     */
+    byte[] generateServerKeyExchange() throws IOException;
+
+    void processClientKeyExchange(InputStream is) throws IOException;
+}
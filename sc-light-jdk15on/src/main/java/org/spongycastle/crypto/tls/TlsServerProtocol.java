@@ -0,0 +1,581 @@
+package org.spongycastle.crypto.tls;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.SecureRandom;
+import java.util.Enumeration;
+import java.util.Hashtable;
+
+import org.spongycastle.util.Arrays;
+
+/**
+ * An implementation of the server side of TLS 1.0 - 1.2.
+ * <p/>
+ * Full handshakes and the resumption of sessions by session ID are supported. Client
+ * certificates are not requested, and renegotiation is refused.
+ */
+public class TlsServerProtocol
+    extends TlsProtocol
+{
+    private static final Integer EXT_SignatureAlgorithms = new Integer(ExtensionType.signature_algorithms);
+
+    /*
+     * Our Connection states
+     */
+    private static final short CS_START = 0;
+    private static final short CS_SERVER_HELLO_DONE_SEND = 1;
+    private static final short CS_CLIENT_KEY_EXCHANGE_RECEIVED = 2;
+    private static final short CS_SERVER_FINISHED_SEND = 3;
+    private static final short CS_CLIENT_CHANGE_CIPHER_SPEC_RECEIVED = 4;
+    private static final short CS_DONE = 5;
+
+    private TlsServerContextImpl tlsServerContext = null;
+    private TlsServer tlsServer = null;
+    private TlsServerKeyExchange keyExchange = null;
+    private TlsServerSessionCache sessionCache = null;
+
+    private byte[] sessionID = null;
+    private int selectedCipherSuite;
+    private short selectedCompressionMethod;
+    private boolean resumedSession = false;
+
+    private short connection_state = CS_START;
+
+    public TlsServerProtocol(InputStream is, OutputStream os)
+    {
+        this(is, os, createSecureRandom());
+    }
+
+    public TlsServerProtocol(InputStream is, OutputStream os, SecureRandom sr)
+    {
+        super(is, os, sr);
+    }
+
+    /**
+     * Constructor for non-blocking mode, which works as for {@link TlsProtocolHandler}: the
+     * handshake starts with {@link #accept(TlsServer)}, which returns straight away, and
+     * proceeds as the client's input is offered.
+     *
+     * @param sr the source of randomness for the connection.
+     */
+    public TlsServerProtocol(SecureRandom sr)
+    {
+        super(sr);
+    }
+
+    /**
+     * Accept a connection from a client. In blocking mode this returns once the handshake is
+     * complete; in non-blocking mode it only prepares for the client hello.
+     *
+     * @param tlsServer the choices for this connection.
+     * @throws IOException If handshake was not successful.
+     */
+    public void accept(TlsServer tlsServer) throws IOException
+    {
+        if (tlsServer == null)
+        {
+            throw new IllegalArgumentException("'tlsServer' cannot be null");
+        }
+        if (this.tlsServer != null)
+        {
+            throw new IllegalStateException("accept can only be called once");
+        }
+
+        this.securityParameters = new SecurityParameters();
+
+        this.tlsServerContext = new TlsServerContextImpl(random, securityParameters);
+
+        this.rs.init(tlsServerContext);
+
+        this.tlsServer = tlsServer;
+        this.tlsServer.init(tlsServerContext);
+
+        /*
+         * We will now read data, until we have completed the handshake.
+         */
+        completeHandshakeBlocking();
+    }
+
+    protected void processHandshakeMessage(short type, byte[] buf) throws IOException
+    {
+        ByteArrayInputStream is = new ByteArrayInputStream(buf);
+
+        switch (type)
+        {
+            case HandshakeType.client_hello:
+                switch (connection_state)
+                {
+                    case CS_START:
+                        processClientHello(is);
+                        break;
+                    case CS_DONE:
+                        // Renegotiation not supported
+                        sendAlert(AlertLevel.warning, AlertDescription.no_renegotiation);
+                        break;
+                    default:
+                        this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+                break;
+            case HandshakeType.client_key_exchange:
+                switch (connection_state)
+                {
+                    case CS_SERVER_HELLO_DONE_SEND:
+                        this.keyExchange.processClientKeyExchange(is);
+
+                        assertEmpty(is);
+
+                        /*
+                         * Calculate the master_secret
+                         */
+                        byte[] pms = this.keyExchange.generatePremasterSecret();
+
+                        securityParameters.masterSecret = TlsUtils.calculateMasterSecret(
+                            this.tlsServerContext, pms);
+
+                        /*
+                         * RFC 2246 8.1. The pre_master_secret should be deleted from
+                         * memory once the master_secret has been computed.
+                         */
+                        Arrays.fill(pms, (byte)0);
+
+                        /*
+                         * Initialize our cipher suite
+                         */
+                        rs.setPendingConnectionState(tlsServer.getCompression(), tlsServer.getCipher());
+
+                        connection_state = CS_CLIENT_KEY_EXCHANGE_RECEIVED;
+                        break;
+                    default:
+                        this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+                break;
+            case HandshakeType.finished:
+                switch (connection_state)
+                {
+                    case CS_CLIENT_CHANGE_CIPHER_SPEC_RECEIVED:
+                        /*
+                         * Read the checksum from the finished message, which always has 12
+                         * bytes since we only speak TLS.
+                         */
+                        byte[] clientVerifyData = new byte[12];
+                        TlsUtils.readFully(clientVerifyData, is);
+
+                        assertEmpty(is);
+
+                        /*
+                         * Calculate our own checksum.
+                         */
+                        byte[] expectedClientVerifyData = TlsUtils.calculateVerifyData(tlsServerContext,
+                            "client finished", rs.getCurrentHash(TlsUtils.SSL_CLIENT));
+
+                        /*
+                         * Compare both checksums.
+                         */
+                        if (!Arrays.constantTimeAreEqual(expectedClientVerifyData, clientVerifyData))
+                        {
+                            /*
+                             * Wrong checksum in the finished message.
+                             */
+                            this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+                        }
+
+                        if (!resumedSession)
+                        {
+                            /*
+                             * RFC 2246 7.3. In a full handshake the client finishes first, and
+                             * our finished message covers its one.
+                             */
+                            updateHandshakeHash(HandshakeType.finished, clientVerifyData);
+                            sendChangeCipherSpecAndFinished();
+
+                            if (sessionCache != null)
+                            {
+                                sessionCache.putSession(new TlsSession(sessionID, null, selectedCipherSuite,
+                                    selectedCompressionMethod, tlsServerContext.getServerVersion(), null,
+                                    securityParameters.masterSecret, System.currentTimeMillis()));
+                            }
+                        }
+
+                        connection_state = CS_DONE;
+
+                        /*
+                         * We are now ready to receive application data.
+                         */
+                        this.appDataReady = true;
+                        break;
+                    default:
+                        this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                }
+                break;
+            case HandshakeType.certificate:
+            case HandshakeType.certificate_verify:
+            case HandshakeType.hello_request:
+            case HandshakeType.server_hello:
+            case HandshakeType.server_key_exchange:
+            case HandshakeType.certificate_request:
+            case HandshakeType.server_hello_done:
+            case HandshakeType.session_ticket:
+            default:
+                // We do not support this!
+                this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+                break;
+        }
+    }
+
+    protected void processChangeCipherSpecMessage() throws IOException
+    {
+        /*
+         * Check if we are in the correct connection state.
+         */
+        short expected_state = resumedSession ? CS_SERVER_FINISHED_SEND : CS_CLIENT_KEY_EXCHANGE_RECEIVED;
+
+        if (this.connection_state != expected_state)
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.unexpected_message);
+        }
+
+        rs.receivedReadCipherSpec();
+
+        this.connection_state = CS_CLIENT_CHANGE_CIPHER_SPEC_RECEIVED;
+    }
+
+    private void processClientHello(ByteArrayInputStream is) throws IOException
+    {
+        /*
+         * Read the client hello message
+         */
+        ProtocolVersion client_version = TlsUtils.readVersion(is);
+        if (client_version.getMajorVersion() != 3)
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+        }
+
+        securityParameters.clientRandom = new byte[32];
+        TlsUtils.readFully(securityParameters.clientRandom, is);
+
+        byte[] offeredSessionID = TlsUtils.readOpaque8(is);
+        if (offeredSessionID.length > 32)
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+        }
+
+        int cipher_suites_length = TlsUtils.readUint16(is);
+        if (cipher_suites_length < 2 || (cipher_suites_length & 1) != 0)
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.decode_error);
+        }
+
+        int[] offeredCipherSuites = new int[cipher_suites_length / 2];
+        for (int i = 0; i < offeredCipherSuites.length; ++i)
+        {
+            offeredCipherSuites[i] = TlsUtils.readUint16(is);
+        }
+
+        int compression_methods_length = TlsUtils.readUint8(is);
+        if (compression_methods_length < 1)
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+        }
+
+        short[] offeredCompressionMethods = new short[compression_methods_length];
+        for (int i = 0; i < offeredCompressionMethods.length; ++i)
+        {
+            offeredCompressionMethods[i] = TlsUtils.readUint8(is);
+        }
+
+        // Integer -> byte[]
+        Hashtable clientExtensions = null;
+
+        if (is.available() > 0)
+        {
+            clientExtensions = new Hashtable();
+
+            // Process extensions from extended client hello
+            byte[] extBytes = TlsUtils.readOpaque16(is);
+
+            ByteArrayInputStream ext = new ByteArrayInputStream(extBytes);
+            while (ext.available() > 0)
+            {
+                Integer extType = new Integer(TlsUtils.readUint16(ext));
+                byte[] extValue = TlsUtils.readOpaque16(ext);
+
+                /*
+                 * RFC 3546 2.3 There MUST NOT be more than one extension of the same type.
+                 */
+                if (clientExtensions.containsKey(extType))
+                {
+                    this.failWithError(AlertLevel.fatal, AlertDescription.illegal_parameter);
+                }
+
+                clientExtensions.put(extType, extValue);
+            }
+        }
+
+        assertEmpty(is);
+
+        this.tlsServerContext.setClientVersion(client_version);
+        this.tlsServer.notifyClientVersion(client_version);
+        this.tlsServer.notifyOfferedCipherSuites(offeredCipherSuites);
+        this.tlsServer.notifyOfferedCompressionMethods(offeredCompressionMethods);
+
+        /*
+         * RFC 5746 3.6. The server MUST check if the "renegotiation_info" extension is included
+         * in the ClientHello, and likewise the TLS_EMPTY_RENEGOTIATION_INFO_SCSV.
+         */
+        boolean secure_negotiation = arrayContains(offeredCipherSuites,
+            CipherSuite.TLS_EMPTY_RENEGOTIATION_INFO_SCSV);
+
+        if (clientExtensions != null && clientExtensions.containsKey(EXT_RenegotiationInfo))
+        {
+            /*
+             * If the extension is present, set secure_renegotiation flag to TRUE. The server
+             * MUST then verify that the length of the "renegotiated_connection" field is zero,
+             * and if it is not, MUST abort the handshake.
+             */
+            byte[] renegExtValue = (byte[])clientExtensions.get(EXT_RenegotiationInfo);
+            if (!Arrays.constantTimeAreEqual(renegExtValue, createRenegotiationInfo(emptybuf)))
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.handshake_failure);
+            }
+
+            secure_negotiation = true;
+        }
+
+        this.tlsServer.notifySecureRenegotiation(secure_negotiation);
+
+        if (clientExtensions != null)
+        {
+            if (clientExtensions.containsKey(EXT_SignatureAlgorithms))
+            {
+                securityParameters.clientSignatureAlgorithms = TlsUtils.parseSupportedSignatureAlgorithms(
+                    new ByteArrayInputStream((byte[])clientExtensions.get(EXT_SignatureAlgorithms)));
+            }
+
+            this.tlsServer.processClientExtensions(clientExtensions);
+        }
+
+        ProtocolVersion server_version = tlsServer.getServerVersion();
+        if (server_version.getFullVersion() > client_version.getFullVersion()
+            || server_version.getFullVersion() < ProtocolVersion.TLSv10.getFullVersion())
+        {
+            this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+        }
+
+        this.tlsServerContext.setServerVersion(server_version);
+        this.rs.setRecordVersion(server_version);
+
+        securityParameters.serverRandom = new byte[32];
+        random.nextBytes(securityParameters.serverRandom);
+        TlsUtils.writeGMTUnixTime(securityParameters.serverRandom, 0);
+
+        /*
+         * RFC 2246 7.4.1.2. If the client offered a session we still hold, and it can go on
+         * with the same version, cipher suite and compression method, resume it.
+         */
+        this.sessionCache = tlsServer.getSessionCache();
+
+        TlsSession sessionToResume = null;
+        if (sessionCache != null && offeredSessionID.length > 0)
+        {
+            sessionToResume = sessionCache.getSession(offeredSessionID);
+
+            if (sessionToResume != null
+                && (!server_version.equals(sessionToResume.getServerVersion())
+                    || !arrayContains(offeredCipherSuites, sessionToResume.getCipherSuite())
+                    || !arrayContains(offeredCompressionMethods, sessionToResume.getCompressionMethod())))
+            {
+                sessionToResume = null;
+            }
+        }
+
+        if (sessionToResume != null)
+        {
+            this.resumedSession = true;
+            this.sessionID = offeredSessionID;
+            this.selectedCipherSuite = sessionToResume.getCipherSuite();
+            this.selectedCompressionMethod = sessionToResume.getCompressionMethod();
+
+            this.tlsServer.notifyResumedSession(sessionToResume);
+
+            securityParameters.masterSecret = sessionToResume.getMasterSecret();
+        }
+        else
+        {
+            if (sessionCache == null)
+            {
+                // RFC 2246 7.4.1.3. An empty session ID tells the client we won't cache it
+                this.sessionID = emptybuf;
+            }
+            else
+            {
+                this.sessionID = new byte[32];
+                random.nextBytes(sessionID);
+            }
+
+            this.selectedCipherSuite = tlsServer.getSelectedCipherSuite();
+            if (!arrayContains(offeredCipherSuites, selectedCipherSuite)
+                || selectedCipherSuite == CipherSuite.TLS_EMPTY_RENEGOTIATION_INFO_SCSV
+                || (TlsUtils.isTLSv12CipherSuite(selectedCipherSuite) && !TlsUtils.isTLSv12(tlsServerContext)))
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+
+            this.selectedCompressionMethod = tlsServer.getSelectedCompressionMethod();
+            if (!arrayContains(offeredCompressionMethods, selectedCompressionMethod))
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+        }
+
+        securityParameters.prfAlgorithm = TlsUtils.getPRFAlgorithm(server_version, selectedCipherSuite);
+        rs.notifyPRFDetermined();
+
+        /*
+         * RFC 3546 2.3 If [...] the older session is resumed, then the server MUST ignore
+         * extensions appearing in the client hello, and send a server hello containing no
+         * extensions. RFC 5746 makes an exception for renegotiation_info.
+         */
+
+        // Integer -> byte[]
+        Hashtable serverExtensions = resumedSession ? null : tlsServer.getServerExtensions();
+        if (serverExtensions == null)
+        {
+            serverExtensions = new Hashtable();
+        }
+
+        Enumeration keys = serverExtensions.keys();
+        while (keys.hasMoreElements())
+        {
+            Integer extType = (Integer)keys.nextElement();
+
+            /*
+             * RFC 3546 2.3 The extension type MUST NOT appear in the extended server hello
+             * unless the same extension type appeared in the corresponding client hello.
+             */
+            if (clientExtensions == null || !clientExtensions.containsKey(extType))
+            {
+                this.failWithError(AlertLevel.fatal, AlertDescription.internal_error);
+            }
+        }
+
+        if (secure_negotiation)
+        {
+            /*
+             * RFC 5746 3.6. The server MUST include an empty "renegotiation_info" extension in
+             * the ServerHello message, even in response to the SCSV alone.
+             */
+            serverExtensions.put(EXT_RenegotiationInfo, createRenegotiationInfo(emptybuf));
+        }
+
+        /*
+         * The messages up to our change cipher spec go out together, in as few records as
+         * will hold them.
+         */
+        ByteArrayOutputStream flight = new ByteArrayOutputStream();
+
+        writeServerHello(flight, server_version, serverExtensions);
+
+        if (resumedSession)
+        {
+            writeFlight(flight);
+
+            /*
+             * RFC 2246 7.3. In a resumed session we finish first.
+             */
+            rs.setPendingConnectionState(tlsServer.getCompression(), tlsServer.getCipher());
+            sendChangeCipherSpecAndFinished();
+
+            connection_state = CS_SERVER_FINISHED_SEND;
+            return;
+        }
+
+        this.keyExchange = tlsServer.getKeyExchange();
+
+        TlsServerCredentials serverCredentials = tlsServer.getCredentials();
+        this.keyExchange.processServerCredentials(serverCredentials);
+
+        writeHandshakeMessage(flight, HandshakeType.certificate, serverCredentials.getEncodedCertificate());
+
+        byte[] serverKeyExchange = this.keyExchange.generateServerKeyExchange();
+        if (serverKeyExchange != null)
+        {
+            writeHandshakeMessage(flight, HandshakeType.server_key_exchange, serverKeyExchange);
+        }
+
+        writeHandshakeMessage(flight, HandshakeType.server_hello_done, emptybuf);
+
+        writeFlight(flight);
+
+        connection_state = CS_SERVER_HELLO_DONE_SEND;
+    }
+
+    private void writeServerHello(OutputStream flight, ProtocolVersion server_version,
+        Hashtable serverExtensions) throws IOException
+    {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+
+        TlsUtils.writeVersion(server_version, os);
+        os.write(securityParameters.serverRandom);
+        TlsUtils.writeOpaque8(sessionID, os);
+        TlsUtils.writeUint16(selectedCipherSuite, os);
+        TlsUtils.writeUint8(selectedCompressionMethod, os);
+
+        if (!serverExtensions.isEmpty())
+        {
+            ByteArrayOutputStream ext = new ByteArrayOutputStream();
+
+            Enumeration keys = serverExtensions.keys();
+            while (keys.hasMoreElements())
+            {
+                Integer extType = (Integer)keys.nextElement();
+                writeExtension(ext, extType, (byte[])serverExtensions.get(extType));
+            }
+
+            TlsUtils.writeOpaque16(ext.toByteArray(), os);
+        }
+
+        writeHandshakeMessage(flight, HandshakeType.server_hello, os.toByteArray());
+    }
+
+    private void sendChangeCipherSpecAndFinished() throws IOException
+    {
+        /*
+         * Now, we send change cipher state
+         */
+        sendChangeCipherSpecMessage();
+
+        /*
+         * Send our finished message.
+         */
+        byte[] serverVerifyData = TlsUtils.calculateVerifyData(tlsServerContext,
+            "server finished", rs.getCurrentHash(TlsUtils.SSL_SERVER));
+
+        writeHandshakeMessage(HandshakeType.finished, serverVerifyData);
+    }
+
+    private static void writeHandshakeMessage(OutputStream flight, short type, byte[] body)
+        throws IOException
+    {
+        TlsUtils.writeUint8(type, flight);
+        TlsUtils.writeOpaque24(body, flight);
+    }
+
+    /**
+     * Send handshake messages collected together, split into records no larger than the limit.
+     */
+    private void writeFlight(ByteArrayOutputStream flight) throws IOException
+    {
+        byte[] messages = flight.toByteArray();
+
+        int offset = 0;
+        while (offset < messages.length)
+        {
+            int toWrite = Math.min(messages.length - offset, MAX_FRAGMENT_LENGTH);
+            rs.writeMessage(ContentType.handshake, messages, offset, toWrite);
+            offset += toWrite;
+        }
+    }
+}
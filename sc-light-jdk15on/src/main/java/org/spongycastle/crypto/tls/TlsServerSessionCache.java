@@ -0,0 +1,24 @@
+package org.spongycastle.crypto.tls;
+
+/**
+ * A server's store of resumable sessions, keyed by the session ID it assigned them. The same
+ * cache is shared by all connections the server accepts, so implementations must be thread
+ * safe.
+ */
+public interface TlsServerSessionCache
+{
+    /**
+     * Return the session with the given ID, or null if there is none.
+     */
+    TlsSession getSession(byte[] sessionID);
+
+    /**
+     * Record a newly negotiated session under its session ID.
+     */
+    void putSession(TlsSession session);
+
+    /**
+     * Forget the session with the given ID, if there is one.
+     */
+    void removeSession(byte[] sessionID);
+}
@@ -0,0 +1,96 @@
+package org.spongycastle.crypto.tls;
+
+import org.spongycastle.util.Arrays;
+
+/**
+ * The state kept from a completed handshake so a later connection to the same server can
+ * resume it with an abbreviated handshake, either by session ID (RFC 2246 7.3) or by session
+ * ticket (RFC 5077).
+ */
+public class TlsSession
+{
+    private final byte[] sessionID;
+    private final byte[] sessionTicket;
+    private final int cipherSuite;
+    private final short compressionMethod;
+    private final ProtocolVersion serverVersion;
+    private final Certificate peerCertificate;
+    private final byte[] masterSecret;
+    private final long creationTime;
+
+    TlsSession(byte[] sessionID, byte[] sessionTicket, int cipherSuite, short compressionMethod,
+        ProtocolVersion serverVersion, Certificate peerCertificate, byte[] masterSecret, long creationTime)
+    {
+        this.sessionID = sessionID;
+        this.sessionTicket = sessionTicket;
+        this.cipherSuite = cipherSuite;
+        this.compressionMethod = compressionMethod;
+        this.serverVersion = serverVersion;
+        this.peerCertificate = peerCertificate;
+        this.masterSecret = Arrays.clone(masterSecret);
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * @return the session ID assigned by the server, empty if the server only issued a ticket.
+     */
+    public byte[] getSessionID()
+    {
+        return Arrays.clone(sessionID);
+    }
+
+    /**
+     * @return the RFC 5077 ticket issued by the server, or null if there is none.
+     */
+    public byte[] getSessionTicket()
+    {
+        return Arrays.clone(sessionTicket);
+    }
+
+    public int getCipherSuite()
+    {
+        return cipherSuite;
+    }
+
+    public short getCompressionMethod()
+    {
+        return compressionMethod;
+    }
+
+    public ProtocolVersion getServerVersion()
+    {
+        return serverVersion;
+    }
+
+    /**
+     * @return the certificate the server presented in the full handshake, which is not sent
+     *         again when the session is resumed. Null for an anonymous server.
+     */
+    public Certificate getPeerCertificate()
+    {
+        return peerCertificate;
+    }
+
+    /**
+     * @return the time the full handshake completed, in milliseconds since the epoch.
+     */
+    public long getCreationTime()
+    {
+        return creationTime;
+    }
+
+    byte[] getMasterSecret()
+    {
+        return Arrays.clone(masterSecret);
+    }
+
+    byte[] getSessionIDInternal()
+    {
+        return sessionID;
+    }
+
+    byte[] getSessionTicketInternal()
+    {
+        return sessionTicket;
+    }
+}
@@ -0,0 +1,23 @@
+package org.spongycastle.crypto.tls;
+
+/**
+ * A store of resumable sessions, keyed by the server they were negotiated with. The same
+ * cache may be shared by any number of clients, so implementations must be thread safe.
+ */
+public interface TlsSessionCache
+{
+    /**
+     * Return the session to offer to the given server, or null if there is none.
+     */
+    TlsSession getSession(String host, int port);
+
+    /**
+     * Record a newly negotiated session for the given server, replacing any earlier one.
+     */
+    void putSession(String host, int port, TlsSession session);
+
+    /**
+     * Forget any session held for the given server.
+     */
+    void removeSession(String host, int port);
+}
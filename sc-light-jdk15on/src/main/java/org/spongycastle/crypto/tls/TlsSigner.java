@@ -11,7 +11,20 @@ interface TlsSigner
     byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey, byte[] md5andsha1)
         throws CryptoException;
 
+    /**
+     * Sign a hash the TLS 1.2 way, where the hash algorithm is explicit (RFC 5246 4.7).
+     */
+    byte[] calculateRawSignature(SecureRandom random, AsymmetricKeyParameter privateKey,
+        short hashAlgorithm, byte[] hash) throws CryptoException;
+
     Signer createVerifyer(AsymmetricKeyParameter publicKey);
 
+    Signer createVerifyer(short hashAlgorithm, AsymmetricKeyParameter publicKey);
+
+    /**
+     * @return {@link SignatureAlgorithm}
+     */
+    short getSignatureAlgorithm();
+
     boolean isValidPublicKey(AsymmetricKeyParameter publicKey);
 }
@@ -1,11 +1,18 @@
 package org.spongycastle.crypto.tls;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Vector;
 
+import org.spongycastle.asn1.ASN1ObjectIdentifier;
 import org.spongycastle.asn1.DERBitString;
+import org.spongycastle.asn1.nist.NISTObjectIdentifiers;
+import org.spongycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.spongycastle.asn1.x509.KeyUsage;
 import org.spongycastle.asn1.x509.X509CertificateStructure;
 import org.spongycastle.asn1.x509.X509Extension;
@@ -13,8 +20,17 @@ import org.spongycastle.asn1.x509.X509Extensions;
 import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.digests.MD5Digest;
 import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA224Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA384Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
 import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
+import org.spongycastle.crypto.params.DSAPublicKeyParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
 import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.RSAKeyParameters;
+import org.spongycastle.crypto.util.PublicKeyFactory;
 import org.spongycastle.util.Arrays;
 import org.spongycastle.util.Strings;
 import org.spongycastle.util.io.Streams;
@@ -294,6 +310,289 @@ public class TlsUtils
         return buf;
     }
 
+    /**
+     * The PRF of the negotiated connection: the MD5/SHA-1 construction before TLS 1.2, and
+     * P_hash with the cipher suite's PRF hash from then on.
+     */
+    static byte[] PRF(TlsContext context, byte[] secret, String asciiLabel, byte[] seed, int size)
+    {
+        int prfAlgorithm = context.getSecurityParameters().prfAlgorithm;
+
+        if (prfAlgorithm == PRFAlgorithm.tls_prf_legacy)
+        {
+            return PRF(secret, asciiLabel, seed, size);
+        }
+
+        return PRF_1_2(createPRFHash(prfAlgorithm), secret, asciiLabel, seed, size);
+    }
+
+    static boolean isTLSv12(TlsContext context)
+    {
+        return context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv12.getFullVersion();
+    }
+
+    static boolean isTLSv11(TlsContext context)
+    {
+        return context.getServerVersion().getFullVersion() >= ProtocolVersion.TLSv11.getFullVersion();
+    }
+
+    /**
+     * RFC 5246 5. Cipher suites defined before TLS 1.2 use the SHA-256 PRF in TLS 1.2, and
+     * those defined with it name their PRF hash.
+     */
+    static int getPRFAlgorithm(ProtocolVersion version, int cipherSuite)
+    {
+        if (version.getFullVersion() < ProtocolVersion.TLSv12.getFullVersion())
+        {
+            return PRFAlgorithm.tls_prf_legacy;
+        }
+
+        switch (cipherSuite)
+        {
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_anon_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_GCM_SHA384:
+                return PRFAlgorithm.tls_prf_sha384;
+
+            default:
+                return PRFAlgorithm.tls_prf_sha256;
+        }
+    }
+
+    /**
+     * @return true for the cipher suites that are only defined for TLS 1.2 and later.
+     */
+    static boolean isTLSv12CipherSuite(int cipherSuite)
+    {
+        switch (cipherSuite)
+        {
+            case CipherSuite.TLS_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DHE_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_DSS_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_DH_anon_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_DH_anon_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_CBC_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_128_CBC_SHA256:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_CBC_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_128_CBC_SHA256:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_CBC_SHA384:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_ECDSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDHE_RSA_WITH_AES_256_GCM_SHA384:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_128_GCM_SHA256:
+            case CipherSuite.TLS_ECDH_RSA_WITH_AES_256_GCM_SHA384:
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    static short getHashAlgorithmForPRFAlgorithm(int prfAlgorithm)
+    {
+        switch (prfAlgorithm)
+        {
+            case PRFAlgorithm.tls_prf_sha256:
+                return HashAlgorithm.sha256;
+            case PRFAlgorithm.tls_prf_sha384:
+                return HashAlgorithm.sha384;
+            default:
+                throw new IllegalArgumentException("unknown PRFAlgorithm: " + prfAlgorithm);
+        }
+    }
+
+    static Digest createPRFHash(int prfAlgorithm)
+    {
+        return createHash(getHashAlgorithmForPRFAlgorithm(prfAlgorithm));
+    }
+
+    static Digest createHash(short hashAlgorithm)
+    {
+        switch (hashAlgorithm)
+        {
+            case HashAlgorithm.md5:
+                return new MD5Digest();
+            case HashAlgorithm.sha1:
+                return new SHA1Digest();
+            case HashAlgorithm.sha224:
+                return new SHA224Digest();
+            case HashAlgorithm.sha256:
+                return new SHA256Digest();
+            case HashAlgorithm.sha384:
+                return new SHA384Digest();
+            case HashAlgorithm.sha512:
+                return new SHA512Digest();
+            default:
+                throw new IllegalArgumentException("unknown HashAlgorithm: " + hashAlgorithm);
+        }
+    }
+
+    static Digest cloneHash(short hashAlgorithm, Digest hash)
+    {
+        switch (hashAlgorithm)
+        {
+            case HashAlgorithm.md5:
+                return new MD5Digest((MD5Digest)hash);
+            case HashAlgorithm.sha1:
+                return new SHA1Digest((SHA1Digest)hash);
+            case HashAlgorithm.sha224:
+                return new SHA224Digest((SHA224Digest)hash);
+            case HashAlgorithm.sha256:
+                return new SHA256Digest((SHA256Digest)hash);
+            case HashAlgorithm.sha384:
+                return new SHA384Digest((SHA384Digest)hash);
+            case HashAlgorithm.sha512:
+                return new SHA512Digest((SHA512Digest)hash);
+            default:
+                throw new IllegalArgumentException("unknown HashAlgorithm: " + hashAlgorithm);
+        }
+    }
+
+    static ASN1ObjectIdentifier getOIDForHashAlgorithm(short hashAlgorithm)
+    {
+        switch (hashAlgorithm)
+        {
+            case HashAlgorithm.md5:
+                return PKCSObjectIdentifiers.md5;
+            case HashAlgorithm.sha1:
+                return OIWObjectIdentifiers.idSHA1;
+            case HashAlgorithm.sha224:
+                return NISTObjectIdentifiers.id_sha224;
+            case HashAlgorithm.sha256:
+                return NISTObjectIdentifiers.id_sha256;
+            case HashAlgorithm.sha384:
+                return NISTObjectIdentifiers.id_sha384;
+            case HashAlgorithm.sha512:
+                return NISTObjectIdentifiers.id_sha512;
+            default:
+                throw new IllegalArgumentException("unknown HashAlgorithm: " + hashAlgorithm);
+        }
+    }
+
+    /**
+     * @return Vector of {@link SignatureAndHashAlgorithm} this implementation can verify.
+     */
+    static Vector getDefaultSupportedSignatureAlgorithms()
+    {
+        short[] hashAlgorithms = new short[] { HashAlgorithm.sha512, HashAlgorithm.sha384,
+            HashAlgorithm.sha256, HashAlgorithm.sha224, HashAlgorithm.sha1 };
+        short[] signatureAlgorithms = new short[] { SignatureAlgorithm.rsa, SignatureAlgorithm.dsa,
+            SignatureAlgorithm.ecdsa };
+
+        Vector result = new Vector();
+        for (int i = 0; i < signatureAlgorithms.length; ++i)
+        {
+            for (int j = 0; j < hashAlgorithms.length; ++j)
+            {
+                result.addElement(new SignatureAndHashAlgorithm(hashAlgorithms[j], signatureAlgorithms[i]));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the {@link SignatureAlgorithm} the end-entity certificate's key signs with.
+     */
+    static short getSignatureAlgorithm(Certificate certificate) throws IOException
+    {
+        AsymmetricKeyParameter publicKey;
+        try
+        {
+            publicKey = PublicKeyFactory.createKey(certificate.certs[0].getSubjectPublicKeyInfo());
+        }
+        catch (RuntimeException e)
+        {
+            throw new TlsFatalAlert(AlertDescription.internal_error);
+        }
+
+        if (publicKey instanceof RSAKeyParameters)
+        {
+            return SignatureAlgorithm.rsa;
+        }
+        if (publicKey instanceof DSAPublicKeyParameters)
+        {
+            return SignatureAlgorithm.dsa;
+        }
+        if (publicKey instanceof ECPublicKeyParameters)
+        {
+            return SignatureAlgorithm.ecdsa;
+        }
+
+        throw new TlsFatalAlert(AlertDescription.internal_error);
+    }
+
+    /**
+     * RFC 5246 7.4.1.4.1. The extension_data is a non-empty supported_signature_algorithms list.
+     */
+    static byte[] createSignatureAlgorithmsExtension(Vector supportedSignatureAlgorithms)
+        throws IOException
+    {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        encodeSupportedSignatureAlgorithms(supportedSignatureAlgorithms, buf);
+        return buf.toByteArray();
+    }
+
+    static void encodeSupportedSignatureAlgorithms(Vector supportedSignatureAlgorithms,
+        OutputStream os) throws IOException
+    {
+        if (supportedSignatureAlgorithms == null || supportedSignatureAlgorithms.size() < 1
+            || supportedSignatureAlgorithms.size() >= (1 << 15))
+        {
+            throw new IllegalArgumentException(
+                "'supportedSignatureAlgorithms' must have length from 1 to (2^15 - 1)");
+        }
+
+        writeUint16(2 * supportedSignatureAlgorithms.size(), os);
+        for (int i = 0; i < supportedSignatureAlgorithms.size(); ++i)
+        {
+            ((SignatureAndHashAlgorithm)supportedSignatureAlgorithms.elementAt(i)).encode(os);
+        }
+    }
+
+    static Vector parseSupportedSignatureAlgorithms(InputStream is) throws IOException
+    {
+        int length = readUint16(is);
+        if (length < 2 || (length & 1) != 0)
+        {
+            throw new TlsFatalAlert(AlertDescription.decode_error);
+        }
+
+        byte[] data = new byte[length];
+        readFully(data, is);
+
+        ByteArrayInputStream buf = new ByteArrayInputStream(data);
+        Vector result = new Vector();
+        while (buf.available() > 0)
+        {
+            result.addElement(SignatureAndHashAlgorithm.parse(buf));
+        }
+        return result;
+    }
+
     static byte[] concat(byte[] a, byte[] b)
     {
         byte[] c = new byte[a.length + b.length];
@@ -320,7 +619,7 @@ public class TlsUtils
         }
     }
     
-    static byte[] calculateKeyBlock(TlsClientContext context, int size)
+    static byte[] calculateKeyBlock(TlsContext context, int size)
     {
         ProtocolVersion pv = context.getServerVersion();
         SecurityParameters sp = context.getSecurityParameters();
@@ -330,7 +629,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(sp.masterSecret, "key expansion", random, size);
+            return PRF(context, sp.masterSecret, "key expansion", random, size);
         }
 
         Digest md5 = new MD5Digest();
@@ -362,7 +661,7 @@ public class TlsUtils
         return rval;
     }
 
-    static byte[] calculateMasterSecret(TlsClientContext context, byte[] pms)
+    static byte[] calculateMasterSecret(TlsContext context, byte[] pms)
     {
         ProtocolVersion pv = context.getServerVersion();
         SecurityParameters sp = context.getSecurityParameters();
@@ -372,7 +671,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(pms, "master secret", random, 48);
+            return PRF(context, pms, "master secret", random, 48);
         }
 
         Digest md5 = new MD5Digest();
@@ -402,7 +701,7 @@ public class TlsUtils
         return rval;
     }
 
-    static byte[] calculateVerifyData(TlsClientContext context, String asciiLabel, byte[] handshakeHash)
+    static byte[] calculateVerifyData(TlsContext context, String asciiLabel, byte[] handshakeHash)
     {
         ProtocolVersion pv = context.getServerVersion();
         SecurityParameters sp = context.getSecurityParameters();
@@ -411,7 +710,7 @@ public class TlsUtils
 
         if (isTls)
         {
-            return PRF(sp.masterSecret, asciiLabel, handshakeHash, 12);
+            return PRF(context, sp.masterSecret, asciiLabel, handshakeHash, 12);
         }
 
         return handshakeHash;
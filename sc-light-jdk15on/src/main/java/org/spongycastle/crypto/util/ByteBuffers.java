@@ -0,0 +1,530 @@
+package org.spongycastle.crypto.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.util.Arrays;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.MultiBlockCipher;
+import org.spongycastle.crypto.StreamCipher;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+
+/**
+ * ByteBuffer versions of the processing methods of digests, MACs and ciphers.
+ * <p>
+ * Input is taken from the position to the limit of an input buffer, and output
+ * is written starting at the position of an output buffer; both positions are
+ * moved past the bytes consumed and produced. If the output buffer does not
+ * have room for the result a DataLengthException is thrown before any input is
+ * consumed.
+ * <p>
+ * Heap buffers are processed in place in their backing arrays. Direct and read
+ * only buffers are passed through a staging array kept for each thread, a chunk
+ * at a time, so apart from outputs larger than a chunk no memory is allocated on
+ * each call. The staging arrays are cleared of what they held before each call
+ * returns.
+ */
+public abstract class ByteBuffers
+{
+    private static final int CHUNK_SIZE = 4096;
+
+    private static final ThreadLocal staging = new ThreadLocal()
+    {
+        protected Object initialValue()
+        {
+            return new Staging();
+        }
+    };
+
+    /**
+     * update the digest with the remaining bytes in in.
+     *
+     * @param digest the digest to update.
+     * @param in the buffer holding the input.
+     */
+    public static void update(Digest digest, ByteBuffer in)
+    {
+        if (in.hasArray())
+        {
+            digest.update(in.array(), in.arrayOffset() + in.position(), in.remaining());
+            in.position(in.limit());
+        }
+        else
+        {
+            byte[] buf = getStaging().in;
+            int used = Math.min(in.remaining(), buf.length);
+
+            try
+            {
+                while (in.hasRemaining())
+                {
+                    int len = Math.min(in.remaining(), buf.length);
+
+                    in.get(buf, 0, len);
+                    digest.update(buf, 0, len);
+                }
+            }
+            finally
+            {
+                clear(buf, used);
+            }
+        }
+    }
+
+    /**
+     * close the digest, writing the result to out and resetting the digest.
+     *
+     * @param digest the digest to complete.
+     * @param out the buffer the digest is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     */
+    public static int doFinal(Digest digest, ByteBuffer out)
+    {
+        int len = digest.getDigestSize();
+
+        checkOutput(out, len);
+
+        if (out.hasArray())
+        {
+            digest.doFinal(out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + len);
+        }
+        else
+        {
+            byte[] buf = getStaging().getOut(len);
+
+            try
+            {
+                digest.doFinal(buf, 0);
+                out.put(buf, 0, len);
+            }
+            finally
+            {
+                clear(buf, len);
+            }
+        }
+
+        return len;
+    }
+
+    /**
+     * update the MAC with the remaining bytes in in.
+     *
+     * @param mac the MAC to update.
+     * @param in the buffer holding the input.
+     * @exception IllegalStateException if the MAC is not initialised.
+     */
+    public static void update(Mac mac, ByteBuffer in)
+        throws IllegalStateException
+    {
+        if (in.hasArray())
+        {
+            mac.update(in.array(), in.arrayOffset() + in.position(), in.remaining());
+            in.position(in.limit());
+        }
+        else
+        {
+            byte[] buf = getStaging().in;
+            int used = Math.min(in.remaining(), buf.length);
+
+            try
+            {
+                while (in.hasRemaining())
+                {
+                    int len = Math.min(in.remaining(), buf.length);
+
+                    in.get(buf, 0, len);
+                    mac.update(buf, 0, len);
+                }
+            }
+            finally
+            {
+                clear(buf, used);
+            }
+        }
+    }
+
+    /**
+     * compute the final stage of the MAC, writing the result to out and
+     * resetting the MAC.
+     *
+     * @param mac the MAC to complete.
+     * @param out the buffer the MAC is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the MAC is not initialised.
+     */
+    public static int doFinal(Mac mac, ByteBuffer out)
+        throws DataLengthException, IllegalStateException
+    {
+        int len = mac.getMacSize();
+
+        checkOutput(out, len);
+
+        if (out.hasArray())
+        {
+            mac.doFinal(out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + len);
+        }
+        else
+        {
+            byte[] buf = getStaging().getOut(len);
+
+            try
+            {
+                mac.doFinal(buf, 0);
+                out.put(buf, 0, len);
+            }
+            finally
+            {
+                clear(buf, len);
+            }
+        }
+
+        return len;
+    }
+
+    /**
+     * process the remaining bytes in in, which must be a whole number of
+     * blocks, with a block cipher.
+     *
+     * @param cipher the block cipher to use.
+     * @param in the buffer holding the input.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if the input is not a whole number of blocks,
+     * or there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     */
+    public static int processBlocks(BlockCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException, IllegalStateException
+    {
+        if (in.remaining() % cipher.getBlockSize() != 0)
+        {
+            throw new DataLengthException("input not a whole number of blocks");
+        }
+
+        return process(cipher, in, out);
+    }
+
+    /**
+     * process the remaining bytes in in with a stream cipher.
+     *
+     * @param cipher the stream cipher to use.
+     * @param in the buffer holding the input.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     */
+    public static int processBytes(StreamCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException
+    {
+        return process(cipher, in, out);
+    }
+
+    /**
+     * process the remaining bytes in in with a buffered cipher, writing any
+     * output produced to out.
+     *
+     * @param cipher the buffered cipher to use.
+     * @param in the buffer holding the input.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     */
+    public static int processBytes(BufferedBlockCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException, IllegalStateException
+    {
+        return process(cipher, in, out);
+    }
+
+    /**
+     * process the last block in the buffer of a buffered cipher, writing the
+     * output to out and resetting the cipher.
+     *
+     * @param cipher the buffered cipher to complete.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @exception InvalidCipherTextException if padding is expected and not found.
+     */
+    public static int doFinal(BufferedBlockCipher cipher, ByteBuffer out)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        int size = cipher.getOutputSize(0);
+
+        checkOutput(out, size);
+
+        if (out.hasArray())
+        {
+            int len = cipher.doFinal(out.array(), out.arrayOffset() + out.position());
+
+            out.position(out.position() + len);
+
+            return len;
+        }
+
+        byte[] buf = getStaging().getOut(size);
+
+        try
+        {
+            int len = cipher.doFinal(buf, 0);
+
+            out.put(buf, 0, len);
+
+            return len;
+        }
+        finally
+        {
+            clear(buf, size);
+        }
+    }
+
+    /**
+     * process the remaining bytes in in with an AEAD cipher, writing any
+     * output produced to out.
+     *
+     * @param cipher the AEAD cipher to use.
+     * @param in the buffer holding the input.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     */
+    public static int processBytes(AEADBlockCipher cipher, ByteBuffer in, ByteBuffer out)
+        throws DataLengthException, IllegalStateException
+    {
+        return process(cipher, in, out);
+    }
+
+    /**
+     * finish the operation of an AEAD cipher, writing any remaining output, and
+     * the MAC if encrypting, to out.
+     *
+     * @param cipher the AEAD cipher to complete.
+     * @param out the buffer the output is written to.
+     * @return the number of bytes written.
+     * @exception DataLengthException if there isn't enough space in out.
+     * @exception IllegalStateException if the cipher isn't initialised.
+     * @exception InvalidCipherTextException if the MAC fails to match.
+     */
+    public static int doFinal(AEADBlockCipher cipher, ByteBuffer out)
+        throws DataLengthException, IllegalStateException, InvalidCipherTextException
+    {
+        int size = cipher.getOutputSize(0);
+
+        checkOutput(out, size);
+
+        if (out.hasArray())
+        {
+            int len = cipher.doFinal(out.array(), out.arrayOffset() + out.position());
+
+            out.position(out.position() + len);
+
+            return len;
+        }
+
+        byte[] buf = getStaging().getOut(size);
+
+        try
+        {
+            int len = cipher.doFinal(buf, 0);
+
+            out.put(buf, 0, len);
+
+            return len;
+        }
+        finally
+        {
+            clear(buf, size);
+        }
+    }
+
+    private static int process(Object cipher, ByteBuffer in, ByteBuffer out)
+    {
+        int len = in.remaining();
+
+        checkOutput(out, updateOutputSize(cipher, len));
+
+        if (in.hasArray() && out.hasArray())
+        {
+            int outLen = processArrays(cipher, in.array(), in.arrayOffset() + in.position(), len,
+                out.array(), out.arrayOffset() + out.position());
+
+            in.position(in.limit());
+            out.position(out.position() + outLen);
+
+            return outLen;
+        }
+
+        Staging s = getStaging();
+        int chunkSize = CHUNK_SIZE;
+        int total = 0;
+
+        if (cipher instanceof BlockCipher)
+        {
+            chunkSize -= CHUNK_SIZE % ((BlockCipher)cipher).getBlockSize();
+        }
+
+        try
+        {
+            while (in.hasRemaining())
+            {
+                total += processChunk(cipher, s, in, Math.min(in.remaining(), chunkSize), out);
+            }
+        }
+        finally
+        {
+            if (!in.hasArray())
+            {
+                clear(s.in, Math.min(len, chunkSize));
+            }
+        }
+
+        return total;
+    }
+
+    private static int processChunk(Object cipher, Staging s, ByteBuffer in, int chunk, ByteBuffer out)
+    {
+        byte[] inBuf;
+        int inOff;
+
+        if (in.hasArray())
+        {
+            inBuf = in.array();
+            inOff = in.arrayOffset() + in.position();
+            in.position(in.position() + chunk);
+        }
+        else
+        {
+            inBuf = s.in;
+            inOff = 0;
+            in.get(inBuf, 0, chunk);
+        }
+
+        int outLen;
+
+        if (out.hasArray())
+        {
+            outLen = processArrays(cipher, inBuf, inOff, chunk, out.array(), out.arrayOffset() + out.position());
+            out.position(out.position() + outLen);
+        }
+        else
+        {
+            int size = updateOutputSize(cipher, chunk);
+            byte[] outBuf = s.getOut(size);
+
+            try
+            {
+                outLen = processArrays(cipher, inBuf, inOff, chunk, outBuf, 0);
+                out.put(outBuf, 0, outLen);
+            }
+            finally
+            {
+                clear(outBuf, size);
+            }
+        }
+
+        return outLen;
+    }
+
+    private static int processArrays(Object cipher, byte[] in, int inOff, int len, byte[] out, int outOff)
+    {
+        if (cipher instanceof StreamCipher)
+        {
+            ((StreamCipher)cipher).processBytes(in, inOff, len, out, outOff);
+
+            return len;
+        }
+        if (cipher instanceof BufferedBlockCipher)
+        {
+            return ((BufferedBlockCipher)cipher).processBytes(in, inOff, len, out, outOff);
+        }
+        if (cipher instanceof AEADBlockCipher)
+        {
+            return ((AEADBlockCipher)cipher).processBytes(in, inOff, len, out, outOff);
+        }
+
+        BlockCipher blockCipher = (BlockCipher)cipher;
+        int blockSize = blockCipher.getBlockSize();
+
+        if (blockCipher instanceof MultiBlockCipher)
+        {
+            return ((MultiBlockCipher)blockCipher).processBlocks(in, inOff, len / blockSize, out, outOff);
+        }
+
+        for (int i = 0; i != len; i += blockSize)
+        {
+            blockCipher.processBlock(in, inOff + i, out, outOff + i);
+        }
+
+        return len;
+    }
+
+    private static int updateOutputSize(Object cipher, int len)
+    {
+        if (cipher instanceof BufferedBlockCipher)
+        {
+            return ((BufferedBlockCipher)cipher).getUpdateOutputSize(len);
+        }
+        if (cipher instanceof AEADBlockCipher)
+        {
+            return ((AEADBlockCipher)cipher).getUpdateOutputSize(len);
+        }
+
+        return len;
+    }
+
+    private static void checkOutput(ByteBuffer out, int len)
+    {
+        if (out.isReadOnly())
+        {
+            throw new ReadOnlyBufferException();
+        }
+
+        if (out.remaining() < len)
+        {
+            throw new DataLengthException("output buffer too short");
+        }
+    }
+
+    private static Staging getStaging()
+    {
+        return (Staging)staging.get();
+    }
+
+    private static void clear(byte[] buf, int len)
+    {
+        Arrays.fill(buf, 0, len, (byte)0);
+    }
+
+    /**
+     * Staging arrays for one thread. They hold plaintext and cipher text, so
+     * callers clear the part they used before returning.
+     */
+    private static class Staging
+    {
+        final byte[] in = new byte[CHUNK_SIZE];
+        final byte[] out = new byte[CHUNK_SIZE + 64];
+
+        byte[] getOut(int len)
+        {
+            // AEAD ciphers may hold back, and then release, more than a block -
+            // anything beyond a chunk gets an array of its own rather than being kept
+            if (out.length < len)
+            {
+                return new byte[len];
+            }
+
+            return out;
+        }
+    }
+}
@@ -10,7 +10,6 @@ import org.spongycastle.asn1.ASN1ObjectIdentifier;
 import org.spongycastle.asn1.ASN1Primitive;
 import org.spongycastle.asn1.ASN1Sequence;
 import org.spongycastle.asn1.DERInteger;
-import org.spongycastle.asn1.nist.NISTNamedCurves;
 import org.spongycastle.asn1.oiw.ElGamalParameter;
 import org.spongycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.spongycastle.asn1.pkcs.DHParameter;
@@ -18,11 +17,9 @@ import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.spongycastle.asn1.pkcs.PrivateKeyInfo;
 import org.spongycastle.asn1.pkcs.RSAPrivateKey;
 import org.spongycastle.asn1.sec.ECPrivateKey;
-import org.spongycastle.asn1.sec.SECNamedCurves;
-import org.spongycastle.asn1.teletrust.TeleTrusTNamedCurves;
 import org.spongycastle.asn1.x509.AlgorithmIdentifier;
 import org.spongycastle.asn1.x509.DSAParameter;
-import org.spongycastle.asn1.x9.X962NamedCurves;
+import org.spongycastle.asn1.x9.ECNamedCurveTable;
 import org.spongycastle.asn1.x9.X962Parameters;
 import org.spongycastle.asn1.x9.X9ECParameters;
 import org.spongycastle.asn1.x9.X9ObjectIdentifiers;
@@ -35,6 +32,7 @@ import org.spongycastle.crypto.params.ECDomainParameters;
 import org.spongycastle.crypto.params.ECPrivateKeyParameters;
 import org.spongycastle.crypto.params.ElGamalParameters;
 import org.spongycastle.crypto.params.ElGamalPrivateKeyParameters;
+import org.spongycastle.crypto.params.RSAMultiPrimePrivateCrtKeyParameters;
 import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
 
 /**
@@ -82,6 +80,29 @@ public class PrivateKeyFactory
         {
             RSAPrivateKey keyStructure = RSAPrivateKey.getInstance(keyInfo.parsePrivateKey());
 
+            if (keyStructure.getOtherPrimeInfos() != null)
+            {
+                ASN1Sequence infos = keyStructure.getOtherPrimeInfos();
+                BigInteger[] primes = new BigInteger[infos.size()];
+                BigInteger[] exponents = new BigInteger[infos.size()];
+                BigInteger[] coefficients = new BigInteger[infos.size()];
+
+                for (int i = 0; i != infos.size(); i++)
+                {
+                    ASN1Sequence info = ASN1Sequence.getInstance(infos.getObjectAt(i));
+
+                    primes[i] = DERInteger.getInstance(info.getObjectAt(0)).getValue();
+                    exponents[i] = DERInteger.getInstance(info.getObjectAt(1)).getValue();
+                    coefficients[i] = DERInteger.getInstance(info.getObjectAt(2)).getValue();
+                }
+
+                return new RSAMultiPrimePrivateCrtKeyParameters(keyStructure.getModulus(),
+                    keyStructure.getPublicExponent(), keyStructure.getPrivateExponent(),
+                    keyStructure.getPrime1(), keyStructure.getPrime2(), keyStructure.getExponent1(),
+                    keyStructure.getExponent2(), keyStructure.getCoefficient(),
+                    primes, exponents, coefficients);
+            }
+
             return new RSAPrivateCrtKeyParameters(keyStructure.getModulus(),
                 keyStructure.getPublicExponent(), keyStructure.getPrivateExponent(),
                 keyStructure.getPrime1(), keyStructure.getPrime2(), keyStructure.getExponent1(),
@@ -130,22 +151,7 @@ public class PrivateKeyFactory
             if (params.isNamedCurve())
             {
                 ASN1ObjectIdentifier oid = ASN1ObjectIdentifier.getInstance(params.getParameters());
-                x9 = X962NamedCurves.getByOID(oid);
-
-                if (x9 == null)
-                {
-                    x9 = SECNamedCurves.getByOID(oid);
-
-                    if (x9 == null)
-                    {
-                        x9 = NISTNamedCurves.getByOID(oid);
-
-                        if (x9 == null)
-                        {
-                            x9 = TeleTrusTNamedCurves.getByOID(oid);
-                        }
-                    }
-                }
+                x9 = ECNamedCurveTable.getByOID(oid);
             }
             else
             {
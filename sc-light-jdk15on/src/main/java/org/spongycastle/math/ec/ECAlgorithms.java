@@ -26,6 +26,135 @@ public class ECAlgorithms
         return implShamirsTrick(P, a, Q, b);
     }
 
+    /**
+     * Multiply a point which is used many times, such as the generator of a
+     * curve, by k. A comb table for the point is built the first time it is
+     * used and kept with the curve, so later calls, from any thread and for
+     * any copy of the point, are several times faster than P.multiply(k).
+     * Curves set to use the Montgomery ladder fall back to P.multiply(k).
+     *
+     * @param P the fixed point.
+     * @param k the multiplier.
+     * @return <code>k * P</code>.
+     */
+    public static ECPoint fixedPointMultiply(ECPoint P, BigInteger k)
+    {
+        if (k.signum() < 0)
+        {
+            throw new IllegalArgumentException("The multiplicator cannot be negative");
+        }
+
+        if (P.isInfinity())
+        {
+            return P;
+        }
+
+        if (k.signum() == 0)
+        {
+            return P.getCurve().getInfinity();
+        }
+
+        // the comb's table lookups depend on k, so respect a request for the ladder
+        if (P.getCurve().getMultiplierType() == ECCurve.MULTIPLIER_LADDER)
+        {
+            return P.multiply(k);
+        }
+
+        return new FixedPointCombMultiplier().multiply(P.normalize(), k, null).normalize();
+    }
+
+    /**
+     * Compute a * G + b * Q for a fixed point G, such as a generator, and a
+     * point Q which is likely to be seen again, such as a public key. The
+     * comb table for G is kept with the curve and the Window NAF table for Q
+     * is kept in the shared ECPointPreCompCache.
+     */
+    public static ECPoint sumOfCachedMultiplies(ECPoint G, BigInteger a,
+        ECPoint Q, BigInteger b)
+    {
+        // both halves are left projective, so there is a single inversion at the end
+        return implSumOfCachedMultiplies(G, a, Q, b).normalize();
+    }
+
+    /**
+     * Compute a[i] * G[i] + b[i] * Q[i] for each i, as sumOfCachedMultiplies()
+     * does, except that the results are normalized together so the whole
+     * batch needs only one field inversion for each curve in it.
+     *
+     * @return an array of the affine results, in the same order as the inputs.
+     */
+    public static ECPoint[] sumOfCachedMultiplies(ECPoint[] G, BigInteger[] a,
+        ECPoint[] Q, BigInteger[] b)
+    {
+        int count = G.length;
+
+        if (a.length != count || Q.length != count || b.length != count)
+        {
+            throw new IllegalArgumentException("point and multiplicator arrays must be the same length");
+        }
+
+        ECPoint[] results = new ECPoint[count];
+
+        for (int i = 0; i != count; i++)
+        {
+            results[i] = implSumOfCachedMultiplies(G[i], a[i], Q[i], b[i]);
+        }
+
+        // group the results by curve, normalizing each group in one go
+        boolean[] done = new boolean[count];
+        ECPoint[] group = new ECPoint[count];
+        int[] indices = new int[count];
+
+        for (int i = 0; i != count; i++)
+        {
+            if (done[i])
+            {
+                continue;
+            }
+
+            ECCurve c = results[i].getCurve();
+            int len = 0;
+
+            for (int j = i; j != count; j++)
+            {
+                if (!done[j] && (results[j].getCurve() == c || c.equals(results[j].getCurve())))
+                {
+                    done[j] = true;
+                    indices[len] = j;
+                    group[len++] = results[j];
+                }
+            }
+
+            c.normalizeAll(group, 0, len);
+
+            for (int j = 0; j != len; j++)
+            {
+                results[indices[j]] = group[j];
+            }
+        }
+
+        return results;
+    }
+
+    private static ECPoint implSumOfCachedMultiplies(ECPoint G, BigInteger a,
+        ECPoint Q, BigInteger b)
+    {
+        if (!G.getCurve().equals(Q.getCurve()))
+        {
+            throw new IllegalArgumentException("G and Q must be on same curve");
+        }
+
+        if (a.signum() < 0 || b.signum() < 0)
+        {
+            throw new IllegalArgumentException("The multiplicators cannot be negative");
+        }
+
+        ECPoint aG = new FixedPointCombMultiplier().multiply(G.normalize(), a, null);
+        ECPoint bQ = ECPointPreCompCache.getInstance().implMultiply(Q.normalize(), b);
+
+        return aG.add(bQ);
+    }
+
     /*
      * "Shamir's Trick", originally due to E. G. Straus
      * (Addition chains of vectors. American Mathematical Monthly,
@@ -60,7 +189,15 @@ public class ECAlgorithms
         ECPoint Q, BigInteger l)
     {
         int m = Math.max(k.bitLength(), l.bitLength());
-        ECPoint Z = P.add(Q);
+
+        // affine points allow the cheaper mixed additions in the loop
+        ECPoint[] points = new ECPoint[]{ P, Q, P.add(Q) };
+        P.getCurve().normalizeAll(points);
+
+        P = points[0];
+        Q = points[1];
+
+        ECPoint Z = points[2];
         ECPoint R = P.getCurve().getInfinity();
 
         for (int i = m - 1; i >= 0; --i)
@@ -87,6 +224,6 @@ public class ECAlgorithms
             }
         }
 
-        return R;
+        return R.normalize();
     }
 }
@@ -1,6 +1,7 @@
 package org.spongycastle.math.ec;
 
 import java.math.BigInteger;
+import java.util.Hashtable;
 import java.util.Random;
 
 /**
@@ -8,8 +9,30 @@ import java.util.Random;
  */
 public abstract class ECCurve
 {
+    /**
+     * The window method chosen by the point type.
+     */
+    public static final int MULTIPLIER_DEFAULT = 0;
+
+    /**
+     * The Montgomery ladder, which uses the same sequence of point
+     * operations for any multiplier, for use with secret multipliers.
+     */
+    public static final int MULTIPLIER_LADDER = 1;
+
+    /**
+     * The GLV method, for curves with an efficiently computable endomorphism.
+     */
+    public static final int MULTIPLIER_GLV = 2;
+
     ECFieldElement a, b;
 
+    // comb tables for fixed points on this curve, see FixedPointCombMultiplier
+    final Hashtable fixedPointTables = new Hashtable();
+
+    private volatile int multiplierType = MULTIPLIER_DEFAULT;
+    private volatile ECMultiplier multiplier = null;
+
     public abstract int getFieldSize();
 
     public abstract ECFieldElement fromBigInteger(BigInteger x);
@@ -30,6 +53,136 @@ public abstract class ECCurve
         return b;
     }
 
+    /**
+     * Return the GLV endomorphism of this curve, or null if it doesn't have
+     * one which can be computed cheaply.
+     */
+    public GlvEndomorphism getEndomorphism()
+    {
+        return null;
+    }
+
+    /**
+     * Select the multiplication method used by ECPoint.multiply() for points
+     * on this curve.
+     *
+     * @param type one of MULTIPLIER_DEFAULT, MULTIPLIER_LADDER or MULTIPLIER_GLV.
+     * @exception IllegalArgumentException if the type is unknown, or is
+     * MULTIPLIER_GLV and the curve has no endomorphism.
+     */
+    public void setMultiplierType(int type)
+    {
+        switch (type)
+        {
+        case MULTIPLIER_DEFAULT:
+            this.multiplier = null;
+            break;
+        case MULTIPLIER_LADDER:
+            this.multiplier = new MontgomeryLadderMultiplier();
+            break;
+        case MULTIPLIER_GLV:
+            GlvEndomorphism endomorphism = getEndomorphism();
+
+            if (endomorphism == null)
+            {
+                throw new IllegalArgumentException("curve has no GLV endomorphism");
+            }
+
+            this.multiplier = new GlvMultiplier(endomorphism);
+            break;
+        default:
+            throw new IllegalArgumentException("unknown multiplier type: " + type);
+        }
+
+        this.multiplierType = type;
+    }
+
+    public int getMultiplierType()
+    {
+        return multiplierType;
+    }
+
+    /**
+     * Return the multiplier selected for this curve, or null if points
+     * should use their own default.
+     */
+    ECMultiplier getMultiplier()
+    {
+        return multiplier;
+    }
+
+    /**
+     * Normalize a number of points at once, replacing each point in the array
+     * with its affine form. Montgomery's trick is used so only a single field
+     * inversion is needed for the whole array. Null entries, and points
+     * already normalized, are left alone.
+     *
+     * @param points the points to normalize, all of which must be on this curve.
+     */
+    public void normalizeAll(ECPoint[] points)
+    {
+        normalizeAll(points, 0, points.length);
+    }
+
+    /**
+     * Normalize len points starting at off in the passed in array.
+     *
+     * @param points the points to normalize, all of which must be on this curve.
+     * @param off the index of the first point.
+     * @param len the number of points.
+     */
+    public void normalizeAll(ECPoint[] points, int off, int len)
+    {
+        int[] indices = new int[len];
+        ECFieldElement[] zs = new ECFieldElement[len];
+        int count = 0;
+
+        for (int i = off; i < off + len; i++)
+        {
+            ECPoint p = points[i];
+
+            if (p == null || p.isNormalized())
+            {
+                continue;
+            }
+
+            if (p.getCurve() != this && !this.equals(p.getCurve()))
+            {
+                throw new IllegalArgumentException("points must be on this curve");
+            }
+
+            indices[count] = i;
+            zs[count++] = p.z;
+        }
+
+        if (count == 0)
+        {
+            return;
+        }
+
+        // products[i] = zs[0] * ... * zs[i]
+        ECFieldElement[] products = new ECFieldElement[count];
+
+        products[0] = zs[0];
+        for (int i = 1; i < count; i++)
+        {
+            products[i] = products[i - 1].multiply(zs[i]);
+        }
+
+        // u is the inverse of zs[0] * ... * zs[i] as i works down
+        ECFieldElement u = products[count - 1].invert();
+
+        for (int i = count - 1; i > 0; i--)
+        {
+            int j = indices[i];
+
+            points[j] = points[j].normalize(u.multiply(products[i - 1]));
+            u = u.multiply(zs[i]);
+        }
+
+        points[indices[0]] = points[indices[0]].normalize(u);
+    }
+
     /**
      * Elliptic curve over Fp
      */
@@ -38,12 +191,19 @@ public abstract class ECCurve
         BigInteger q;
         ECPoint.Fp infinity;
 
+        // allow the cheaper doubling formulae to be used
+        boolean aIsZero;
+        boolean aIsMinusThree;
+
         public Fp(BigInteger q, BigInteger a, BigInteger b)
         {
             this.q = q;
             this.a = fromBigInteger(a);
             this.b = fromBigInteger(b);
             this.infinity = new ECPoint.Fp(this, null, null);
+
+            this.aIsZero = this.a.isZero();
+            this.aIsMinusThree = this.a.toBigInteger().add(BigInteger.valueOf(3)).equals(q);
         }
 
         public BigInteger getQ()
@@ -94,7 +254,7 @@ public abstract class ECCurve
 
                 System.arraycopy(encoded, 1, i, 0, i.length);
 
-                ECFieldElement x = new ECFieldElement.Fp(this.q, new BigInteger(1, i));
+                ECFieldElement x = fromBigInteger(new BigInteger(1, i));
                 ECFieldElement alpha = x.multiply(x.square().add(a)).add(b);
                 ECFieldElement beta = alpha.sqrt();
 
@@ -115,8 +275,7 @@ public abstract class ECCurve
                 }
                 else
                 {
-                    p = new ECPoint.Fp(this, x,
-                        new ECFieldElement.Fp(this.q, q.subtract(beta.toBigInteger())), true);
+                    p = new ECPoint.Fp(this, x, beta.negate(), true);
                 }
                 break;
                 // uncompressed
@@ -131,8 +290,8 @@ public abstract class ECCurve
                 System.arraycopy(encoded, xEnc.length + 1, yEnc, 0, yEnc.length);
 
                 p = new ECPoint.Fp(this,
-                        new ECFieldElement.Fp(this.q, new BigInteger(1, xEnc)),
-                        new ECFieldElement.Fp(this.q, new BigInteger(1, yEnc)));
+                        fromBigInteger(new BigInteger(1, xEnc)),
+                        fromBigInteger(new BigInteger(1, yEnc)));
                 break;
             default:
                 throw new RuntimeException("Invalid point encoding 0x" + Integer.toString(encoded[0], 16));
@@ -19,6 +19,11 @@ public abstract class ECFieldElement
     public abstract ECFieldElement invert();
     public abstract ECFieldElement sqrt();
 
+    public boolean isZero()
+    {
+        return 0 == toBigInteger().signum();
+    }
+
     public String toString()
     {
         return this.toBigInteger().toString(2);
@@ -66,6 +71,11 @@ public abstract class ECFieldElement
         {
             return q;
         }
+
+        public boolean isZero()
+        {
+            return x.signum() == 0;
+        }
         
         public ECFieldElement add(ECFieldElement b)
         {
@@ -290,7 +300,9 @@ public abstract class ECFieldElement
 
             if (!(other instanceof ECFieldElement.Fp))
             {
-                return false;
+                // elements of fields with a specialised representation know
+                // how to compare themselves with this one.
+                return other instanceof ECFieldElement && other.equals(this);
             }
             
             ECFieldElement.Fp o = (ECFieldElement.Fp)other;
@@ -828,14 +840,15 @@ public abstract class ECFieldElement
         private int k3;
 
         /**
-         * The <code>IntArray</code> holding the bits.
+         * The non-zero middle terms of the reduction polynomial, k1 for TPB
+         * and k1, k2, k3 for PPB.
          */
-        private IntArray x;
+        private int[] ks;
 
         /**
-         * The number of <code>int</code>s required to hold <code>m</code> bits.
+         * The <code>LongArray</code> holding the bits.
          */
-        private int t;
+        private LongArray x;
 
         /**
          * Constructor for PPB.
@@ -859,13 +872,12 @@ public abstract class ECFieldElement
             int k3,
             BigInteger x)
         {
-            // t = m / 32 rounded up to the next integer
-            t = (m + 31) >> 5;
-            this.x = new IntArray(x, t);
+            this.x = new LongArray(x, (m + 63) >>> 6);
 
             if ((k2 == 0) && (k3 == 0))
             {
                 this.representation = TPB;
+                this.ks = new int[]{ k1 };
             }
             else
             {
@@ -880,6 +892,7 @@ public abstract class ECFieldElement
                             "k2 must be larger than 0");
                 }
                 this.representation = PPB;
+                this.ks = new int[]{ k1, k2, k3 };
             }
 
             if (x.signum() < 0)
@@ -908,24 +921,18 @@ public abstract class ECFieldElement
             this(m, k, 0, 0, x);
         }
 
-        private F2m(int m, int k1, int k2, int k3, IntArray x)
+        /**
+         * Create an element of the same field as f.
+         */
+        private F2m(F2m f, LongArray x)
         {
-            t = (m + 31) >> 5;
+            this.representation = f.representation;
+            this.m = f.m;
+            this.k1 = f.k1;
+            this.k2 = f.k2;
+            this.k3 = f.k3;
+            this.ks = f.ks;
             this.x = x;
-            this.m = m;
-            this.k1 = k1;
-            this.k2 = k2;
-            this.k3 = k3;
-
-            if ((k2 == 0) && (k3 == 0))
-            {
-                this.representation = TPB;
-            }
-            else
-            {
-                this.representation = PPB;
-            }
-
         }
 
         public BigInteger toBigInteger()
@@ -933,6 +940,11 @@ public abstract class ECFieldElement
             return x.toBigInteger();
         }
 
+        public boolean isZero()
+        {
+            return x.isZero();
+        }
+
         public String getFieldName()
         {
             return "F2m";
@@ -988,10 +1000,10 @@ public abstract class ECFieldElement
             // No check performed here for performance reasons. Instead the
             // elements involved are checked in ECPoint.F2m
             // checkFieldElements(this, b);
-            IntArray iarrClone = (IntArray)this.x.clone();
+            LongArray iarrClone = (LongArray)this.x.clone();
             F2m bF2m = (F2m)b;
             iarrClone.addShifted(bF2m.x, 0);
-            return new F2m(m, k1, k2, k3, iarrClone);
+            return new F2m(this, iarrClone);
         }
 
         public ECFieldElement subtract(final ECFieldElement b)
@@ -1002,7 +1014,7 @@ public abstract class ECFieldElement
 
         public ECFieldElement multiply(final ECFieldElement b)
         {
-            // Right-to-left comb multiplication in the IntArray
+            // Left-to-right comb multiplication in the LongArray
             // Input: Binary polynomials a(z) and b(z) of degree at most m-1
             // Output: c(z) = a(z) * b(z) mod f(z)
 
@@ -1010,9 +1022,7 @@ public abstract class ECFieldElement
             // elements involved are checked in ECPoint.F2m
             // checkFieldElements(this, b);
             F2m bF2m = (F2m)b;
-            IntArray mult = x.multiply(bF2m.x, m);
-            mult.reduce(m, new int[]{k1, k2, k3});
-            return new F2m(m, k1, k2, k3, mult);
+            return new F2m(this, x.modMultiply(bF2m.x, m, ks));
         }
 
         public ECFieldElement divide(final ECFieldElement b)
@@ -1030,9 +1040,7 @@ public abstract class ECFieldElement
 
         public ECFieldElement square()
         {
-            IntArray squared = x.square(m);
-            squared.reduce(m, new int[]{k1, k2, k3});
-            return new F2m(m, k1, k2, k3, squared);
+            return new F2m(this, x.modSquare(m, ks));
         }
 
 
@@ -1041,69 +1049,7 @@ public abstract class ECFieldElement
             // Inversion in F2m using the extended Euclidean algorithm
             // Input: A nonzero polynomial a(z) of degree at most m-1
             // Output: a(z)^(-1) mod f(z)
-
-            // u(z) := a(z)
-            IntArray uz = (IntArray)this.x.clone();
-
-            // v(z) := f(z)
-            IntArray vz = new IntArray(t);
-            vz.setBit(m);
-            vz.setBit(0);
-            vz.setBit(this.k1);
-            if (this.representation == PPB) 
-            {
-                vz.setBit(this.k2);
-                vz.setBit(this.k3);
-            }
-
-            // g1(z) := 1, g2(z) := 0
-            IntArray g1z = new IntArray(t);
-            g1z.setBit(0);
-            IntArray g2z = new IntArray(t);
-
-            // while u != 0
-            while (!uz.isZero())
-//            while (uz.getUsedLength() > 0)
-//            while (uz.bitLength() > 1)
-            {
-                // j := deg(u(z)) - deg(v(z))
-                int j = uz.bitLength() - vz.bitLength();
-
-                // If j < 0 then: u(z) <-> v(z), g1(z) <-> g2(z), j := -j
-                if (j < 0) 
-                {
-                    final IntArray uzCopy = uz;
-                    uz = vz;
-                    vz = uzCopy;
-
-                    final IntArray g1zCopy = g1z;
-                    g1z = g2z;
-                    g2z = g1zCopy;
-
-                    j = -j;
-                }
-
-                // u(z) := u(z) + z^j * v(z)
-                // Note, that no reduction modulo f(z) is required, because
-                // deg(u(z) + z^j * v(z)) <= max(deg(u(z)), j + deg(v(z)))
-                // = max(deg(u(z)), deg(u(z)) - deg(v(z)) + deg(v(z))
-                // = deg(u(z))
-                // uz = uz.xor(vz.shiftLeft(j));
-                // jInt = n / 32
-                int jInt = j >> 5;
-                // jInt = n % 32
-                int jBit = j & 0x1F;
-                IntArray vzShift = vz.shiftLeft(jBit);
-                uz.addShifted(vzShift, jInt);
-
-                // g1(z) := g1(z) + z^j * g2(z)
-//                g1z = g1z.xor(g2z.shiftLeft(j));
-                IntArray g2zShift = g2z.shiftLeft(jBit);
-                g1z.addShifted(g2zShift, jInt);
-                
-            }
-            return new ECFieldElement.F2m(
-                    this.m, this.k1, this.k2, this.k3, g2z);
+            return new F2m(this, x.modInverse(m, ks));
         }
 
         public ECFieldElement sqrt()
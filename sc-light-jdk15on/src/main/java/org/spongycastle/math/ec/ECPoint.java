@@ -6,12 +6,17 @@ import org.spongycastle.asn1.x9.X9IntegerConverter;
 
 /**
  * base class for points on elliptic curves.
+ * <p>
+ * A point may be held internally in projective form, with a z co-ordinate as
+ * well as x and y; getX() and getY() always return the affine co-ordinates,
+ * converting the point first if necessary.
  */
 public abstract class ECPoint
 {
     ECCurve        curve;
     ECFieldElement x;
     ECFieldElement y;
+    ECFieldElement z;   // null if the point is affine
 
     protected boolean withCompression;
 
@@ -33,14 +38,56 @@ public abstract class ECPoint
         return curve;
     }
     
+    /**
+     * Return the affine x co-ordinate of the point. If the point is not
+     * normalized this involves a field inversion, so callers needing both
+     * co-ordinates should call normalize() first.
+     */
     public ECFieldElement getX()
     {
-        return x;
+        return normalize().x;
     }
 
+    /**
+     * Return the affine y co-ordinate of the point. If the point is not
+     * normalized this involves a field inversion, so callers needing both
+     * co-ordinates should call normalize() first.
+     */
     public ECFieldElement getY()
     {
-        return y;
+        return normalize().y;
+    }
+
+    /**
+     * Return true if the point is held in affine co-ordinates.
+     */
+    public boolean isNormalized()
+    {
+        return z == null;
+    }
+
+    /**
+     * Return the point in affine co-ordinates. Where a number of points
+     * need converting {@link ECCurve#normalizeAll(ECPoint[])} is cheaper.
+     *
+     * @return an equal point with a z co-ordinate of 1, this if it is already normalized.
+     */
+    public ECPoint normalize()
+    {
+        if (this.isNormalized())
+        {
+            return this;
+        }
+
+        return normalize(z.invert());
+    }
+
+    /**
+     * Return the point in affine co-ordinates, given the inverse of its z co-ordinate.
+     */
+    ECPoint normalize(ECFieldElement zInv)
+    {
+        return this;
     }
 
     public boolean isInfinity()
@@ -66,14 +113,15 @@ public abstract class ECPoint
             return false;
         }
 
-        ECPoint o = (ECPoint)other;
+        ECPoint p = this.normalize();
+        ECPoint o = ((ECPoint)other).normalize();
 
-        if (this.isInfinity())
+        if (p.isInfinity())
         {
             return o.isInfinity();
         }
 
-        return x.equals(o.x) && y.equals(o.y);
+        return p.x.equals(o.x) && p.y.equals(o.y);
     }
 
     public int hashCode()
@@ -82,8 +130,10 @@ public abstract class ECPoint
         {
             return 0;
         }
-        
-        return x.hashCode() ^ y.hashCode();
+
+        ECPoint p = this.normalize();
+
+        return p.x.hashCode() ^ p.y.hashCode();
     }
 
 //    /**
@@ -148,16 +198,34 @@ public abstract class ECPoint
             return this.curve.getInfinity();
         }
 
-        assertECMultiplier();
-        return this.multiplier.multiply(this, k, preCompInfo);
+        if (!this.isNormalized())
+        {
+            return this.normalize().multiply(k);
+        }
+
+        // a multiplier selected for the curve takes precedence over the point's own
+        ECMultiplier m = this.curve.getMultiplier();
+
+        if (m == null)
+        {
+            assertECMultiplier();
+            m = this.multiplier;
+        }
+
+        // the multipliers work in projective co-ordinates, so there is a single inversion at the end
+        return m.multiply(this, k, preCompInfo).normalize();
     }
 
     /**
-     * Elliptic curve points over Fp
+     * Elliptic curve points over Fp.
+     * <p>
+     * The results of add() and twice() are in Jacobian projective co-ordinates,
+     * (X, Y, Z) representing the affine point (X/Z^2, Y/Z^3), so that no field
+     * inversion is needed until the affine co-ordinates are asked for.
      */
     public static class Fp extends ECPoint
     {
-        
+
         /**
          * Create a point which encodes with point compression.
          * 
@@ -189,7 +257,21 @@ public abstract class ECPoint
 
             this.withCompression = withCompression;
         }
-         
+
+        Fp(ECCurve curve, ECFieldElement x, ECFieldElement y, ECFieldElement z, boolean withCompression)
+        {
+            this(curve, x, y, withCompression);
+
+            this.z = z;
+        }
+
+        ECPoint normalize(ECFieldElement zInv)
+        {
+            ECFieldElement zInv2 = zInv.square();
+
+            return new ECPoint.Fp(curve, x.multiply(zInv2), y.multiply(zInv2.multiply(zInv)), withCompression);
+        }
+
         /**
          * return the field element encoded with point compression. (S 4.3.6)
          */
@@ -200,6 +282,11 @@ public abstract class ECPoint
                 return new byte[1];
             }
 
+            if (!this.isNormalized())
+            {
+                return this.normalize().getEncoded();
+            }
+
             int qLength = converter.getByteLength(x);
             
             if (withCompression)
@@ -237,7 +324,7 @@ public abstract class ECPoint
             }
         }
 
-        // B.3 pg 62
+        // add-1998-cmo-2, using the short forms when either z co-ordinate is 1
         public ECPoint add(ECPoint b)
         {
             if (this.isInfinity())
@@ -250,10 +337,49 @@ public abstract class ECPoint
                 return this;
             }
 
+            if (this == b)
+            {
+                return this.twice();
+            }
+
+            ECFieldElement X1 = this.x, Y1 = this.y, Z1 = this.z;
+            ECFieldElement X2 = b.x, Y2 = b.y, Z2 = b.z;
+
+            ECFieldElement U1, S1, U2, S2;
+
+            if (Z1 == null)
+            {
+                U2 = X2;
+                S2 = Y2;
+            }
+            else
+            {
+                ECFieldElement Z1Z1 = Z1.square();
+
+                U2 = X2.multiply(Z1Z1);
+                S2 = Y2.multiply(Z1Z1.multiply(Z1));
+            }
+
+            if (Z2 == null)
+            {
+                U1 = X1;
+                S1 = Y1;
+            }
+            else
+            {
+                ECFieldElement Z2Z2 = Z2.square();
+
+                U1 = X1.multiply(Z2Z2);
+                S1 = Y1.multiply(Z2Z2.multiply(Z2));
+            }
+
+            ECFieldElement H = U2.subtract(U1);
+            ECFieldElement R = S2.subtract(S1);
+
             // Check if b = this or b = -this
-            if (this.x.equals(b.x))
+            if (H.isZero())
             {
-                if (this.y.equals(b.y))
+                if (R.isZero())
                 {
                     // this = b, i.e. this must be doubled
                     return this.twice();
@@ -263,15 +389,27 @@ public abstract class ECPoint
                 return this.curve.getInfinity();
             }
 
-            ECFieldElement gamma = b.y.subtract(this.y).divide(b.x.subtract(this.x));
+            ECFieldElement HH = H.square();
+            ECFieldElement HHH = HH.multiply(H);
+            ECFieldElement V = U1.multiply(HH);
 
-            ECFieldElement x3 = gamma.square().subtract(this.x).subtract(b.x);
-            ECFieldElement y3 = gamma.multiply(this.x.subtract(x3)).subtract(this.y);
+            ECFieldElement X3 = R.square().subtract(HHH).subtract(two(V));
+            ECFieldElement Y3 = R.multiply(V.subtract(X3)).subtract(S1.multiply(HHH));
+            ECFieldElement Z3 = H;
+
+            if (Z1 != null)
+            {
+                Z3 = Z3.multiply(Z1);
+            }
+            if (Z2 != null)
+            {
+                Z3 = Z3.multiply(Z2);
+            }
 
-            return new ECPoint.Fp(curve, x3, y3);
+            return new ECPoint.Fp(curve, X3, Y3, Z3, false);
         }
 
-        // B.3 pg 62
+        // dbl-1998-cmo-2, with the usual shortcuts for a = 0 and a = -3
         public ECPoint twice()
         {
             if (this.isInfinity())
@@ -280,21 +418,54 @@ public abstract class ECPoint
                 return this;
             }
 
-            if (this.y.toBigInteger().signum() == 0) 
+            if (this.y.isZero()) 
             {
                 // if y1 == 0, then (x1, y1) == (x1, -y1)
                 // and hence this = -this and thus 2(x1, y1) == infinity
                 return this.curve.getInfinity();
             }
 
-            ECFieldElement TWO = this.curve.fromBigInteger(BigInteger.valueOf(2));
-            ECFieldElement THREE = this.curve.fromBigInteger(BigInteger.valueOf(3));
-            ECFieldElement gamma = this.x.square().multiply(THREE).add(curve.a).divide(y.multiply(TWO));
+            ECCurve.Fp c = (ECCurve.Fp)this.curve;
+            ECFieldElement X1 = this.x, Y1 = this.y, Z1 = this.z;
 
-            ECFieldElement x3 = gamma.square().subtract(this.x.multiply(TWO));
-            ECFieldElement y3 = gamma.multiply(this.x.subtract(x3)).subtract(this.y);
-                
-            return new ECPoint.Fp(curve, x3, y3, this.withCompression);
+            ECFieldElement XX = X1.square();
+            ECFieldElement M;
+
+            if (c.aIsZero)
+            {
+                M = three(XX);
+            }
+            else if (Z1 == null)
+            {
+                M = three(XX).add(c.a);
+            }
+            else
+            {
+                ECFieldElement Z1Z1 = Z1.square();
+
+                if (c.aIsMinusThree)
+                {
+                    M = three(X1.add(Z1Z1).multiply(X1.subtract(Z1Z1)));
+                }
+                else
+                {
+                    M = three(XX).add(c.a.multiply(Z1Z1.square()));
+                }
+            }
+
+            ECFieldElement YY = Y1.square();
+            ECFieldElement S = two(two(X1.multiply(YY)));
+
+            ECFieldElement X3 = M.square().subtract(two(S));
+            ECFieldElement Y3 = M.multiply(S.subtract(X3)).subtract(two(two(two(YY.square()))));
+            ECFieldElement Z3 = two(Y1);
+
+            if (Z1 != null)
+            {
+                Z3 = Z3.multiply(Z1);
+            }
+
+            return new ECPoint.Fp(curve, X3, Y3, Z3, this.withCompression);
         }
 
         // D.3.2 pg 102 (see Note:)
@@ -311,7 +482,22 @@ public abstract class ECPoint
 
         public ECPoint negate()
         {
-            return new ECPoint.Fp(curve, this.x, this.y.negate(), this.withCompression);
+            if (this.isInfinity())
+            {
+                return this;
+            }
+
+            return new ECPoint.Fp(curve, this.x, this.y.negate(), this.z, this.withCompression);
+        }
+
+        private static ECFieldElement two(ECFieldElement x)
+        {
+            return x.add(x);
+        }
+
+        private static ECFieldElement three(ECFieldElement x)
+        {
+            return x.add(x).add(x);
         }
 
         /**
@@ -0,0 +1,273 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of the Window NAF precomputation for points which are
+ * multiplied again and again, such as the public keys signatures are
+ * verified against. On curves using the GLV method, the GLV tables are
+ * cached instead. Entries are keyed by the curve and the affine
+ * co-ordinates of the point, so a key decoded afresh for each signature
+ * still finds its table, and the least recently used entry is dropped when
+ * the cache is full.
+ * <p>
+ * The cache may be shared between threads. Tables are built outside the
+ * lock, and once in the cache are never modified.
+ */
+public class ECPointPreCompCache
+{
+    public static final int DEFAULT_MAX_SIZE = 64;
+
+    private static final ECPointPreCompCache instance = new ECPointPreCompCache(DEFAULT_MAX_SIZE);
+
+    private final WNafMultiplier multiplier = new WNafMultiplier();
+    private final int maxSize;
+    private final Map entries;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Return the cache shared by the signers.
+     */
+    public static ECPointPreCompCache getInstance()
+    {
+        return instance;
+    }
+
+    /**
+     * Create a cache holding the tables for at most maxSize points.
+     *
+     * @param maxSize the number of points to keep tables for.
+     */
+    public ECPointPreCompCache(int maxSize)
+    {
+        if (maxSize < 1)
+        {
+            throw new IllegalArgumentException("maxSize must be at least 1");
+        }
+
+        this.maxSize = maxSize;
+        this.entries = new LinkedHashMap(16, 0.75f, true)
+        {
+            protected boolean removeEldestEntry(Map.Entry eldest)
+            {
+                if (size() > ECPointPreCompCache.this.maxSize)
+                {
+                    evictions++;
+                    return true;
+                }
+
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Multiply p by k, using the cached precomputation for p if there is one
+     * and adding it to the cache if there isn't.
+     *
+     * @param p the point to multiply.
+     * @param k the multiplier.
+     * @return <code>k * p</code>.
+     */
+    public ECPoint multiply(ECPoint p, BigInteger k)
+    {
+        if (k.signum() < 0)
+        {
+            throw new IllegalArgumentException("The multiplicator cannot be negative");
+        }
+
+        return implMultiply(p, k).normalize();
+    }
+
+    /**
+     * As multiply(), for a non-negative k, but leaving the result in
+     * whatever co-ordinates the arithmetic produced it in.
+     */
+    ECPoint implMultiply(ECPoint p, BigInteger k)
+    {
+        if (p.isInfinity())
+        {
+            return p;
+        }
+
+        ECCurve c = p.getCurve();
+
+        if (k.signum() == 0)
+        {
+            return c.getInfinity();
+        }
+
+        // Koblitz curves have their own, faster, multiplication
+        if (c instanceof ECCurve.F2m && ((ECCurve.F2m)c).isKoblitz())
+        {
+            return p.multiply(k);
+        }
+
+        // the table covers any multiplier up to the size of the group
+        int bits = c.getFieldSize() + 1;
+
+        if (k.bitLength() > bits)
+        {
+            return p.multiply(k);
+        }
+
+        p = p.normalize();
+
+        // curves with an endomorphism keep the tables for the GLV method instead
+        ECMultiplier m = c.getMultiplier();
+        GlvMultiplier glv = (m instanceof GlvMultiplier) ? (GlvMultiplier)m : null;
+
+        byte width = WNafMultiplier.getWidth(glv != null ? bits / 2 + 1 : bits);
+        Key key = new Key(c, p);
+        PreCompInfo info;
+
+        synchronized (entries)
+        {
+            info = (PreCompInfo)entries.get(key);
+
+            // the multiplier for the curve may have changed since the table was built
+            if (glv != null ? info instanceof GlvPreCompInfo : info instanceof WNafPreCompInfo)
+            {
+                hits++;
+            }
+            else
+            {
+                info = null;
+                misses++;
+            }
+        }
+
+        if (info == null)
+        {
+            if (glv != null)
+            {
+                info = glv.precompute(p, width);
+            }
+            else
+            {
+                WNafPreCompInfo wnafInfo = new WNafPreCompInfo();
+
+                WNafMultiplier.extendPreComp(p, wnafInfo, WNafMultiplier.getPreCompLength(width));
+
+                info = wnafInfo;
+            }
+
+            synchronized (entries)
+            {
+                // another thread may have got there first, keep whichever is in
+                PreCompInfo current = (PreCompInfo)entries.get(key);
+
+                if (current == null || current.getClass() != info.getClass())
+                {
+                    entries.put(key, info);
+                }
+            }
+        }
+
+        if (glv != null)
+        {
+            return glv.multiply(c, k, (GlvPreCompInfo)info);
+        }
+
+        return multiplier.applyWindowNaf(p, k, width, ((WNafPreCompInfo)info).getPreComp());
+    }
+
+    /**
+     * Return the number of multiplications which found their table in the cache.
+     */
+    public long getHitCount()
+    {
+        synchronized (entries)
+        {
+            return hits;
+        }
+    }
+
+    /**
+     * Return the number of multiplications which had to build their table.
+     */
+    public long getMissCount()
+    {
+        synchronized (entries)
+        {
+            return misses;
+        }
+    }
+
+    /**
+     * Return the number of tables dropped to make room for others.
+     */
+    public long getEvictionCount()
+    {
+        synchronized (entries)
+        {
+            return evictions;
+        }
+    }
+
+    /**
+     * Return the number of points the cache currently holds tables for.
+     */
+    public int size()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    /**
+     * Remove all the tables, and reset the counts.
+     */
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            hits = 0;
+            misses = 0;
+            evictions = 0;
+        }
+    }
+
+    private static class Key
+    {
+        private final ECCurve curve;
+        private final BigInteger x;
+        private final BigInteger y;
+
+        Key(ECCurve curve, ECPoint p)
+        {
+            this.curve = curve;
+            this.x = p.getX().toBigInteger();
+            this.y = p.getY().toBigInteger();
+        }
+
+        public boolean equals(Object o)
+        {
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+
+            Key other = (Key)o;
+
+            return x.equals(other.x) && y.equals(other.y) && curve.equals(other.curve);
+        }
+
+        public int hashCode()
+        {
+            return curve.hashCode() ^ x.hashCode() ^ (y.hashCode() * 31);
+        }
+    }
+}
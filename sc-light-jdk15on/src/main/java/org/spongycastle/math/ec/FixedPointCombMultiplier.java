@@ -0,0 +1,153 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+import java.util.Hashtable;
+
+/**
+ * Class implementing the fixed-base comb method (Lim-Lee) for multiplying a
+ * point which is used over and over again, such as the generator of a curve.
+ * <p>
+ * The scalar is split into <code>w</code> rows of <code>d</code> bits, and
+ * a table of the 2^w sums of the points 2^(i * d) * P is built once, so a
+ * multiplication takes only d doublings and d additions. Tables are kept
+ * with the curve, keyed by the point, so a point decoded afresh from the
+ * domain parameters of the same curve finds the same table.
+ */
+class FixedPointCombMultiplier implements ECMultiplier
+{
+    /**
+     * The most tables kept for one curve - a curve normally has a single
+     * generator, so this only guards against misuse.
+     */
+    private static final int MAX_TABLES = 4;
+
+    public ECPoint multiply(ECPoint p, BigInteger k, PreCompInfo preCompInfo)
+    {
+        FixedPointPreCompInfo info;
+
+        if (preCompInfo instanceof FixedPointPreCompInfo)
+        {
+            info = (FixedPointPreCompInfo)preCompInfo;
+        }
+        else
+        {
+            info = getPreCompInfo(p);
+
+            if (info == null)
+            {
+                return p.multiply(k);
+            }
+        }
+
+        int width = info.getWidth();
+        int d = info.getSpacing();
+
+        if (k.bitLength() > width * d)
+        {
+            return p.multiply(k);
+        }
+
+        ECPoint[] lookupTable = info.getLookupTable();
+        ECPoint R = p.getCurve().getInfinity();
+
+        for (int col = d - 1; col >= 0; --col)
+        {
+            int index = 0;
+
+            for (int row = width - 1; row >= 0; --row)
+            {
+                index <<= 1;
+
+                if (k.testBit(row * d + col))
+                {
+                    index |= 1;
+                }
+            }
+
+            R = R.twice();
+
+            if (index != 0)
+            {
+                R = R.add(lookupTable[index]);
+            }
+        }
+
+        return R;
+    }
+
+    /**
+     * Return the comb table for p, building it the first time it is asked
+     * for. Returns null if the curve already has its share of tables.
+     */
+    static FixedPointPreCompInfo getPreCompInfo(ECPoint p)
+    {
+        ECCurve c = p.getCurve();
+        Hashtable tables = c.fixedPointTables;
+
+        // held while building, so each table is only ever built once
+        synchronized (tables)
+        {
+            FixedPointPreCompInfo info = (FixedPointPreCompInfo)tables.get(p);
+
+            if (info == null)
+            {
+                if (tables.size() >= MAX_TABLES)
+                {
+                    return null;
+                }
+
+                info = precompute(p);
+                tables.put(p, info);
+            }
+
+            return info;
+        }
+    }
+
+    private static FixedPointPreCompInfo precompute(ECPoint p)
+    {
+        ECCurve c = p.getCurve();
+        int bits = c.getFieldSize() + 1;
+        int width = bits > 250 ? 6 : 5;
+        int d = (bits + width - 1) / width;
+
+        ECPoint[] pow2Table = new ECPoint[width];
+
+        pow2Table[0] = p;
+
+        for (int i = 1; i < width; ++i)
+        {
+            ECPoint t = pow2Table[i - 1];
+
+            for (int j = 0; j < d; ++j)
+            {
+                t = t.twice();
+            }
+
+            pow2Table[i] = t;
+        }
+
+        c.normalizeAll(pow2Table);
+
+        ECPoint[] lookupTable = new ECPoint[1 << width];
+
+        lookupTable[0] = c.getInfinity();
+
+        for (int i = 0; i < width; ++i)
+        {
+            int step = 1 << i;
+
+            lookupTable[step] = pow2Table[i];
+
+            for (int j = 1; j < step; ++j)
+            {
+                lookupTable[step + j] = lookupTable[j].add(pow2Table[i]);
+            }
+        }
+
+        // affine entries make the additions in the main loop cheaper
+        c.normalizeAll(lookupTable);
+
+        return new FixedPointPreCompInfo(lookupTable, width, d);
+    }
+}
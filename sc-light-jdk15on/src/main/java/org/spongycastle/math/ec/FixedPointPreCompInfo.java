@@ -0,0 +1,45 @@
+package org.spongycastle.math.ec;
+
+/**
+ * Class holding the comb table for a fixed point used by
+ * <code>FixedPointCombMultiplier</code>.
+ */
+class FixedPointPreCompInfo implements PreCompInfo
+{
+    /**
+     * Entry j holds the sum of 2^(i * spacing) * P over the bits i set in j.
+     */
+    private final ECPoint[] lookupTable;
+
+    /**
+     * The number of teeth in the comb, so the table has 2^width entries.
+     */
+    private final int width;
+
+    /**
+     * The distance in bits between the teeth of the comb.
+     */
+    private final int spacing;
+
+    FixedPointPreCompInfo(ECPoint[] lookupTable, int width, int spacing)
+    {
+        this.lookupTable = lookupTable;
+        this.width = width;
+        this.spacing = spacing;
+    }
+
+    ECPoint[] getLookupTable()
+    {
+        return lookupTable;
+    }
+
+    int getWidth()
+    {
+        return width;
+    }
+
+    int getSpacing()
+    {
+        return spacing;
+    }
+}
@@ -0,0 +1,110 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * An efficiently computable endomorphism of a prime curve with j-invariant 0
+ * (a = 0), such as secp256k1, for use in the GLV (Gallant-Lambert-Vanstone)
+ * method. The map (x, y) -> (beta * x, y) is multiplication by lambda on the
+ * points of the group, and the short lattice basis v1, v2 of the scalars
+ * with a + b * lambda = 0 mod n splits a multiplier into two of half the
+ * length.
+ */
+public class GlvEndomorphism
+    implements ECConstants
+{
+    private final BigInteger beta;
+    private final BigInteger lambda;
+    private final BigInteger a1, b1, a2, b2;
+    private final BigInteger n;
+
+    /**
+     * Base constructor.
+     *
+     * @param beta a non-trivial cube root of unity in the field.
+     * @param lambda the cube root of unity mod the group order that beta corresponds to.
+     * @param v1 the first short lattice vector, as { a1, b1 }.
+     * @param v2 the second short lattice vector, as { a2, b2 }.
+     */
+    public GlvEndomorphism(BigInteger beta, BigInteger lambda, BigInteger[] v1, BigInteger[] v2)
+    {
+        this.beta = beta;
+        this.lambda = lambda;
+        this.a1 = v1[0];
+        this.b1 = v1[1];
+        this.a2 = v2[0];
+        this.b2 = v2[1];
+
+        // the determinant of the basis is the group order
+        this.n = a1.multiply(b2).subtract(a2.multiply(b1)).abs();
+
+        if (n.signum() == 0)
+        {
+            throw new IllegalArgumentException("lattice vectors are not independent");
+        }
+    }
+
+    public BigInteger getBeta()
+    {
+        return beta;
+    }
+
+    public BigInteger getLambda()
+    {
+        return lambda;
+    }
+
+    /**
+     * Split k into { k1, k2 } with k = k1 + k2 * lambda mod n, each about
+     * half the length of n. Either of the results may be negative.
+     */
+    public BigInteger[] decomposeScalar(BigInteger k)
+    {
+        k = k.mod(n);
+
+        // the nearest lattice point to (k, 0) is c1 * v1 + c2 * v2
+        BigInteger det = a1.multiply(b2).subtract(a2.multiply(b1));
+        BigInteger c1 = roundDiv(k.multiply(b2), det);
+        BigInteger c2 = roundDiv(k.multiply(b1).negate(), det);
+
+        BigInteger k1 = k.subtract(c1.multiply(a1)).subtract(c2.multiply(a2));
+        BigInteger k2 = c1.multiply(b1).add(c2.multiply(b2)).negate();
+
+        return new BigInteger[]{ k1, k2 };
+    }
+
+    /**
+     * Return lambda * p, computed through the endomorphism.
+     */
+    public ECPoint mapPoint(ECPoint p)
+    {
+        if (p.isInfinity())
+        {
+            return p;
+        }
+
+        p = p.normalize();
+
+        ECCurve c = p.getCurve();
+
+        return c.createPoint(p.getX().toBigInteger().multiply(beta).mod(((ECCurve.Fp)c).getQ()),
+            p.getY().toBigInteger(), false);
+    }
+
+    /**
+     * x / d rounded to the nearest integer.
+     */
+    private static BigInteger roundDiv(BigInteger x, BigInteger d)
+    {
+        if (d.signum() < 0)
+        {
+            x = x.negate();
+            d = d.negate();
+        }
+
+        BigInteger[] qr = x.shiftLeft(1).add(d).divideAndRemainder(d.shiftLeft(1));
+
+        // divide() rounds towards zero, we want the floor
+        return (qr[1].signum() < 0) ? qr[0].subtract(ONE) : qr[0];
+    }
+}
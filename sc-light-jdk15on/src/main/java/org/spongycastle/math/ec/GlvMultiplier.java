@@ -0,0 +1,124 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Class implementing the GLV (Gallant-Lambert-Vanstone) method: k is split
+ * into two multipliers of half the length, k = k1 + k2 * lambda, and
+ * k1 * p + k2 * (lambda * p) is computed with interleaved Window NAFs, where
+ * lambda * p comes from the curve's endomorphism for the price of a few
+ * field multiplications. This roughly halves the number of doublings.
+ */
+class GlvMultiplier implements ECMultiplier
+{
+    private final GlvEndomorphism endomorphism;
+    private final WNafMultiplier wnafMultiplier = new WNafMultiplier();
+
+    GlvMultiplier(GlvEndomorphism endomorphism)
+    {
+        this.endomorphism = endomorphism;
+    }
+
+    public ECPoint multiply(ECPoint p, BigInteger k, PreCompInfo preCompInfo)
+    {
+        BigInteger[] ab = endomorphism.decomposeScalar(k);
+        byte width = WNafMultiplier.getWidth(Math.max(ab[0].bitLength(), ab[1].bitLength()));
+        GlvPreCompInfo glvPreCompInfo;
+
+        if ((preCompInfo instanceof GlvPreCompInfo) && ((GlvPreCompInfo)preCompInfo).getWidth() >= width)
+        {
+            glvPreCompInfo = (GlvPreCompInfo)preCompInfo;
+        }
+        else
+        {
+            // Ignore empty PreCompInfo, PreCompInfo of incorrect type or too narrow a table
+            glvPreCompInfo = precompute(p, width);
+            p.setPreCompInfo(glvPreCompInfo);
+        }
+
+        return applyGlv(p.getCurve(), ab[0], ab[1], width, glvPreCompInfo);
+    }
+
+    /**
+     * Build the tables for multiplying p with Window NAFs of up to the
+     * given width.
+     */
+    GlvPreCompInfo precompute(ECPoint p, byte width)
+    {
+        WNafPreCompInfo info = new WNafPreCompInfo();
+        WNafMultiplier.extendPreComp(p, info, WNafMultiplier.getPreCompLength(width));
+
+        ECPoint[] preCompP = info.getPreComp();
+        ECPoint[] preCompQ = new ECPoint[preCompP.length];
+
+        // the table is affine, so each entry maps with a single multiplication
+        for (int i = 0; i < preCompP.length; i++)
+        {
+            preCompQ[i] = endomorphism.mapPoint(preCompP[i]);
+        }
+
+        return new GlvPreCompInfo(preCompP, preCompQ, width);
+    }
+
+    /**
+     * Multiply the point behind info by k, using the widest Window NAF the
+     * tables allow.
+     */
+    ECPoint multiply(ECCurve c, BigInteger k, GlvPreCompInfo info)
+    {
+        BigInteger[] ab = endomorphism.decomposeScalar(k);
+
+        return applyGlv(c, ab[0], ab[1], info.getWidth(), info);
+    }
+
+    private ECPoint applyGlv(ECCurve c, BigInteger a, BigInteger b, byte width, GlvPreCompInfo info)
+    {
+        ECPoint[] preCompP = info.getPreCompP();
+        ECPoint[] preCompQ = info.getPreCompQ();
+        byte[] wnafA = windowNaf(width, a);
+        byte[] wnafB = windowNaf(width, b);
+
+        ECPoint q = c.getInfinity();
+        for (int i = Math.max(wnafA.length, wnafB.length) - 1; i >= 0; i--)
+        {
+            q = q.twice();
+            q = addDigit(q, wnafA, i, preCompP);
+            q = addDigit(q, wnafB, i, preCompQ);
+        }
+
+        return q;
+    }
+
+    /**
+     * The Window NAF of a possibly negative k.
+     */
+    private byte[] windowNaf(byte width, BigInteger k)
+    {
+        byte[] wnaf = wnafMultiplier.windowNaf(width, k.abs());
+
+        if (k.signum() < 0)
+        {
+            for (int i = 0; i < wnaf.length; i++)
+            {
+                wnaf[i] = (byte)-wnaf[i];
+            }
+        }
+
+        return wnaf;
+    }
+
+    private static ECPoint addDigit(ECPoint q, byte[] wnaf, int i, ECPoint[] preComp)
+    {
+        if (i >= wnaf.length || wnaf[i] == 0)
+        {
+            return q;
+        }
+
+        if (wnaf[i] > 0)
+        {
+            return q.add(preComp[(wnaf[i] - 1) / 2]);
+        }
+
+        return q.subtract(preComp[(-wnaf[i] - 1) / 2]);
+    }
+}
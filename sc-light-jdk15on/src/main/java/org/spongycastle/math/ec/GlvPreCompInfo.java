@@ -0,0 +1,45 @@
+package org.spongycastle.math.ec;
+
+/**
+ * Class holding the Window NAF tables for a point P and its image under the
+ * curve's endomorphism, for use by <code>GlvMultiplier</code>.
+ */
+class GlvPreCompInfo implements PreCompInfo
+{
+    /**
+     * The odd multiples 1, 3, ..., 2^(width-1)-1 times P.
+     */
+    private final ECPoint[] preCompP;
+
+    /**
+     * The same multiples of lambda * P.
+     */
+    private final ECPoint[] preCompQ;
+
+    /**
+     * The widest Window NAF the tables can be used with.
+     */
+    private final byte width;
+
+    GlvPreCompInfo(ECPoint[] preCompP, ECPoint[] preCompQ, byte width)
+    {
+        this.preCompP = preCompP;
+        this.preCompQ = preCompQ;
+        this.width = width;
+    }
+
+    ECPoint[] getPreCompP()
+    {
+        return preCompP;
+    }
+
+    ECPoint[] getPreCompQ()
+    {
+        return preCompQ;
+    }
+
+    byte getWidth()
+    {
+        return width;
+    }
+}
@@ -0,0 +1,512 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+import org.spongycastle.util.Arrays;
+
+/**
+ * A binary polynomial held in 64 bit words, least significant word first,
+ * with the arithmetic <code>ECFieldElement.F2m</code> needs. Reduction is
+ * by the trinomial or pentanomial f(z) = z^m + z^k3 + z^k2 + z^k1 + 1 of
+ * the field, passed in as m and the non-zero middle terms.
+ */
+class LongArray
+{
+    /**
+     * INTERLEAVE[b] holds the bits of b spread out over the even bits of a
+     * 16 bit value, which is b(z)^2 for a byte b(z).
+     */
+    private static final int[] INTERLEAVE = new int[256];
+
+    static
+    {
+        for (int b = 0; b < 256; b++)
+        {
+            int v = 0;
+            for (int i = 0; i < 8; i++)
+            {
+                v |= ((b >>> i) & 1) << (2 * i);
+            }
+            INTERLEAVE[b] = v;
+        }
+    }
+
+    private long[] m_ints;
+
+    public LongArray(int intLen)
+    {
+        m_ints = new long[intLen];
+    }
+
+    public LongArray(long[] ints)
+    {
+        m_ints = ints;
+    }
+
+    public LongArray(BigInteger bigInt, int minIntLen)
+    {
+        if (bigInt.signum() < 0)
+        {
+            throw new IllegalArgumentException("Only positive Integers allowed");
+        }
+
+        int intLen = (bigInt.bitLength() + 63) >>> 6;
+
+        m_ints = new long[Math.max(1, Math.max(intLen, minIntLen))];
+
+        byte[] barr = bigInt.toByteArray();
+        int last = barr.length - 1;
+
+        // barr[last - i] is byte i from the bottom, the leading sign byte (if any) is beyond intLen
+        for (int i = 0; i < (intLen << 3) && i <= last; i++)
+        {
+            m_ints[i >>> 3] |= (barr[last - i] & 0xffL) << ((i & 7) << 3);
+        }
+    }
+
+    public boolean isZero()
+    {
+        for (int i = 0; i < m_ints.length; i++)
+        {
+            if (m_ints[i] != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int getUsedLength()
+    {
+        int highestIntPos = m_ints.length;
+
+        while (highestIntPos > 0 && m_ints[highestIntPos - 1] == 0)
+        {
+            highestIntPos--;
+        }
+
+        return highestIntPos;
+    }
+
+    public int bitLength()
+    {
+        int intLen = getUsedLength();
+        if (intLen == 0)
+        {
+            return 0;
+        }
+
+        return (intLen << 6) - Long.numberOfLeadingZeros(m_ints[intLen - 1]);
+    }
+
+    private long[] resizedInts(int newLen)
+    {
+        long[] newInts = new long[newLen];
+        System.arraycopy(m_ints, 0, newInts, 0, Math.min(m_ints.length, newLen));
+        return newInts;
+    }
+
+    public BigInteger toBigInteger()
+    {
+        int usedLen = getUsedLength();
+        if (usedLen == 0)
+        {
+            return ECConstants.ZERO;
+        }
+
+        byte[] barr = new byte[usedLen << 3];
+        int barrI = barr.length;
+
+        for (int i = 0; i < usedLen; i++)
+        {
+            long mi = m_ints[i];
+            for (int j = 0; j < 8; j++)
+            {
+                barr[--barrI] = (byte)mi;
+                mi >>>= 8;
+            }
+        }
+
+        return new BigInteger(1, barr);
+    }
+
+    /**
+     * Add (xor) other, multiplied by z^shift, into this array.
+     */
+    public void addShifted(LongArray other, int shift)
+    {
+        int usedLenOther = other.getUsedLength();
+        if (usedLenOther == 0)
+        {
+            return;
+        }
+
+        int words = shift >>> 6;
+        int bits = shift & 63;
+
+        int newMinUsedLen = usedLenOther + words + (bits == 0 ? 0 : 1);
+        if (newMinUsedLen > m_ints.length)
+        {
+            m_ints = resizedInts(newMinUsedLen);
+        }
+
+        if (bits == 0)
+        {
+            for (int i = 0; i < usedLenOther; i++)
+            {
+                m_ints[words + i] ^= other.m_ints[i];
+            }
+        }
+        else
+        {
+            long prev = 0;
+            for (int i = 0; i < usedLenOther; i++)
+            {
+                long next = other.m_ints[i];
+                m_ints[words + i] ^= (next << bits) | prev;
+                prev = next >>> (64 - bits);
+            }
+            m_ints[words + usedLenOther] ^= prev;
+        }
+    }
+
+    public boolean testBit(int n)
+    {
+        return (m_ints[n >>> 6] & (1L << (n & 63))) != 0;
+    }
+
+    public void flipBit(int n)
+    {
+        m_ints[n >>> 6] ^= 1L << (n & 63);
+    }
+
+    public void setBit(int n)
+    {
+        m_ints[n >>> 6] |= 1L << (n & 63);
+    }
+
+    /**
+     * Return this * other mod f(z), using the left-to-right comb method with
+     * a window of 4 bits.
+     */
+    public LongArray modMultiply(LongArray other, int m, int[] ks)
+    {
+        int n = (m + 63) >>> 6;
+        long[] a = words(this, n);
+        long[] b = words(other, n);
+
+        // entry u of the table, tLen words from u * tLen, holds u(z) * b(z)
+        int tLen = n + 1;
+        long[] table = new long[tLen << 4];
+
+        System.arraycopy(b, 0, table, tLen, n);
+        for (int u = 2; u < 16; u += 2)
+        {
+            int uOff = u * tLen, hOff = (u >>> 1) * tLen;
+            long carry = 0;
+            for (int i = 0; i < tLen; i++)
+            {
+                long w = table[hOff + i];
+                table[uOff + i] = (w << 1) | carry;
+                carry = w >>> 63;
+            }
+            for (int i = 0; i < tLen; i++)
+            {
+                table[uOff + tLen + i] = table[uOff + i] ^ (i < n ? b[i] : 0);
+            }
+        }
+
+        long[] c = new long[n + tLen];
+
+        for (int k = 60; k >= 0; k -= 4)
+        {
+            for (int j = 0; j < n; j++)
+            {
+                int u = (int)(a[j] >>> k) & 0xF;
+                if (u != 0)
+                {
+                    int uOff = u * tLen;
+                    for (int i = 0; i < tLen; i++)
+                    {
+                        c[j + i] ^= table[uOff + i];
+                    }
+                }
+            }
+
+            if (k > 0)
+            {
+                // c(z) := c(z) * z^4
+                for (int i = c.length - 1; i > 0; i--)
+                {
+                    c[i] = (c[i] << 4) | (c[i - 1] >>> 60);
+                }
+                c[0] <<= 4;
+            }
+        }
+
+        return reduce(c, m, ks);
+    }
+
+    /**
+     * Return this^2 mod f(z). Squaring a binary polynomial just spreads its
+     * bits out, so this is done by table lookup.
+     */
+    public LongArray modSquare(int m, int[] ks)
+    {
+        int n = (m + 63) >>> 6;
+        int len = Math.min(n, m_ints.length);
+        long[] c = new long[n << 1];
+
+        for (int i = 0; i < len; i++)
+        {
+            long mi = m_ints[i];
+            c[i << 1] = interleave((int)mi);
+            c[(i << 1) + 1] = interleave((int)(mi >>> 32));
+        }
+
+        return reduce(c, m, ks);
+    }
+
+    /**
+     * Return the inverse of this mod f(z), using the extended Euclidean
+     * algorithm.
+     */
+    public LongArray modInverse(int m, int[] ks)
+    {
+        int n = (m + 63) >>> 6;
+
+        // u(z) := a(z)
+        LongArray uz = (LongArray)this.clone();
+
+        // v(z) := f(z)
+        LongArray vz = new LongArray((m >>> 6) + 1);
+        vz.setBit(m);
+        vz.setBit(0);
+        for (int i = 0; i < ks.length; i++)
+        {
+            vz.setBit(ks[i]);
+        }
+
+        // g1(z) := 1, g2(z) := 0
+        LongArray g1z = new LongArray(n);
+        g1z.setBit(0);
+        LongArray g2z = new LongArray(n);
+
+        int uzDegree = uz.bitLength();
+        int vzDegree = vz.bitLength();
+
+        // while u != 0
+        while (uzDegree != 0)
+        {
+            // j := deg(u(z)) - deg(v(z))
+            int j = uzDegree - vzDegree;
+
+            // If j < 0 then: u(z) <-> v(z), g1(z) <-> g2(z), j := -j
+            if (j < 0)
+            {
+                LongArray uzCopy = uz;
+                uz = vz;
+                vz = uzCopy;
+
+                LongArray g1zCopy = g1z;
+                g1z = g2z;
+                g2z = g1zCopy;
+
+                int degreeCopy = uzDegree;
+                uzDegree = vzDegree;
+                vzDegree = degreeCopy;
+
+                j = -j;
+            }
+
+            // u(z) := u(z) + z^j * v(z)
+            // Note, that no reduction modulo f(z) is required, because
+            // deg(u(z) + z^j * v(z)) <= max(deg(u(z)), j + deg(v(z)))
+            // = deg(u(z))
+            uz.addShifted(vz, j);
+            uzDegree = uz.bitLength();
+
+            // g1(z) := g1(z) + z^j * g2(z)
+            g1z.addShifted(g2z, j);
+        }
+
+        return new LongArray(words(g2z, n));
+    }
+
+    private static long interleave(int x)
+    {
+        return (INTERLEAVE[x & 0xFF] & 0xFFFFL)
+            | ((INTERLEAVE[(x >>> 8) & 0xFF] & 0xFFFFL) << 16)
+            | ((INTERLEAVE[(x >>> 16) & 0xFF] & 0xFFFFL) << 32)
+            | ((INTERLEAVE[x >>> 24] & 0xFFFFL) << 48);
+    }
+
+    /**
+     * Return the first n words of x, padded with zeros if need be.
+     */
+    private static long[] words(LongArray x, int n)
+    {
+        if (x.m_ints.length == n)
+        {
+            return x.m_ints;
+        }
+
+        long[] w = new long[n];
+        System.arraycopy(x.m_ints, 0, w, 0, Math.min(n, x.m_ints.length));
+        return w;
+    }
+
+    /**
+     * Reduce c, which is destroyed, mod f(z).
+     */
+    private static LongArray reduce(long[] c, int m, int[] ks)
+    {
+        int n = (m + 63) >>> 6;
+        int kMax = 0;
+
+        for (int i = 0; i < ks.length; i++)
+        {
+            kMax = Math.max(kMax, ks[i]);
+        }
+
+        if (m - kMax < 64)
+        {
+            // only small fields, such as those in the tests, get here
+            reduceBitWise(c, m, ks);
+        }
+        else
+        {
+            reduceWordWise(c, m, ks);
+        }
+
+        long[] r = new long[n];
+        System.arraycopy(c, 0, r, 0, Math.min(n, c.length));
+        return new LongArray(r);
+    }
+
+    private static void reduceBitWise(long[] c, int m, int[] ks)
+    {
+        for (int i = (c.length << 6) - 1; i >= m; i--)
+        {
+            if ((c[i >>> 6] & (1L << (i & 63))) != 0)
+            {
+                int bit = i - m;
+
+                c[i >>> 6] ^= 1L << (i & 63);
+                c[bit >>> 6] ^= 1L << (bit & 63);
+                for (int j = 0; j < ks.length; j++)
+                {
+                    int kb = bit + ks[j];
+                    c[kb >>> 6] ^= 1L << (kb & 63);
+                }
+            }
+        }
+    }
+
+    /**
+     * As z^m = z^k3 + z^k2 + z^k1 + 1 mod f(z), each word above z^m folds
+     * back in with a few shifts and xors. With m - k3 at least 64 the fold
+     * never reaches the word being folded, so one pass top down is enough.
+     */
+    private static void reduceWordWise(long[] c, int m, int[] ks)
+    {
+        int toPos = m >>> 6;
+        int len = c.length;
+
+        while (len > toPos + 1)
+        {
+            long word = c[--len];
+            if (word != 0)
+            {
+                c[len] = 0;
+                reduceWord(c, len << 6, word, m, ks);
+            }
+        }
+
+        if (toPos < c.length)
+        {
+            int partial = m & 63;
+            long word = c[toPos] >>> partial;
+            if (word != 0)
+            {
+                c[toPos] ^= word << partial;
+                reduceWord(c, m, word, m, ks);
+            }
+        }
+    }
+
+    private static void reduceWord(long[] c, int bit, long word, int m, int[] ks)
+    {
+        int offset = bit - m;
+
+        for (int j = 0; j < ks.length; j++)
+        {
+            flipWord(c, offset + ks[j], word);
+        }
+        flipWord(c, offset, word);
+    }
+
+    private static void flipWord(long[] c, int bit, long word)
+    {
+        int n = bit >>> 6;
+        int shift = bit & 63;
+
+        if (shift == 0)
+        {
+            c[n] ^= word;
+        }
+        else
+        {
+            c[n] ^= word << shift;
+            word >>>= (64 - shift);
+            if (word != 0)
+            {
+                c[n + 1] ^= word;
+            }
+        }
+    }
+
+    public boolean equals(Object o)
+    {
+        if (!(o instanceof LongArray))
+        {
+            return false;
+        }
+        LongArray other = (LongArray)o;
+        int usedLen = getUsedLength();
+        if (other.getUsedLength() != usedLen)
+        {
+            return false;
+        }
+        for (int i = 0; i < usedLen; i++)
+        {
+            if (m_ints[i] != other.m_ints[i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public int hashCode()
+    {
+        int usedLen = getUsedLength();
+        int hash = 1;
+        for (int i = 0; i < usedLen; i++)
+        {
+            long mi = m_ints[i];
+            hash = hash * 31 + ((int)mi ^ (int)(mi >>> 32));
+        }
+        return hash;
+    }
+
+    public Object clone()
+    {
+        return new LongArray(Arrays.clone(m_ints));
+    }
+
+    public String toString()
+    {
+        return toBigInteger().toString(2);
+    }
+}
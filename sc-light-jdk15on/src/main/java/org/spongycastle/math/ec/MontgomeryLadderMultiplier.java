@@ -0,0 +1,42 @@
+package org.spongycastle.math.ec;
+
+import java.math.BigInteger;
+
+/**
+ * Class implementing the Montgomery ladder. Every bit of the multiplier
+ * costs exactly one addition and one doubling, and the ladder runs over at
+ * least the bit length of the group, so the sequence of point operations
+ * does not depend on the value of k. No tables are used either, so there
+ * are no key dependent memory accesses.
+ * <p>
+ * Note: the field arithmetic underneath, and the special cases in the point
+ * addition formulae, are not themselves constant time, so this removes the
+ * coarse timing differences of the window methods rather than all of them.
+ */
+class MontgomeryLadderMultiplier implements ECMultiplier
+{
+    public ECPoint multiply(ECPoint p, BigInteger k, PreCompInfo preCompInfo)
+    {
+        int bits = Math.max(k.bitLength(), p.getCurve().getFieldSize() + 1);
+
+        // invariant: r1 - r0 = p
+        ECPoint r0 = p.getCurve().getInfinity();
+        ECPoint r1 = p;
+
+        for (int i = bits - 1; i >= 0; i--)
+        {
+            if (k.testBit(i))
+            {
+                r0 = r0.add(r1);
+                r1 = r1.twice();
+            }
+            else
+            {
+                r1 = r0.add(r1);
+                r0 = r0.twice();
+            }
+        }
+
+        return r0;
+    }
+}
@@ -101,68 +101,25 @@ class WNafMultiplier implements ECMultiplier
             wnafPreCompInfo = new WNafPreCompInfo();
         }
 
-        // floor(log2(k))
-        int m = k.bitLength();
+        byte width = getWidth(k.bitLength());
 
-        // width of the Window NAF
-        byte width;
+        extendPreComp(p, wnafPreCompInfo, getPreCompLength(width));
 
-        // Required length of precomputation array
-        int reqPreCompLen;
+        ECPoint q = applyWindowNaf(p, k, width, wnafPreCompInfo.getPreComp());
 
-        // Determine optimal width and corresponding length of precomputation
-        // array based on literature values
-        if (m < 13)
-        {
-            width = 2;
-            reqPreCompLen = 1;
-        }
-        else
-        {
-            if (m < 41)
-            {
-                width = 3;
-                reqPreCompLen = 2;
-            }
-            else
-            {
-                if (m < 121)
-                {
-                    width = 4;
-                    reqPreCompLen = 4;
-                }
-                else
-                {
-                    if (m < 337)
-                    {
-                        width = 5;
-                        reqPreCompLen = 8;
-                    }
-                    else
-                    {
-                        if (m < 897)
-                        {
-                            width = 6;
-                            reqPreCompLen = 16;
-                        }
-                        else
-                        {
-                            if (m < 2305)
-                            {
-                                width = 7;
-                                reqPreCompLen = 32;
-                            }
-                            else
-                            {
-                                width = 8;
-                                reqPreCompLen = 127;
-                            }
-                        }
-                    }
-                }
-            }
-        }
+        // Set PreCompInfo in ECPoint, such that it is available for next
+        // multiplication.
+        p.setPreCompInfo(wnafPreCompInfo);
+        return q;
+    }
 
+    /**
+     * Make sure the precomputation holds at least reqPreCompLen odd multiples
+     * of p, extending it if need be. A precomputation which is already long
+     * enough is not written to.
+     */
+    static void extendPreComp(ECPoint p, WNafPreCompInfo wnafPreCompInfo, int reqPreCompLen)
+    {
         // The length of the precomputation array
         int preCompLen = 1;
 
@@ -202,9 +159,29 @@ class WNafMultiplier implements ECMultiplier
                 // The values 1, 3, 5, ..., 2^(width-1)-1 times p are
                 // computed
                 preComp[i] = twiceP.add(preComp[i - 1]);
-            }            
+            }
+
+            // with the table in affine form the additions below are mixed ones
+            p.getCurve().normalizeAll(preComp, preCompLen, reqPreCompLen - preCompLen);
         }
 
+        if (preComp != wnafPreCompInfo.getPreComp())
+        {
+            wnafPreCompInfo.setPreComp(preComp);
+        }
+
+        if (twiceP != wnafPreCompInfo.getTwiceP())
+        {
+            wnafPreCompInfo.setTwiceP(twiceP);
+        }
+    }
+
+    /**
+     * Multiply p by k using a Window NAF of the given width, where preComp
+     * holds at least the odd multiples 1, 3, ..., 2^(width-1)-1 times p.
+     */
+    ECPoint applyWindowNaf(ECPoint p, BigInteger k, byte width, ECPoint[] preComp)
+    {
         // Compute the Window NAF of the desired width
         byte[] wnaf = windowNaf(width, k);
         int l = wnaf.length;
@@ -229,12 +206,48 @@ class WNafMultiplier implements ECMultiplier
             }
         }
 
-        // Set PreCompInfo in ECPoint, such that it is available for next
-        // multiplication.
-        wnafPreCompInfo.setPreComp(preComp);
-        wnafPreCompInfo.setTwiceP(twiceP);
-        p.setPreCompInfo(wnafPreCompInfo);
         return q;
     }
 
+    /**
+     * Determine the optimal width of the Window NAF for a multiplier of the
+     * given bit length, based on literature values.
+     */
+    static byte getWidth(int m)
+    {
+        if (m < 13)
+        {
+            return 2;
+        }
+        if (m < 41)
+        {
+            return 3;
+        }
+        if (m < 121)
+        {
+            return 4;
+        }
+        if (m < 337)
+        {
+            return 5;
+        }
+        if (m < 897)
+        {
+            return 6;
+        }
+        if (m < 2305)
+        {
+            return 7;
+        }
+        return 8;
+    }
+
+    /**
+     * Return the required length of the precomputation array for a Window
+     * NAF of the given width.
+     */
+    static int getPreCompLength(byte width)
+    {
+        return width == 8 ? 127 : 1 << (width - 2);
+    }
 }
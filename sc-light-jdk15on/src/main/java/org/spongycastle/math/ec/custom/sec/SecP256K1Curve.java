@@ -0,0 +1,55 @@
+package org.spongycastle.math.ec.custom.sec;
+
+import java.math.BigInteger;
+
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.math.ec.GlvEndomorphism;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * The secp256k1 curve, with field elements using the fixed width
+ * arithmetic and fast reduction for its prime,
+ * p = 2^256 - 2^32 - 2^9 - 2^8 - 2^7 - 2^6 - 2^4 - 1.
+ * <p>
+ * As a = 0 and p = 1 mod 3 the curve has the endomorphism
+ * (x, y) -> (beta * x, y), and point multiplication uses the GLV method by
+ * default.
+ */
+public class SecP256K1Curve
+    extends ECCurve.Fp
+{
+    private static final BigInteger Q = new BigInteger(1, Hex.decode("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFC2F"));
+    private static final BigInteger A = BigInteger.valueOf(0);
+    private static final BigInteger B = BigInteger.valueOf(7);
+
+    // 2^256 = 2^32 + 977 mod p
+    private static final SolinasField FIELD = new SolinasField(Q, new int[]{ 1, 0 }, new long[]{ 1, 977 });
+
+    private static final GlvEndomorphism ENDOMORPHISM = new GlvEndomorphism(
+        new BigInteger(1, Hex.decode("7AE96A2B657C07106E64479EAC3434E99CF0497512F58995C1396C28719501EE")),
+        new BigInteger(1, Hex.decode("5363AD4CC05C30E0A5261C028812645A122E22EA20816678DF02967C1B23BD72")),
+        new BigInteger[]{
+            new BigInteger(1, Hex.decode("3086D221A7D46BCDE86C90E49284EB15")),
+            new BigInteger(1, Hex.decode("E4437ED6010E88286F547FA90ABFE4C3")).negate() },
+        new BigInteger[]{
+            new BigInteger(1, Hex.decode("0114CA50F7A8E2F3F657C1108D9D44CFD8")),
+            new BigInteger(1, Hex.decode("3086D221A7D46BCDE86C90E49284EB15")) });
+
+    public SecP256K1Curve()
+    {
+        super(Q, A, B);
+
+        setMultiplierType(MULTIPLIER_GLV);
+    }
+
+    public GlvEndomorphism getEndomorphism()
+    {
+        return ENDOMORPHISM;
+    }
+
+    public ECFieldElement fromBigInteger(BigInteger x)
+    {
+        return new SolinasFieldElement(FIELD, x);
+    }
+}
@@ -0,0 +1,33 @@
+package org.spongycastle.math.ec.custom.sec;
+
+import java.math.BigInteger;
+
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * The secp256r1 (NIST P-256) curve, with field elements using the fixed width
+ * arithmetic and fast reduction for its prime,
+ * p = 2^256 - 2^224 + 2^192 + 2^96 - 1.
+ */
+public class SecP256R1Curve
+    extends ECCurve.Fp
+{
+    private static final BigInteger Q = new BigInteger(1, Hex.decode("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFF"));
+    private static final BigInteger A = new BigInteger(1, Hex.decode("FFFFFFFF00000001000000000000000000000000FFFFFFFFFFFFFFFFFFFFFFFC"));
+    private static final BigInteger B = new BigInteger(1, Hex.decode("5AC635D8AA3A93E7B3EBBD55769886BC651D06B0CC53B0F63BCE3C3E27D2604B"));
+
+    // 2^256 = 2^224 - 2^192 - 2^96 + 1 mod p
+    private static final SolinasField FIELD = new SolinasField(Q, new int[]{ 7, 6, 3, 0 }, new long[]{ 1, -1, -1, 1 });
+
+    public SecP256R1Curve()
+    {
+        super(Q, A, B);
+    }
+
+    public ECFieldElement fromBigInteger(BigInteger x)
+    {
+        return new SolinasFieldElement(FIELD, x);
+    }
+}
@@ -0,0 +1,33 @@
+package org.spongycastle.math.ec.custom.sec;
+
+import java.math.BigInteger;
+
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * The secp384r1 (NIST P-384) curve, with field elements using the fixed width
+ * arithmetic and fast reduction for its prime,
+ * p = 2^384 - 2^128 - 2^96 + 2^32 - 1.
+ */
+public class SecP384R1Curve
+    extends ECCurve.Fp
+{
+    private static final BigInteger Q = new BigInteger(1, Hex.decode("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFF"));
+    private static final BigInteger A = new BigInteger(1, Hex.decode("FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFEFFFFFFFF0000000000000000FFFFFFFC"));
+    private static final BigInteger B = new BigInteger(1, Hex.decode("B3312FA7E23EE7E4988E056BE3F82D19181D9C6EFE8141120314088F5013875AC656398D8A2ED19D2A85C8EDD3EC2AEF"));
+
+    // 2^384 = 2^128 + 2^96 - 2^32 + 1 mod p
+    private static final SolinasField FIELD = new SolinasField(Q, new int[]{ 4, 3, 1, 0 }, new long[]{ 1, 1, -1, 1 });
+
+    public SecP384R1Curve()
+    {
+        super(Q, A, B);
+    }
+
+    public ECFieldElement fromBigInteger(BigInteger x)
+    {
+        return new SolinasFieldElement(FIELD, x);
+    }
+}
@@ -0,0 +1,349 @@
+package org.spongycastle.math.ec.custom.sec;
+
+import java.math.BigInteger;
+
+/**
+ * Arithmetic on fixed width 32 bit word arrays (least significant word first)
+ * modulo a prime of the special form used for the standard curves, where
+ * 2^(32n) is congruent to a short sum of small multiples of powers of 2^32.
+ * <p>
+ * Reduction of a 2n word product folds each word above the n'th back down
+ * using that congruence (Solinas reduction), so no division is ever needed.
+ * All values handed in and out are fully reduced.
+ */
+class SolinasField
+{
+    private static final long M = 0xFFFFFFFFL;
+
+    private final BigInteger    q;
+    private final int           size;
+    private final int[]         p;
+    private final int[]         shifts;
+    private final long[]        coeffs;
+
+    /**
+     * Create a field for the prime q, where 2^(32n) = sum(coeffs[i] * 2^(32 * shifts[i])) mod q.
+     *
+     * @param q the prime, which must be a whole number of words long.
+     * @param shifts the word offsets of the terms of the congruence, each less than n.
+     * @param coeffs the multipliers of the terms, which must be small.
+     */
+    SolinasField(BigInteger q, int[] shifts, long[] coeffs)
+    {
+        if ((q.bitLength() & 31) != 0)
+        {
+            throw new IllegalArgumentException("modulus must be a whole number of words");
+        }
+
+        this.q = q;
+        this.size = q.bitLength() >>> 5;
+        this.shifts = shifts;
+        this.coeffs = coeffs;
+
+        BigInteger sum = BigInteger.ZERO;
+
+        for (int i = 0; i != shifts.length; i++)
+        {
+            sum = sum.add(BigInteger.valueOf(coeffs[i]).shiftLeft(32 * shifts[i]));
+        }
+
+        if (!sum.subtract(BigInteger.ONE.shiftLeft(32 * size)).mod(q).equals(BigInteger.ZERO))
+        {
+            throw new IllegalArgumentException("reduction terms do not match modulus");
+        }
+
+        this.p = new int[size];
+
+        toWords(q, p);
+    }
+
+    BigInteger getQ()
+    {
+        return q;
+    }
+
+    int getSize()
+    {
+        return size;
+    }
+
+    int[] fromBigInteger(BigInteger x)
+    {
+        if (x.signum() < 0 || x.compareTo(q) >= 0)
+        {
+            throw new IllegalArgumentException("x value invalid in field element");
+        }
+
+        int[] z = new int[size];
+
+        toWords(x, z);
+
+        return z;
+    }
+
+    BigInteger toBigInteger(int[] x)
+    {
+        byte[] bs = new byte[size * 4];
+
+        for (int i = 0; i != size; i++)
+        {
+            int w = x[size - 1 - i];
+
+            bs[i * 4]     = (byte)(w >>> 24);
+            bs[i * 4 + 1] = (byte)(w >>> 16);
+            bs[i * 4 + 2] = (byte)(w >>> 8);
+            bs[i * 4 + 3] = (byte)w;
+        }
+
+        return new BigInteger(1, bs);
+    }
+
+    boolean isZero(int[] x)
+    {
+        for (int i = 0; i != size; i++)
+        {
+            if (x[i] != 0)
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    void add(int[] x, int[] y, int[] z)
+    {
+        long c = 0;
+
+        for (int i = 0; i != size; i++)
+        {
+            c += (x[i] & M) + (y[i] & M);
+            z[i] = (int)c;
+            c >>>= 32;
+        }
+
+        if (c != 0 || !lessThanP(z))
+        {
+            subtractP(z);
+        }
+    }
+
+    void subtract(int[] x, int[] y, int[] z)
+    {
+        long c = 0;
+
+        for (int i = 0; i != size; i++)
+        {
+            c += (x[i] & M) - (y[i] & M);
+            z[i] = (int)c;
+            c >>= 32;
+        }
+
+        if (c != 0)
+        {
+            addP(z);
+        }
+    }
+
+    void negate(int[] x, int[] z)
+    {
+        if (isZero(x))
+        {
+            System.arraycopy(x, 0, z, 0, size);
+        }
+        else
+        {
+            long c = 0;
+
+            for (int i = 0; i != size; i++)
+            {
+                c += (p[i] & M) - (x[i] & M);
+                z[i] = (int)c;
+                c >>= 32;
+            }
+        }
+    }
+
+    void multiply(int[] x, int[] y, int[] z)
+    {
+        long[] tt = new long[size * 2];
+
+        for (int i = 0; i != size; i++)
+        {
+            long xi = x[i] & M;
+            long c = 0;
+
+            for (int j = 0; j != size; j++)
+            {
+                // at most (2^32 - 1)^2 + 2 * (2^32 - 1), which fits in 64 unsigned bits
+                c += xi * (y[j] & M) + tt[i + j];
+                tt[i + j] = c & M;
+                c >>>= 32;
+            }
+
+            tt[i + size] = c;
+        }
+
+        reduce(tt, z);
+    }
+
+    void square(int[] x, int[] z)
+    {
+        int ttLen = size * 2;
+        long[] tt = new long[ttLen];
+
+        // the products of distinct words, which appear twice
+        for (int i = 0; i != size - 1; i++)
+        {
+            long xi = x[i] & M;
+            long c = 0;
+
+            for (int j = i + 1; j != size; j++)
+            {
+                c += xi * (x[j] & M) + tt[i + j];
+                tt[i + j] = c & M;
+                c >>>= 32;
+            }
+
+            tt[i + size] = c;
+        }
+
+        long c = 0;
+
+        for (int i = 0; i != ttLen; i++)
+        {
+            long t = (tt[i] << 1) | c;
+
+            tt[i] = t & M;
+            c = t >>> 32;
+        }
+
+        // then the squares of the words
+        c = 0;
+
+        for (int i = 0; i != size; i++)
+        {
+            long xi = x[i] & M;
+            long sq = xi * xi;
+
+            c += (sq & M) + tt[2 * i];
+            tt[2 * i] = c & M;
+            c >>>= 32;
+
+            c += (sq >>> 32) + tt[2 * i + 1];
+            tt[2 * i + 1] = c & M;
+            c >>>= 32;
+        }
+
+        reduce(tt, z);
+    }
+
+    /**
+     * Reduce a 2n word value, one word to each long, into z.
+     */
+    private void reduce(long[] tt, int[] z)
+    {
+        // fold the high words down, most significant first, so words pushed
+        // above n by a fold are themselves folded later on.
+        for (int i = tt.length - 1; i >= size; i--)
+        {
+            long v = tt[i];
+
+            if (v == 0)
+            {
+                continue;
+            }
+
+            tt[i] = 0;
+
+            int base = i - size;
+
+            for (int t = 0; t != shifts.length; t++)
+            {
+                tt[base + shifts[t]] += coeffs[t] * v;
+            }
+        }
+
+        // the words are now signed and somewhat over 32 bits, propagate the
+        // carries, folding any carry out of the top word back in.
+        for (;;)
+        {
+            long c = 0;
+
+            for (int i = 0; i != size; i++)
+            {
+                c += tt[i];
+                tt[i] = c & M;
+                c >>= 32;
+            }
+
+            if (c == 0)
+            {
+                break;
+            }
+
+            for (int t = 0; t != shifts.length; t++)
+            {
+                tt[shifts[t]] += coeffs[t] * c;
+            }
+        }
+
+        for (int i = 0; i != size; i++)
+        {
+            z[i] = (int)tt[i];
+        }
+
+        if (!lessThanP(z))
+        {
+            subtractP(z);
+        }
+    }
+
+    private boolean lessThanP(int[] x)
+    {
+        for (int i = size - 1; i >= 0; i--)
+        {
+            long xi = x[i] & M, pi = p[i] & M;
+
+            if (xi != pi)
+            {
+                return xi < pi;
+            }
+        }
+
+        return false;
+    }
+
+    private void addP(int[] z)
+    {
+        long c = 0;
+
+        for (int i = 0; i != size; i++)
+        {
+            c += (z[i] & M) + (p[i] & M);
+            z[i] = (int)c;
+            c >>>= 32;
+        }
+    }
+
+    private void subtractP(int[] z)
+    {
+        long c = 0;
+
+        for (int i = 0; i != size; i++)
+        {
+            c += (z[i] & M) - (p[i] & M);
+            z[i] = (int)c;
+            c >>= 32;
+        }
+    }
+
+    private static void toWords(BigInteger x, int[] z)
+    {
+        for (int i = 0; i != z.length; i++)
+        {
+            z[i] = x.intValue();
+            x = x.shiftRight(32);
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package org.spongycastle.math.ec.custom.sec;
+
+import java.math.BigInteger;
+
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.util.Arrays;
+
+/**
+ * An element of one of the fixed prime fields, held as an array of 32 bit
+ * words. Elements of the same field are combined without going through
+ * BigInteger; any other element of the field is accepted and converted.
+ * <p>
+ * Elements compare equal to, and have the same hash code as, ECFieldElement.Fp
+ * elements with the same value and modulus.
+ */
+public class SolinasFieldElement
+    extends ECFieldElement
+{
+    private final SolinasField  field;
+    private final int[]         x;
+
+    SolinasFieldElement(SolinasField field, BigInteger x)
+    {
+        this(field, field.fromBigInteger(x));
+    }
+
+    SolinasFieldElement(SolinasField field, int[] x)
+    {
+        this.field = field;
+        this.x = x;
+    }
+
+    public BigInteger toBigInteger()
+    {
+        return field.toBigInteger(x);
+    }
+
+    /**
+     * return the field name for this field.
+     *
+     * @return the string "Fp".
+     */
+    public String getFieldName()
+    {
+        return "Fp";
+    }
+
+    public int getFieldSize()
+    {
+        return field.getQ().bitLength();
+    }
+
+    public BigInteger getQ()
+    {
+        return field.getQ();
+    }
+
+    public boolean isZero()
+    {
+        return field.isZero(x);
+    }
+
+    public ECFieldElement add(ECFieldElement b)
+    {
+        int[] z = new int[x.length];
+
+        field.add(x, words(b), z);
+
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement subtract(ECFieldElement b)
+    {
+        int[] z = new int[x.length];
+
+        field.subtract(x, words(b), z);
+
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement multiply(ECFieldElement b)
+    {
+        int[] z = new int[x.length];
+
+        field.multiply(x, words(b), z);
+
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement divide(ECFieldElement b)
+    {
+        return multiply(b.invert());
+    }
+
+    public ECFieldElement negate()
+    {
+        int[] z = new int[x.length];
+
+        field.negate(x, z);
+
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement square()
+    {
+        int[] z = new int[x.length];
+
+        field.square(x, z);
+
+        return new SolinasFieldElement(field, z);
+    }
+
+    public ECFieldElement invert()
+    {
+        return new SolinasFieldElement(field, toBigInteger().modInverse(field.getQ()));
+    }
+
+    /**
+     * return a sqrt root - the routine verifies that the calculation
+     * returns the right value - if none exists it returns null.
+     */
+    public ECFieldElement sqrt()
+    {
+        // only needed for point decompression, so the general routine will do
+        ECFieldElement root = new ECFieldElement.Fp(field.getQ(), toBigInteger()).sqrt();
+
+        if (root == null)
+        {
+            return null;
+        }
+
+        return new SolinasFieldElement(field, root.toBigInteger());
+    }
+
+    public boolean equals(Object other)
+    {
+        if (other == this)
+        {
+            return true;
+        }
+
+        if (other instanceof SolinasFieldElement)
+        {
+            SolinasFieldElement o = (SolinasFieldElement)other;
+
+            return field.getQ().equals(o.field.getQ()) && Arrays.areEqual(x, o.x);
+        }
+
+        if (other instanceof ECFieldElement.Fp)
+        {
+            ECFieldElement.Fp o = (ECFieldElement.Fp)other;
+
+            return field.getQ().equals(o.getQ()) && toBigInteger().equals(o.toBigInteger());
+        }
+
+        return false;
+    }
+
+    public int hashCode()
+    {
+        return field.getQ().hashCode() ^ toBigInteger().hashCode();
+    }
+
+    private int[] words(ECFieldElement b)
+    {
+        if (b instanceof SolinasFieldElement && ((SolinasFieldElement)b).field == field)
+        {
+            return ((SolinasFieldElement)b).x;
+        }
+
+        return field.fromBigInteger(b.toBigInteger());
+    }
+}
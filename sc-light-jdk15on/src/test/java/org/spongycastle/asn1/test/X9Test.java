@@ -3,15 +3,22 @@ package org.spongycastle.asn1.test;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.math.BigInteger;
+import java.util.Enumeration;
 
 import org.spongycastle.asn1.ASN1InputStream;
 import org.spongycastle.asn1.ASN1OctetString;
 import org.spongycastle.asn1.ASN1Primitive;
+import org.spongycastle.asn1.ASN1ObjectIdentifier;
 import org.spongycastle.asn1.DEROutputStream;
+import org.spongycastle.asn1.nist.NISTNamedCurves;
 import org.spongycastle.asn1.pkcs.PrivateKeyInfo;
 import org.spongycastle.asn1.sec.ECPrivateKey;
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.sec.SECObjectIdentifiers;
+import org.spongycastle.asn1.teletrust.TeleTrusTNamedCurves;
 import org.spongycastle.asn1.x509.AlgorithmIdentifier;
 import org.spongycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.spongycastle.asn1.x9.ECNamedCurveTable;
 import org.spongycastle.asn1.x9.X962NamedCurves;
 import org.spongycastle.asn1.x9.X962Parameters;
 import org.spongycastle.asn1.x9.X9ECParameters;
@@ -154,11 +161,65 @@ public class X9Test
         }
     }
     
+    private void namedCurveTable()
+    {
+        checkNames(X962NamedCurves.getNames());
+        checkNames(SECNamedCurves.getNames());
+        checkNames(NISTNamedCurves.getNames());
+        checkNames(TeleTrusTNamedCurves.getNames());
+
+        X9ECParameters p256 = ECNamedCurveTable.getByName("P-256");
+
+        if (p256 != ECNamedCurveTable.getByName("secp256r1")
+            || p256 != ECNamedCurveTable.getByName("PRIME256V1")
+            || p256 != ECNamedCurveTable.getByOID(SECObjectIdentifiers.secp256r1))
+        {
+            fail("P-256 not shared across names");
+        }
+
+        if (!"prime256v1".equals(ECNamedCurveTable.getName(SECObjectIdentifiers.secp256r1)))
+        {
+            fail("wrong preferred name for P-256");
+        }
+
+        if (ECNamedCurveTable.getByName("no-such-curve") != null
+            || ECNamedCurveTable.getByOID(X9ObjectIdentifiers.id_ecPublicKey) != null)
+        {
+            fail("found a curve that does not exist");
+        }
+    }
+
+    private void checkNames(Enumeration e)
+    {
+        while (e.hasMoreElements())
+        {
+            String name = (String)e.nextElement();
+            ASN1ObjectIdentifier oid = ECNamedCurveTable.getOID(name);
+            X9ECParameters ecP = ECNamedCurveTable.getByName(name);
+
+            if (oid == null || ecP == null)
+            {
+                fail("curve " + name + " missing from table");
+            }
+
+            if (ecP != ECNamedCurveTable.getByOID(oid) || ecP != ECNamedCurveTable.getByName(name))
+            {
+                fail("curve " + name + " not interned");
+            }
+
+            if (!ecP.getG().multiply(ecP.getN()).isInfinity())
+            {
+                fail("curve " + name + " has the wrong order");
+            }
+        }
+    }
+
     public void performTest()
         throws Exception
     {
         encodePublicKey();
         encodePrivateKey();
+        namedCurveTable();
     }
 
     public String getName()
@@ -0,0 +1,372 @@
+package org.spongycastle.crypto.test;
+
+import java.nio.ByteBuffer;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.Mac;
+import org.spongycastle.crypto.StreamCipher;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.DESEngine;
+import org.spongycastle.crypto.engines.Salsa20Engine;
+import org.spongycastle.crypto.macs.HMac;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.crypto.util.ByteBuffers;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Check the ByteBuffer methods give the same results as the byte[] ones for
+ * heap, direct and read only buffers.
+ */
+public class ByteBufferTest
+    extends SimpleTest
+{
+    private static final int HEAP = 0;
+    private static final int DIRECT = 1;
+    private static final int READ_ONLY = 2;
+    private static final int OFFSET_HEAP = 3;
+
+    private static final KeyParameter KEY = new KeyParameter(new byte[16]);
+    private static final byte[] IV = new byte[16];
+
+    public String getName()
+    {
+        return "ByteBuffer";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        int[] lengths = { 0, 1, 15, 16, 17, 4095, 4096, 4097, 10000 };
+
+        for (int i = 0; i != lengths.length; i++)
+        {
+            byte[] msg = new byte[lengths[i]];
+
+            for (int j = 0; j != msg.length; j++)
+            {
+                msg[j] = (byte)(j * 13);
+            }
+
+            for (int inType = 0; inType != 4; inType++)
+            {
+                for (int outType = 0; outType != 4; outType++)
+                {
+                    if (outType == READ_ONLY)
+                    {
+                        continue;
+                    }
+
+                    digestTest(msg, inType, outType);
+                    macTest(msg, inType, outType);
+                    streamTest(msg, inType, outType);
+                    bufferedTest(msg, inType, outType);
+                    aeadTest(msg, inType, outType);
+                    blockTest(msg, inType, outType);
+                }
+            }
+        }
+
+        limitTest();
+    }
+
+    private void digestTest(byte[] msg, int inType, int outType)
+    {
+        Digest digest = new SHA256Digest();
+        byte[] expected = new byte[digest.getDigestSize()];
+
+        digest.update(msg, 0, msg.length);
+        digest.doFinal(expected, 0);
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(expected.length, outType);
+
+        ByteBuffers.update(digest, in);
+        ByteBuffers.doFinal(digest, out);
+
+        check("digest", in, out, expected, inType, outType);
+    }
+
+    private void macTest(byte[] msg, int inType, int outType)
+    {
+        Mac mac = new HMac(new SHA256Digest());
+        mac.init(KEY);
+
+        byte[] expected = new byte[mac.getMacSize()];
+
+        mac.update(msg, 0, msg.length);
+        mac.doFinal(expected, 0);
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(expected.length, outType);
+
+        ByteBuffers.update(mac, in);
+        ByteBuffers.doFinal(mac, out);
+
+        check("mac", in, out, expected, inType, outType);
+    }
+
+    private void streamTest(byte[] msg, int inType, int outType)
+    {
+        StreamCipher cipher = new Salsa20Engine();
+        ParametersWithIV params = new ParametersWithIV(KEY, new byte[8]);
+        byte[] expected = new byte[msg.length];
+
+        cipher.init(true, params);
+        cipher.processBytes(msg, 0, msg.length, expected, 0);
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(expected.length, outType);
+
+        cipher.init(true, params);
+        ByteBuffers.processBytes(cipher, in, out);
+
+        check("stream", in, out, expected, inType, outType);
+    }
+
+    private void bufferedTest(byte[] msg, int inType, int outType)
+        throws Exception
+    {
+        BufferedBlockCipher cipher = new PaddedBufferedBlockCipher(new CBCBlockCipher(new AESFastEngine()));
+        ParametersWithIV params = new ParametersWithIV(KEY, IV);
+
+        cipher.init(true, params);
+
+        byte[] expected = new byte[cipher.getOutputSize(msg.length)];
+        int len = cipher.processBytes(msg, 0, msg.length, expected, 0);
+
+        cipher.doFinal(expected, len);
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(expected.length, outType);
+
+        cipher.init(true, params);
+
+        // in two pieces, so there is something buffered between calls
+        int split = msg.length / 3;
+        ByteBuffer first = in.duplicate();
+
+        first.limit(first.position() + split);
+        in.position(in.position() + split);
+
+        cipher.processBytes(first, out);
+        cipher.processBytes(in, out);
+        cipher.doFinal(out);
+
+        check("buffered", in, out, expected, inType, outType);
+
+        // and back again
+        in = wrap(expected, inType);
+        out = allocate(msg.length + 16, outType);
+
+        cipher.init(false, params);
+        cipher.processBytes(in, out);
+        cipher.doFinal(out);
+
+        out.limit(out.position());
+        check("buffered decrypt", in, out, msg, inType, outType);
+    }
+
+    private void aeadTest(byte[] msg, int inType, int outType)
+        throws Exception
+    {
+        AEADBlockCipher cipher = new GCMBlockCipher(new AESFastEngine());
+        AEADParameters params = new AEADParameters(KEY, 128, new byte[12], null);
+
+        cipher.init(true, params);
+
+        byte[] expected = new byte[cipher.getOutputSize(msg.length)];
+        int len = cipher.processBytes(msg, 0, msg.length, expected, 0);
+
+        cipher.doFinal(expected, len);
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(expected.length, outType);
+
+        cipher.init(true, params);
+        ByteBuffers.processBytes(cipher, in, out);
+        ByteBuffers.doFinal(cipher, out);
+
+        check("aead", in, out, expected, inType, outType);
+
+        in = wrap(expected, inType);
+        out = allocate(msg.length, outType);
+
+        cipher.init(false, params);
+        ByteBuffers.processBytes(cipher, in, out);
+        ByteBuffers.doFinal(cipher, out);
+
+        check("aead decrypt", in, out, msg, inType, outType);
+    }
+
+    private void blockTest(byte[] msg, int inType, int outType)
+    {
+        // a cipher without multi-block support and one with
+        blockTest(new DESEngine(), new KeyParameter(new byte[8]), msg, inType, outType);
+        blockTest(new CBCBlockCipher(new AESFastEngine()), new ParametersWithIV(KEY, IV), msg, inType, outType);
+    }
+
+    private void blockTest(BlockCipher cipher, CipherParameters params,
+        byte[] msg, int inType, int outType)
+    {
+        int blockSize = cipher.getBlockSize();
+        int len = msg.length - msg.length % blockSize;
+        byte[] expected = new byte[len];
+
+        cipher.init(true, params);
+
+        for (int i = 0; i != len; i += blockSize)
+        {
+            cipher.processBlock(msg, i, expected, i);
+        }
+
+        ByteBuffer in = wrap(msg, inType);
+        ByteBuffer out = allocate(len, outType);
+
+        in.limit(in.position() + len);
+
+        cipher.init(true, params);
+        ByteBuffers.processBlocks(cipher, in, out);
+
+        check("block " + cipher.getAlgorithmName(), in, out, expected, inType, outType);
+    }
+
+    private void limitTest()
+        throws Exception
+    {
+        StreamCipher cipher = new Salsa20Engine();
+        cipher.init(true, new ParametersWithIV(KEY, new byte[8]));
+
+        ByteBuffer in = ByteBuffer.allocateDirect(100);
+        ByteBuffer out = ByteBuffer.allocateDirect(99);
+
+        try
+        {
+            ByteBuffers.processBytes(cipher, in, out);
+
+            fail("short output buffer accepted");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+
+        if (in.position() != 0 || out.position() != 0)
+        {
+            fail("buffers moved by failed call");
+        }
+
+        try
+        {
+            ByteBuffers.processBlocks(new AESFastEngine(), ByteBuffer.allocate(17), ByteBuffer.allocate(32));
+
+            fail("partial block accepted");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+
+        // in place, through a single direct buffer
+        byte[] msg = new byte[10000];
+        byte[] expected = new byte[msg.length];
+
+        cipher.init(true, new ParametersWithIV(KEY, new byte[8]));
+        cipher.processBytes(msg, 0, msg.length, expected, 0);
+
+        ByteBuffer buf = ByteBuffer.allocateDirect(msg.length);
+
+        cipher.init(true, new ParametersWithIV(KEY, new byte[8]));
+        ByteBuffers.processBytes(cipher, buf, buf.duplicate());
+
+        byte[] result = new byte[msg.length];
+
+        buf.flip();
+        buf.get(result);
+
+        if (!areEqual(expected, result))
+        {
+            fail("in place processing failed");
+        }
+    }
+
+    private void check(String label, ByteBuffer in, ByteBuffer out, byte[] expected, int inType, int outType)
+    {
+        if (in.hasRemaining())
+        {
+            fail(label + " input not consumed: " + inType + "/" + outType);
+        }
+
+        if (out.position() - start(outType) != expected.length)
+        {
+            fail(label + " wrong output length: " + inType + "/" + outType);
+        }
+
+        byte[] result = new byte[expected.length];
+
+        out.position(start(outType));
+        out.get(result);
+
+        if (!areEqual(expected, result))
+        {
+            fail(label + " failed: " + inType + "/" + outType + " length " + expected.length);
+        }
+    }
+
+    private static int start(int type)
+    {
+        return type == OFFSET_HEAP ? 3 : 0;
+    }
+
+    private static ByteBuffer wrap(byte[] data, int type)
+    {
+        ByteBuffer buf = allocate(data.length, type);
+
+        buf.put(data);
+        buf.position(start(type));
+
+        if (type == READ_ONLY)
+        {
+            return buf.asReadOnlyBuffer();
+        }
+
+        return buf;
+    }
+
+    private static ByteBuffer allocate(int len, int type)
+    {
+        switch (type)
+        {
+        case DIRECT:
+            return ByteBuffer.allocateDirect(len);
+        case OFFSET_HEAP:
+            // a slice, so the array offset is not zero, with some space in front
+            ByteBuffer buf = ByteBuffer.allocate(len + 10);
+
+            buf.position(7);
+            buf = buf.slice();
+            buf.position(3);
+            buf.limit(3 + len);
+
+            return buf;
+        default:
+            return ByteBuffer.allocate(len);
+        }
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new ByteBufferTest());
+    }
+}
@@ -295,6 +295,68 @@ public class DHTest
             fail("basic with " + size + " bit 2-way test failed");
         }
     }
+
+    private void testThreadedGeneration(
+        int         size)
+    {
+        DHParametersGenerator       pGen = new DHParametersGenerator();
+
+        pGen.init(size, 20, new SecureRandom());
+        pGen.setThreadCount(4);
+
+        DHParameters                dhParams = pGen.generateParameters();
+        BigInteger                  p = dhParams.getP();
+        BigInteger                  q = dhParams.getQ();
+
+        if (p.bitLength() != size || !p.equals(q.shiftLeft(1).add(BigInteger.valueOf(1))))
+        {
+            fail("threaded generation did not produce a " + size + " bit safe prime");
+        }
+
+        if (!p.isProbablePrime(20) || !q.isProbablePrime(20))
+        {
+            fail("threaded generation produced a composite");
+        }
+
+        if (!dhParams.getG().modPow(q, p).equals(BigInteger.valueOf(1)))
+        {
+            fail("threaded generation produced a bad generator");
+        }
+
+        try
+        {
+            pGen.setThreadCount(0);
+            fail("no exception on thread count of 0");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    private void testInterruptedGeneration()
+    {
+        DHParametersGenerator       pGen = new DHParametersGenerator();
+
+        pGen.init(2048, 20, new SecureRandom());
+        pGen.setThreadCount(2);
+
+        Thread.currentThread().interrupt();
+        try
+        {
+            pGen.generateParameters();
+            fail("interrupted generation did not stop");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+        finally
+        {
+            Thread.interrupted();
+        }
+    }
+
     private void testBounds()
     {
          BigInteger p1 = new BigInteger("00C8028E9151C6B51BCDB35C1F6B2527986A72D8546AE7A4BF41DC4289FF9837EE01592D36C324A0F066149B8B940C86C87D194206A39038AE3396F8E12435BB74449B70222D117B8A2BB77CB0D67A5D664DDE7B75E0FEC13CE0CAF258DAF3ADA0773F6FF0F2051D1859929AAA53B07809E496B582A89C3D7DA8B6E38305626621", 16);
@@ -334,6 +396,8 @@ public class DHTest
         // generation test.
         //
         testGeneration(256);
+        testThreadedGeneration(512);
+        testInterruptedGeneration();
         
         //
         // with random test
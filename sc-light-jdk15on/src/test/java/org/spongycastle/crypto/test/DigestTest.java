@@ -1,6 +1,7 @@
 package org.spongycastle.crypto.test;
 
 import org.spongycastle.crypto.Digest;
+import org.spongycastle.util.Memoable;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
 
@@ -65,6 +66,85 @@ public abstract class DigestTest
         {
             fail("failing second clone vector test", results[results.length - 1], new String(Hex.encode(resBuf)));
         }
+
+        //
+        // update split test - the message fed in one go, a byte at a time and in
+        // pieces which straddle the word and block boundaries should agree.
+        //
+        byte[] longV = new byte[1000];
+        byte[] resBuf2 = new byte[resBuf.length];
+
+        for (int i = 0; i != longV.length; i++)
+        {
+            longV[i] = (byte)i;
+        }
+
+        digest.update(longV, 0, longV.length);
+        digest.doFinal(resBuf, 0);
+
+        for (int i = 0; i != longV.length; i++)
+        {
+            digest.update(longV[i]);
+        }
+        digest.doFinal(resBuf2, 0);
+
+        if (!areEqual(resBuf, resBuf2))
+        {
+            fail("failing byte update test");
+        }
+
+        for (int chunk = 1; chunk < 300; chunk += 37)
+        {
+            for (int off = 0; off < longV.length; off += chunk)
+            {
+                digest.update(longV, off, Math.min(chunk, longV.length - off));
+            }
+            digest.doFinal(resBuf2, 0);
+
+            if (!areEqual(resBuf, resBuf2))
+            {
+                fail("failing split update test with " + chunk + " byte pieces");
+            }
+        }
+
+        //
+        // memo test
+        //
+        if (digest instanceof Memoable)
+        {
+            Memoable m = (Memoable)digest;
+
+            digest.update(lastV, 0, lastV.length/2);
+
+            // copy the Digest
+            Digest copy = (Digest)m.copy();
+
+            digest.update(lastV, lastV.length/2, lastV.length - lastV.length/2);
+            digest.doFinal(resBuf, 0);
+
+            if (!areEqual(lastDigest, resBuf))
+            {
+                fail("failing memo vector test", results[results.length - 1], new String(Hex.encode(resBuf)));
+            }
+
+            m.reset((Memoable)copy);
+
+            digest.update(lastV, lastV.length/2, lastV.length - lastV.length/2);
+            digest.doFinal(resBuf, 0);
+
+            if (!areEqual(lastDigest, resBuf))
+            {
+                fail("failing memo reset vector test", results[results.length - 1], new String(Hex.encode(resBuf)));
+            }
+
+            copy.update(lastV, lastV.length/2, lastV.length - lastV.length/2);
+            copy.doFinal(resBuf, 0);
+
+            if (!areEqual(lastDigest, resBuf))
+            {
+                fail("failing memo copy vector test", results[results.length - 1], new String(Hex.encode(resBuf)));
+            }
+        }
     }
 
     private byte[] toByteArray(String input)
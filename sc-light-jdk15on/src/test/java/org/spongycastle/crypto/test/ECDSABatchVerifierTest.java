@@ -0,0 +1,145 @@
+package org.spongycastle.crypto.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X962NamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.crypto.AsymmetricCipherKeyPair;
+import org.spongycastle.crypto.generators.ECKeyPairGenerator;
+import org.spongycastle.crypto.params.ECDomainParameters;
+import org.spongycastle.crypto.params.ECKeyGenerationParameters;
+import org.spongycastle.crypto.params.ECPublicKeyParameters;
+import org.spongycastle.crypto.signers.ECDSABatchVerifier;
+import org.spongycastle.crypto.signers.ECDSASigner;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Batch EC-DSA verification checks against ECDSASigner, with good and bad
+ * signatures mixed over several curves.
+ */
+public class ECDSABatchVerifierTest
+    extends SimpleTest
+{
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
+    private SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "ECDSABatchVerifier";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        X9ECParameters[] curves = {
+            SECNamedCurves.getByName("secp256r1"),
+            SECNamedCurves.getByName("secp384r1"),
+            SECNamedCurves.getByName("secp256k1"),
+            X962NamedCurves.getByName("prime239v1"),
+            SECNamedCurves.getByName("sect233r1")
+        };
+
+        AsymmetricCipherKeyPair[] keys = new AsymmetricCipherKeyPair[curves.length * 2];
+
+        for (int i = 0; i != keys.length; i++)
+        {
+            X9ECParameters x9 = curves[i / 2];
+            ECKeyPairGenerator kpGen = new ECKeyPairGenerator();
+
+            kpGen.init(new ECKeyGenerationParameters(
+                new ECDomainParameters(x9.getCurve(), x9.getG(), x9.getN(), x9.getH()), random));
+
+            keys[i] = kpGen.generateKeyPair();
+        }
+
+        ECDSABatchVerifier batch = new ECDSABatchVerifier();
+        ECDSASigner verifier = new ECDSASigner();
+        int count = 60;
+        boolean[] expected = new boolean[count];
+
+        for (int i = 0; i != count; i++)
+        {
+            AsymmetricCipherKeyPair kp = keys[random.nextInt(keys.length)];
+            ECPublicKeyParameters pub = (ECPublicKeyParameters)kp.getPublic();
+            BigInteger n = pub.getParameters().getN();
+            ECDSASigner signer = new ECDSASigner();
+            byte[] message = new byte[20 + random.nextInt(40)];
+
+            random.nextBytes(message);
+            signer.init(true, kp.getPrivate());
+
+            BigInteger[] sig = signer.generateSignature(message);
+            BigInteger r = sig[0];
+            BigInteger s = sig[1];
+
+            switch (i % 6)
+            {
+            case 1:
+                message[0] ^= 1;
+                break;
+            case 2:
+                s = s.add(ONE).mod(n);
+                break;
+            case 3:
+                r = n;
+                break;
+            case 4:
+                // signed by the other key on the same curve
+                pub = (ECPublicKeyParameters)keys[indexOf(keys, kp) ^ 1].getPublic();
+                break;
+            default:
+                break;
+            }
+
+            verifier.init(false, pub);
+            expected[i] = verifier.verifySignature(message, r, s);
+
+            if (batch.add(pub, message, r, s) != i)
+            {
+                fail("wrong index returned");
+            }
+        }
+
+        boolean[] results = batch.verify();
+
+        for (int i = 0; i != count; i++)
+        {
+            if (results[i] != expected[i])
+            {
+                fail("batch result " + i + " is " + results[i] + " not " + expected[i]);
+            }
+
+            if (i % 6 == 0 && !results[i])
+            {
+                fail("good signature " + i + " failed");
+            }
+        }
+
+        if (batch.size() != 0 || batch.verify().length != 0)
+        {
+            fail("batch not emptied by verify");
+        }
+    }
+
+    private static int indexOf(AsymmetricCipherKeyPair[] keys, AsymmetricCipherKeyPair kp)
+    {
+        for (int i = 0; i != keys.length; i++)
+        {
+            if (keys[i] == kp)
+            {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new ECDSABatchVerifierTest());
+    }
+}
@@ -11,6 +11,7 @@ import org.spongycastle.crypto.modes.gcm.Tables64kGCMMultiplier;
 import org.spongycastle.crypto.modes.gcm.Tables8kGCMMultiplier;
 import org.spongycastle.crypto.params.AEADParameters;
 import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.util.Arrays;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
 
@@ -503,6 +504,70 @@ public class GCMTest
         {
             fail("decryption produced different mac from encryption");
         }
+
+        //
+        // piecemeal processing, including partial blocks and a short tag
+        //
+        AEADParameters shortTagParameters = new AEADParameters(new KeyParameter(K), 12 * 8, IV, A);
+        cipher.init(true, shortTagParameters);
+        C = new byte[cipher.getOutputSize(P.length)];
+        len = cipher.processBytes(P, 0, P.length, C, 0);
+        len += cipher.doFinal(C, len);
+
+        cipher.init(true, shortTagParameters);
+        byte[] splitC = new byte[C.length];
+        len = processSplit(srng, cipher, P, splitC);
+
+        if (len != C.length || !areEqual(C, splitC))
+        {
+            fail("split encryption differs in randomised test");
+        }
+
+        cipher.init(false, shortTagParameters);
+        decP = new byte[P.length];
+        len = processSplit(srng, cipher, C, decP);
+
+        if (len != P.length || !areEqual(P, decP))
+        {
+            fail("incorrect split decrypt in randomised test");
+        }
+
+        //
+        // in place decryption
+        //
+        cipher.init(false, shortTagParameters);
+        byte[] buf = Arrays.clone(C);
+        len = cipher.processBytes(buf, 0, buf.length, buf, 0);
+        len += cipher.doFinal(buf, len);
+
+        if (len != P.length || !areEqual(P, Arrays.copyOfRange(buf, 0, len)))
+        {
+            fail("incorrect in place decrypt in randomised test");
+        }
+    }
+
+    private int processSplit(SecureRandom srng, GCMBlockCipher cipher, byte[] in, byte[] out)
+        throws InvalidCipherTextException
+    {
+        int inOff = 0, len = 0;
+
+        while (inOff < in.length)
+        {
+            int chunk = Math.min(in.length - inOff, srng.nextInt(100));
+
+            if (chunk == 1)
+            {
+                len += cipher.processByte(in[inOff], out, len);
+            }
+            else
+            {
+                len += cipher.processBytes(in, inOff, chunk, out, len);
+            }
+
+            inOff += chunk;
+        }
+
+        return len + cipher.doFinal(out, len);
     }
 
     public static void main(String[] args)
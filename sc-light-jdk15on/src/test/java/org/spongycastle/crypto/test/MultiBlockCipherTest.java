@@ -0,0 +1,271 @@
+package org.spongycastle.crypto.test;
+
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.DataLengthException;
+import org.spongycastle.crypto.MultiBlockCipher;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.engines.CamelliaEngine;
+import org.spongycastle.crypto.engines.DESEngine;
+import org.spongycastle.crypto.engines.SerpentEngine;
+import org.spongycastle.crypto.engines.TwofishEngine;
+import org.spongycastle.crypto.modes.CBCBlockCipher;
+import org.spongycastle.crypto.modes.SICBlockCipher;
+import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * check that processing runs of blocks gives the same results as processing
+ * one block at a time.
+ */
+public class MultiBlockCipherTest
+    extends SimpleTest
+{
+    private SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "MultiBlockCipher";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        testEngine(new AESEngine(), new AESEngine(), 16);
+        testEngine(new AESEngine(), new AESEngine(), 32);
+        testEngine(new AESFastEngine(), new AESFastEngine(), 24);
+        testEngine(new CamelliaEngine(), new CamelliaEngine(), 16);
+        testEngine(new CamelliaEngine(), new CamelliaEngine(), 32);
+        testEngine(new TwofishEngine(), new TwofishEngine(), 32);
+        testEngine(new SerpentEngine(), new SerpentEngine(), 16);
+
+        testMode(new SICBlockCipher(new AESFastEngine()), new SICBlockCipher(new AESFastEngine()));
+        testMode(new CBCBlockCipher(new AESFastEngine()), new CBCBlockCipher(new AESFastEngine()));
+        testMode(new CBCBlockCipher(new SerpentEngine()), new CBCBlockCipher(new SerpentEngine()));
+        testMode(new SICBlockCipher(new DESEngine()), new SICBlockCipher(new DESEngine()));
+        testMode(new CBCBlockCipher(new DESEngine()), new CBCBlockCipher(new DESEngine()));
+
+        testBuffered(new CBCBlockCipher(new AESEngine()), new CBCBlockCipher(new AESEngine()));
+        testBuffered(new SICBlockCipher(new AESEngine()), new SICBlockCipher(new AESEngine()));
+        testPadded(new CBCBlockCipher(new AESFastEngine()));
+    }
+
+    private void testEngine(MultiBlockCipher multi, BlockCipher single, int keySize)
+    {
+        KeyParameter key = new KeyParameter(randomBytes(keySize));
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+
+            multi.init(forEncryption, key);
+            single.init(forEncryption, key);
+
+            checkBlocks(multi, single);
+        }
+    }
+
+    private void testMode(MultiBlockCipher multi, BlockCipher single)
+    {
+        ParametersWithIV params = new ParametersWithIV(new KeyParameter(randomBytes(single.getBlockSize() == 8 ? 8 : 16)), randomBytes(single.getBlockSize()));
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+
+            multi.init(forEncryption, params);
+            single.init(forEncryption, params);
+
+            checkBlocks(multi, single);
+        }
+    }
+
+    private void checkBlocks(MultiBlockCipher multi, BlockCipher single)
+    {
+        int blockSize = single.getBlockSize();
+
+        // more than one batch worth, and an odd offset
+        int blockCount = 150;
+        byte[] in = randomBytes(blockCount * blockSize + 3);
+        byte[] expected = new byte[in.length];
+        byte[] out = new byte[in.length];
+
+        for (int i = 0; i != blockCount; i++)
+        {
+            single.processBlock(in, 3 + i * blockSize, expected, 3 + i * blockSize);
+        }
+
+        int len = multi.processBlocks(in, 3, blockCount, out, 3);
+
+        if (len != blockCount * blockSize)
+        {
+            fail(multi.getAlgorithmName() + " returned wrong length");
+        }
+
+        if (!Arrays.areEqual(expected, out))
+        {
+            fail(multi.getAlgorithmName() + " processBlocks failed");
+        }
+
+        // state should carry over between calls, including in place processing
+        for (int i = 0; i != blockCount; i++)
+        {
+            single.processBlock(in, 3 + i * blockSize, expected, 3 + i * blockSize);
+        }
+
+        System.arraycopy(in, 0, out, 0, in.length);
+        multi.processBlocks(out, 3, 7, out, 3);
+        multi.processBlocks(out, 3 + 7 * blockSize, blockCount - 7, out, 3 + 7 * blockSize);
+
+        if (!Arrays.areEqual(Arrays.copyOfRange(expected, 3, in.length), Arrays.copyOfRange(out, 3, in.length)))
+        {
+            fail(multi.getAlgorithmName() + " in place processBlocks failed");
+        }
+
+        try
+        {
+            multi.processBlocks(in, 4, blockCount, out, 0);
+            fail(multi.getAlgorithmName() + " failed short input check");
+        }
+        catch (DataLengthException e)
+        {
+            // expected
+        }
+    }
+
+    private void testBuffered(BlockCipher multi, BlockCipher single)
+        throws Exception
+    {
+        ParametersWithIV params = new ParametersWithIV(new KeyParameter(randomBytes(16)), randomBytes(16));
+        BufferedBlockCipher multiBuffered = new BufferedBlockCipher(multi);
+        BufferedBlockCipher singleBuffered = new BufferedBlockCipher(new SingleBlockCipher(single));
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            boolean forEncryption = (pass == 0);
+
+            multiBuffered.init(forEncryption, params);
+            singleBuffered.init(forEncryption, params);
+
+            checkBuffered(multiBuffered, singleBuffered, randomBytes(16 * 100));
+        }
+    }
+
+    private void testPadded(BlockCipher cipher)
+        throws Exception
+    {
+        KeyParameter key = new KeyParameter(randomBytes(16));
+        BufferedBlockCipher encrypt = new PaddedBufferedBlockCipher(cipher);
+        BufferedBlockCipher single = new PaddedBufferedBlockCipher(new SingleBlockCipher(new CBCBlockCipher(new AESEngine())));
+
+        encrypt.init(true, key);
+        single.init(true, key);
+
+        byte[] cipherText = checkBuffered(encrypt, single, randomBytes(16 * 100 + 5));
+
+        encrypt.init(false, key);
+        single.init(false, key);
+
+        checkBuffered(encrypt, single, cipherText);
+    }
+
+    private byte[] checkBuffered(BufferedBlockCipher multi, BufferedBlockCipher single, byte[] in)
+        throws Exception
+    {
+        byte[] expected = new byte[single.getOutputSize(in.length)];
+        byte[] out = new byte[multi.getOutputSize(in.length)];
+
+        int expectedLen = 0;
+        int outLen = 0;
+
+        // feed unaligned chunks so the internal buffer is in use
+        int[] chunks = { 5, 17, 600, 1, 300 };
+        int inOff = 0;
+
+        for (int i = 0; inOff < in.length; i++)
+        {
+            int chunk = Math.min(chunks[i % chunks.length], in.length - inOff);
+
+            expectedLen += single.processBytes(in, inOff, chunk, expected, expectedLen);
+            outLen += multi.processBytes(in, inOff, chunk, out, outLen);
+
+            if (expectedLen != outLen)
+            {
+                fail("buffered output length mismatch");
+            }
+
+            inOff += chunk;
+        }
+
+        expectedLen += single.doFinal(expected, expectedLen);
+        outLen += multi.doFinal(out, outLen);
+
+        if (expectedLen != outLen || !Arrays.areEqual(expected, out))
+        {
+            fail("buffered processBlocks failed");
+        }
+
+        return Arrays.copyOfRange(out, 0, outLen);
+    }
+
+    private byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    /**
+     * hides the MultiBlockCipher interface of a cipher.
+     */
+    private static class SingleBlockCipher
+        implements BlockCipher
+    {
+        private final BlockCipher cipher;
+
+        SingleBlockCipher(BlockCipher cipher)
+        {
+            this.cipher = cipher;
+        }
+
+        public void init(boolean forEncryption, CipherParameters params)
+        {
+            cipher.init(forEncryption, params);
+        }
+
+        public String getAlgorithmName()
+        {
+            return cipher.getAlgorithmName();
+        }
+
+        public int getBlockSize()
+        {
+            return cipher.getBlockSize();
+        }
+
+        public int processBlock(byte[] in, int inOff, byte[] out, int outOff)
+        {
+            return cipher.processBlock(in, inOff, out, outOff);
+        }
+
+        public void reset()
+        {
+            cipher.reset();
+        }
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new MultiBlockCipherTest());
+    }
+}
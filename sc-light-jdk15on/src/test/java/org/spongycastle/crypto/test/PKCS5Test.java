@@ -1,6 +1,8 @@
 package org.spongycastle.crypto.test;
 
 import java.io.ByteArrayInputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.spongycastle.asn1.ASN1InputStream;
 import org.spongycastle.asn1.ASN1OctetString;
@@ -13,7 +15,11 @@ import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.spongycastle.asn1.pkcs.RC2CBCParameter;
 import org.spongycastle.crypto.BufferedBlockCipher;
 import org.spongycastle.crypto.CipherParameters;
+import org.spongycastle.crypto.Digest;
 import org.spongycastle.crypto.PBEParametersGenerator;
+import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.SHA512Digest;
 import org.spongycastle.crypto.engines.DESEngine;
 import org.spongycastle.crypto.engines.DESedeEngine;
 import org.spongycastle.crypto.engines.RC2Engine;
@@ -22,6 +28,7 @@ import org.spongycastle.crypto.modes.CBCBlockCipher;
 import org.spongycastle.crypto.paddings.PaddedBufferedBlockCipher;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Strings;
 import org.spongycastle.util.encoders.Base64;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
@@ -249,6 +256,106 @@ public class PKCS5Test
         {
             fail("192 test failed");
         }
+
+        //
+        // RFC 6070 and SHA-2 tests
+        //
+        vectorTest(new SHA1Digest(), "password", "salt", 4096, 20, "4b007901b765489abead49d926f721d065a429c1");
+        vectorTest(new SHA1Digest(), "passwordPASSWORDpassword", "saltSALTsaltSALTsaltSALTsaltSALTsalt", 4096, 25,
+            "3d2eec4fe41c849b80c8d83662c0e44a8b291a964cf2f07038");
+        vectorTest(new SHA256Digest(), "password", "salt", 4096, 32, "c5e478d59288c841aa530db6845c4c8d962893a001ce4e11a4963873aa98134a");
+        vectorTest(new SHA512Digest(), "password", "salt", 4096, 64,
+            "d197b1b33db0143e018b12f3d1d1479e6cdebdcc97c5c0f87f6902e072f457b5"
+          + "143f30602641b3d55cd335988cb36b84376060ecd532e039b742a239434af2d5");
+
+        //
+        // the word level iterations against the HMac based ones, the subclasses
+        // are not recognised by the generator so take the general path
+        //
+        pathTest(new SHA1Digest(), new SHA1Digest() {});
+        pathTest(new SHA256Digest(), new SHA256Digest() {});
+        pathTest(new SHA512Digest(), new SHA512Digest() {});
+    }
+
+    private void vectorTest(Digest digest, String password, String salt, int iterationCount, int dkLen, String expected)
+    {
+        PKCS5S2ParametersGenerator generator = new PKCS5S2ParametersGenerator(digest);
+
+        generator.init(Strings.toByteArray(password), Strings.toByteArray(salt), iterationCount);
+
+        byte[] key = ((KeyParameter)generator.generateDerivedParameters(dkLen * 8)).getKey();
+
+        if (!areEqual(key, Hex.decode(expected)))
+        {
+            fail(digest.getAlgorithmName() + " vector test failed", expected, new String(Hex.encode(key)));
+        }
+
+        if (generator.getIterationsPerformed() != (long)iterationCount * ((dkLen + digest.getDigestSize() - 1) / digest.getDigestSize()))
+        {
+            fail(digest.getAlgorithmName() + " iteration count wrong");
+        }
+
+        if (generator.getElapsedTime() <= 0 || generator.getIterationsPerSecond() <= 0)
+        {
+            fail(digest.getAlgorithmName() + " rate not recorded");
+        }
+    }
+
+    private void pathTest(Digest fast, Digest general)
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try
+        {
+            byte[] salt = Hex.decode("0102030405060708");
+            int keySize = (fast.getDigestSize() * 3 + 5) * 8;
+
+            // short, block length and longer than block length passwords
+            for (int len = 0; len <= 200; len += 50)
+            {
+                byte[] password = new byte[len];
+
+                for (int i = 0; i != password.length; i++)
+                {
+                    password[i] = (byte)i;
+                }
+
+                PKCS5S2ParametersGenerator g1 = new PKCS5S2ParametersGenerator(fast);
+                PKCS5S2ParametersGenerator g2 = new PKCS5S2ParametersGenerator(general);
+                PKCS5S2ParametersGenerator g3 = new PKCS5S2ParametersGenerator(fast, executor);
+                PKCS5S2ParametersGenerator g4 = new PKCS5S2ParametersGenerator(general, executor);
+
+                g1.init(password, salt, 100);
+                g2.init(password, salt, 100);
+                g3.init(password, salt, 100);
+                g4.init(password, salt, 100);
+
+                byte[] k1 = ((KeyParameter)g1.generateDerivedParameters(keySize)).getKey();
+                byte[] k2 = ((KeyParameter)g2.generateDerivedParameters(keySize)).getKey();
+                byte[] k3 = ((KeyParameter)g3.generateDerivedParameters(keySize)).getKey();
+                byte[] k4 = ((KeyParameter)g4.generateDerivedParameters(keySize)).getKey();
+
+                if (!areEqual(k1, k2))
+                {
+                    fail(fast.getAlgorithmName() + " word level and HMac derivation differ for " + len);
+                }
+
+                if (!areEqual(k1, k3) || !areEqual(k1, k4))
+                {
+                    fail(fast.getAlgorithmName() + " concurrent derivation differs for " + len);
+                }
+
+                // a second key from the same generator
+                if (!areEqual(k1, ((KeyParameter)g1.generateDerivedParameters(keySize)).getKey()))
+                {
+                    fail(fast.getAlgorithmName() + " repeated derivation differs for " + len);
+                }
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
     }
 
     public static void main(
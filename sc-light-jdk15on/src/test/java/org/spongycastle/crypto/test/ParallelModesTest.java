@@ -0,0 +1,229 @@
+package org.spongycastle.crypto.test;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.spongycastle.crypto.BlockCipher;
+import org.spongycastle.crypto.BufferedBlockCipher;
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.engines.AESEngine;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.modes.AEADBlockCipher;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.modes.ParallelGCMBlockCipher;
+import org.spongycastle.crypto.modes.ParallelSICBlockCipher;
+import org.spongycastle.crypto.modes.SICBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+import org.spongycastle.crypto.params.ParametersWithIV;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.encoders.Hex;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * check the parallel GCM and SIC modes produce the same output as the serial ones.
+ */
+public class ParallelModesTest
+    extends SimpleTest
+{
+    private static final int LANES = 4;
+
+    private SecureRandom random = new SecureRandom();
+
+    public String getName()
+    {
+        return "ParallelModes";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(LANES - 1);
+
+        try
+        {
+            ParallelGCMBlockCipher parallelGCM = new ParallelGCMBlockCipher(createCiphers(), executor);
+
+            // small enough to stay serial, then large enough to be split unevenly
+            testGCM(parallelGCM, 16, 12, 1000, 16);
+            testGCM(parallelGCM, 32, 12, 3 * 65536 + 4 * 16 * 4096 + 7, 16);
+            testGCM(parallelGCM, 24, 7, 5 * 16 * 4096 + 33, 12);
+            testGCM(parallelGCM, 16, 12, 3 * 16 * 4096 + 1, 16);
+
+            testSIC(executor, Hex.decode("000102030405060708090a0b0c0d0e0f"), 5 * 4096 * 16 + 5);
+            // counter carries across the byte boundaries of the IV
+            testSIC(executor, Hex.decode("00000000fffffffffffffffffffff000"), 9 * 4096 * 16);
+
+            try
+            {
+                BlockCipher cipher = new AESEngine();
+                new ParallelGCMBlockCipher(new BlockCipher[] { cipher, cipher }, executor);
+                fail("shared cipher instance not detected");
+            }
+            catch (IllegalArgumentException e)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void testGCM(ParallelGCMBlockCipher parallel, int keySize, int nonceSize, int length, int macSize)
+        throws InvalidCipherTextException
+    {
+        GCMBlockCipher serial = new GCMBlockCipher(new AESEngine());
+        AEADParameters params = new AEADParameters(new KeyParameter(randomBytes(keySize)), macSize * 8,
+            randomBytes(nonceSize), randomBytes(21));
+
+        byte[] P = randomBytes(length);
+
+        serial.init(true, params);
+        byte[] expected = process(serial, P);
+
+        parallel.init(true, params);
+        byte[] C = process(parallel, P);
+
+        if (!Arrays.areEqual(expected, C))
+        {
+            fail("parallel GCM encryption differs from serial at length " + length);
+        }
+
+        parallel.init(false, params);
+        byte[] decP = process(parallel, C);
+
+        if (!Arrays.areEqual(P, decP))
+        {
+            fail("parallel GCM decryption failed at length " + length);
+        }
+
+        // in place, with a couple of calls so both paths into the cipher are used
+        parallel.init(false, params);
+        byte[] buf = Arrays.clone(C);
+        int len = parallel.processBytes(buf, 0, 17, buf, 0);
+        len += parallel.processBytes(buf, 17, buf.length - 17, buf, len);
+        len += parallel.doFinal(buf, len);
+
+        if (len != P.length || !Arrays.areEqual(P, Arrays.copyOfRange(buf, 0, len)))
+        {
+            fail("parallel GCM in place decryption failed at length " + length);
+        }
+
+        // in place with the output 8 bytes before the input, as TLS decodes records
+        parallel.init(false, params);
+        buf = new byte[8 + C.length];
+        System.arraycopy(C, 0, buf, 8, C.length);
+        len = parallel.processBytes(buf, 8, C.length, buf, 0);
+        len += parallel.doFinal(buf, len);
+
+        if (len != P.length || !Arrays.areEqual(P, Arrays.copyOfRange(buf, 0, len)))
+        {
+            fail("parallel GCM shifted in place decryption failed at length " + length);
+        }
+
+        C[length / 2] ^= 1;
+        parallel.init(false, params);
+
+        try
+        {
+            process(parallel, C);
+            fail("corrupted cipher text not detected");
+        }
+        catch (InvalidCipherTextException e)
+        {
+            // expected
+        }
+    }
+
+    private void testSIC(ExecutorService executor, byte[] iv, int length)
+        throws InvalidCipherTextException
+    {
+        ParametersWithIV params = new ParametersWithIV(new KeyParameter(randomBytes(16)), iv);
+        BufferedBlockCipher serial = new BufferedBlockCipher(new SICBlockCipher(new AESFastEngine()));
+        BufferedBlockCipher parallel = new BufferedBlockCipher(new ParallelSICBlockCipher(createCiphers(), executor));
+
+        byte[] P = randomBytes(length);
+
+        serial.init(true, params);
+        parallel.init(true, params);
+
+        for (int pass = 0; pass != 2; pass++)
+        {
+            // the second pass checks the counter state after a reset
+            byte[] expected = process(serial, P);
+            byte[] C = process(parallel, P);
+
+            if (!Arrays.areEqual(expected, C))
+            {
+                fail("parallel SIC differs from serial at length " + length);
+            }
+        }
+
+        // in place with the output 8 bytes before the input
+        byte[] C = process(serial, P);
+        byte[] buf = new byte[8 + length];
+        System.arraycopy(C, 0, buf, 8, length);
+        int len = parallel.processBytes(buf, 8, length, buf, 0);
+        len += parallel.doFinal(buf, len);
+
+        if (len != length || !Arrays.areEqual(P, Arrays.copyOfRange(buf, 0, len)))
+        {
+            fail("parallel SIC shifted in place processing failed at length " + length);
+        }
+    }
+
+    private byte[] process(AEADBlockCipher cipher, byte[] in)
+        throws InvalidCipherTextException
+    {
+        byte[] out = new byte[cipher.getOutputSize(in.length)];
+
+        // an odd first chunk, so the bulk of the data is fed through unaligned
+        int len = cipher.processBytes(in, 0, 5, out, 0);
+        len += cipher.processBytes(in, 5, in.length - 5, out, len);
+        len += cipher.doFinal(out, len);
+
+        return Arrays.copyOfRange(out, 0, len);
+    }
+
+    private byte[] process(BufferedBlockCipher cipher, byte[] in)
+        throws InvalidCipherTextException
+    {
+        byte[] out = new byte[cipher.getOutputSize(in.length)];
+
+        int len = cipher.processBytes(in, 0, 3, out, 0);
+        len += cipher.processBytes(in, 3, in.length - 3, out, len);
+        len += cipher.doFinal(out, len);
+
+        return Arrays.copyOfRange(out, 0, len);
+    }
+
+    private BlockCipher[] createCiphers()
+    {
+        BlockCipher[] ciphers = new BlockCipher[LANES];
+
+        for (int i = 0; i != ciphers.length; i++)
+        {
+            ciphers[i] = new AESFastEngine();
+        }
+
+        return ciphers;
+    }
+
+    private byte[] randomBytes(int length)
+    {
+        byte[] bytes = new byte[length];
+
+        random.nextBytes(bytes);
+
+        return bytes;
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new ParallelModesTest());
+    }
+}
@@ -1,15 +1,26 @@
 package org.spongycastle.crypto.test;
 
+import org.spongycastle.asn1.ASN1EncodableVector;
+import org.spongycastle.asn1.ASN1Integer;
+import org.spongycastle.asn1.DERNull;
+import org.spongycastle.asn1.DERSequence;
+import org.spongycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.spongycastle.asn1.pkcs.PrivateKeyInfo;
+import org.spongycastle.asn1.x509.AlgorithmIdentifier;
 import org.spongycastle.crypto.AsymmetricBlockCipher;
 import org.spongycastle.crypto.AsymmetricCipherKeyPair;
 import org.spongycastle.crypto.InvalidCipherTextException;
 import org.spongycastle.crypto.encodings.OAEPEncoding;
 import org.spongycastle.crypto.encodings.PKCS1Encoding;
 import org.spongycastle.crypto.engines.RSABlindedEngine;
+import org.spongycastle.crypto.engines.RSAEngine;
 import org.spongycastle.crypto.generators.RSAKeyPairGenerator;
+import org.spongycastle.crypto.params.AsymmetricKeyParameter;
 import org.spongycastle.crypto.params.RSAKeyGenerationParameters;
 import org.spongycastle.crypto.params.RSAKeyParameters;
+import org.spongycastle.crypto.params.RSAMultiPrimePrivateCrtKeyParameters;
 import org.spongycastle.crypto.params.RSAPrivateCrtKeyParameters;
+import org.spongycastle.crypto.util.PrivateKeyFactory;
 import org.spongycastle.util.encoders.Hex;
 import org.spongycastle.util.test.SimpleTest;
 
@@ -28,6 +39,8 @@ public class RSABlindedTest
     static BigInteger  qExp = new BigInteger("6c929e4e81672fef49d9c825163fec97c4b7ba7acb26c0824638ac22605d7201c94625770984f78a56e6e25904fe7db407099cad9b14588841b94f5ab498dded", 16);
     static BigInteger  crtCoef = new BigInteger("dae7651ee69ad1d081ec5e7188ae126f6004ff39556bde90e0b870962fa7b926d070686d8244fe5a9aa709a95686a104614834b0ada4b10f53197a5cb4c97339", 16);
 
+    private static final BigInteger ONE = BigInteger.valueOf(1);
+
     static String input = "4e6f77206973207468652074696d6520666f7220616c6c20676f6f64206d656e";
 
     //
@@ -192,7 +205,128 @@ public class RSABlindedTest
         }
     }
 
+    /**
+     * Repeated operations with the same key work through the cached
+     * blinding pairs, past the point where a fresh pair is made.
+     */
+    private void testBlindingReuse(RSAKeyParameters pubParameters, RSAKeyParameters privParameters)
+        throws Exception
+    {
+        SecureRandom random = new SecureRandom();
+        AsymmetricBlockCipher enc = new RSABlindedEngine();
+        AsymmetricBlockCipher dec = new RSABlindedEngine();
+
+        enc.init(true, pubParameters);
+
+        for (int i = 0; i != 80; i++)
+        {
+            byte[] data = new byte[enc.getInputBlockSize()];
+
+            random.nextBytes(data);
+
+            // a new engine for the same key picks up where the last one left off
+            if (i % 10 == 0)
+            {
+                dec = new RSABlindedEngine();
+                dec.init(false, privParameters);
+            }
+
+            byte[] ct = enc.processBlock(data, 0, data.length);
+            byte[] pt = dec.processBlock(ct, 0, ct.length);
+
+            if (!new BigInteger(1, data).equals(new BigInteger(1, pt)))
+            {
+                fail("failed blinding reuse test at " + i);
+            }
+        }
+    }
+
+    /**
+     * A three prime key, used directly and after a trip through its
+     * PKCS#8 encoding, must give the same results as the public key.
+     */
+    private void testMultiPrime()
+        throws Exception
+    {
+        SecureRandom random = new SecureRandom();
+        BigInteger e = BigInteger.valueOf(65537);
+        BigInteger[] r = new BigInteger[3];
+        BigInteger n, phi;
+
+        do
+        {
+            for (int i = 0; i != r.length; i++)
+            {
+                r[i] = BigInteger.probablePrime(512, random);
+            }
+
+            n = r[0].multiply(r[1]).multiply(r[2]);
+            phi = r[0].subtract(ONE).multiply(r[1].subtract(ONE)).multiply(r[2].subtract(ONE));
+        }
+        while (!phi.gcd(e).equals(ONE) || r[0].equals(r[1]) || r[0].equals(r[2]) || r[1].equals(r[2]));
+
+        BigInteger d = e.modInverse(phi);
+        BigInteger dP = d.mod(r[0].subtract(ONE));
+        BigInteger dQ = d.mod(r[1].subtract(ONE));
+        BigInteger qInv = r[1].modInverse(r[0]);
+        BigInteger d3 = d.mod(r[2].subtract(ONE));
+        BigInteger t3 = r[0].multiply(r[1]).modInverse(r[2]);
+
+        RSAKeyParameters pubParameters = new RSAKeyParameters(false, n, e);
+        RSAKeyParameters privParameters = new RSAMultiPrimePrivateCrtKeyParameters(n, e, d, r[0], r[1], dP, dQ, qInv,
+            new BigInteger[]{ r[2] }, new BigInteger[]{ d3 }, new BigInteger[]{ t3 });
+
+        ASN1EncodableVector info = new ASN1EncodableVector();
+        info.add(new ASN1Integer(r[2]));
+        info.add(new ASN1Integer(d3));
+        info.add(new ASN1Integer(t3));
+
+        ASN1EncodableVector key = new ASN1EncodableVector();
+        BigInteger[] fields = { ONE, n, e, d, r[0], r[1], dP, dQ, qInv };
+        for (int i = 0; i != fields.length; i++)
+        {
+            key.add(new ASN1Integer(fields[i]));
+        }
+        key.add(new DERSequence(new DERSequence(info)));
+
+        PrivateKeyInfo keyInfo = new PrivateKeyInfo(
+            new AlgorithmIdentifier(PKCSObjectIdentifiers.rsaEncryption, DERNull.INSTANCE), new DERSequence(key));
+        AsymmetricKeyParameter decoded = PrivateKeyFactory.createKey(keyInfo.getEncoded());
+
+        if (!(decoded instanceof RSAMultiPrimePrivateCrtKeyParameters))
+        {
+            fail("multi-prime key not recovered from encoding");
+        }
+
+        AsymmetricBlockCipher[] engines = { new RSABlindedEngine(), new RSAEngine(), new RSABlindedEngine() };
+        AsymmetricKeyParameter[] keys = { privParameters, privParameters, decoded };
+
+        AsymmetricBlockCipher enc = new RSAEngine();
+        enc.init(true, pubParameters);
+
+        for (int i = 0; i != engines.length; i++)
+        {
+            engines[i].init(false, keys[i]);
+
+            for (int j = 0; j != 5; j++)
+            {
+                byte[] data = new byte[enc.getInputBlockSize()];
+
+                random.nextBytes(data);
+
+                byte[] ct = enc.processBlock(data, 0, data.length);
+                byte[] pt = engines[i].processBlock(ct, 0, ct.length);
+
+                if (!new BigInteger(1, data).equals(new BigInteger(1, pt)))
+                {
+                    fail("failed multi-prime test " + i);
+                }
+            }
+        }
+    }
+
     public void performTest()
+        throws Exception
     {
         RSAKeyParameters    pubParameters = new RSAKeyParameters(false, mod, pubExp);
         RSAKeyParameters    privParameters = new RSAPrivateCrtKeyParameters(mod, pubExp, privExp, p, q, pExp, qExp, crtCoef);
@@ -416,6 +550,8 @@ public class RSABlindedTest
         testMissingDataPKCS1Block(pubParameters, privParameters);
         testTruncatedPKCS1Block(pubParameters, privParameters);
         testWrongPaddingPKCS1Block(pubParameters, privParameters);
+        testBlindingReuse(pubParameters, privParameters);
+        testMultiPrime();
 
         try
         {
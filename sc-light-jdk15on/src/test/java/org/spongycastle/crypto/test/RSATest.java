@@ -455,6 +455,37 @@ public class RSATest
             fail("failed key generation (1024) test");
         }
 
+        pGen.setThreadCount(4);
+        pair = pGen.generateKeyPair();
+        pGen.setThreadCount(1);
+
+        RSAPrivateCrtKeyParameters threadedKey = (RSAPrivateCrtKeyParameters)pair.getPrivate();
+
+        if (threadedKey.getModulus().bitLength() < 1024
+            || !threadedKey.getP().multiply(threadedKey.getQ()).equals(threadedKey.getModulus())
+            || !threadedKey.getP().isProbablePrime(25) || !threadedKey.getQ().isProbablePrime(25))
+        {
+            fail("failed threaded key generation (1024) test");
+        }
+
+        eng.init(true, pair.getPublic());
+
+        try
+        {
+            data = eng.processBlock(data, 0, data.length);
+            eng.init(false, pair.getPrivate());
+            data = eng.processBlock(data, 0, data.length);
+        }
+        catch (Exception e)
+        {
+            fail("failed - exception " + e.toString(), e);
+        }
+
+        if (!input.equals(new String(Hex.encode(data))))
+        {
+            fail("failed threaded key generation (1024) test");
+        }
+
         genParam = new RSAKeyGenerationParameters(
             BigInteger.valueOf(0x11), new SecureRandom(), 16, 25);
         pGen.init(genParam);
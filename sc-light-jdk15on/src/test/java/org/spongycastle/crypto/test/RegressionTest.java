@@ -105,7 +105,12 @@ public class RegressionTest
         new SRP6Test(),
         new SCryptTest(),
         new ResetTest(),
-        new NullTest()
+        new NullTest(),
+        new MultiBlockCipherTest(),
+        new ParallelModesTest(),
+        new TreeDigestTest(),
+        new ByteBufferTest(),
+        new ECDSABatchVerifierTest()
     };
 
     public static void main(
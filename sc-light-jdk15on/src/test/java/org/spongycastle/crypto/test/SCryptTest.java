@@ -2,6 +2,12 @@ package org.spongycastle.crypto.test;
 
 import java.io.BufferedReader;
 import java.io.FileReader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import org.spongycastle.crypto.generators.SCrypt;
 import org.spongycastle.util.Strings;
@@ -23,6 +29,8 @@ public class SCryptTest extends SimpleTest
 
     public void performTest() throws Exception
     {
+        laneTest();
+
         BufferedReader br = new BufferedReader(new FileReader(getDataHome() + "/TestVectors.txt"));
 
         int count = 0;
@@ -73,6 +81,136 @@ public class SCryptTest extends SimpleTest
         br.close();
     }
 
+    private void laneTest()
+        throws Exception
+    {
+        byte[] expected1 = Hex.decode(
+            "77d6576238657b203b19ca42c18a0497f16b4844e3074ae8dfdffa3fede21442"
+          + "fcd0069ded0948f8326a753a0fc81f17e8d3e0fb2e0d3628cf35e20c38d18906");
+        byte[] expected2 = Hex.decode(
+            "fdbabe1c9d3472007856e7190d01e9fe7c6ad7cbc8237830e77376634b373162"
+          + "2eaf30d92e22a3886ff109279d9830dac727afb94a83ee6d8360cbdfa2cc0640");
+        byte[] P = Strings.toByteArray("password");
+        byte[] S = Strings.toByteArray("NaCl");
+
+        if (!areEqual(expected1, SCrypt.generate(new byte[0], new byte[0], 16, 1, 1, 64)))
+        {
+            fail("RFC 7914 vector 1 failed");
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+
+        try
+        {
+            // room for every lane at once, and room for only one lane at a time
+            long[] budgets = { 64L * 1024 * 1024, 1024 * 1024 + 2048 };
+
+            for (int i = 0; i != budgets.length; i++)
+            {
+                SCrypt scrypt = new SCrypt(executor, budgets[i]);
+
+                if (!areEqual(expected2, scrypt.deriveKey(P, S, 1024, 8, 16, 64)))
+                {
+                    fail("concurrent lanes failed with budget " + budgets[i]);
+                }
+
+                // a second run reuses the pooled memory
+                if (!areEqual(expected2, scrypt.deriveKey(P, S, 1024, 8, 16, 64, 60, TimeUnit.SECONDS)))
+                {
+                    fail("time boxed lanes failed with budget " + budgets[i]);
+                }
+            }
+
+            SCrypt scrypt = new SCrypt(executor, 64L * 1024 * 1024);
+
+            try
+            {
+                scrypt.deriveKey(P, S, 1 << 16, 8, 16, 64, 1, TimeUnit.MILLISECONDS);
+
+                fail("no timeout");
+            }
+            catch (TimeoutException e)
+            {
+                // expected
+            }
+
+            if (!areEqual(expected2, scrypt.deriveKey(P, S, 1024, 8, 16, 64)))
+            {
+                fail("lanes failed after timeout");
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        interruptTest(P, S);
+    }
+
+    private void interruptTest(byte[] P, byte[] S)
+        throws Exception
+    {
+        // the other lanes queue up behind a blocked task, so the caller finishes
+        // its own lane and is interrupted while waiting for them
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        final CountDownLatch blocker = new CountDownLatch(1);
+
+        try
+        {
+            executor.submit(new Callable()
+            {
+                public Object call()
+                    throws Exception
+                {
+                    blocker.await();
+                    return null;
+                }
+            });
+
+            final Thread caller = Thread.currentThread();
+            Thread interrupter = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        Thread.sleep(500);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        // ignore
+                    }
+
+                    caller.interrupt();
+                    blocker.countDown();
+                }
+            };
+
+            interrupter.start();
+
+            try
+            {
+                new SCrypt(executor, 64L * 1024 * 1024).deriveKey(P, S, 1024, 8, 4, 64, 60, TimeUnit.SECONDS);
+
+                fail("interrupt while waiting for lanes not detected");
+            }
+            catch (InterruptedException e)
+            {
+                // expected
+            }
+            finally
+            {
+                blocker.countDown();
+                interrupter.join();
+                Thread.interrupted();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
     private static boolean isEndData(String line)
     {
         return line == null || line.startsWith("scrypt");
@@ -0,0 +1,238 @@
+package org.spongycastle.crypto.test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.spongycastle.crypto.Digest;
+import org.spongycastle.crypto.digests.SHA1Digest;
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.digests.TreeDigest;
+import org.spongycastle.crypto.digests.TreeDigestVerifier;
+import org.spongycastle.util.test.SimpleTest;
+
+/**
+ * Tree digest checks against a direct recursive calculation of the tree.
+ */
+public class TreeDigestTest
+    extends SimpleTest
+{
+    public String getName()
+    {
+        return "TreeDigest";
+    }
+
+    public void performTest()
+        throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+
+        try
+        {
+            int[] lengths = { 0, 1, 63, 64, 65, 64 * 4, 64 * 4 + 1, 64 * 17 + 5, 5000 };
+
+            for (int i = 0; i != lengths.length; i++)
+            {
+                byte[] msg = new byte[lengths[i]];
+
+                for (int j = 0; j != msg.length; j++)
+                {
+                    msg[j] = (byte)(j * 7);
+                }
+
+                treeTest(executor, msg, 64, 2);
+                treeTest(executor, msg, 64, 4);
+                treeTest(executor, msg, 100, 3);
+            }
+
+            verifierTest(executor);
+            singleLeafTest();
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+    }
+
+    private void treeTest(ExecutorService executor, byte[] msg, int leafSize, int fanOut)
+    {
+        byte[] expected = reference(new SHA256Digest(), msg, leafSize, fanOut);
+
+        TreeDigest[] digests = {
+            new TreeDigest(new SHA256Digest(), leafSize, fanOut),
+            new TreeDigest(new SHA256Digest(), leafSize, fanOut, executor, 1),
+            new TreeDigest(new SHA256Digest(), leafSize, fanOut, executor, 8)
+        };
+
+        for (int i = 0; i != digests.length; i++)
+        {
+            TreeDigest digest = digests[i];
+            byte[] result = new byte[digest.getDigestSize()];
+
+            // twice, to check the state is reset after doFinal
+            for (int pass = 0; pass != 2; pass++)
+            {
+                digest.update(msg, 0, msg.length);
+                digest.doFinal(result, 0);
+
+                if (!areEqual(expected, result))
+                {
+                    fail("tree hash " + i + " failed for " + msg.length + "/" + leafSize + "/" + fanOut);
+                }
+            }
+
+            // in pieces which do not line up with the leaves
+            for (int off = 0; off < msg.length; off += 37)
+            {
+                digest.update(msg, off, Math.min(37, msg.length - off));
+            }
+            digest.doFinal(result, 0);
+
+            if (!areEqual(expected, result))
+            {
+                fail("split tree hash " + i + " failed for " + msg.length + "/" + leafSize + "/" + fanOut);
+            }
+
+            // a reset part way through a message
+            digest.update(msg, 0, msg.length / 2);
+            digest.reset();
+
+            for (int j = 0; j != msg.length; j++)
+            {
+                digest.update(msg[j]);
+            }
+            digest.doFinal(result, 0);
+
+            if (!areEqual(expected, result))
+            {
+                fail("byte tree hash " + i + " failed for " + msg.length + "/" + leafSize + "/" + fanOut);
+            }
+        }
+    }
+
+    private void verifierTest(ExecutorService executor)
+    {
+        byte[] msg = new byte[1000];
+        int leafSize = 64;
+        int leafCount = (msg.length + leafSize - 1) / leafSize;
+
+        byte[] root = reference(new SHA256Digest(), msg, leafSize, 4);
+        byte[][] leaves = new byte[leafCount][];
+
+        for (int i = 0; i != leafCount; i++)
+        {
+            leaves[i] = leafHash(new SHA256Digest(), msg, i * leafSize, Math.min(leafSize, msg.length - i * leafSize));
+        }
+
+        TreeDigestVerifier rootVerifier = new TreeDigestVerifier(new SHA256Digest(), leafSize, 4, root);
+        TreeDigestVerifier leafVerifier = new TreeDigestVerifier(new SHA256Digest(), leafSize, 4, executor, 4, root, leaves);
+
+        rootVerifier.update(msg, 0, msg.length);
+        leafVerifier.update(msg, 0, msg.length);
+
+        if (!rootVerifier.verify() || !leafVerifier.verify() || leafVerifier.getFirstBadLeaf() != -1)
+        {
+            fail("verification failed");
+        }
+
+        msg[leafSize * 9 + 3] ^= 1;
+
+        rootVerifier.update(msg, 0, msg.length);
+        leafVerifier.update(msg, 0, msg.length);
+
+        if (rootVerifier.verify() || leafVerifier.verify())
+        {
+            fail("damaged message verified");
+        }
+
+        if (leafVerifier.getFirstBadLeaf() != 9)
+        {
+            fail("wrong bad leaf found: " + leafVerifier.getFirstBadLeaf());
+        }
+
+        msg[leafSize * 9 + 3] ^= 1;
+
+        leafVerifier.update(msg, 0, leafSize * 6);
+
+        if (leafVerifier.verify() || leafVerifier.getFirstBadLeaf() != 6)
+        {
+            fail("truncated message not detected");
+        }
+    }
+
+    private void singleLeafTest()
+    {
+        byte[] msg = new byte[10];
+        TreeDigest digest = new TreeDigest(new SHA1Digest(), 64, 2);
+        byte[] result = new byte[digest.getDigestSize()];
+
+        digest.update(msg, 0, msg.length);
+        digest.doFinal(result, 0);
+
+        if (!areEqual(leafHash(new SHA1Digest(), msg, 0, msg.length), result))
+        {
+            fail("single leaf root is not the leaf hash");
+        }
+
+        try
+        {
+            new TreeDigest(new SHA1Digest(), 64, 1);
+
+            fail("fan out of 1 accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    private static byte[] leafHash(Digest digest, byte[] msg, int off, int len)
+    {
+        byte[] hash = new byte[digest.getDigestSize()];
+
+        digest.update((byte)0x00);
+        digest.update(msg, off, len);
+        digest.doFinal(hash, 0);
+
+        return hash;
+    }
+
+    private static byte[] reference(Digest digest, byte[] msg, int leafSize, int fanOut)
+    {
+        int hashLen = digest.getDigestSize();
+        int count = Math.max(1, (msg.length + leafSize - 1) / leafSize);
+        byte[][] level = new byte[count][];
+
+        for (int i = 0; i != count; i++)
+        {
+            level[i] = leafHash(digest, msg, i * leafSize, Math.min(leafSize, msg.length - i * leafSize));
+        }
+
+        while (level.length > 1)
+        {
+            byte[][] next = new byte[(level.length + fanOut - 1) / fanOut][];
+
+            for (int i = 0; i != next.length; i++)
+            {
+                digest.update((byte)0x01);
+
+                for (int j = i * fanOut; j < Math.min(level.length, (i + 1) * fanOut); j++)
+                {
+                    digest.update(level[j], 0, hashLen);
+                }
+
+                next[i] = new byte[hashLen];
+                digest.doFinal(next[i], 0);
+            }
+
+            level = next;
+        }
+
+        return level[0];
+    }
+
+    public static void main(
+        String[]    args)
+    {
+        runTest(new TreeDigestTest());
+    }
+}
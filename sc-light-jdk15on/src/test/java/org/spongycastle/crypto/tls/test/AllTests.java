@@ -17,6 +17,11 @@ public class AllTests
         TestSuite suite = new TestSuite("TLS tests");
         
         suite.addTest(BasicTlsTest.suite());
+        suite.addTest(SessionResumptionTest.suite());
+        suite.addTest(NonBlockingTlsTest.suite());
+        suite.addTest(Tls12Test.suite());
+        suite.addTest(RecordLayerTest.suite());
+        suite.addTest(TlsServerTest.suite());
         
         return suite;
     }
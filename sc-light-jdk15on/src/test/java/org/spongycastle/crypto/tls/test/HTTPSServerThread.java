@@ -14,6 +14,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.security.KeyStore;
+import java.security.Security;
 
 public class HTTPSServerThread
     extends Thread
@@ -22,6 +23,17 @@ public class HTTPSServerThread
     private static final char[] SERVER_PASSWORD = "serverPassword".toCharArray();
     private static final char[] TRUST_STORE_PASSWORD = "trustPassword".toCharArray();
 
+    static
+    {
+        /*
+         * Recent JDKs disable TLS 1.0, the only version TlsProtocolHandler speaks, and refuse to
+         * resume sessions without the extended master secret extension, which it doesn't send.
+         * These have to be set before the JSSE classes are loaded.
+         */
+        Security.setProperty("jdk.tls.disabledAlgorithms", "SSLv3, RC4");
+        System.setProperty("jdk.tls.useExtendedMasterSecret", "false");
+    }
+
     /**
      * Read a HTTP request
      */
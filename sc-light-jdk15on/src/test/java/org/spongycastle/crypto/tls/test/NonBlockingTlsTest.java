@@ -0,0 +1,175 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.security.SecureRandom;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.crypto.tls.AlwaysValidVerifyer;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.TlsProtocolHandler;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Drive a TlsProtocolHandler in non-blocking mode against a JSSE server, passing the bytes
+ * between it and the socket by hand.
+ */
+public class NonBlockingTlsTest
+    extends TestCase
+{
+    private SSLServerSocket serverSocket;
+
+    protected void setUp()
+        throws Exception
+    {
+        serverSocket = (SSLServerSocket)new HTTPSServerThread().createSSLContext()
+            .getServerSocketFactory().createServerSocket(0);
+        serverSocket.setEnabledProtocols(new String[] { "TLSv1" });
+
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    SSLSocket s = (SSLSocket)serverSocket.accept();
+                    InputStream in = s.getInputStream();
+                    OutputStream out = s.getOutputStream();
+
+                    // echo everything back, until the client closes
+                    byte[] buf = new byte[1024];
+                    int count;
+                    while ((count = in.read(buf)) > 0)
+                    {
+                        out.write(buf, 0, count);
+                    }
+                    s.close();
+                }
+                catch (IOException e)
+                {
+                    // connection dropped
+                }
+            }
+        };
+
+        server.setDaemon(true);
+        server.start();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        serverSocket.close();
+    }
+
+    public void testNonBlocking()
+        throws Exception
+    {
+        Socket s = new Socket("localhost", serverSocket.getLocalPort());
+        InputStream in = s.getInputStream();
+        OutputStream out = s.getOutputStream();
+
+        TlsProtocolHandler handler = new TlsProtocolHandler(new SecureRandom());
+
+        assertFalse(handler.isHandshaking());
+        assertNull(handler.getInputStream());
+
+        handler.connect(new LegacyTlsClient(new AlwaysValidVerifyer()));
+
+        assertTrue(handler.isHandshaking());
+
+        try
+        {
+            handler.offerOutput(new byte[1], 0, 1);
+            fail("application data accepted during handshake");
+        }
+        catch (IllegalStateException e)
+        {
+            // expected
+        }
+
+        while (handler.isHandshaking())
+        {
+            pump(handler, in, out);
+        }
+
+        assertFalse(handler.isClosed());
+
+        byte[] data = new byte[20000];
+        new SecureRandom().nextBytes(data);
+
+        handler.offerOutput(data, 0, data.length);
+
+        byte[] echoed = new byte[data.length];
+        int total = 0;
+        while (total < echoed.length)
+        {
+            pump(handler, in, out);
+            total += handler.readInput(echoed, total, echoed.length - total);
+        }
+
+        assertEquals(0, handler.getAvailableInputBytes());
+        assertTrue(Arrays.areEqual(data, echoed));
+
+        handler.close();
+
+        assertTrue(handler.isClosed());
+        assertTrue(handler.getAvailableOutputBytes() > 0);
+
+        sendOutput(handler, out);
+        s.close();
+    }
+
+    /**
+     * Send anything waiting, then offer whatever arrives from the socket a byte at a time, so
+     * records are split at every possible point.
+     */
+    private void pump(TlsProtocolHandler handler, InputStream in, OutputStream out)
+        throws IOException
+    {
+        sendOutput(handler, out);
+
+        byte[] buf = new byte[4096];
+        int count = in.read(buf);
+        if (count < 0)
+        {
+            throw new IOException("server closed connection");
+        }
+
+        for (int i = 0; i != count; i++)
+        {
+            handler.offerInput(new byte[] { buf[i] });
+        }
+    }
+
+    private void sendOutput(TlsProtocolHandler handler, OutputStream out)
+        throws IOException
+    {
+        byte[] buf = new byte[handler.getAvailableOutputBytes()];
+
+        if (buf.length > 0)
+        {
+            assertEquals(buf.length, handler.readOutput(buf, 0, buf.length));
+            out.write(buf);
+            out.flush();
+        }
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(NonBlockingTlsTest.class);
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+}
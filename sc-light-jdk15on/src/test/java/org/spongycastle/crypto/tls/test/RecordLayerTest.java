@@ -0,0 +1,219 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.x509.X509CertificateStructure;
+import org.spongycastle.crypto.tls.CertificateVerifyer;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.TlsProtocolHandler;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Check the record layer settles on its buffers, and that write coalescing fills records.
+ */
+public class RecordLayerTest
+    extends TestCase
+{
+    private static final int ROUND_LENGTH = 4 * (1 << 14);
+    private static final int ROUNDS = 4;
+    private static final int WRITE_LENGTH = 16;
+
+    private SSLServerSocket serverSocket;
+
+    protected void tearDown()
+        throws Exception
+    {
+        if (serverSocket != null)
+        {
+            serverSocket.close();
+        }
+    }
+
+    public void testGCM()
+        throws Exception
+    {
+        // AES-GCM, 8 byte explicit nonce and 16 byte tag
+        checkRecordLayer("TLSv1.2", "TLS_RSA_WITH_AES_128_GCM_SHA256", 8 + 16);
+    }
+
+    public void testCBC()
+        throws Exception
+    {
+        // AES-CBC with explicit IV; the padding length varies, so the record size does too
+        checkRecordLayer("TLSv1.1", "TLS_RSA_WITH_AES_128_CBC_SHA", -1);
+    }
+
+    private void checkRecordLayer(String protocol, String cipherSuite, int overhead)
+        throws Exception
+    {
+        startServer(protocol, cipherSuite);
+
+        Socket s = new Socket("localhost", serverSocket.getLocalPort());
+        RecordCountingOutputStream out = new RecordCountingOutputStream(s.getOutputStream());
+        TlsProtocolHandler handler = new TlsProtocolHandler(s.getInputStream(), out);
+
+        handler.connect(new LegacyTlsClient(new CertificateVerifyer()
+        {
+            public boolean isValid(X509CertificateStructure[] certs)
+            {
+                return true;
+            }
+        }));
+
+        handler.setWriteCoalescing(true);
+
+        byte[] data = new byte[ROUND_LENGTH];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+
+        long allocations = 0, bytesAllocated = 0;
+        for (int round = 0; round < ROUNDS; ++round)
+        {
+            out.reset();
+
+            OutputStream tlsOut = handler.getOutputStream();
+            for (int pos = 0; pos < data.length; pos += WRITE_LENGTH)
+            {
+                tlsOut.write(data, pos, WRITE_LENGTH);
+            }
+            tlsOut.flush();
+
+            // the small writes went out as full records, and nothing else
+            assertEquals(ROUND_LENGTH / (1 << 14), out.getWriteCount());
+            if (overhead >= 0)
+            {
+                assertEquals(ROUND_LENGTH / (1 << 14) * (5 + (1 << 14) + overhead), out.getByteCount());
+            }
+
+            byte[] echo = new byte[ROUND_LENGTH];
+            InputStream in = handler.getInputStream();
+            int count = 0;
+            while (count < echo.length)
+            {
+                int len = in.read(echo, count, echo.length - count);
+                assertTrue(len > 0);
+                count += len;
+            }
+            assertTrue(Arrays.areEqual(data, echo));
+
+            if (round == 0)
+            {
+                allocations = handler.getRecordBufferAllocations();
+                bytesAllocated = handler.getRecordBytesAllocated();
+            }
+            else
+            {
+                // once the buffers have grown to full records they are simply reused
+                assertEquals(allocations, handler.getRecordBufferAllocations());
+                assertEquals(bytesAllocated, handler.getRecordBytesAllocated());
+            }
+        }
+
+        handler.close();
+    }
+
+    private void startServer(String protocol, String cipherSuite)
+        throws Exception
+    {
+        serverSocket = (SSLServerSocket)new HTTPSServerThread().createSSLContext()
+            .getServerSocketFactory().createServerSocket(0);
+        serverSocket.setEnabledProtocols(new String[] { protocol });
+        serverSocket.setEnabledCipherSuites(new String[] { cipherSuite });
+
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    SSLSocket s = (SSLSocket)serverSocket.accept();
+
+                    InputStream in = s.getInputStream();
+                    OutputStream out = s.getOutputStream();
+
+                    byte[] buf = new byte[ROUND_LENGTH];
+                    for (int round = 0; round < ROUNDS; ++round)
+                    {
+                        int count = 0;
+                        while (count < buf.length)
+                        {
+                            int len = in.read(buf, count, buf.length - count);
+                            if (len < 0)
+                            {
+                                return;
+                            }
+                            count += len;
+                        }
+
+                        out.write(buf, 0, count);
+                        out.flush();
+                    }
+                    s.close();
+                }
+                catch (IOException e)
+                {
+                    // server socket closed
+                }
+            }
+        };
+
+        server.setDaemon(true);
+        server.start();
+    }
+
+    /**
+     * The record layer writes each record in one go, so counting writes counts records.
+     */
+    private static class RecordCountingOutputStream
+        extends FilterOutputStream
+    {
+        private int writeCount = 0;
+        private int byteCount = 0;
+
+        RecordCountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        public void write(byte[] b, int off, int len)
+            throws IOException
+        {
+            ++writeCount;
+            byteCount += len;
+            out.write(b, off, len);
+        }
+
+        void reset()
+        {
+            writeCount = 0;
+            byteCount = 0;
+        }
+
+        int getWriteCount()
+        {
+            return writeCount;
+        }
+
+        int getByteCount()
+        {
+            return byteCount;
+        }
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(RecordLayerTest.class);
+    }
+}
@@ -0,0 +1,180 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.net.Socket;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.x509.X509CertificateStructure;
+import org.spongycastle.crypto.tls.CertificateVerifyer;
+import org.spongycastle.crypto.tls.DefaultTlsSessionCache;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.TlsProtocolHandler;
+import org.spongycastle.crypto.tls.TlsSession;
+import org.spongycastle.crypto.tls.TlsSessionCache;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Check abbreviated handshakes against a JSSE server.
+ */
+public class SessionResumptionTest
+    extends TestCase
+{
+    private SSLServerSocket serverSocket;
+    private int port;
+    private int certificatesChecked;
+
+    protected void setUp()
+        throws Exception
+    {
+        serverSocket = (SSLServerSocket)new HTTPSServerThread().createSSLContext()
+            .getServerSocketFactory().createServerSocket(0);
+        serverSocket.setEnabledProtocols(new String[] { "TLSv1" });
+        port = serverSocket.getLocalPort();
+
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    for (;;)
+                    {
+                        SSLSocket s = (SSLSocket)serverSocket.accept();
+
+                        // echo a single byte back
+                        s.getOutputStream().write(s.getInputStream().read());
+                        s.close();
+                    }
+                }
+                catch (IOException e)
+                {
+                    // server socket closed
+                }
+            }
+        };
+
+        server.setDaemon(true);
+        server.start();
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        serverSocket.close();
+    }
+
+    public void testResumption()
+        throws Exception
+    {
+        TlsSessionCache cache = new DefaultTlsSessionCache();
+
+        connect(cache, "localhost");
+
+        TlsSession session = cache.getSession("localhost", port);
+
+        assertNotNull(session);
+        assertEquals(1, certificatesChecked);
+        assertEquals(32, session.getSessionID().length);
+        assertNotNull(session.getPeerCertificate());
+
+        byte[] masterSecret = getMasterSecret(session);
+
+        for (int i = 0; i != 3; i++)
+        {
+            connect(cache, "localhost");
+
+            // a resumed session isn't re-authenticated, and keeps its secret and lifetime. The
+            // entry itself may be replaced, as servers may issue a new ticket on each resumption.
+            TlsSession resumed = cache.getSession("localhost", port);
+
+            assertEquals(1, certificatesChecked);
+            assertNotNull(resumed);
+            assertTrue(Arrays.areEqual(masterSecret, getMasterSecret(resumed)));
+            assertEquals(session.getCreationTime(), resumed.getCreationTime());
+            assertEquals(session.getCipherSuite(), resumed.getCipherSuite());
+        }
+
+        cache.removeSession("localhost", port);
+        connect(cache, "localhost");
+
+        assertEquals(2, certificatesChecked);
+        assertNotSame(session, cache.getSession("localhost", port));
+    }
+
+    public void testEviction()
+        throws Exception
+    {
+        DefaultTlsSessionCache cache = new DefaultTlsSessionCache(1, 60000);
+
+        connect(cache, "localhost");
+        connect(cache, "127.0.0.1");
+
+        assertEquals(1, cache.size());
+        assertNull(cache.getSession("localhost", port));
+        assertNotNull(cache.getSession("127.0.0.1", port));
+
+        cache = new DefaultTlsSessionCache(10, 1);
+
+        connect(cache, "localhost");
+        Thread.sleep(10);
+
+        assertNull(cache.getSession("localhost", port));
+        assertEquals(0, cache.size());
+    }
+
+    private static byte[] getMasterSecret(TlsSession session)
+        throws Exception
+    {
+        // package private, as it is nobody else's business
+        Method getter = TlsSession.class.getDeclaredMethod("getMasterSecret", new Class[0]);
+        getter.setAccessible(true);
+
+        return (byte[])getter.invoke(session, new Object[0]);
+    }
+
+    private void connect(TlsSessionCache cache, String host)
+        throws IOException
+    {
+        Socket s = new Socket(host, port);
+        TlsProtocolHandler handler = new TlsProtocolHandler(s.getInputStream(), s.getOutputStream());
+
+        LegacyTlsClient client = new LegacyTlsClient(new CertificateVerifyer()
+        {
+            public boolean isValid(X509CertificateStructure[] certs)
+            {
+                certificatesChecked++;
+                return true;
+            }
+        });
+
+        client.setSessionCache(cache, host, port);
+
+        handler.connect(client);
+
+        handler.getOutputStream().write(42);
+
+        InputStream in = handler.getInputStream();
+
+        assertEquals(42, in.read());
+
+        handler.close();
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(SessionResumptionTest.class);
+    }
+
+    public static void main(String[] args)
+        throws Exception
+    {
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,174 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+
+import javax.net.ssl.SSLServerSocket;
+import javax.net.ssl.SSLSocket;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.x509.X509CertificateStructure;
+import org.spongycastle.crypto.tls.CertificateVerifyer;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.TlsProtocolHandler;
+import org.spongycastle.util.Arrays;
+
+/**
+ * Check TLS 1.1 and 1.2 connections, including the AES-GCM suites, against a JSSE server.
+ */
+public class Tls12Test
+    extends TestCase
+{
+    private static final int DATA_LENGTH = 20000;
+
+    private SSLServerSocket serverSocket;
+    private volatile String serverProtocol;
+    private volatile String serverCipherSuite;
+
+    protected void tearDown()
+        throws Exception
+    {
+        if (serverSocket != null)
+        {
+            serverSocket.close();
+        }
+    }
+
+    public void testRSAWithAES128GCM()
+        throws Exception
+    {
+        checkConnection("TLSv1.2", "TLS_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    public void testRSAWithAES256GCM()
+        throws Exception
+    {
+        // SHA-384 PRF and handshake hash
+        checkConnection("TLSv1.2", "TLS_RSA_WITH_AES_256_GCM_SHA384");
+    }
+
+    public void testDHERSAWithAES128GCM()
+        throws Exception
+    {
+        // the server key exchange is signed the TLS 1.2 way
+        checkConnection("TLSv1.2", "TLS_DHE_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    public void testDHERSAWithAES256GCM()
+        throws Exception
+    {
+        checkConnection("TLSv1.2", "TLS_DHE_RSA_WITH_AES_256_GCM_SHA384");
+    }
+
+    public void testCBCWithTLSv12()
+        throws Exception
+    {
+        // SHA-256 PRF with an older suite, and explicit IVs
+        checkConnection("TLSv1.2", "TLS_DHE_RSA_WITH_AES_128_CBC_SHA");
+    }
+
+    public void testCBCWithTLSv11()
+        throws Exception
+    {
+        checkConnection("TLSv1.1", "TLS_RSA_WITH_AES_256_CBC_SHA");
+    }
+
+    private void checkConnection(String protocol, String cipherSuite)
+        throws Exception
+    {
+        startServer(protocol, cipherSuite);
+
+        Socket s = new Socket("localhost", serverSocket.getLocalPort());
+        TlsProtocolHandler handler = new TlsProtocolHandler(s.getInputStream(), s.getOutputStream());
+
+        handler.connect(new LegacyTlsClient(new CertificateVerifyer()
+        {
+            public boolean isValid(X509CertificateStructure[] certs)
+            {
+                return true;
+            }
+        }));
+
+        byte[] data = new byte[DATA_LENGTH];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+
+        handler.getOutputStream().write(data);
+
+        byte[] echo = new byte[DATA_LENGTH];
+        InputStream in = handler.getInputStream();
+        int count = 0;
+        while (count < echo.length)
+        {
+            int len = in.read(echo, count, echo.length - count);
+            assertTrue(len > 0);
+            count += len;
+        }
+
+        handler.close();
+
+        assertTrue(Arrays.areEqual(data, echo));
+        assertEquals(protocol, serverProtocol);
+        assertEquals(cipherSuite, serverCipherSuite);
+    }
+
+    private void startServer(String protocol, String cipherSuite)
+        throws Exception
+    {
+        serverSocket = (SSLServerSocket)new HTTPSServerThread().createSSLContext()
+            .getServerSocketFactory().createServerSocket(0);
+        serverSocket.setEnabledProtocols(new String[] { protocol });
+        serverSocket.setEnabledCipherSuites(new String[] { cipherSuite });
+
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    SSLSocket s = (SSLSocket)serverSocket.accept();
+
+                    InputStream in = s.getInputStream();
+                    OutputStream out = s.getOutputStream();
+
+                    byte[] buf = new byte[DATA_LENGTH];
+                    int count = 0;
+                    while (count < buf.length)
+                    {
+                        int len = in.read(buf, count, buf.length - count);
+                        if (len < 0)
+                        {
+                            break;
+                        }
+                        count += len;
+                    }
+
+                    serverProtocol = s.getSession().getProtocol();
+                    serverCipherSuite = s.getSession().getCipherSuite();
+
+                    out.write(buf, 0, count);
+                    out.flush();
+                    s.close();
+                }
+                catch (IOException e)
+                {
+                    // server socket closed
+                }
+            }
+        };
+
+        server.setDaemon(true);
+        server.start();
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(Tls12Test.class);
+    }
+}
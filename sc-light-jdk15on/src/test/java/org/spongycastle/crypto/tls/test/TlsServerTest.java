@@ -0,0 +1,552 @@
+package org.spongycastle.crypto.tls.test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.security.KeyStore;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Enumeration;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.ASN1Primitive;
+import org.spongycastle.asn1.x509.X509CertificateStructure;
+import org.spongycastle.crypto.tls.AlertDescription;
+import org.spongycastle.crypto.tls.AlertLevel;
+import org.spongycastle.crypto.tls.Certificate;
+import org.spongycastle.crypto.tls.CertificateRequest;
+import org.spongycastle.crypto.tls.CertificateVerifyer;
+import org.spongycastle.crypto.tls.CipherSuite;
+import org.spongycastle.crypto.tls.ContentType;
+import org.spongycastle.crypto.tls.DefaultTlsServer;
+import org.spongycastle.crypto.tls.DefaultTlsServerSessionCache;
+import org.spongycastle.crypto.tls.DefaultTlsSessionCache;
+import org.spongycastle.crypto.tls.LegacyTlsClient;
+import org.spongycastle.crypto.tls.TlsCredentials;
+import org.spongycastle.crypto.tls.TlsEphemeralKeyCache;
+import org.spongycastle.crypto.tls.TlsKeyExchange;
+import org.spongycastle.crypto.tls.TlsProtocolHandler;
+import org.spongycastle.crypto.tls.TlsServerCredentials;
+import org.spongycastle.crypto.tls.TlsServerKeyExchange;
+import org.spongycastle.crypto.tls.TlsServerProtocol;
+import org.spongycastle.crypto.tls.TlsServerSessionCache;
+import org.spongycastle.crypto.tls.TlsSessionCache;
+import org.spongycastle.crypto.util.PrivateKeyFactory;
+import org.spongycastle.util.Arrays;
+import org.spongycastle.util.io.TeeOutputStream;
+
+/**
+ * Check TlsServerProtocol against JSSE clients and our own client, including session
+ * resumption and the reuse of ephemeral keys.
+ */
+public class TlsServerTest
+    extends TestCase
+{
+    private static final char[] SERVER_PASSWORD = "serverPassword".toCharArray();
+    private static final int DATA_LENGTH = 20000;
+
+    private static TlsServerCredentials credentials;
+
+    private ServerSocket serverSocket;
+    private TlsEphemeralKeyCache keyCache;
+    private TlsServerSessionCache sessionCache;
+    private volatile int fullHandshakes;
+    private volatile Exception serverException;
+    private volatile ByteArrayOutputStream serverOutput;
+
+    static
+    {
+        // Sets up the JSSE the same way for the clients here
+        new HTTPSServerThread();
+    }
+
+    protected void setUp()
+        throws Exception
+    {
+        if (credentials == null)
+        {
+            credentials = loadCredentials();
+        }
+
+        keyCache = null;
+        sessionCache = null;
+        fullHandshakes = 0;
+        serverException = null;
+    }
+
+    protected void tearDown()
+        throws Exception
+    {
+        if (serverSocket != null)
+        {
+            serverSocket.close();
+        }
+    }
+
+    public void testJSSEClientECDHEWithGCM()
+        throws Exception
+    {
+        checkJSSEClient("TLSv1.2", "TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256");
+    }
+
+    public void testJSSEClientECDHEWithCBC()
+        throws Exception
+    {
+        // the server key exchange is signed with md5 + sha1
+        checkJSSEClient("TLSv1.1", "TLS_ECDHE_RSA_WITH_AES_256_CBC_SHA");
+    }
+
+    public void testJSSEClientRSAWithGCM()
+        throws Exception
+    {
+        checkJSSEClient("TLSv1.2", "TLS_RSA_WITH_AES_256_GCM_SHA384");
+    }
+
+    public void testJSSEClientRSAWithCBC()
+        throws Exception
+    {
+        // TLS 1.0, so our application data records are split for IV protection
+        checkJSSEClient("TLSv1", "TLS_RSA_WITH_AES_128_CBC_SHA");
+    }
+
+    public void testOwnClient()
+        throws Exception
+    {
+        startServer();
+
+        connect(null, CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256);
+        connect(null, CipherSuite.TLS_RSA_WITH_AES_128_CBC_SHA);
+
+        assertEquals(2, fullHandshakes);
+    }
+
+    public void testSessionResumption()
+        throws Exception
+    {
+        sessionCache = new DefaultTlsServerSessionCache();
+        startServer();
+
+        TlsSessionCache clientCache = new DefaultTlsSessionCache();
+        for (int i = 0; i != 3; i++)
+        {
+            connect(clientCache, CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256);
+        }
+
+        // only the first connection had a key exchange
+        assertEquals(1, fullHandshakes);
+        assertEquals(1, ((DefaultTlsServerSessionCache)sessionCache).size());
+
+        clientCache.removeSession("localhost", serverSocket.getLocalPort());
+        connect(clientCache, CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256);
+
+        assertEquals(2, fullHandshakes);
+        assertEquals(2, ((DefaultTlsServerSessionCache)sessionCache).size());
+    }
+
+    public void testEphemeralKeyReuse()
+        throws Exception
+    {
+        keyCache = new TlsEphemeralKeyCache(new SecureRandom(), 60 * 60 * 1000);
+        startServer();
+
+        for (int i = 0; i != 3; i++)
+        {
+            connect(null, CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256);
+        }
+
+        assertEquals(3, fullHandshakes);
+        assertEquals(1, keyCache.getKeysGenerated());
+    }
+
+    public void testEphemeralKeyNoReuse()
+        throws Exception
+    {
+        keyCache = new TlsEphemeralKeyCache(new SecureRandom(), 0);
+        startServer();
+
+        for (int i = 0; i != 3; i++)
+        {
+            connect(null, CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256);
+        }
+
+        assertEquals(3, keyCache.getKeysGenerated());
+    }
+
+    public void testInvalidClientPoint()
+        throws Exception
+    {
+        // a reused ephemeral key is what an invalid curve attack would recover
+        keyCache = new TlsEphemeralKeyCache(new SecureRandom(), 60 * 60 * 1000);
+        startServer();
+
+        checkInvalidClientPoint(false);
+        checkInvalidClientPoint(true);
+    }
+
+    private void checkInvalidClientPoint(final boolean infinity)
+        throws Exception
+    {
+        serverException = null;
+
+        Socket s = new Socket("localhost", serverSocket.getLocalPort());
+        TlsProtocolHandler handler = new TlsProtocolHandler(s.getInputStream(), s.getOutputStream());
+
+        LegacyTlsClient client = new LegacyTlsClient(new AcceptAllVerifyer())
+        {
+            public int[] getCipherSuites()
+            {
+                return new int[] { CipherSuite.TLS_ECDHE_RSA_WITH_AES_128_GCM_SHA256 };
+            }
+
+            public TlsKeyExchange getKeyExchange()
+                throws IOException
+            {
+                return new InvalidPointKeyExchange(super.getKeyExchange(), infinity);
+            }
+        };
+
+        try
+        {
+            handler.connect(client);
+            fail("invalid client point accepted");
+        }
+        catch (IOException e)
+        {
+            // expected
+        }
+        finally
+        {
+            s.close();
+        }
+
+        for (int i = 0; serverException == null && i != 100; i++)
+        {
+            Thread.sleep(50);
+        }
+        assertNotNull(serverException);
+
+        // the handshake isn't encrypted yet, so the last record the server sent is the alert in the clear
+        byte[] sent = serverOutput.toByteArray();
+        assertEquals(ContentType.alert, sent[sent.length - 7]);
+        assertEquals(AlertLevel.fatal, sent[sent.length - 2]);
+        assertEquals(AlertDescription.illegal_parameter, sent[sent.length - 1]);
+    }
+
+    private void checkJSSEClient(String protocol, String cipherSuite)
+        throws Exception
+    {
+        startServer();
+
+        SSLContext sslContext = SSLContext.getInstance("TLS");
+        sslContext.init(null, new TrustManager[] { new TrustAllManager() }, null);
+
+        SSLSocket s = (SSLSocket)sslContext.getSocketFactory().createSocket("localhost",
+            serverSocket.getLocalPort());
+        s.setEnabledProtocols(new String[] { protocol });
+        s.setEnabledCipherSuites(new String[] { cipherSuite });
+
+        checkEcho(s.getInputStream(), s.getOutputStream());
+
+        assertEquals(protocol, s.getSession().getProtocol());
+        assertEquals(cipherSuite, s.getSession().getCipherSuite());
+
+        s.close();
+
+        assertEquals(1, fullHandshakes);
+    }
+
+    private void connect(TlsSessionCache clientCache, final int cipherSuite)
+        throws Exception
+    {
+        Socket s = new Socket("localhost", serverSocket.getLocalPort());
+        TlsProtocolHandler handler = new TlsProtocolHandler(s.getInputStream(), s.getOutputStream());
+
+        LegacyTlsClient client = new LegacyTlsClient(new AcceptAllVerifyer())
+        {
+            public int[] getCipherSuites()
+            {
+                return new int[] { cipherSuite };
+            }
+        };
+
+        if (clientCache != null)
+        {
+            client.setSessionCache(clientCache, "localhost", serverSocket.getLocalPort());
+        }
+
+        handler.connect(client);
+
+        checkEcho(handler.getInputStream(), handler.getOutputStream());
+
+        handler.close();
+    }
+
+    private void checkEcho(InputStream in, OutputStream out)
+        throws Exception
+    {
+        byte[] data = new byte[DATA_LENGTH];
+        for (int i = 0; i != data.length; i++)
+        {
+            data[i] = (byte)i;
+        }
+
+        out.write(data);
+        out.flush();
+
+        byte[] echo = new byte[DATA_LENGTH];
+        int count = 0;
+        while (count < echo.length)
+        {
+            int len = in.read(echo, count, echo.length - count);
+            if (len < 0)
+            {
+                break;
+            }
+            count += len;
+        }
+
+        if (serverException != null)
+        {
+            throw serverException;
+        }
+
+        assertEquals(DATA_LENGTH, count);
+        assertTrue(Arrays.areEqual(data, echo));
+    }
+
+    private void startServer()
+        throws Exception
+    {
+        serverSocket = new ServerSocket(0);
+
+        Thread server = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    for (;;)
+                    {
+                        Socket s = serverSocket.accept();
+                        try
+                        {
+                            serve(s);
+                        }
+                        catch (Exception e)
+                        {
+                            serverException = e;
+                            s.close();
+                        }
+                    }
+                }
+                catch (IOException e)
+                {
+                    // server socket closed
+                }
+            }
+        };
+
+        server.setDaemon(true);
+        server.start();
+    }
+
+    private void serve(Socket s)
+        throws Exception
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        serverOutput = output;
+
+        TlsServerProtocol protocol = new TlsServerProtocol(s.getInputStream(),
+            new TeeOutputStream(s.getOutputStream(), output), new SecureRandom());
+
+        DefaultTlsServer server = new DefaultTlsServer(credentials)
+        {
+            public TlsServerKeyExchange getKeyExchange()
+                throws IOException
+            {
+                fullHandshakes++;
+                return super.getKeyExchange();
+            }
+        };
+        server.setEphemeralKeyCache(keyCache);
+        server.setSessionCache(sessionCache);
+
+        protocol.accept(server);
+
+        InputStream in = protocol.getInputStream();
+        OutputStream out = protocol.getOutputStream();
+
+        byte[] buf = new byte[DATA_LENGTH];
+        int count = 0;
+        while (count < buf.length)
+        {
+            int len = in.read(buf, count, buf.length - count);
+            if (len < 0)
+            {
+                break;
+            }
+            count += len;
+        }
+
+        out.write(buf, 0, count);
+        out.flush();
+
+        protocol.close();
+    }
+
+    private static TlsServerCredentials loadCredentials()
+        throws Exception
+    {
+        KeyStore serverStore = KeyStore.getInstance("JKS");
+        serverStore.load(new ByteArrayInputStream(KeyStores.server), SERVER_PASSWORD);
+
+        Enumeration aliases = serverStore.aliases();
+        while (aliases.hasMoreElements())
+        {
+            String alias = (String)aliases.nextElement();
+            if (serverStore.isKeyEntry(alias))
+            {
+                java.security.cert.Certificate[] chain = serverStore.getCertificateChain(alias);
+                X509CertificateStructure[] certs = new X509CertificateStructure[chain.length];
+                for (int i = 0; i != chain.length; i++)
+                {
+                    certs[i] = X509CertificateStructure.getInstance(ASN1Primitive.fromByteArray(chain[i].getEncoded()));
+                }
+
+                byte[] privateKey = serverStore.getKey(alias, SERVER_PASSWORD).getEncoded();
+
+                return new TlsServerCredentials(new Certificate(certs), PrivateKeyFactory.createKey(privateKey));
+            }
+        }
+
+        throw new IllegalStateException("no key in the server key store");
+    }
+
+    private static class AcceptAllVerifyer
+        implements CertificateVerifyer
+    {
+        public boolean isValid(X509CertificateStructure[] certs)
+        {
+            return true;
+        }
+    }
+
+    /**
+     * A client key exchange which sends the point at infinity, or its real public point moved
+     * off the curve, instead of its real public point.
+     */
+    private static class InvalidPointKeyExchange
+        implements TlsKeyExchange
+    {
+        private final TlsKeyExchange keyExchange;
+        private final boolean infinity;
+
+        InvalidPointKeyExchange(TlsKeyExchange keyExchange, boolean infinity)
+        {
+            this.keyExchange = keyExchange;
+            this.infinity = infinity;
+        }
+
+        public void skipServerCertificate()
+            throws IOException
+        {
+            keyExchange.skipServerCertificate();
+        }
+
+        public void processServerCertificate(Certificate serverCertificate)
+            throws IOException
+        {
+            keyExchange.processServerCertificate(serverCertificate);
+        }
+
+        public void skipServerKeyExchange()
+            throws IOException
+        {
+            keyExchange.skipServerKeyExchange();
+        }
+
+        public void processServerKeyExchange(InputStream is)
+            throws IOException
+        {
+            keyExchange.processServerKeyExchange(is);
+        }
+
+        public void validateCertificateRequest(CertificateRequest certificateRequest)
+            throws IOException
+        {
+            keyExchange.validateCertificateRequest(certificateRequest);
+        }
+
+        public void skipClientCredentials()
+            throws IOException
+        {
+            keyExchange.skipClientCredentials();
+        }
+
+        public void processClientCredentials(TlsCredentials clientCredentials)
+            throws IOException
+        {
+            keyExchange.processClientCredentials(clientCredentials);
+        }
+
+        public void generateClientKeyExchange(OutputStream os)
+            throws IOException
+        {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            keyExchange.generateClientKeyExchange(buf);
+
+            // an opaque8 holding an uncompressed point, the last octet being the end of y
+            byte[] point = buf.toByteArray();
+
+            if (infinity)
+            {
+                point = new byte[] { 1, 0x00 };
+            }
+            else
+            {
+                point[point.length - 1] ^= 1;
+            }
+
+            os.write(point);
+        }
+
+        public byte[] generatePremasterSecret()
+            throws IOException
+        {
+            return keyExchange.generatePremasterSecret();
+        }
+    }
+
+    private static class TrustAllManager
+        implements X509TrustManager
+    {
+        public void checkClientTrusted(X509Certificate[] chain, String authType)
+        {
+        }
+
+        public void checkServerTrusted(X509Certificate[] chain, String authType)
+        {
+        }
+
+        public X509Certificate[] getAcceptedIssuers()
+        {
+            return new X509Certificate[0];
+        }
+    }
+
+    public static TestSuite suite()
+    {
+        return new TestSuite(TlsServerTest.class);
+    }
+}
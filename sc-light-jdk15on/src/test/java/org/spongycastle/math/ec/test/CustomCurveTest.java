@@ -0,0 +1,163 @@
+package org.spongycastle.math.ec.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X962NamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECCurve;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.custom.sec.SecP256K1Curve;
+import org.spongycastle.math.ec.custom.sec.SecP256R1Curve;
+import org.spongycastle.math.ec.custom.sec.SecP384R1Curve;
+
+/**
+ * Check the curves with fixed prime field arithmetic against the general
+ * BigInteger based implementation.
+ */
+public class CustomCurveTest extends TestCase
+{
+    private static final String[] NAMES = { "secp256k1", "secp256r1", "secp384r1" };
+
+    private SecureRandom random = new SecureRandom();
+
+    public void testNamedCurves()
+    {
+        for (int i = 0; i != NAMES.length; i++)
+        {
+            ECCurve curve = SECNamedCurves.getByName(NAMES[i]).getCurve();
+
+            assertTrue(NAMES[i], curve instanceof SecP256K1Curve
+                || curve instanceof SecP256R1Curve || curve instanceof SecP384R1Curve);
+        }
+
+        assertTrue(X962NamedCurves.getByName("prime256v1").getCurve() instanceof SecP256R1Curve);
+    }
+
+    public void testFieldArithmetic()
+    {
+        for (int i = 0; i != NAMES.length; i++)
+        {
+            ECCurve.Fp curve = (ECCurve.Fp)SECNamedCurves.getByName(NAMES[i]).getCurve();
+
+            implTestFieldArithmetic(curve);
+        }
+    }
+
+    private void implTestFieldArithmetic(ECCurve.Fp curve)
+    {
+        BigInteger q = curve.getQ();
+        List values = new ArrayList();
+
+        values.add(BigInteger.valueOf(0));
+        values.add(BigInteger.valueOf(1));
+        values.add(BigInteger.valueOf(2));
+        values.add(q.subtract(BigInteger.valueOf(1)));
+        values.add(q.subtract(BigInteger.valueOf(2)));
+        values.add(q.shiftRight(1));
+
+        // single bits and runs of ones, which stress the carries in the reduction
+        for (int bit = 0; bit < q.bitLength(); bit += 31)
+        {
+            values.add(BigInteger.valueOf(1).shiftLeft(bit));
+            values.add(BigInteger.valueOf(1).shiftLeft(bit).subtract(BigInteger.valueOf(1)));
+        }
+
+        for (int i = 0; i != 20; i++)
+        {
+            values.add(new BigInteger(q.bitLength(), random).mod(q));
+        }
+
+        for (int i = 0; i != values.size(); i++)
+        {
+            BigInteger x = (BigInteger)values.get(i);
+            ECFieldElement fx = curve.fromBigInteger(x);
+
+            assertEquals(x, fx.toBigInteger());
+            assertEquals(new ECFieldElement.Fp(q, x), fx);
+            assertEquals(fx, new ECFieldElement.Fp(q, x));
+            assertEquals(new ECFieldElement.Fp(q, x).hashCode(), fx.hashCode());
+            assertEquals(x.signum() == 0, fx.isZero());
+
+            assertEquals(x.multiply(x).mod(q), fx.square().toBigInteger());
+            assertEquals(x.negate().mod(q), fx.negate().toBigInteger());
+
+            if (x.signum() != 0)
+            {
+                assertEquals(x.modInverse(q), fx.invert().toBigInteger());
+            }
+
+            ECFieldElement root = fx.sqrt();
+
+            if (root == null)
+            {
+                assertNull(new ECFieldElement.Fp(q, x).sqrt());
+            }
+            else
+            {
+                assertEquals(fx, root.square());
+            }
+
+            for (int j = 0; j != values.size(); j++)
+            {
+                BigInteger y = (BigInteger)values.get(j);
+                ECFieldElement fy = curve.fromBigInteger(y);
+
+                assertEquals(x.add(y).mod(q), fx.add(fy).toBigInteger());
+                assertEquals(x.subtract(y).mod(q), fx.subtract(fy).toBigInteger());
+                assertEquals(x.multiply(y).mod(q), fx.multiply(fy).toBigInteger());
+
+                // and with an operand in the general representation
+                ECFieldElement gy = new ECFieldElement.Fp(q, y);
+
+                assertEquals(x.multiply(y).mod(q), fx.multiply(gy).toBigInteger());
+            }
+        }
+    }
+
+    public void testPointArithmetic()
+    {
+        for (int i = 0; i != NAMES.length; i++)
+        {
+            X9ECParameters x9 = SECNamedCurves.getByName(NAMES[i]);
+            ECCurve.Fp curve = (ECCurve.Fp)x9.getCurve();
+            ECCurve.Fp general = new ECCurve.Fp(curve.getQ(),
+                curve.getA().toBigInteger(), curve.getB().toBigInteger());
+
+            assertEquals(general, curve);
+            assertEquals(curve, general);
+            assertEquals(general.hashCode(), curve.hashCode());
+
+            ECPoint g = x9.getG();
+            ECPoint gg = general.decodePoint(g.getEncoded());
+
+            for (int j = 0; j != 10; j++)
+            {
+                BigInteger k = new BigInteger(x9.getN().bitLength(), random);
+                ECPoint p = g.multiply(k);
+                ECPoint gp = gg.multiply(k);
+
+                assertEquals(gp, p);
+                assertTrue(org.spongycastle.util.Arrays.areEqual(gp.getEncoded(), p.getEncoded()));
+
+                // compressed encodings decode to the same point
+                ECPoint c = new ECPoint.Fp(curve, p.getX(), p.getY(), true);
+
+                assertEquals(p, curve.decodePoint(c.getEncoded()));
+            }
+        }
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(CustomCurveTest.class);
+    }
+}
@@ -10,9 +10,14 @@ import junit.framework.TestSuite;
 
 import org.spongycastle.asn1.sec.SECNamedCurves;
 import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECAlgorithms;
+import org.spongycastle.math.ec.ECConstants;
 import org.spongycastle.math.ec.ECCurve;
 import org.spongycastle.math.ec.ECFieldElement;
 import org.spongycastle.math.ec.ECPoint;
+import org.spongycastle.math.ec.ECPointPreCompCache;
+import org.spongycastle.math.ec.GlvEndomorphism;
+import org.spongycastle.util.Arrays;
 
 /**
  * Test class for {@link org.spongycastle.math.ec.ECPoint ECPoint}. All
@@ -444,6 +449,350 @@ public class ECPointTest extends TestCase
         }
     }
 
+    /**
+     * Affine addition done directly on the co-ordinates, as a check on the
+     * projective arithmetic used by <code>ECPoint.Fp</code>.
+     */
+    private ECPoint affineAdd(ECPoint p1, ECPoint p2)
+    {
+        ECCurve.Fp curve = (ECCurve.Fp)p1.getCurve();
+        BigInteger q = curve.getQ();
+        BigInteger x1 = p1.getX().toBigInteger(), y1 = p1.getY().toBigInteger();
+        BigInteger x2 = p2.getX().toBigInteger(), y2 = p2.getY().toBigInteger();
+        BigInteger gamma;
+
+        if (x1.equals(x2))
+        {
+            gamma = x1.multiply(x1).multiply(BigInteger.valueOf(3)).add(curve.getA().toBigInteger())
+                .multiply(y1.shiftLeft(1).modInverse(q)).mod(q);
+        }
+        else
+        {
+            gamma = y2.subtract(y1).multiply(x2.subtract(x1).modInverse(q)).mod(q);
+        }
+
+        BigInteger x3 = gamma.multiply(gamma).subtract(x1).subtract(x2).mod(q);
+        BigInteger y3 = gamma.multiply(x1.subtract(x3)).subtract(y1).mod(q);
+
+        return curve.createPoint(x3, y3, false);
+    }
+
+    private void implTestProjective(ECPoint g, BigInteger n)
+    {
+        ECPoint p = g.multiply(new BigInteger(n.bitLength() - 1, secRand));
+        ECPoint q = g.multiply(new BigInteger(n.bitLength() - 1, secRand));
+
+        assertTrue("multiply result not normalized", p.isNormalized() && q.isNormalized());
+
+        // both affine, one projective operand, and two projective operands
+        ECPoint sum = p.add(q);
+        ECPoint twiceP = p.twice();
+        ECPoint twiceQ = q.twice();
+
+        assertEquals("affine add incorrect", affineAdd(p, q), sum);
+        assertEquals("affine twice incorrect", affineAdd(p, p), twiceP);
+        assertEquals("mixed add incorrect", affineAdd(affineAdd(p, q), q), sum.add(q));
+        assertEquals("mixed add incorrect", affineAdd(affineAdd(p, q), q), q.add(sum));
+        assertEquals("projective add incorrect", affineAdd(affineAdd(p, p), affineAdd(q, q)), twiceP.add(twiceQ));
+        assertEquals("projective twice incorrect", affineAdd(affineAdd(p, p), affineAdd(p, p)), twiceP.twice());
+        assertEquals("projective doubling by add incorrect", twiceP.twice(), twiceP.add(p.add(p)));
+        assertEquals("projective subtract incorrect", p, sum.subtract(q));
+        assertEquals("projective negation incorrect", g.getCurve().getInfinity(), sum.add(sum.negate()));
+
+        assertEquals("encoding of projective point incorrect",
+            new String(sum.normalize().getEncoded()), new String(sum.getEncoded()));
+        assertEquals("multiply of projective point incorrect", sum.normalize().multiply(n.subtract(BigInteger.ONE)),
+            sum.multiply(n.subtract(BigInteger.ONE)));
+    }
+
+    /**
+     * Checks the projective point arithmetic against affine calculations for
+     * curves with a = 0, a = -3 and a general a.
+     */
+    public void testProjectiveArithmetic()
+    {
+        String[] names = { "secp256k1", "secp256r1", "secp384r1", "secp112r2", "secp128r2" };
+
+        for (int i = 0; i != names.length; i++)
+        {
+            X9ECParameters x9 = SECNamedCurves.getByName(names[i]);
+
+            for (int j = 0; j != 10; j++)
+            {
+                implTestProjective(x9.getG(), x9.getN());
+            }
+        }
+    }
+
+    /**
+     * Checks batch normalization against normalizing one point at a time.
+     */
+    public void testNormalizeAll()
+    {
+        X9ECParameters x9 = SECNamedCurves.getByName("secp256r1");
+        ECPoint g = x9.getG();
+        ECPoint[] points = new ECPoint[12];
+        ECPoint[] expected = new ECPoint[points.length];
+
+        points[0] = g.twice();
+        for (int i = 1; i != points.length; i++)
+        {
+            points[i] = points[i - 1].add(g);
+        }
+
+        // an affine point, an infinity and a gap in amongst the projective ones
+        points[3] = g;
+        points[5] = x9.getCurve().getInfinity();
+        points[8] = null;
+
+        for (int i = 0; i != points.length; i++)
+        {
+            expected[i] = (points[i] == null) ? null : points[i].normalize();
+        }
+
+        x9.getCurve().normalizeAll(points);
+
+        for (int i = 0; i != points.length; i++)
+        {
+            if (expected[i] == null)
+            {
+                assertNull("null entry replaced", points[i]);
+                continue;
+            }
+
+            assertTrue("point not normalized", points[i].isNormalized());
+            assertEquals("normalizeAll incorrect", expected[i].getX(), points[i].getX());
+            assertEquals("normalizeAll incorrect", expected[i].getY(), points[i].getY());
+        }
+
+        try
+        {
+            x9.getCurve().normalizeAll(new ECPoint[]{ SECNamedCurves.getByName("secp256k1").getG().twice() });
+            fail("point from another curve accepted");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Checks the comb multiplication of fixed points against the ordinary
+     * multiplication, for prime and binary curves.
+     */
+    public void testFixedPointMultiply()
+    {
+        String[] names = { "secp112r1", "secp256r1", "secp384r1", "secp256k1", "sect163k1", "sect233r1" };
+
+        for (int i = 0; i != names.length; i++)
+        {
+            X9ECParameters x9 = SECNamedCurves.getByName(names[i]);
+            ECPoint g = x9.getG();
+            BigInteger n = x9.getN();
+
+            BigInteger[] ks = {
+                ECConstants.ONE, ECConstants.TWO, n.subtract(ECConstants.ONE), n,
+                n.shiftLeft(3).add(ECConstants.ONE),
+                new BigInteger(n.bitLength(), secRand), new BigInteger(n.bitLength(), secRand) };
+
+            for (int j = 0; j != ks.length; j++)
+            {
+                ECPoint expected = g.multiply(ks[j]);
+
+                assertEquals(names[i] + " fixed point multiply incorrect", expected,
+                    ECAlgorithms.fixedPointMultiply(g, ks[j]));
+
+                // a separately decoded generator shares the table
+                assertEquals(names[i] + " fixed point multiply incorrect", expected,
+                    ECAlgorithms.fixedPointMultiply(x9.getCurve().decodePoint(g.getEncoded()), ks[j]));
+            }
+
+            assertTrue(ECAlgorithms.fixedPointMultiply(g, ECConstants.ZERO).isInfinity());
+        }
+    }
+
+    /**
+     * Checks multiplication through the precomputation cache, and that the
+     * cache counts, bounds and shares its entries as it should.
+     */
+    public void testPreCompCache()
+        throws Exception
+    {
+        final X9ECParameters x9 = SECNamedCurves.getByName("secp256r1");
+        final ECPointPreCompCache cache = new ECPointPreCompCache(2);
+        final ECPoint[] points = new ECPoint[3];
+
+        for (int i = 0; i != points.length; i++)
+        {
+            points[i] = x9.getG().multiply(new BigInteger(255, secRand));
+        }
+
+        BigInteger k = new BigInteger(256, secRand);
+
+        assertEquals(points[0].multiply(k), cache.multiply(points[0], k));
+        assertEquals(points[0].multiply(k), cache.multiply(x9.getCurve().decodePoint(points[0].getEncoded()), k));
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+
+        cache.multiply(points[1], k);
+        cache.multiply(points[0], k);
+
+        // points[1] is now the least recently used
+        cache.multiply(points[2], k);
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+
+        cache.multiply(points[0], k);
+        assertEquals(3, cache.getMissCount());
+
+        cache.multiply(points[1], k);
+        assertEquals(4, cache.getMissCount());
+
+        // and from several threads at once
+        final Exception[] failure = new Exception[1];
+        Thread[] threads = new Thread[4];
+
+        for (int t = 0; t != threads.length; t++)
+        {
+            threads[t] = new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        SecureRandom random = new SecureRandom();
+
+                        for (int i = 0; i != 20; i++)
+                        {
+                            ECPoint p = points[random.nextInt(points.length)];
+                            BigInteger m = new BigInteger(256, random);
+
+                            if (!p.multiply(m).equals(cache.multiply(p, m)))
+                            {
+                                throw new IllegalStateException("cached multiply incorrect");
+                            }
+                        }
+                    }
+                    catch (Exception e)
+                    {
+                        failure[0] = e;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (int t = 0; t != threads.length; t++)
+        {
+            threads[t].join();
+        }
+
+        if (failure[0] != null)
+        {
+            throw failure[0];
+        }
+
+        assertTrue(cache.size() <= 2);
+
+        BigInteger a = new BigInteger(256, secRand);
+
+        assertEquals(x9.getG().multiply(a).add(points[2].multiply(k)),
+            ECAlgorithms.sumOfCachedMultiplies(x9.getG(), a, points[2], k));
+    }
+
+    /**
+     * Checks the GLV method on secp256k1 against the plain Window NAF method
+     * on the same curve without the endomorphism.
+     */
+    public void testGlvMultiply()
+    {
+        X9ECParameters x9 = SECNamedCurves.getByName("secp256k1");
+        ECCurve.Fp curve = (ECCurve.Fp)x9.getCurve();
+        GlvEndomorphism endomorphism = curve.getEndomorphism();
+        BigInteger n = x9.getN();
+
+        assertEquals(ECCurve.MULTIPLIER_GLV, curve.getMultiplierType());
+
+        ECCurve.Fp plain = new ECCurve.Fp(curve.getQ(), curve.getA().toBigInteger(), curve.getB().toBigInteger());
+        ECPoint g = plain.decodePoint(x9.getG().getEncoded());
+
+        assertTrue(Arrays.areEqual(g.multiply(endomorphism.getLambda()).getEncoded(),
+            endomorphism.mapPoint(x9.getG()).getEncoded()));
+
+        BigInteger[] ks = {
+            ECConstants.ONE, ECConstants.TWO, endomorphism.getLambda(), n.subtract(ECConstants.ONE), n,
+            n.shiftLeft(3).add(ECConstants.ONE), new BigInteger(n.bitLength(), secRand) };
+
+        for (int i = 0; i != ks.length + 20; i++)
+        {
+            BigInteger k = (i < ks.length) ? ks[i] : new BigInteger(n.bitLength(), secRand);
+            BigInteger[] ab = endomorphism.decomposeScalar(k);
+
+            assertEquals(k.mod(n), ab[0].add(ab[1].multiply(endomorphism.getLambda())).mod(n));
+            assertTrue(ab[0].bitLength() <= 129 && ab[1].bitLength() <= 129);
+
+            ECPoint p = x9.getG().multiply(k.add(ECConstants.TWO));
+            ECPoint expected = plain.decodePoint(p.getEncoded()).multiply(k);
+
+            assertTrue(Arrays.areEqual(expected.getEncoded(), p.multiply(k).getEncoded()));
+            assertTrue(Arrays.areEqual(expected.getEncoded(),
+                ECPointPreCompCache.getInstance().multiply(p, k).getEncoded()));
+        }
+
+        try
+        {
+            plain.setMultiplierType(ECCurve.MULTIPLIER_GLV);
+            fail("GLV accepted for a curve without an endomorphism");
+        }
+        catch (IllegalArgumentException e)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Checks the Montgomery ladder against the default multipliers.
+     */
+    public void testMontgomeryLadder()
+    {
+        String[] names = { "secp112r1", "secp256r1", "secp256k1", "sect163k1", "sect233r1" };
+
+        for (int i = 0; i != names.length; i++)
+        {
+            X9ECParameters x9 = SECNamedCurves.getByName(names[i]);
+            ECCurve curve = x9.getCurve();
+            int type = curve.getMultiplierType();
+            BigInteger n = x9.getN();
+
+            BigInteger[] ks = {
+                ECConstants.ONE, ECConstants.TWO, n.subtract(ECConstants.ONE), n,
+                new BigInteger(n.bitLength(), secRand), new BigInteger(n.bitLength(), secRand) };
+            ECPoint[] expected = new ECPoint[ks.length];
+
+            for (int j = 0; j != ks.length; j++)
+            {
+                expected[j] = x9.getG().multiply(ks[j]);
+            }
+
+            curve.setMultiplierType(ECCurve.MULTIPLIER_LADDER);
+
+            try
+            {
+                for (int j = 0; j != ks.length; j++)
+                {
+                    assertEquals(names[i] + " ladder incorrect", expected[j], x9.getG().multiply(ks[j]));
+                    assertEquals(names[i] + " ladder incorrect", expected[j],
+                        ECAlgorithms.fixedPointMultiply(x9.getG(), ks[j]));
+                }
+            }
+            finally
+            {
+                curve.setMultiplierType(type);
+            }
+        }
+    }
+
     public static Test suite()
     {
         return new TestSuite(ECPointTest.class);
@@ -0,0 +1,147 @@
+package org.spongycastle.math.ec.test;
+
+import java.math.BigInteger;
+import java.security.SecureRandom;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.spongycastle.asn1.sec.SECNamedCurves;
+import org.spongycastle.asn1.x9.X9ECParameters;
+import org.spongycastle.math.ec.ECConstants;
+import org.spongycastle.math.ec.ECFieldElement;
+import org.spongycastle.math.ec.ECPoint;
+
+/**
+ * Check the binary field arithmetic against polynomial arithmetic done
+ * with BigIntegers.
+ */
+public class F2mFieldTest extends TestCase
+{
+    // { m, k1, k2, k3 }, the last two are 0 for trinomials
+    private static final int[][] FIELDS = {
+        { 4, 1, 0, 0 },         // the small field used in ECPointTest
+        { 113, 9, 0, 0 },       // sect113r1
+        { 128, 1, 2, 7 },       // the GCM field, a whole number of words
+        { 131, 2, 3, 8 },       // sect131r1
+        { 163, 3, 6, 7 },       // sect163k1
+        { 193, 15, 0, 0 },      // sect193r1
+        { 233, 74, 0, 0 },      // sect233k1
+        { 239, 158, 0, 0 },     // sect239k1
+        { 283, 5, 7, 12 },      // sect283k1
+        { 409, 87, 0, 0 },      // sect409k1
+        { 571, 2, 5, 10 }       // sect571k1
+    };
+
+    private SecureRandom random = new SecureRandom();
+
+    public void testFieldArithmetic()
+    {
+        for (int i = 0; i != FIELDS.length; i++)
+        {
+            implTestFieldArithmetic(FIELDS[i][0], FIELDS[i][1], FIELDS[i][2], FIELDS[i][3]);
+        }
+    }
+
+    private void implTestFieldArithmetic(int m, int k1, int k2, int k3)
+    {
+        BigInteger f = ECConstants.ONE.shiftLeft(m).setBit(k1).setBit(0);
+
+        if (k2 != 0)
+        {
+            f = f.setBit(k2).setBit(k3);
+        }
+
+        BigInteger[] values = new BigInteger[20];
+
+        values[0] = ECConstants.ZERO;
+        values[1] = ECConstants.ONE;
+        values[2] = ECConstants.ONE.shiftLeft(m).subtract(ECConstants.ONE);
+        values[3] = ECConstants.ONE.shiftLeft(m - 1);
+
+        for (int i = 4; i != values.length; i++)
+        {
+            values[i] = new BigInteger(m, random);
+        }
+
+        for (int i = 0; i != values.length; i++)
+        {
+            ECFieldElement a = new ECFieldElement.F2m(m, k1, k2, k3, values[i]);
+
+            assertEquals(values[i], a.toBigInteger());
+            assertEquals(values[i].signum() == 0, a.isZero());
+            assertEquals(polyMod(polyMultiply(values[i], values[i]), f), a.square().toBigInteger());
+
+            if (!a.isZero())
+            {
+                ECFieldElement inv = a.invert();
+
+                assertEquals(m + " inverse incorrect", ECConstants.ONE, a.multiply(inv).toBigInteger());
+            }
+
+            for (int j = 0; j != values.length; j++)
+            {
+                ECFieldElement b = new ECFieldElement.F2m(m, k1, k2, k3, values[j]);
+
+                assertEquals(values[i].xor(values[j]), a.add(b).toBigInteger());
+                assertEquals(m + " multiply incorrect", polyMod(polyMultiply(values[i], values[j]), f),
+                    a.multiply(b).toBigInteger());
+                assertEquals(a.multiply(b), b.multiply(a));
+                assertEquals(a.multiply(b).hashCode(), b.multiply(a).hashCode());
+            }
+        }
+    }
+
+    /**
+     * Check point arithmetic on the named curves still holds together.
+     */
+    public void testCurves()
+    {
+        String[] names = { "sect163k1", "sect163r2", "sect233r1", "sect283k1", "sect571r1" };
+
+        for (int i = 0; i != names.length; i++)
+        {
+            X9ECParameters x9 = SECNamedCurves.getByName(names[i]);
+            ECPoint g = x9.getG();
+            BigInteger k = new BigInteger(x9.getN().bitLength(), random);
+
+            assertTrue(names[i], g.multiply(x9.getN()).isInfinity());
+            assertEquals(names[i], g.multiply(k).add(g), g.multiply(k.add(ECConstants.ONE)));
+            assertEquals(names[i], g.twice().add(g), g.multiply(BigInteger.valueOf(3)));
+            assertEquals(names[i], g, x9.getCurve().decodePoint(g.getEncoded()));
+        }
+    }
+
+    private static BigInteger polyMultiply(BigInteger a, BigInteger b)
+    {
+        BigInteger r = ECConstants.ZERO;
+
+        for (int i = 0; i < a.bitLength(); i++)
+        {
+            if (a.testBit(i))
+            {
+                r = r.xor(b.shiftLeft(i));
+            }
+        }
+
+        return r;
+    }
+
+    private static BigInteger polyMod(BigInteger a, BigInteger f)
+    {
+        int m = f.bitLength() - 1;
+
+        while (a.bitLength() > m)
+        {
+            a = a.xor(f.shiftLeft(a.bitLength() - 1 - m));
+        }
+
+        return a;
+    }
+
+    public static Test suite()
+    {
+        return new TestSuite(F2mFieldTest.class);
+    }
+}